@@ -1,9 +1,12 @@
 package com.kmu.syncpos;
 
 import com.kmu.syncpos.auth.TenantContext;
+import com.kmu.syncpos.controllers.LicenseDialogController;
 import com.kmu.syncpos.dao.TenantDAO;
 import com.kmu.syncpos.models.Tenant;
+import com.kmu.syncpos.service.SyncService;
 import com.kmu.syncpos.util.DatabaseManager;
+import com.kmu.syncpos.util.HttpClientManager;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -22,7 +25,13 @@ public class App extends Application {
         TenantDAO tenantDAO = new TenantDAO();
         Tenant existingTenant = tenantDAO.findActiveTenant();
 
-        if (existingTenant != null && "ACTIVE".equals(existingTenant.getStatus())) {
+        if (existingTenant != null && "ACTIVE".equals(existingTenant.getStatus())
+                && !SyncService.isInitialSyncComplete(existingTenant)) {
+            // The app was closed during the initial download; finish it before anyone logs in
+            System.out.println("Initial sync of tenant " + existingTenant.getLicenseKey() + " is incomplete. Resuming.");
+            TenantContext.setTenant(existingTenant);
+            showLicenseDialog().resumeInitialSync();
+        } else if (existingTenant != null && "ACTIVE".equals(existingTenant.getStatus())) {
             // If a valid tenant exists, set the context and go straight to login
             System.out.println("Existing tenant found: " + existingTenant.getLicenseKey());
             TenantContext.setTenant(existingTenant);
@@ -34,13 +43,14 @@ public class App extends Application {
         }
     }
 
-    public void showLicenseDialog() throws IOException {
+    public LicenseDialogController showLicenseDialog() throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(App.class.getResource("views/LicenseDialog.fxml"));
         Scene scene = new Scene(fxmlLoader.load());
         Stage stage = new Stage();
         stage.setTitle("SyncPOS License Activation");
         stage.setScene(scene);
         stage.show();
+        return fxmlLoader.getController();
     }
 
     public void showLoginScreen(Stage previousStage) throws IOException {
@@ -55,6 +65,13 @@ public class App extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        // Close pooled SQLite handles so the WAL is checkpointed on exit
+        DatabaseManager.getInstance().shutdown();
+        HttpClientManager.getInstance().shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -50,6 +50,16 @@ public class LicenseDialogController {
         }).start();
     }
 
+    /**
+     * Continues an initial sync that was interrupted, e.g. because the app was closed during the download.
+     * The tenant is already activated and set in the {@link TenantContext}; tables that finished downloading
+     * are skipped and the others resume after their last saved page.
+     */
+    public void resumeInitialSync() {
+        licenseKeyField.setDisable(true);
+        performInitialSync();
+    }
+
     /**
      * Kicks off the background service to perform the initial "pull" of all
      * data from the server after a successful activation.
@@ -6,6 +6,7 @@ import com.kmu.syncpos.auth.TenantContext;
 import com.kmu.syncpos.dto.TenantDTO;
 import com.kmu.syncpos.models.Tenant;
 import com.kmu.syncpos.models.User;
+import com.kmu.syncpos.service.SyncScheduler;
 import com.kmu.syncpos.service.SyncService;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
@@ -17,9 +18,7 @@ import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 
 import java.io.IOException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 public class MainController {
 
@@ -39,7 +38,7 @@ public class MainController {
     // --- State and Services ---
     private User loggedInUser;
     private SyncService syncService;
-    private ScheduledExecutorService syncScheduler;
+    private SyncScheduler syncScheduler;
 
     @FXML
     public void initialize() {
@@ -76,7 +75,7 @@ public class MainController {
 
         // 2. Pass the ViewModel to the SyncService constructor.
         //    (Assuming SyncService constructor accepts a Tenant ViewModel).
-        syncService = new SyncService(currentTenant, false); // isInitialSync is false for periodic push
+        syncService = new SyncService(currentTenant, false); // isInitialSync is false for the periodic push + incremental pull
         // --- END CORRECTION ---
 
         // Bind the UI label's text directly to the service's message property.
@@ -93,21 +92,9 @@ public class MainController {
             System.out.println("Periodic sync push completed.");
         });
 
-        // Set up a scheduler to run the sync service periodically.
-        syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
-            Thread t = new Thread(runnable, "SyncScheduler");
-            t.setDaemon(true); // Ensures this thread doesn't prevent app from closing
-            return t;
-        });
-
-        // Start after 10 seconds, then run every 5 minutes.
-        syncScheduler.scheduleAtFixedRate(() -> {
-            Platform.runLater(() -> {
-                if (syncService != null && !syncService.isRunning()) {
-                    syncService.restart();
-                }
-            });
-        }, 10, 300, TimeUnit.SECONDS);
+        // Sync shortly after local changes are committed, and otherwise poll for remote changes (see SyncScheduler).
+        syncScheduler = new SyncScheduler(syncService);
+        syncScheduler.start(Duration.ofSeconds(10));
     }
     private void applyRolePermissions() {
         if (loggedInUser == null) return;
@@ -215,8 +202,8 @@ public class MainController {
      */
     public void shutdown() {
         System.out.println("MainController: Shutting down sync service scheduler.");
-        if (syncScheduler != null && !syncScheduler.isShutdown()) {
-            syncScheduler.shutdownNow();
+        if (syncScheduler != null) {
+            syncScheduler.stop();
         }
     }
 }
\ No newline at end of file
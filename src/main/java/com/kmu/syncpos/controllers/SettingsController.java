@@ -1,6 +1,7 @@
 // src/main/java/com/kmu/syncpos/controllers/SettingsController.java
 package com.kmu.syncpos.controllers;
 
+import com.kmu.syncpos.dto.StockDriftDTO;
 import com.kmu.syncpos.dto.UnitDTO;
 import com.kmu.syncpos.models.Unit;
 import com.kmu.syncpos.service.*; // <-- IMPORT MODIFIED
@@ -16,6 +17,7 @@ import javafx.scene.layout.VBox;
 import javax.print.PrintService; // <-- LIBRARY ADDED
 import javax.print.PrintServiceLookup; // <-- LIBRARY ADDED
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -30,6 +32,7 @@ public class SettingsController {
     // --- CHANGE 1: ADDED HARDWARE SERVICES ---
     private final ReceiptService receiptService = new ReceiptService(settingsService);
     private final CashDrawerService cashDrawerService = new CashDrawerService(settingsService);
+    private final StockLedgerService stockLedgerService = new StockLedgerService();
 
     // --- FXML Components for Company Tab ---
     @FXML private TextField companyNameField, companyAddressField, companyPhoneField, currencySymbolField, defaultTaxRateField;
@@ -138,6 +141,58 @@ public class SettingsController {
         }
     }
 
+    // =================================================================
+    //                STOCK BALANCE MAINTENANCE (DATABASE TAB)
+    // =================================================================
+
+    @FXML
+    private void handleVerifyStockBalances() {
+        try {
+            List<StockDriftDTO> drift = stockLedgerService.verifyStockBalances();
+            if (drift.isEmpty()) {
+                showAlert(Alert.AlertType.INFORMATION, "Stock Balances", "All stock balances match the stock ledger.");
+            } else {
+                showAlert(Alert.AlertType.WARNING, "Stock Balances", drift.size() + " product(s) have a stock balance that differs from the stock ledger:\n"
+                        + describeDrift(drift) + "\nUse 'Rebuild Stock Balances' to correct them.");
+            }
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Verification Error", "Could not verify the stock balances.\nError: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleRebuildStockBalances() {
+        Alert confirmation = new Alert(Alert.AlertType.CONFIRMATION);
+        confirmation.setTitle("Confirm Rebuild");
+        confirmation.setHeaderText("Rebuild all stock balances?");
+        confirmation.setContentText("Every product's stock level will be recomputed from the stock ledger.");
+
+        Optional<ButtonType> result = confirmation.showAndWait();
+        if (result.isEmpty() || result.get() != ButtonType.OK) {
+            return;
+        }
+        try {
+            List<StockDriftDTO> drift = stockLedgerService.rebuildStockBalances();
+            if (drift.isEmpty()) {
+                showAlert(Alert.AlertType.INFORMATION, "Success", "Stock balances were rebuilt. None had drifted.");
+            } else {
+                showAlert(Alert.AlertType.INFORMATION, "Success", "Stock balances were rebuilt. Corrected " + drift.size() + " product(s):\n"
+                        + describeDrift(drift));
+            }
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Rebuild Error", "Could not rebuild the stock balances; none were changed.\nError: " + e.getMessage());
+        }
+    }
+
+    private String describeDrift(List<StockDriftDTO> drift) {
+        int shown = Math.min(drift.size(), 10);
+        String lines = drift.subList(0, shown).stream()
+                .map(d -> String.format("%s: ledger %.2f, stored %.2f",
+                        d.productName() != null ? d.productName() : "Product #" + d.productId(), d.ledgerQuantity(), d.balanceQuantity()))
+                .collect(Collectors.joining("\n"));
+        return drift.size() > shown ? lines + "\n... and " + (drift.size() - shown) + " more" : lines;
+    }
+
     // =================================================================
     //                      SAVE ALL SETTINGS
     // =================================================================
@@ -2,13 +2,15 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.CategoryDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,6 +33,7 @@ public class CategoryDAO {
     private static final String GET_ALL_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_deleted = false ORDER BY name";
     private static final String GET_BY_ID_SQL = BASE_SELECT_SQL + " WHERE id = ? AND tenant_id = ? AND is_deleted = false";
     private static final String GET_UNSYNCED_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_synced = false";
+    private static final String GET_UNSYNCED_BY_IDS_SQL = BASE_SELECT_SQL + " WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ? AND is_synced = false";
 
     private static final String CREATE_LOCAL_SQL = """
         INSERT INTO categories(name, description, parent_id, uuid, tenant_id, last_updated_at, is_synced, is_deleted)
@@ -54,12 +57,28 @@ public class CategoryDAO {
             last_updated_at = excluded.last_updated_at,
             is_deleted = excluded.is_deleted,
             is_synced = true
+        WHERE (categories.last_updated_at IS NULL OR excluded.last_updated_at > categories.last_updated_at)
+          AND (excluded.tenant_id IS NOT categories.tenant_id OR excluded.name IS NOT categories.name OR
+               excluded.description IS NOT categories.description OR excluded.parent_id IS NOT categories.parent_id OR
+               excluded.is_deleted IS NOT categories.is_deleted)
         """;
 
     private static final String MARK_DELETED_SQL = "UPDATE categories SET is_deleted = true, is_synced = false, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
-    private static final String MARK_SYNCED_SQL = "UPDATE categories SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE categories SET is_synced = true WHERE id = ? AND tenant_id = ?";
     private static final String VALIDATE_PARENT_SQL = "SELECT 1 FROM categories WHERE id = ? AND tenant_id = ? AND is_deleted = false";
 
+    private static final RowMapper<CategoryDTO> ROW_MAPPER = RowMapper.of(CategoryDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("name", (d, rs, i) -> d.setName(rs.getString(i)))
+            .column("description", (d, rs, i) -> d.setDescription(rs.getString(i)))
+            .column("parent_id", (d, rs, i) -> d.setParentId(RowMapper.nullableLong(rs, i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            .build();
+
 
     /**
      * Retrieves all non-deleted categories for a specific tenant.
@@ -73,8 +92,9 @@ public class CategoryDAO {
              PreparedStatement ps = conn.prepareStatement(GET_ALL_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<CategoryDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                categories.add(mapToDTO(rs));
+                categories.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get all categories for tenant: " + tenantId, e);
@@ -96,7 +116,7 @@ public class CategoryDAO {
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToDTO(rs);
+                return ROW_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get category by id: " + categoryId, e);
@@ -116,8 +136,9 @@ public class CategoryDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<CategoryDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                categories.add(mapToDTO(rs));
+                categories.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced categories for tenant: " + tenantId, e);
@@ -125,6 +146,32 @@ public class CategoryDAO {
         return categories;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<CategoryDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<CategoryDTO> categories = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return categories;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<CategoryDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                categories.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced categories by ID for tenant: " + tenantId, e);
+        }
+        return categories;
+    }
+
     /**
      * Creates a new category from a local change, marking it as unsynced.
      *
@@ -173,23 +220,42 @@ public class CategoryDAO {
      * Inserts or updates a category from a remote source, marking it as synced.
      *
      * @param dto The complete category data from the remote source.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(CategoryDTO dto) {
+    public boolean upsertRemote(CategoryDTO dto) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            ps.setString(1, dto.getUuid());
-            ps.setString(2, dto.getTenantId());
-            ps.setString(3, dto.getName());
-            ps.setString(4, dto.getDescription());
-            ps.setObject(5, dto.getParentId(), Types.BIGINT);
-            ps.setTimestamp(6, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(7, dto.isDeleted());
+            bindUpsertRemote(ps, dto);
             ps.executeUpdate();
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to upsert remote category with UUID: " + dto.getUuid(), e);
+            return false;
         }
     }
 
+    /**
+     * Applies a chunk of remote categories in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<CategoryDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("categories", UPSERT_REMOTE_SQL, dtos, Objects::nonNull, CategoryDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private void bindUpsertRemote(PreparedStatement ps, CategoryDTO dto) throws SQLException {
+        ps.setString(1, dto.getUuid());
+        ps.setString(2, dto.getTenantId());
+        ps.setString(3, dto.getName());
+        ps.setString(4, dto.getDescription());
+        ps.setObject(5, dto.getParentId(), Types.BIGINT);
+        ps.setTimestamp(6, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(7, dto.isDeleted());
+    }
+
     /**
      * Performs a soft delete on a category by its ID.
      *
@@ -217,9 +283,8 @@ public class CategoryDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark category as synced, id: " + id, e);
@@ -227,29 +292,18 @@ public class CategoryDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link CategoryDTO} object.
-     *
-     * @param rs The ResultSet to map.
-     * @return A populated CategoryDTO object.
-     * @throws SQLException if a database access error occurs.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded categories.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private CategoryDTO mapToDTO(ResultSet rs) throws SQLException {
-        CategoryDTO dto = new CategoryDTO();
-        dto.setId(rs.getLong("id"));
-        dto.setUuid(rs.getString("uuid"));
-        dto.setTenantId(rs.getString("tenant_id"));
-        dto.setName(rs.getString("name"));
-        dto.setDescription(rs.getString("description"));
-        dto.setParentId(rs.getObject("parent_id", Long.class)); // Safely handles NULL
-
-        Timestamp ts = rs.getTimestamp("last_updated_at");
-        if (ts != null) {
-            dto.setLastUpdatedAt(ts.toLocalDateTime().atOffset(ZoneOffset.UTC));
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("categories", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " categories as synced", e);
         }
-
-        dto.setIsSynced(rs.getInt("is_synced"));
-        dto.setDeleted(rs.getBoolean("is_deleted"));
-        return dto;
     }
 
     /**
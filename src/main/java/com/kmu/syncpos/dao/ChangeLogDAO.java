@@ -0,0 +1,161 @@
+// src/main/java/com/kmu/syncpos/dao/ChangeLogDAO.java
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.util.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for the 'change_log' outbox.
+ * Entries are written by triggers on the synced tables (see migration 6): a row written with is_synced = 0 appends
+ * an entry. The push therefore reads its work from here, in commit order, instead of scanning every table for
+ * unsynced rows. Entries are removed only up to the sequence number the push read, by {@link #acknowledge} or
+ * {@link #discard}, so an edit made while its row was being uploaded keeps its entry and is uploaded next.
+ */
+public class ChangeLogDAO {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeLogDAO.class.getName());
+
+    private static final String GET_PENDING_TABLES_SQL = "SELECT DISTINCT table_name FROM change_log WHERE tenant_id = ?";
+
+    private static final String READ_PENDING_SQL = """
+        SELECT seq, row_id FROM change_log
+        WHERE table_name = ? AND seq > ? AND tenant_id = ?
+        ORDER BY seq
+        LIMIT ?
+        """;
+
+    private static final String DISCARD_SQL = """
+        DELETE FROM change_log
+        WHERE table_name = ? AND row_id IN (SELECT value FROM json_each(?)) AND seq <= ? AND tenant_id = ?
+        """;
+
+    // The unary + keeps the planner on the primary key for the ID list instead of the tenant index.
+    private static final String MARK_SYNCED_SQL_TEMPLATE = """
+        UPDATE %1$s SET is_synced = true
+        WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ?
+          AND NOT EXISTS (SELECT 1 FROM change_log c WHERE c.table_name = '%1$s' AND c.row_id = %1$s.id AND c.seq > ?)
+        """;
+
+    /**
+     * The rows behind a run of change_log entries.
+     *
+     * @param rowIds  The distinct local IDs of the changed rows, in order of their first entry.
+     * @param lastSeq The sequence number of the last entry read; the cursor for the next read.
+     */
+    public record Pending(Set<Long> rowIds, long lastSeq) {
+    }
+
+    /**
+     * @param tenantId The UUID of the tenant.
+     * @return The tables that have rows waiting for upload; empty if nothing changed since the last push.
+     */
+    public Set<String> getPendingTables(String tenantId) {
+        Set<String> tables = new LinkedHashSet<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_PENDING_TABLES_SQL)) {
+            ps.setString(1, tenantId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read pending change_log tables for tenant: " + tenantId, e);
+        }
+        return tables;
+    }
+
+    /**
+     * Reads the next entries of one table after a cursor.
+     * @param tableName The synced table.
+     * @param afterSeq  The {@link Pending#lastSeq()} of the previous read, or 0 to start at the oldest entry.
+     * @param limit     The maximum number of entries to read.
+     * @param tenantId  The UUID of the tenant.
+     * @return The changed rows; no row IDs once the log is exhausted.
+     */
+    public Pending readPending(String tableName, long afterSeq, int limit, String tenantId) {
+        Set<Long> rowIds = new LinkedHashSet<>();
+        long lastSeq = afterSeq;
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(READ_PENDING_SQL)) {
+            ps.setString(1, tableName);
+            ps.setLong(2, afterSeq);
+            ps.setString(3, tenantId);
+            ps.setInt(4, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                lastSeq = rs.getLong(1);
+                rowIds.add(rs.getLong(2));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read change_log for table: " + tableName, e);
+        }
+        return new Pending(rowIds, lastSeq);
+    }
+
+    /**
+     * Drops entries that have nothing left to upload, i.e. whose rows are already synced or no longer exist,
+     * such as rows a pull overwrote with a newer server version.
+     * @param tableName The synced table.
+     * @param rowIds    The rows whose entries to drop.
+     * @param uptoSeq   Entries written after this sequence number are kept, as the rows changed again.
+     * @param tenantId  The UUID of the tenant.
+     */
+    public void discard(String tableName, Collection<Long> rowIds, long uptoSeq, String tenantId) {
+        if (rowIds.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            discard(conn, tableName, rowIds, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to discard change_log entries for table: " + tableName, e);
+        }
+    }
+
+    /**
+     * Drops entries on the caller's connection, e.g. in the transaction that marks the uploaded rows synced.
+     * @see #discard(String, Collection, long, String)
+     */
+    static void discard(Connection conn, String tableName, Collection<Long> rowIds, long uptoSeq, String tenantId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(DISCARD_SQL)) {
+            ps.setString(1, tableName);
+            ps.setString(2, IdList.toJson(rowIds));
+            ps.setLong(3, uptoSeq);
+            ps.setString(4, tenantId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Marks a batch of acknowledged uploads as synced and drops their entries, in one transaction.
+     * Rows logged again after {@code uptoSeq} were edited while their upload was in flight; they stay unsynced.
+     * @param tableName The synced table.
+     * @param rowIds    The local IDs of the uploaded rows.
+     * @param uptoSeq   The last sequence number read before the rows were loaded for upload.
+     * @param tenantId  The UUID of the tenant.
+     * @throws SQLException if the rows could not be marked; nothing is changed.
+     */
+    static void acknowledge(String tableName, Collection<Long> rowIds, long uptoSeq, String tenantId) throws SQLException {
+        if (rowIds.isEmpty()) {
+            return;
+        }
+        DatabaseManager.getInstance().inTransaction(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(String.format(MARK_SYNCED_SQL_TEMPLATE, tableName))) {
+                ps.setString(1, IdList.toJson(rowIds));
+                ps.setString(2, tenantId);
+                ps.setLong(3, uptoSeq);
+                ps.executeUpdate();
+            }
+            discard(conn, tableName, rowIds, uptoSeq, tenantId);
+            return null;
+        });
+    }
+}
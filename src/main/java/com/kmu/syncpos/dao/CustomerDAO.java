@@ -2,14 +2,16 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.CustomerDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,6 +33,7 @@ public class CustomerDAO {
 
     private static final String GET_ALL_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_deleted = false ORDER BY name";
     private static final String GET_UNSYNCED_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_synced = false";
+    private static final String GET_UNSYNCED_BY_IDS_SQL = BASE_SELECT_SQL + " WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ? AND is_synced = false";
 
     private static final String CREATE_LOCAL_SQL = """
         INSERT INTO customers(name, email, phone, address, loyalty_points, uuid, tenant_id, last_updated_at, is_synced, is_deleted)
@@ -56,10 +59,29 @@ public class CustomerDAO {
             last_updated_at = excluded.last_updated_at,
             is_deleted = excluded.is_deleted,
             is_synced = true
+        WHERE (customers.last_updated_at IS NULL OR excluded.last_updated_at > customers.last_updated_at)
+          AND (excluded.tenant_id IS NOT customers.tenant_id OR excluded.name IS NOT customers.name OR
+               excluded.email IS NOT customers.email OR excluded.phone IS NOT customers.phone OR
+               excluded.address IS NOT customers.address OR excluded.loyalty_points IS NOT customers.loyalty_points OR
+               excluded.is_deleted IS NOT customers.is_deleted)
         """;
 
     private static final String MARK_DELETED_SQL = "UPDATE customers SET is_deleted = true, is_synced = false, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
-    private static final String MARK_SYNCED_SQL = "UPDATE customers SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE customers SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<CustomerDTO> ROW_MAPPER = RowMapper.of(CustomerDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("name", (d, rs, i) -> d.setName(rs.getString(i)))
+            .column("email", (d, rs, i) -> d.setEmail(rs.getString(i)))
+            .column("phone", (d, rs, i) -> d.setPhone(rs.getString(i)))
+            .column("address", (d, rs, i) -> d.setAddress(rs.getString(i)))
+            .column("loyalty_points", (d, rs, i) -> d.setLoyaltyPoints(rs.getInt(i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            .build();
 
     /**
      * Retrieves all non-deleted customers for a specific tenant.
@@ -73,8 +95,9 @@ public class CustomerDAO {
              PreparedStatement ps = conn.prepareStatement(GET_ALL_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<CustomerDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                customers.add(mapToDTO(rs));
+                customers.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get all customers for tenant: " + tenantId, e);
@@ -94,8 +117,9 @@ public class CustomerDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<CustomerDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                customers.add(mapToDTO(rs));
+                customers.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced customers for tenant: " + tenantId, e);
@@ -103,6 +127,32 @@ public class CustomerDAO {
         return customers;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<CustomerDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<CustomerDTO> customers = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return customers;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<CustomerDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                customers.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced customers by ID for tenant: " + tenantId, e);
+        }
+        return customers;
+    }
+
     /**
      * Creates a new customer from a local change, marking it as unsynced.
      *
@@ -153,25 +203,44 @@ public class CustomerDAO {
      * Inserts or updates a customer from a remote source, marking it as synced.
      *
      * @param dto The complete customer data from the remote source.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(CustomerDTO dto) {
+    public boolean upsertRemote(CustomerDTO dto) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            ps.setString(1, dto.getUuid());
-            ps.setString(2, dto.getTenantId());
-            ps.setString(3, dto.getName());
-            ps.setString(4, dto.getEmail());
-            ps.setString(5, dto.getPhone());
-            ps.setString(6, dto.getAddress());
-            ps.setInt(7, dto.getLoyaltyPoints());
-            ps.setTimestamp(8, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(9, dto.isDeleted());
+            bindUpsertRemote(ps, dto);
             ps.executeUpdate();
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to upsert remote customer with UUID: " + dto.getUuid(), e);
+            return false;
         }
     }
 
+    /**
+     * Applies a chunk of remote customers in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<CustomerDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("customers", UPSERT_REMOTE_SQL, dtos, Objects::nonNull, CustomerDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private void bindUpsertRemote(PreparedStatement ps, CustomerDTO dto) throws SQLException {
+        ps.setString(1, dto.getUuid());
+        ps.setString(2, dto.getTenantId());
+        ps.setString(3, dto.getName());
+        ps.setString(4, dto.getEmail());
+        ps.setString(5, dto.getPhone());
+        ps.setString(6, dto.getAddress());
+        ps.setInt(7, dto.getLoyaltyPoints());
+        ps.setTimestamp(8, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(9, dto.isDeleted());
+    }
+
     /**
      * Performs a soft delete on a customer by its ID.
      *
@@ -199,9 +268,8 @@ public class CustomerDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark customer as synced, id: " + id, e);
@@ -209,30 +277,17 @@ public class CustomerDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link CustomerDTO} object.
-     *
-     * @param rs The ResultSet to map.
-     * @return A populated CustomerDTO object.
-     * @throws SQLException if a database access error occurs.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded customers.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private CustomerDTO mapToDTO(ResultSet rs) throws SQLException {
-        CustomerDTO dto = new CustomerDTO();
-        dto.setId(rs.getLong("id"));
-        dto.setUuid(rs.getString("uuid"));
-        dto.setTenantId(rs.getString("tenant_id"));
-        dto.setName(rs.getString("name"));
-        dto.setEmail(rs.getString("email"));
-        dto.setPhone(rs.getString("phone"));
-        dto.setAddress(rs.getString("address"));
-        dto.setLoyaltyPoints(rs.getInt("loyalty_points"));
-
-        Timestamp ts = rs.getTimestamp("last_updated_at");
-        if (ts != null) {
-            dto.setLastUpdatedAt(ts.toLocalDateTime().atOffset(ZoneOffset.UTC));
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("customers", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " customers as synced", e);
         }
-
-        dto.setIsSynced(rs.getInt("is_synced"));
-        dto.setDeleted(rs.getBoolean("is_deleted"));
-        return dto;
     }
 }
\ No newline at end of file
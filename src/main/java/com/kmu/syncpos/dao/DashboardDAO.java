@@ -17,16 +17,35 @@ import java.util.Map;
 
 public class DashboardDAO {
 
+    private static final String TODAYS_KPIS_SQL = """
+        SELECT
+            COALESCE(SUM(CASE WHEN type='sale' THEN total ELSE 0 END), 0) as sales,
+            COALESCE(SUM(CASE WHEN type='sale' THEN 1 ELSE 0 END), 0) as transactions
+        FROM sales
+        WHERE is_deleted = 0 AND DATE(created_at) = DATE('now','localtime') AND tenant_id = ?
+        """;
+
+    private static final String LOW_STOCK_SQL = """
+        SELECT p.id, p.name, p.min_stock_level,
+               COALESCE(ps.quantity,0) AS current_stock
+        FROM products p
+        LEFT JOIN product_stock ps ON ps.tenant_id = p.tenant_id AND ps.product_id = p.id
+        WHERE p.tenant_id = ? AND p.is_deleted = 0 AND p.is_active = 1
+          AND COALESCE(ps.quantity,0) <= p.min_stock_level
+        ORDER BY p.name
+        """;
+
+    private static final String SALES_LAST_7_DAYS_SQL = """
+        SELECT DATE(created_at) AS d, COALESCE(SUM(total),0) AS total
+        FROM sales
+        WHERE type='sale' AND is_deleted=0 AND DATE(created_at)>=DATE('now','-6 days','localtime')
+          AND tenant_id = ?
+        GROUP BY d ORDER BY d
+        """;
+
     public DashboardKPIs getTodaysKPIs(String tenantId) {
-        String sql = """
-            SELECT
-                COALESCE(SUM(CASE WHEN type='sale' THEN total ELSE 0 END), 0) as sales,
-                COALESCE(SUM(CASE WHEN type='sale' THEN 1 ELSE 0 END), 0) as transactions
-            FROM sales
-            WHERE is_deleted = 0 AND DATE(created_at) = DATE('now','localtime') AND tenant_id = ?
-            """;
         try (Connection c = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(TODAYS_KPIS_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
@@ -40,18 +59,8 @@ public class DashboardDAO {
 
     public List<ProductDTO> getLowStockProducts(String tenantId) {
         List<ProductDTO> list = new ArrayList<>();
-        String sql = """
-            SELECT p.id, p.name, p.min_stock_level,
-                   COALESCE(SUM(ia.quantity_delta),0) AS current_stock
-            FROM products p
-            LEFT JOIN stock_ledger ia ON ia.product_id = p.id AND ia.tenant_id = p.tenant_id AND ia.is_deleted = 0
-            WHERE p.tenant_id = ? AND p.is_deleted = 0 AND p.is_active = 1
-            GROUP BY p.id
-            HAVING current_stock <= p.min_stock_level
-            ORDER BY p.name
-            """;
         try (Connection c = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(LOW_STOCK_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
@@ -71,15 +80,8 @@ public class DashboardDAO {
     public Map<LocalDate, Double> getSalesForLast7Days(String tenantId) {
         Map<LocalDate, Double> map = new LinkedHashMap<>();
         for (int i = 6; i >= 0; i--) map.put(LocalDate.now().minusDays(i), 0.0);
-        String sql = """
-            SELECT DATE(created_at) AS d, COALESCE(SUM(total),0) AS total
-            FROM sales
-            WHERE type='sale' AND is_deleted=0 AND DATE(created_at)>=DATE('now','-6 days','localtime')
-              AND tenant_id = ?
-            GROUP BY d ORDER BY d
-            """;
         try (Connection c = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(SALES_LAST_7_DAYS_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) map.put(LocalDate.parse(rs.getString("d")), rs.getDouble("total"));
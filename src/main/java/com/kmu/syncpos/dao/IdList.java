@@ -0,0 +1,34 @@
+// src/main/java/com/kmu/syncpos/dao/IdList.java
+package com.kmu.syncpos.dao;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * Passes a variable number of local IDs (or UUIDs) to a query as a single parameter.
+ * Queries read the list with {@code IN (SELECT value FROM json_each(?))}, so their SQL text stays
+ * constant, whatever the number of IDs, and the prepared statement is reused from the statement cache.
+ */
+final class IdList {
+
+    private IdList() {
+    }
+
+    /**
+     * @param ids The IDs to pass; duplicates are harmless.
+     * @return The IDs as a JSON array literal, e.g. {@code [3,7,12]}.
+     */
+    static String toJson(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    /**
+     * @param uuids The UUIDs to pass.
+     * @return The UUIDs as a JSON array of strings, e.g. {@code ["0b6f...","9c1e..."]}.
+     */
+    static String uuidsToJson(Collection<String> uuids) {
+        return uuids.stream()
+                .map(uuid -> '"' + uuid.replace("\\", "\\\\").replace("\"", "\\\"") + '"')
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+}
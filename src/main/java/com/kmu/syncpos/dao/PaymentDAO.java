@@ -2,6 +2,7 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.PaymentDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
@@ -9,6 +10,7 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -32,6 +34,7 @@ public class PaymentDAO {
 
     private static final String GET_FOR_SALE_SQL = BASE_SELECT_SQL + " WHERE sale_id = ? AND tenant_id = ? AND is_deleted = false";
     private static final String GET_UNSYNCED_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_synced = false";
+    private static final String GET_UNSYNCED_BY_IDS_SQL = BASE_SELECT_SQL + " WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ? AND is_synced = false";
 
     private static final String INSERT_TRANSACTIONAL_SQL = """
         INSERT INTO payments(sale_id, amount, payment_method, reference, user_id, uuid, tenant_id, created_at, last_updated_at, is_synced, is_deleted)
@@ -40,10 +43,10 @@ public class PaymentDAO {
 
     private static final String UPSERT_REMOTE_SQL = """
         INSERT INTO payments (uuid, tenant_id, sale_id, amount, payment_method, reference, user_id, created_at, last_updated_at, is_deleted, is_synced)
-        VALUES (?, ?, (SELECT id FROM sales WHERE uuid = ?), ?, ?, ?, ?, ?, ?, ?, true)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
         ON CONFLICT(uuid) DO UPDATE SET
             tenant_id = excluded.tenant_id,
-            sale_id = (SELECT id FROM sales WHERE uuid = ?),
+            sale_id = excluded.sale_id,
             amount = excluded.amount,
             payment_method = excluded.payment_method,
             reference = excluded.reference,
@@ -52,9 +55,29 @@ public class PaymentDAO {
             last_updated_at = excluded.last_updated_at,
             is_deleted = excluded.is_deleted,
             is_synced = true
+        WHERE (payments.last_updated_at IS NULL OR excluded.last_updated_at > payments.last_updated_at)
+          AND (excluded.tenant_id IS NOT payments.tenant_id OR excluded.sale_id IS NOT payments.sale_id OR
+               excluded.amount IS NOT payments.amount OR excluded.payment_method IS NOT payments.payment_method OR
+               excluded.reference IS NOT payments.reference OR excluded.user_id IS NOT payments.user_id OR
+               excluded.created_at IS NOT payments.created_at OR excluded.is_deleted IS NOT payments.is_deleted)
         """;
 
-    private static final String MARK_SYNCED_SQL = "UPDATE payments SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE payments SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<PaymentDTO> ROW_MAPPER = RowMapper.of(PaymentDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("sale_id", (d, rs, i) -> d.setSaleId(rs.getLong(i)))
+            .column("amount", (d, rs, i) -> d.setAmount(rs.getDouble(i)))
+            .column("payment_method", (d, rs, i) -> d.setPaymentMethod(rs.getString(i)))
+            .column("reference", (d, rs, i) -> d.setReference(rs.getString(i)))
+            .column("user_id", (d, rs, i) -> d.setUserId(rs.getLong(i)))
+            .column("created_at", (d, rs, i) -> d.setCreatedAt(RowMapper.utc(rs, i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            .build();
 
     /**
      * Inserts a single payment record using a provided transactional connection.
@@ -83,22 +106,50 @@ public class PaymentDAO {
 
     /**
      * Inserts or updates a payment from a remote source, marking it as synced.
-     * This method relies on a subquery to find the local 'sale_id' from the sale's UUID.
+     * The local 'sale_id' is looked up from the sale's UUID in {@link UuidCache} and bound as a parameter.
      * The associated Sale record must already be synced for this to succeed.
      *
      * @param dto The payment data from the remote source. It must contain the sale's UUID via `getSaleUuid()`.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
+     */
+    public boolean upsertRemote(PaymentDTO dto) {
+        if (!sanitizeRemote(dto)) {
+            return true;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
+            bindUpsertRemote(ps, dto);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to upsert remote payment with UUID: " + dto.getUuid(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies a chunk of remote payments in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
      */
-    public void upsertRemote(PaymentDTO dto) {
+    public UpsertCountsDTO upsertRemoteBatch(List<PaymentDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("payments", UPSERT_REMOTE_SQL, dtos, this::sanitizeRemote, PaymentDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private boolean sanitizeRemote(PaymentDTO dto) {
         // --- BEGIN DTO SANITIZATION BLOCK ---
         if (dto == null || dto.getUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert a null payment or a payment with a null UUID. Aborting operation.");
-            return;
+            return false;
         }
 
         // A payment must belong to a sale. Abort if this critical foreign key UUID is missing.
         if (dto.getSaleUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert payment UUID {0} with a null sale_uuid. Aborting operation.", dto.getUuid());
-            return;
+            return false;
         }
 
         // Sanitize other NOT NULL fields to prevent database constraint violations.
@@ -122,29 +173,21 @@ public class PaymentDAO {
             dto.setLastUpdatedAt(OffsetDateTime.now(ZoneOffset.UTC));
         }
         // --- END DTO SANITIZATION BLOCK ---
+        return true;
+    }
 
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            int i = 1;
-            // INSERT part
-            ps.setString(i++, dto.getUuid());
-            ps.setString(i++, dto.getTenantId());
-            ps.setString(i++, dto.getSaleUuid()); // Critical dependency for subquery
-            ps.setDouble(i++, dto.getAmount());
-            ps.setString(i++, dto.getPaymentMethod());
-            ps.setString(i++, dto.getReference());
-            ps.setLong(i++, dto.getUserId());
-            ps.setTimestamp(i++, Timestamp.valueOf(dto.getCreatedAt().toLocalDateTime()));
-            ps.setTimestamp(i++, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(i++, dto.isDeleted());
-
-            // ON CONFLICT UPDATE part
-            ps.setString(i, dto.getSaleUuid()); // Re-bind for the update clause's subquery
-
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to upsert remote payment with UUID: " + dto.getUuid(), e);
-        }
+    private void bindUpsertRemote(PreparedStatement ps, PaymentDTO dto) throws SQLException {
+        int i = 1;
+        ps.setString(i++, dto.getUuid());
+        ps.setString(i++, dto.getTenantId());
+        ps.setObject(i++, UuidCache.SALES.idFor(dto.getSaleUuid()), Types.BIGINT); // Critical dependency
+        ps.setDouble(i++, dto.getAmount());
+        ps.setString(i++, dto.getPaymentMethod());
+        ps.setString(i++, dto.getReference());
+        ps.setLong(i++, dto.getUserId());
+        ps.setTimestamp(i++, Timestamp.from(dto.getCreatedAt().toInstant()));
+        ps.setTimestamp(i++, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(i, dto.isDeleted());
     }
 
     /**
@@ -162,8 +205,9 @@ public class PaymentDAO {
             ps.setLong(1, saleId);
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<PaymentDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                payments.add(mapToDTO(rs));
+                payments.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get payments for sale: " + saleId, e);
@@ -186,8 +230,9 @@ public class PaymentDAO {
             ps.setLong(1, saleId);
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<PaymentDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                payments.add(mapToDTO(rs));
+                payments.add(rows.map(rs));
             }
         }
         return payments;
@@ -205,8 +250,9 @@ public class PaymentDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<PaymentDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                payments.add(mapToDTO(rs));
+                payments.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced payments for tenant: " + tenantId, e);
@@ -214,6 +260,32 @@ public class PaymentDAO {
         return payments;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<PaymentDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<PaymentDTO> payments = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return payments;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<PaymentDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                payments.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced payments by ID for tenant: " + tenantId, e);
+        }
+        return payments;
+    }
+
     /**
      * Marks a specific payment as synced.
      *
@@ -223,9 +295,8 @@ public class PaymentDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark payment as synced, id: " + id, e);
@@ -233,34 +304,17 @@ public class PaymentDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link PaymentDTO} object.
-     *
-     * @param rs The ResultSet to map.
-     * @return A populated PaymentDTO object.
-     * @throws SQLException if a database access error occurs.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded payments.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private PaymentDTO mapToDTO(ResultSet rs) throws SQLException {
-        PaymentDTO dto = new PaymentDTO();
-        dto.setId(rs.getLong("id"));
-        dto.setUuid(rs.getString("uuid"));
-        dto.setTenantId(rs.getString("tenant_id"));
-        dto.setSaleId(rs.getLong("sale_id"));
-        dto.setAmount(rs.getDouble("amount"));
-        dto.setPaymentMethod(rs.getString("payment_method"));
-        dto.setReference(rs.getString("reference"));
-        dto.setUserId(rs.getLong("user_id"));
-
-        Timestamp createdAt = rs.getTimestamp("created_at");
-        if (createdAt != null) {
-            dto.setCreatedAt(createdAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-        Timestamp lastUpdatedAt = rs.getTimestamp("last_updated_at");
-        if (lastUpdatedAt != null) {
-            dto.setLastUpdatedAt(lastUpdatedAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("payments", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " payments as synced", e);
         }
-
-        dto.setIsSynced(rs.getInt("is_synced"));
-        dto.setDeleted(rs.getBoolean("is_deleted"));
-        return dto;
     }
 }
\ No newline at end of file
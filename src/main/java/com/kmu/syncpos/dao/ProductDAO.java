@@ -2,6 +2,7 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.ProductDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
@@ -9,7 +10,10 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,20 +27,24 @@ public class ProductDAO {
 
     private static final Logger LOGGER = Logger.getLogger(ProductDAO.class.getName());
 
+    // Stock comes from the product_stock balance table, which triggers on stock_ledger keep in step
+    // with the ledger inside the same transaction; no per-read SUM over the ledger is needed.
     private static final String SELECT_WITH_STOCK_SQL = """
         SELECT p.id, p.uuid, p.tenant_id, p.sku, p.barcode, p.name, p.description,
                p.product_type, p.category_id, p.unit_id, p.supplier_id,
                p.purchase_price, p.selling_price, p.tax_rate, p.min_stock_level,
                p.reorder_quantity, p.is_active, p.last_updated_at, p.is_synced, p.is_deleted,
-               COALESCE(SUM(sl.quantity_delta), 0) AS current_stock
+               COALESCE(ps.quantity, 0) AS current_stock
         FROM products p
-        LEFT JOIN stock_ledger sl
-               ON sl.product_id = p.id AND sl.tenant_id = p.tenant_id AND sl.is_deleted = false
+        LEFT JOIN product_stock ps
+               ON ps.tenant_id = p.tenant_id AND ps.product_id = p.id
         """;
 
-    private static final String GET_ALL_SQL = SELECT_WITH_STOCK_SQL + " WHERE p.tenant_id = ? AND p.is_deleted = false GROUP BY p.id ORDER BY p.name";
-    private static final String GET_BY_ID_SQL = SELECT_WITH_STOCK_SQL + " WHERE p.id = ? AND p.tenant_id = ? AND p.is_deleted = false GROUP BY p.id";
-    private static final String GET_LOW_STOCK_SQL = SELECT_WITH_STOCK_SQL + " WHERE p.tenant_id = ? AND p.is_deleted = false AND p.is_active = true GROUP BY p.id HAVING current_stock <= p.min_stock_level ORDER BY p.name";
+    private static final String GET_ALL_SQL = SELECT_WITH_STOCK_SQL + " WHERE p.tenant_id = ? AND p.is_deleted = false ORDER BY p.name";
+    private static final String GET_BY_ID_SQL = SELECT_WITH_STOCK_SQL + " WHERE p.id = ? AND p.tenant_id = ? AND p.is_deleted = false";
+    // The unary + keeps the planner on the primary key for the ID list instead of the tenant index.
+    private static final String GET_BY_IDS_SQL = SELECT_WITH_STOCK_SQL + " WHERE p.id IN (SELECT value FROM json_each(?)) AND +p.tenant_id = ? AND p.is_deleted = false";
+    private static final String GET_LOW_STOCK_SQL = SELECT_WITH_STOCK_SQL + " WHERE p.tenant_id = ? AND p.is_deleted = false AND p.is_active = true AND COALESCE(ps.quantity, 0) <= p.min_stock_level ORDER BY p.name";
 
     private static final String GET_UNSYNCED_SQL = """
         SELECT p.id, p.uuid, p.tenant_id, p.sku, p.barcode, p.name, p.description,
@@ -53,6 +61,21 @@ public class ProductDAO {
         LEFT JOIN suppliers s ON p.supplier_id = s.id
         WHERE p.tenant_id = ? AND p.is_synced = false
         """;
+    private static final String GET_UNSYNCED_BY_IDS_SQL = """
+        SELECT p.id, p.uuid, p.tenant_id, p.sku, p.barcode, p.name, p.description,
+               p.product_type, p.category_id, p.unit_id, p.supplier_id,
+               p.purchase_price, p.selling_price, p.tax_rate, p.min_stock_level,
+               p.reorder_quantity, p.is_active, p.last_updated_at, p.is_synced, p.is_deleted,
+               0 AS current_stock,
+               c.uuid AS category_uuid,
+               u.uuid AS unit_uuid,
+               s.uuid AS supplier_uuid
+        FROM products p
+        LEFT JOIN categories c ON p.category_id = c.id
+        LEFT JOIN units u ON p.unit_id = u.id
+        LEFT JOIN suppliers s ON p.supplier_id = s.id
+        WHERE p.id IN (SELECT value FROM json_each(?)) AND +p.tenant_id = ? AND p.is_synced = false
+        """;
 
     private static final String CREATE_LOCAL_TRANSACTIONAL_SQL = """
         INSERT INTO products(sku, barcode, name, description, product_type, category_id, unit_id, supplier_id,
@@ -75,25 +98,59 @@ public class ProductDAO {
                               category_id, unit_id, supplier_id,
                               purchase_price, selling_price, tax_rate, min_stock_level, reorder_quantity, is_active,
                               last_updated_at, is_deleted, is_synced)
-        VALUES (?, ?, ?, ?, ?, ?, ?,
-                (SELECT id FROM categories WHERE uuid = ?),
-                (SELECT id FROM units WHERE uuid = ?),
-                (SELECT id FROM suppliers WHERE uuid = ?),
-                ?, ?, ?, ?, ?, ?, ?, ?, true)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
         ON CONFLICT(uuid) DO UPDATE SET
             tenant_id = excluded.tenant_id, sku = excluded.sku, barcode = excluded.barcode, name = excluded.name, description = excluded.description,
             product_type = excluded.product_type,
-            category_id = (SELECT id FROM categories WHERE uuid = ?),
-            unit_id = (SELECT id FROM units WHERE uuid = ?),
-            supplier_id = (SELECT id FROM suppliers WHERE uuid = ?),
+            category_id = excluded.category_id, unit_id = excluded.unit_id, supplier_id = excluded.supplier_id,
             purchase_price = excluded.purchase_price, selling_price = excluded.selling_price, tax_rate = excluded.tax_rate,
             min_stock_level = excluded.min_stock_level, reorder_quantity = excluded.reorder_quantity, is_active = excluded.is_active,
             last_updated_at = excluded.last_updated_at, is_deleted = excluded.is_deleted, is_synced = true
+        WHERE (products.last_updated_at IS NULL OR excluded.last_updated_at > products.last_updated_at)
+          AND (excluded.tenant_id IS NOT products.tenant_id OR excluded.sku IS NOT products.sku OR
+               excluded.barcode IS NOT products.barcode OR excluded.name IS NOT products.name OR
+               excluded.description IS NOT products.description OR
+               excluded.product_type IS NOT products.product_type OR
+               excluded.category_id IS NOT products.category_id OR excluded.unit_id IS NOT products.unit_id OR
+               excluded.supplier_id IS NOT products.supplier_id OR
+               excluded.purchase_price IS NOT products.purchase_price OR
+               excluded.selling_price IS NOT products.selling_price OR excluded.tax_rate IS NOT products.tax_rate OR
+               excluded.min_stock_level IS NOT products.min_stock_level OR
+               excluded.reorder_quantity IS NOT products.reorder_quantity OR
+               excluded.is_active IS NOT products.is_active OR excluded.is_deleted IS NOT products.is_deleted)
         """;
 
     private static final String DEACTIVATE_SQL = "UPDATE products SET is_active = false, is_synced = false, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
     private static final String MARK_DELETED_SQL = "UPDATE products SET is_deleted = true, is_synced = false, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
-    private static final String MARK_SYNCED_SQL = "UPDATE products SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE products SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<ProductDTO> ROW_MAPPER = RowMapper.of(ProductDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("sku", (d, rs, i) -> d.setSku(rs.getString(i)))
+            .column("barcode", (d, rs, i) -> d.setBarcode(rs.getString(i)))
+            .column("name", (d, rs, i) -> d.setName(rs.getString(i)))
+            .column("description", (d, rs, i) -> d.setDescription(rs.getString(i)))
+            .column("product_type", (d, rs, i) -> d.setProductType(rs.getString(i)))
+            .column("category_id", (d, rs, i) -> d.setCategoryId(RowMapper.nullableLong(rs, i)))
+            .column("unit_id", (d, rs, i) -> d.setUnitId(RowMapper.nullableLong(rs, i)))
+            .column("supplier_id", (d, rs, i) -> d.setSupplierId(RowMapper.nullableLong(rs, i)))
+            .column("purchase_price", (d, rs, i) -> d.setPurchasePrice(rs.getDouble(i)))
+            .column("selling_price", (d, rs, i) -> d.setSellingPrice(rs.getDouble(i)))
+            .column("tax_rate", (d, rs, i) -> d.setTaxRate(rs.getDouble(i)))
+            .column("min_stock_level", (d, rs, i) -> d.setMinStockLevel(rs.getDouble(i)))
+            .column("reorder_quantity", (d, rs, i) -> d.setReorderQuantity(rs.getDouble(i)))
+            .column("is_active", (d, rs, i) -> d.setActive(rs.getBoolean(i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            // Only the stock-joined queries select current_stock; only GET_UNSYNCED_SQL selects the UUIDs
+            .optional("current_stock", (d, rs, i) -> d.setCurrentStock(rs.getDouble(i)))
+            .optional("category_uuid", (d, rs, i) -> d.setCategoryUuid(rs.getString(i)))
+            .optional("unit_uuid", (d, rs, i) -> d.setUnitUuid(rs.getString(i)))
+            .optional("supplier_uuid", (d, rs, i) -> d.setSupplierUuid(rs.getString(i)))
+            .build();
 
     /**
      * Retrieves all non-deleted, active products for a tenant, including their current stock levels.
@@ -106,8 +163,9 @@ public class ProductDAO {
              PreparedStatement ps = conn.prepareStatement(GET_ALL_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                products.add(mapToDTO(rs));
+                products.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get all products for tenant: " + tenantId, e);
@@ -128,7 +186,7 @@ public class ProductDAO {
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToDTO(rs);
+                return ROW_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get product by ID: " + productId, e);
@@ -136,6 +194,34 @@ public class ProductDAO {
         return null;
     }
 
+    /**
+     * Retrieves several products with a single query, including their current stock levels.
+     * Used by the checkout paths to load every product on an invoice at once instead of one query per line.
+     * @param productIds The local IDs of the products; duplicates are allowed.
+     * @param tenantId The UUID of the tenant.
+     * @return The found products keyed by local ID. IDs that do not exist (or are deleted) are absent.
+     */
+    public Map<Long, ProductDTO> getByIds(Collection<Long> productIds, String tenantId) {
+        Map<Long, ProductDTO> products = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return products;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(productIds));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                ProductDTO product = rows.map(rs);
+                products.put(product.getId(), product);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get products by IDs: " + productIds, e);
+        }
+        return products;
+    }
+
     /**
      * Creates a new product using a provided transactional connection. Returns the new product's generated ID.
      *
@@ -215,16 +301,45 @@ public class ProductDAO {
 
     /**
      * Inserts or updates a product from a remote source, marking it as synced.
-     * This method relies on subqueries to find local IDs from UUIDs for related entities.
+     * The local IDs of the related category, unit and supplier are looked up from their UUIDs in {@link UuidCache}
+     * and bound as parameters.
      * The DTO must provide UUIDs for category, unit, and supplier via their respective `get...Uuid()` methods.
      *
      * @param dto The complete product data from the remote source.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(ProductDTO dto) {
+    public boolean upsertRemote(ProductDTO dto) {
+        if (!sanitizeRemote(dto)) {
+            return true;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
+            bindUpsertRemote(ps, dto);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to upsert remote product with UUID: " + dto.getUuid(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies a chunk of remote products in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<ProductDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("products", UPSERT_REMOTE_SQL, dtos, this::sanitizeRemote, ProductDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private boolean sanitizeRemote(ProductDTO dto) {
         // --- BEGIN DTO SANITIZATION BLOCK ---
         if (dto == null || dto.getUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert a null product or a product with a null UUID. Aborting operation.");
-            return;
+            return false;
         }
 
         if (dto.getTenantId() == null) {
@@ -264,39 +379,30 @@ public class ProductDAO {
             dto.setLastUpdatedAt(OffsetDateTime.now(ZoneOffset.UTC));
         }
         // --- END DTO SANITIZATION BLOCK ---
+        return true;
+    }
 
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            int idx = 1;
-            // INSERT part (18 parameters)
-            ps.setString(idx++, dto.getUuid());
-            ps.setString(idx++, dto.getTenantId());
-            ps.setString(idx++, dto.getSku());
-            ps.setString(idx++, dto.getBarcode());
-            ps.setString(idx++, dto.getName());
-            ps.setString(idx++, dto.getDescription());
-            ps.setString(idx++, dto.getProductType());
-            ps.setString(idx++, dto.getCategoryUuid());
-            ps.setString(idx++, dto.getUnitUuid());
-            ps.setString(idx++, dto.getSupplierUuid());
-            ps.setDouble(idx++, dto.getPurchasePrice());
-            ps.setDouble(idx++, dto.getSellingPrice());
-            ps.setDouble(idx++, dto.getTaxRate());
-            ps.setDouble(idx++, dto.getMinStockLevel());
-            ps.setDouble(idx++, dto.getReorderQuantity());
-            ps.setBoolean(idx++, dto.isActive());
-            ps.setTimestamp(idx++, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(idx++, dto.isDeleted());
-
-            // ON CONFLICT UPDATE part (3 parameters)
-            ps.setString(idx++, dto.getCategoryUuid());
-            ps.setString(idx++, dto.getUnitUuid());
-            ps.setString(idx, dto.getSupplierUuid());
-
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to upsert remote product with UUID: " + dto.getUuid(), e);
-        }
+    private void bindUpsertRemote(PreparedStatement ps, ProductDTO dto) throws SQLException {
+        int idx = 1;
+        ps.setString(idx++, dto.getUuid());
+        ps.setString(idx++, dto.getTenantId());
+        ps.setString(idx++, dto.getSku());
+        ps.setString(idx++, dto.getBarcode());
+        ps.setString(idx++, dto.getName());
+        ps.setString(idx++, dto.getDescription());
+        ps.setString(idx++, dto.getProductType());
+        // Foreign keys resolved from UUIDs in memory rather than by subqueries
+        ps.setObject(idx++, UuidCache.CATEGORIES.idFor(dto.getCategoryUuid()), Types.BIGINT);
+        ps.setObject(idx++, UuidCache.UNITS.idFor(dto.getUnitUuid()), Types.BIGINT);
+        ps.setObject(idx++, UuidCache.SUPPLIERS.idFor(dto.getSupplierUuid()), Types.BIGINT);
+        ps.setDouble(idx++, dto.getPurchasePrice());
+        ps.setDouble(idx++, dto.getSellingPrice());
+        ps.setDouble(idx++, dto.getTaxRate());
+        ps.setDouble(idx++, dto.getMinStockLevel());
+        ps.setDouble(idx++, dto.getReorderQuantity());
+        ps.setBoolean(idx++, dto.isActive());
+        ps.setTimestamp(idx++, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(idx, dto.isDeleted());
     }
 
     /**
@@ -310,8 +416,9 @@ public class ProductDAO {
              PreparedStatement ps = conn.prepareStatement(GET_LOW_STOCK_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                products.add(mapToDTO(rs));
+                products.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get low stock products for tenant: " + tenantId, e);
@@ -330,8 +437,9 @@ public class ProductDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                products.add(mapToDTO(rs));
+                products.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced products for tenant: " + tenantId, e);
@@ -339,6 +447,32 @@ public class ProductDAO {
         return products;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<ProductDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<ProductDTO> products = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return products;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                products.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced products by ID for tenant: " + tenantId, e);
+        }
+        return products;
+    }
+
     /**
      * Marks a product as inactive.
      * @param productId The ID of the product to deactivate.
@@ -381,9 +515,8 @@ public class ProductDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark product as synced: " + id, e);
@@ -391,72 +524,17 @@ public class ProductDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link ProductDTO} object.
-     * @param rs The ResultSet to map.
-     * @return A populated ProductDTO object.
-     * @throws SQLException if a database access error occurs.
-     */
-    private ProductDTO mapToDTO(ResultSet rs) throws SQLException {
-        ProductDTO p = new ProductDTO();
-        p.setId(rs.getLong("id"));
-        p.setUuid(rs.getString("uuid"));
-        p.setTenantId(rs.getString("tenant_id"));
-        p.setSku(rs.getString("sku"));
-        p.setBarcode(rs.getString("barcode"));
-        p.setName(rs.getString("name"));
-        p.setDescription(rs.getString("description"));
-        p.setProductType(rs.getString("product_type"));
-        p.setCategoryId(rs.getObject("category_id", Long.class));
-        p.setUnitId(rs.getObject("unit_id", Long.class));
-        p.setSupplierId(rs.getObject("supplier_id", Long.class));
-        p.setPurchasePrice(rs.getDouble("purchase_price"));
-        p.setSellingPrice(rs.getDouble("selling_price"));
-        p.setTaxRate(rs.getDouble("tax_rate"));
-        p.setMinStockLevel(rs.getDouble("min_stock_level"));
-        p.setReorderQuantity(rs.getDouble("reorder_quantity"));
-        p.setActive(rs.getBoolean("is_active"));
-
-        Timestamp lastUpdatedAt = rs.getTimestamp("last_updated_at");
-        if (lastUpdatedAt != null) {
-            p.setLastUpdatedAt(lastUpdatedAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-
-        p.setIsSynced(rs.getInt("is_synced"));
-        p.setDeleted(rs.getBoolean("is_deleted"));
-        // This column only exists in the special SELECT_WITH_STOCK_SQL query
-        if (hasColumn(rs, "current_stock")) {
-            p.setCurrentStock(rs.getDouble("current_stock"));
-        }
-
-        // These UUID columns only exist in GET_UNSYNCED_SQL query
-        if (hasColumn(rs, "category_uuid")) {
-            p.setCategoryUuid(rs.getString("category_uuid"));
-        }
-        if (hasColumn(rs, "unit_uuid")) {
-            p.setUnitUuid(rs.getString("unit_uuid"));
-        }
-        if (hasColumn(rs, "supplier_uuid")) {
-            p.setSupplierUuid(rs.getString("supplier_uuid"));
-        }
-
-        return p;
-    }
-
-    /**
-     * Checks if a column exists in the ResultSet to avoid errors in mapToDTO.
-     * @param rs The ResultSet to check.
-     * @param columnName The name of the column.
-     * @return True if the column exists, false otherwise.
-     * @throws SQLException if metadata cannot be accessed.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded products.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private boolean hasColumn(ResultSet rs, String columnName) throws SQLException {
-        ResultSetMetaData rsmd = rs.getMetaData();
-        int columns = rsmd.getColumnCount();
-        for (int x = 1; x <= columns; x++) {
-            if (columnName.equalsIgnoreCase(rsmd.getColumnName(x))) {
-                return true;
-            }
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("products", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " products as synced", e);
         }
-        return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+// src/main/java/com/kmu/syncpos/dao/ProductStockDAO.java
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.dto.StockDriftDTO;
+import com.kmu.syncpos.util.DatabaseManager;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object for the materialized 'product_stock' balance table.
+ * Balances are written only by triggers on 'stock_ledger', so this class never adjusts them directly.
+ * It exists to check the balances against the ledger and to rebuild them if they ever drift
+ * (e.g. after a manual edit of the database file).
+ */
+public class ProductStockDAO {
+
+    /** Balances differing from the ledger by less than this are floating-point noise, not drift. */
+    private static final double DRIFT_TOLERANCE = 1e-6;
+
+    private static final String FIND_DRIFT_SQL = """
+        SELECT d.product_id, p.name AS product_name, d.ledger_quantity, d.balance_quantity
+        FROM (
+            SELECT product_id, SUM(ledger_quantity) AS ledger_quantity, SUM(balance_quantity) AS balance_quantity
+            FROM (
+                SELECT product_id, quantity_delta AS ledger_quantity, 0.0 AS balance_quantity
+                FROM stock_ledger
+                WHERE tenant_id = ? AND is_deleted = false AND product_id IS NOT NULL
+                UNION ALL
+                SELECT product_id, 0.0, quantity
+                FROM product_stock
+                WHERE tenant_id = ?
+            )
+            GROUP BY product_id
+            HAVING ABS(SUM(ledger_quantity) - SUM(balance_quantity)) > ?
+        ) d
+        LEFT JOIN products p ON p.id = d.product_id
+        ORDER BY d.product_id
+        """;
+
+    private static final String DELETE_BALANCES_SQL = "DELETE FROM product_stock WHERE tenant_id = ?";
+
+    private static final String REBUILD_BALANCES_SQL = """
+        INSERT INTO product_stock (tenant_id, product_id, quantity)
+        SELECT tenant_id, product_id, SUM(quantity_delta)
+        FROM stock_ledger
+        WHERE tenant_id = ? AND is_deleted = false AND product_id IS NOT NULL
+        GROUP BY tenant_id, product_id
+        """;
+
+    /**
+     * Recomputes every balance of a tenant from the ledger and compares it with the stored value.
+     * @param tenantId The UUID of the tenant.
+     * @return The products whose balances have drifted; empty if all balances are correct.
+     * @throws SQLException if the balances could not be read; an empty list would wrongly report them correct.
+     */
+    public List<StockDriftDTO> findDrift(String tenantId) throws SQLException {
+        List<StockDriftDTO> drift = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(FIND_DRIFT_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tenantId);
+            ps.setDouble(3, DRIFT_TOLERANCE);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                drift.add(new StockDriftDTO(rs.getLong("product_id"), rs.getString("product_name"),
+                        rs.getDouble("ledger_quantity"), rs.getDouble("balance_quantity")));
+            }
+        }
+        return drift;
+    }
+
+    /**
+     * Replaces all balances of a tenant with values recomputed from the ledger. Must be called within a transaction.
+     * @param conn The active database connection.
+     * @param tenantId The UUID of the tenant.
+     * @return The number of balances written.
+     * @throws SQLException if a database error occurs.
+     */
+    public int rebuildTransactional(Connection conn, String tenantId) throws SQLException {
+        try (PreparedStatement delete = conn.prepareStatement(DELETE_BALANCES_SQL);
+             PreparedStatement insert = conn.prepareStatement(REBUILD_BALANCES_SQL)) {
+            delete.setString(1, tenantId);
+            delete.executeUpdate();
+            insert.setString(1, tenantId);
+            return insert.executeUpdate();
+        }
+    }
+}
@@ -2,13 +2,17 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.ProductSupplierDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -24,7 +28,9 @@ public class ProductSupplierDAO {
     private static final String BASE_SELECT_SQL = "SELECT * FROM product_suppliers";
     private static final String GET_ALL_BY_PRODUCT_ID_SQL = BASE_SELECT_SQL + " WHERE product_id = ? AND tenant_id = ? AND is_deleted = false";
     private static final String FIND_BY_PRODUCT_AND_SUPPLIER_SQL = BASE_SELECT_SQL + " WHERE product_id = ? AND supplier_id = ? AND tenant_id = ? AND is_deleted = false";
+    private static final String FIND_BY_PRODUCTS_AND_SUPPLIER_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND supplier_id = ? AND product_id IN (SELECT value FROM json_each(?)) AND is_deleted = false";
     private static final String GET_UNSYNCED_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_synced = false";
+    private static final String GET_UNSYNCED_BY_IDS_SQL = BASE_SELECT_SQL + " WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ? AND is_synced = false";
 
     private static final String CREATE_LOCAL_SQL = """
         INSERT INTO product_suppliers (uuid, tenant_id, product_id, supplier_id, supplier_product_code, last_updated_at, is_deleted, is_synced)
@@ -39,7 +45,7 @@ public class ProductSupplierDAO {
 
     private static final String UPSERT_REMOTE_SQL = """
         INSERT INTO product_suppliers (uuid, tenant_id, product_id, supplier_id, supplier_product_code, last_updated_at, is_deleted, is_synced)
-        VALUES (?, ?, (SELECT id FROM products WHERE uuid = ?), (SELECT id FROM suppliers WHERE uuid = ?), ?, ?, ?, true)
+        VALUES (?, ?, ?, ?, ?, ?, ?, true)
         ON CONFLICT(uuid) DO UPDATE SET
             product_id = excluded.product_id,
             supplier_id = excluded.supplier_id,
@@ -47,10 +53,27 @@ public class ProductSupplierDAO {
             last_updated_at = excluded.last_updated_at,
             is_deleted = excluded.is_deleted,
             is_synced = true
+        WHERE (product_suppliers.last_updated_at IS NULL OR excluded.last_updated_at > product_suppliers.last_updated_at)
+          AND (excluded.product_id IS NOT product_suppliers.product_id OR
+               excluded.supplier_id IS NOT product_suppliers.supplier_id OR
+               excluded.supplier_product_code IS NOT product_suppliers.supplier_product_code OR
+               excluded.is_deleted IS NOT product_suppliers.is_deleted)
         """;
 
     private static final String MARK_DELETED_SQL = "UPDATE product_suppliers SET is_deleted = true, is_synced = false, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
-    private static final String MARK_SYNCED_SQL = "UPDATE product_suppliers SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE product_suppliers SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<ProductSupplierDTO> ROW_MAPPER = RowMapper.of(ProductSupplierDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("product_id", (d, rs, i) -> d.setProductId(rs.getLong(i)))
+            .column("supplier_id", (d, rs, i) -> d.setSupplierId(rs.getLong(i)))
+            .column("supplier_product_code", (d, rs, i) -> d.setSupplierProductCode(rs.getString(i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            .build();
 
     /**
      * Retrieves all non-deleted supplier links for a specific product.
@@ -65,8 +88,9 @@ public class ProductSupplierDAO {
             ps.setLong(1, productId);
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductSupplierDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                links.add(mapToDTO(rs));
+                links.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get links for product ID: " + productId, e);
@@ -89,7 +113,7 @@ public class ProductSupplierDAO {
             ps.setString(3, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToDTO(rs);
+                return ROW_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to find link for product " + productId + " and supplier " + supplierId, e);
@@ -97,6 +121,35 @@ public class ProductSupplierDAO {
         return null;
     }
 
+    /**
+     * Finds the links between one supplier and several products with a single query.
+     * @param productIds The local IDs of the products.
+     * @param supplierId The local ID of the supplier.
+     * @param tenantId The UUID of the tenant.
+     * @return The existing links keyed by product ID. Products without a link are absent.
+     */
+    public Map<Long, ProductSupplierDTO> findByProductsAndSupplier(Collection<Long> productIds, long supplierId, String tenantId) {
+        Map<Long, ProductSupplierDTO> links = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return links;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(FIND_BY_PRODUCTS_AND_SUPPLIER_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setLong(2, supplierId);
+            ps.setString(3, IdList.toJson(productIds));
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductSupplierDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                ProductSupplierDTO link = rows.map(rs);
+                links.put(link.getProductId(), link);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to find links for supplier " + supplierId + " and products " + productIds, e);
+        }
+        return links;
+    }
+
     /**
      * Creates a new product-supplier link from a local change, marking it as unsynced.
      * @param dto The DTO containing the link information.
@@ -136,27 +189,46 @@ public class ProductSupplierDAO {
 
     /**
      * Inserts or updates a product-supplier link from a remote source, marking it as synced.
-     * This relies on subqueries to find local IDs from UUIDs for product and supplier.
+     * The local product and supplier IDs are looked up from their UUIDs in {@link UuidCache} and bound as parameters.
      *
      * @param dto The DTO received from the server. Must contain product and supplier UUIDs.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(ProductSupplierDTO dto) {
+    public boolean upsertRemote(ProductSupplierDTO dto) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            int i = 1;
-            ps.setString(i++, dto.getUuid());
-            ps.setString(i++, dto.getTenantId());
-            ps.setString(i++, dto.getProductUuid());
-            ps.setString(i++, dto.getSupplierUuid());
-            ps.setString(i++, dto.getSupplierProductCode());
-            ps.setTimestamp(i++, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(i, dto.isDeleted());
+            bindUpsertRemote(ps, dto);
             ps.executeUpdate();
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to upsert remote product-supplier link with UUID: " + dto.getUuid(), e);
+            return false;
         }
     }
 
+    /**
+     * Applies a chunk of remote product-supplier links in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<ProductSupplierDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("product_suppliers", UPSERT_REMOTE_SQL, dtos, Objects::nonNull, ProductSupplierDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private void bindUpsertRemote(PreparedStatement ps, ProductSupplierDTO dto) throws SQLException {
+        int i = 1;
+        ps.setString(i++, dto.getUuid());
+        ps.setString(i++, dto.getTenantId());
+        ps.setObject(i++, UuidCache.PRODUCTS.idFor(dto.getProductUuid()), Types.BIGINT);
+        ps.setObject(i++, UuidCache.SUPPLIERS.idFor(dto.getSupplierUuid()), Types.BIGINT);
+        ps.setString(i++, dto.getSupplierProductCode());
+        ps.setTimestamp(i++, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(i, dto.isDeleted());
+    }
+
     /**
      * Retrieves all unsynced product-supplier links for a specific tenant.
      * @param tenantId The UUID of the tenant.
@@ -168,8 +240,9 @@ public class ProductSupplierDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductSupplierDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                links.add(mapToDTO(rs));
+                links.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced product-supplier links for tenant: " + tenantId, e);
@@ -177,6 +250,32 @@ public class ProductSupplierDAO {
         return links;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<ProductSupplierDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<ProductSupplierDTO> links = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return links;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<ProductSupplierDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                links.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced product-supplier links by ID for tenant: " + tenantId, e);
+        }
+        return links;
+    }
+
     /**
      * Performs a soft delete on a product-supplier link.
      * @param id The local ID of the link to delete.
@@ -202,9 +301,8 @@ public class ProductSupplierDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark product-supplier link as synced: " + id, e);
@@ -212,25 +310,17 @@ public class ProductSupplierDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link ProductSupplierDTO} object.
-     * @param rs The ResultSet to map.
-     * @return A populated ProductSupplierDTO object.
-     * @throws SQLException if a database access error occurs.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded product-supplier links.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private ProductSupplierDTO mapToDTO(ResultSet rs) throws SQLException {
-        ProductSupplierDTO dto = new ProductSupplierDTO();
-        dto.setId(rs.getLong("id"));
-        dto.setUuid(rs.getString("uuid"));
-        dto.setTenantId(rs.getString("tenant_id"));
-        dto.setProductId(rs.getLong("product_id"));
-        dto.setSupplierId(rs.getLong("supplier_id"));
-        dto.setSupplierProductCode(rs.getString("supplier_product_code"));
-        Timestamp ts = rs.getTimestamp("last_updated_at");
-        if (ts != null) {
-            dto.setLastUpdatedAt(ts.toLocalDateTime().atOffset(ZoneOffset.UTC));
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("product_suppliers", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " product-supplier links as synced", e);
         }
-        dto.setIsSynced(rs.getInt("is_synced"));
-        dto.setDeleted(rs.getBoolean("is_deleted"));
-        return dto;
     }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+// src/main/java/com/kmu/syncpos/dao/ReconcileDAO.java
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.util.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Data Access Object for reconciling synced tables with the server.
+ * Rows are addressed by UUID prefix, which the unique index on uuid turns into a range scan. Unlike most DAOs,
+ * the methods throw on database errors: an empty result would read as rows missing locally and trigger repairs.
+ * <p>
+ * Table and column names come from the fixed reconciliation definitions, never from user input; the statements
+ * are templates formatted with them, hence their {@code _SQL_TEMPLATE} names.
+ */
+public class ReconcileDAO {
+
+    // UUIDs are lowercase hex and '-', which all sort before 'g': [prefix, prefix + 'g') is every UUID with the prefix.
+    private static final String SCAN_SQL_TEMPLATE = "SELECT %s FROM %s WHERE tenant_id = ? AND uuid >= ? AND uuid < ?";
+
+    private static final String GET_UNSYNCED_SQL_TEMPLATE = """
+        SELECT uuid FROM %s WHERE tenant_id = ? AND uuid IN (SELECT value FROM json_each(?)) AND is_synced = 0
+        """;
+
+    // Setting is_synced = 0 makes the change_log triggers queue the row for the next push.
+    private static final String REQUEUE_SQL_TEMPLATE = """
+        UPDATE %s SET is_synced = 0, last_updated_at = ?
+        WHERE tenant_id = ? AND uuid IN (SELECT value FROM json_each(?)) AND is_synced = 1
+        """;
+
+    // Clearing last_updated_at lets the guarded remote upsert overwrite the row with the server's version.
+    private static final String RELEASE_SQL_TEMPLATE = """
+        UPDATE %s SET last_updated_at = NULL
+        WHERE tenant_id = ? AND uuid IN (SELECT value FROM json_each(?)) AND is_synced = 1
+        """;
+
+    /**
+     * Receives one row of a scan.
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        /**
+         * @param uuid   The row's UUID.
+         * @param values Reads a scanned column by name: String, Long, Double or null, as SQLite stores it.
+         */
+        void accept(String uuid, Function<String, Object> values);
+    }
+
+    /**
+     * Visits the tenant's rows whose UUID starts with a prefix, deleted ones included.
+     * @param columns The columns to read; the first must be uuid.
+     * @throws SQLException if the table cannot be read.
+     */
+    public void scan(String tableName, List<String> columns, String tenantId, String uuidPrefix, RowConsumer consumer) throws SQLException {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            index.put(columns.get(i), i + 1);
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(String.format(SCAN_SQL_TEMPLATE, String.join(", ", columns), tableName))) {
+            ps.setString(1, tenantId);
+            ps.setString(2, uuidPrefix);
+            ps.setString(3, uuidPrefix + "g");
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                consumer.accept(rs.getString(1), column -> {
+                    try {
+                        return rs.getObject(index.get(column));
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Cannot read " + tableName + "." + column, e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * @return Those of the rows that have local changes not uploaded yet.
+     */
+    public Set<String> getUnsynced(String tableName, String tenantId, Collection<String> uuids) throws SQLException {
+        Set<String> unsynced = new HashSet<>();
+        if (uuids.isEmpty()) {
+            return unsynced;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(String.format(GET_UNSYNCED_SQL_TEMPLATE, tableName))) {
+            ps.setString(1, tenantId);
+            ps.setString(2, IdList.uuidsToJson(uuids));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                unsynced.add(rs.getString(1));
+            }
+        }
+        return unsynced;
+    }
+
+    /**
+     * Queues synced rows for upload again, e.g. because the server lost them.
+     * @return The number of rows queued.
+     */
+    public int requeueForUpload(String tableName, String tenantId, Collection<String> uuids) throws SQLException {
+        return update(REQUEUE_SQL_TEMPLATE, tableName, tenantId, uuids, true);
+    }
+
+    /**
+     * Lets the next remote upsert of synced rows replace them, even if the server's version looks older.
+     * @return The number of rows released.
+     */
+    public int releaseForDownload(String tableName, String tenantId, Collection<String> uuids) throws SQLException {
+        return update(RELEASE_SQL_TEMPLATE, tableName, tenantId, uuids, false);
+    }
+
+    private int update(String sql, String tableName, String tenantId, Collection<String> uuids, boolean touch) throws SQLException {
+        if (uuids.isEmpty()) {
+            return 0;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(String.format(sql, tableName))) {
+            int i = 1;
+            if (touch) {
+                ps.setTimestamp(i++, Timestamp.valueOf(LocalDateTime.now()));
+            }
+            ps.setString(i++, tenantId);
+            ps.setString(i, IdList.uuidsToJson(uuids));
+            return ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+// src/main/java/com/kmu/syncpos/dao/RemoteBatch.java
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.dto.UpsertCountsDTO;
+import com.kmu.syncpos.util.DatabaseManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Applies a chunk of records pulled from the server as one JDBC batch in one transaction.
+ * Each DAO's {@code upsertRemoteBatch} supplies its upsert SQL, its DTO sanitization and its parameter
+ * binding; this class only owns the transaction and the batch, so a chunk costs one commit instead of
+ * one per row.
+ * <p>
+ * The upserts are guarded: their {@code DO UPDATE ... WHERE} only overwrites a local row if the record's
+ * last_updated_at is newer and some column actually differs. Re-pulled records and the echoes of our own
+ * uploads therefore cost no write, and a local edit newer than the server's version is not lost. Marking a row
+ * synced leaves its last_updated_at alone, so the local side of the comparison is always the server's version or
+ * the time of the local edit, never the time the upload was acknowledged.
+ */
+final class RemoteBatch {
+
+    private static final String UNSYNCED_UUIDS_SQL_TEMPLATE = "SELECT uuid FROM %s WHERE uuid IN (SELECT value FROM json_each(?)) AND is_synced = 0";
+
+    /**
+     * Binds one DTO to the parameters of an upsert statement.
+     */
+    @FunctionalInterface
+    interface Binder<T> {
+        void bind(PreparedStatement ps, T dto) throws SQLException;
+    }
+
+    private RemoteBatch() {
+    }
+
+    /**
+     * @param table  The table the records belong to.
+     * @param sql    The DAO's remote upsert statement.
+     * @param dtos   The records to apply.
+     * @param accept The DAO's sanitization; records it rejects are skipped, as in the single-row upsert.
+     * @param uuid   Reads the UUID of a record.
+     * @param binder Binds an accepted record to the statement.
+     * @return How many records were applied, skipped, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; nothing from the chunk is kept.
+     */
+    static <T> UpsertCountsDTO upsert(String table, String sql, List<T> dtos, Predicate<T> accept,
+                                      Function<T, String> uuid, Binder<T> binder) throws SQLException {
+        if (dtos.isEmpty()) {
+            return UpsertCountsDTO.NONE;
+        }
+        return DatabaseManager.getInstance().inTransaction(conn -> {
+            List<T> accepted = new ArrayList<>(dtos.size());
+            List<String> uuids = new ArrayList<>(dtos.size());
+            for (T dto : dtos) {
+                if (accept.test(dto)) {
+                    accepted.add(dto);
+                    uuids.add(uuid.apply(dto));
+                }
+            }
+            if (accepted.isEmpty()) {
+                return new UpsertCountsDTO(0, dtos.size(), 0);
+            }
+            int conflicts = 0;
+            try (PreparedStatement ps = conn.prepareStatement(String.format(UNSYNCED_UUIDS_SQL_TEMPLATE, table))) {
+                ps.setString(1, IdList.uuidsToJson(uuids));
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    conflicts++;
+                }
+            }
+            int applied = 0;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (T dto : accepted) {
+                    binder.bind(ps, dto);
+                    ps.addBatch();
+                }
+                // A record whose update the guard suppressed changes no row.
+                for (int count : ps.executeBatch()) {
+                    if (count > 0) {
+                        applied++;
+                    }
+                }
+            }
+            return new UpsertCountsDTO(applied, dtos.size() - applied, conflicts);
+        });
+    }
+}
@@ -15,19 +15,30 @@ import java.util.List;
 
 public class ReportDAO {
 
+    private static final String SALES_DETAIL_SQL = """
+        SELECT s.id, s.created_at, COALESCE(c.name,'Walk-in Customer') AS customer_name,
+               u.username AS cashier_name, s.total, s.tenant_id
+        FROM sales s
+        LEFT JOIN customers c ON c.id = s.customer_id AND c.tenant_id = s.tenant_id
+        JOIN users u ON u.id = s.user_id AND u.tenant_id = s.tenant_id
+        WHERE s.type='sale' AND s.is_deleted=0 AND DATE(s.created_at) BETWEEN ? AND ? AND s.tenant_id = ?
+        ORDER BY s.created_at DESC
+        """;
+
+    private static final String PRODUCT_PERFORMANCE_SQL = """
+        SELECT p.name, p.sku, SUM(si.quantity) AS total_quantity, SUM(si.total) AS total_revenue, s.tenant_id
+        FROM sale_items si
+        JOIN products p ON p.id = si.product_id AND p.tenant_id = si.tenant_id
+        JOIN sales s ON s.id = si.sale_id AND s.tenant_id = si.tenant_id
+        WHERE s.type='sale' AND s.is_deleted=0 AND si.is_deleted=0 AND DATE(s.created_at) BETWEEN ? AND ? AND s.tenant_id = ?
+        GROUP BY p.id, p.name, p.sku
+        ORDER BY total_revenue DESC
+        """;
+
     public List<SalesReportRecord> getSalesDetailReport(LocalDate start, LocalDate end, String tenantId) {
         List<SalesReportRecord> list = new ArrayList<>();
-        String sql = """
-            SELECT s.id, s.created_at, COALESCE(c.name,'Walk-in Customer') AS customer_name,
-                   u.username AS cashier_name, s.total, s.tenant_id
-            FROM sales s
-            LEFT JOIN customers c ON c.id = s.customer_id AND c.tenant_id = s.tenant_id
-            JOIN users u ON u.id = s.user_id AND u.tenant_id = s.tenant_id
-            WHERE s.type='sale' AND s.is_deleted=0 AND DATE(s.created_at) BETWEEN ? AND ? AND s.tenant_id = ?
-            ORDER BY s.created_at DESC
-            """;
         try (Connection c = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(SALES_DETAIL_SQL)) {
             ps.setString(1, start.toString());
             ps.setString(2, end.toString());
             ps.setString(3, tenantId);
@@ -50,17 +61,8 @@ public class ReportDAO {
 
     public List<ProductPerformanceRecord> getProductPerformanceReport(LocalDate start, LocalDate end, String tenantId) {
         List<ProductPerformanceRecord> list = new ArrayList<>();
-        String sql = """
-            SELECT p.name, p.sku, SUM(si.quantity) AS total_quantity, SUM(si.total) AS total_revenue, s.tenant_id
-            FROM sale_items si
-            JOIN products p ON p.id = si.product_id AND p.tenant_id = si.tenant_id
-            JOIN sales s ON s.id = si.sale_id AND s.tenant_id = si.tenant_id
-            WHERE s.type='sale' AND s.is_deleted=0 AND si.is_deleted=0 AND DATE(s.created_at) BETWEEN ? AND ? AND s.tenant_id = ?
-            GROUP BY p.id, p.name, p.sku
-            ORDER BY total_revenue DESC
-            """;
         try (Connection c = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(PRODUCT_PERFORMANCE_SQL)) {
             ps.setString(1, start.toString());
             ps.setString(2, end.toString());
             ps.setString(3, tenantId);
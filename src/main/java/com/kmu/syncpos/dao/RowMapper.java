@@ -0,0 +1,173 @@
+// src/main/java/com/kmu/syncpos/dao/RowMapper.java
+package com.kmu.syncpos.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Maps result set rows to objects using column indexes resolved once per query.
+ * Each DAO declares one mapper as a constant, listing the columns it understands. Before reading rows,
+ * {@link #bind(ResultSet)} looks every column up in the result set metadata a single time; mapping a
+ * row afterwards is a straight run of indexed getters with no name lookups.
+ * <p>
+ * Columns declared with {@link Builder#optional} are skipped when a query does not select them (e.g. the
+ * resolved UUID columns that only the getUnsynced queries join in). Missing required columns fail at bind time.
+ *
+ * @param <T> The mapped type.
+ */
+final class RowMapper<T> {
+
+    /**
+     * Reads one column of the current row into the target object.
+     */
+    @FunctionalInterface
+    interface Column<T> {
+        void read(T target, ResultSet rs, int index) throws SQLException;
+    }
+
+    private final Supplier<T> factory;
+    private final String[] names;
+    private final boolean[] optional;
+    private final List<Column<T>> readers;
+
+    private RowMapper(Supplier<T> factory, List<String> names, List<Boolean> optional, List<Column<T>> readers) {
+        this.factory = factory;
+        this.names = names.toArray(new String[0]);
+        this.optional = new boolean[optional.size()];
+        for (int i = 0; i < this.optional.length; i++) {
+            this.optional[i] = optional.get(i);
+        }
+        this.readers = List.copyOf(readers);
+    }
+
+    /**
+     * Starts a mapper for objects created by the given factory (usually a DTO constructor reference).
+     */
+    static <T> Builder<T> of(Supplier<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    /**
+     * Resolves the declared columns against the result set's metadata.
+     *
+     * @param rs A freshly executed result set.
+     * @return A mapper for the rows of this result set.
+     * @throws SQLException if a required column is not part of the result set.
+     */
+    Bound<T> bind(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        int count = md.getColumnCount();
+        Map<String, Integer> positions = new HashMap<>(count * 2);
+        for (int i = count; i >= 1; i--) {
+            // Iterate backwards so the first occurrence of a duplicate label wins, like ResultSet.findColumn.
+            positions.put(md.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+
+        int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Integer position = positions.get(names[i]);
+            if (position == null && !optional[i]) {
+                throw new SQLException("Column '" + names[i] + "' is missing from the result set.");
+            }
+            indexes[i] = position == null ? 0 : position;
+        }
+        return new Bound<>(this, indexes);
+    }
+
+    /**
+     * A mapper whose column positions are fixed for one result set.
+     */
+    static final class Bound<T> {
+        private final RowMapper<T> mapper;
+        private final int[] indexes;
+
+        private Bound(RowMapper<T> mapper, int[] indexes) {
+            this.mapper = mapper;
+            this.indexes = indexes;
+        }
+
+        /**
+         * Maps the row the result set is currently positioned on.
+         */
+        T map(ResultSet rs) throws SQLException {
+            T target = mapper.factory.get();
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] > 0) {
+                    mapper.readers.get(i).read(target, rs, indexes[i]);
+                }
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Collects column declarations for a {@link RowMapper}.
+     */
+    static final class Builder<T> {
+        private final Supplier<T> factory;
+        private final List<String> names = new ArrayList<>();
+        private final List<Boolean> optional = new ArrayList<>();
+        private final List<Column<T>> readers = new ArrayList<>();
+
+        private Builder(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        /** Declares a column every query using this mapper must select. */
+        Builder<T> column(String name, Column<T> reader) {
+            return add(name, false, reader);
+        }
+
+        /** Declares a column that only some queries select; it is ignored when absent. */
+        Builder<T> optional(String name, Column<T> reader) {
+            return add(name, true, reader);
+        }
+
+        RowMapper<T> build() {
+            return new RowMapper<>(factory, names, optional, readers);
+        }
+
+        private Builder<T> add(String name, boolean isOptional, Column<T> reader) {
+            names.add(name.toLowerCase(Locale.ROOT));
+            optional.add(isOptional);
+            readers.add(reader);
+            return this;
+        }
+    }
+
+    // --- Column conversions shared by the DAOs ---
+
+    /**
+     * Reads a timestamp column as a UTC offset date-time, or null if the column is NULL.
+     */
+    static OffsetDateTime utc(ResultSet rs, int index) throws SQLException {
+        Timestamp ts = rs.getTimestamp(index);
+        return ts == null ? null : ts.toInstant().atOffset(ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads a nullable integer column, preserving NULL instead of turning it into 0.
+     */
+    static Long nullableLong(ResultSet rs, int index) throws SQLException {
+        long value = rs.getLong(index);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * Reads a nullable real column, preserving NULL instead of turning it into 0.0.
+     */
+    static Double nullableDouble(ResultSet rs, int index) throws SQLException {
+        double value = rs.getDouble(index);
+        return rs.wasNull() ? null : value;
+    }
+}
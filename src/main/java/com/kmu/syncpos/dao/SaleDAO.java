@@ -3,6 +3,7 @@ package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.PurchaseHistoryDTO;
 import com.kmu.syncpos.dto.SaleDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.math.BigDecimal;
@@ -12,6 +13,7 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -48,6 +50,17 @@ public class SaleDAO {
         LEFT JOIN suppliers sup ON s.supplier_id = sup.id
         WHERE s.tenant_id = ? AND s.is_synced = false
         """;
+    private static final String GET_UNSYNCED_BY_IDS_SQL = """
+        SELECT s.id, s.uuid, s.tenant_id, s.type, s.user_id, s.customer_id, s.supplier_id,
+               s.subtotal, s.tax, s.discount, s.total, s.payment_method, s.payment_status,
+               s.notes, s.created_at, s.last_updated_at, s.is_synced, s.is_deleted,
+               c.uuid AS customer_uuid,
+               sup.uuid AS supplier_uuid
+        FROM sales s
+        LEFT JOIN customers c ON s.customer_id = c.id
+        LEFT JOIN suppliers sup ON s.supplier_id = sup.id
+        WHERE s.id IN (SELECT value FROM json_each(?)) AND +s.tenant_id = ? AND s.is_synced = false
+        """;
 
     private static final String GET_UNSYNCED_BY_TYPE_SQL = """
         SELECT s.id, s.uuid, s.tenant_id, s.type, s.user_id, s.customer_id, s.supplier_id,
@@ -74,14 +87,22 @@ public class SaleDAO {
     private static final String DELETE_SALE_SQL = "UPDATE sales SET is_deleted=true, is_synced=false, last_updated_at=? WHERE id=? AND tenant_id=?";
 
     private static final String UPSERT_REMOTE_SQL = """
-        INSERT INTO sales (uuid, tenant_id, type, user_id, customer_id, supplier_id, subtotal, tax, discount, total, payment_status,
+        INSERT INTO sales (uuid, tenant_id, type, user_id, customer_id, supplier_id, subtotal, tax, discount, total, payment_method, payment_status,
                            notes, created_at, last_updated_at, is_deleted, is_synced)
-        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
         ON CONFLICT(uuid) DO UPDATE SET
             tenant_id = excluded.tenant_id, type = excluded.type, user_id = excluded.user_id, customer_id = excluded.customer_id, supplier_id = excluded.supplier_id,
-            subtotal = excluded.subtotal, tax = excluded.tax, discount = excluded.discount, total = excluded.total,
+            subtotal = excluded.subtotal, tax = excluded.tax, discount = excluded.discount, total = excluded.total, payment_method = excluded.payment_method,
             payment_status = excluded.payment_status, notes = excluded.notes, created_at = excluded.created_at, last_updated_at = excluded.last_updated_at,
             is_deleted = excluded.is_deleted, is_synced = true
+        WHERE (sales.last_updated_at IS NULL OR excluded.last_updated_at > sales.last_updated_at)
+          AND (excluded.tenant_id IS NOT sales.tenant_id OR excluded.type IS NOT sales.type OR
+               excluded.user_id IS NOT sales.user_id OR excluded.customer_id IS NOT sales.customer_id OR
+               excluded.supplier_id IS NOT sales.supplier_id OR excluded.subtotal IS NOT sales.subtotal OR
+               excluded.tax IS NOT sales.tax OR excluded.discount IS NOT sales.discount OR
+               excluded.total IS NOT sales.total OR excluded.payment_method IS NOT sales.payment_method OR
+               excluded.payment_status IS NOT sales.payment_status OR excluded.notes IS NOT sales.notes OR
+               excluded.created_at IS NOT sales.created_at OR excluded.is_deleted IS NOT sales.is_deleted)
         """;
     private static final String GET_PURCHASE_HISTORY_FOR_CUSTOMER_SQL = """
     SELECT s.created_at, s.total, COUNT(si.id) AS item_count
@@ -92,7 +113,31 @@ public class SaleDAO {
     ORDER BY s.created_at DESC
 """;
 
-    private static final String MARK_SYNCED_SQL = "UPDATE sales SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE sales SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<SaleDTO> ROW_MAPPER = RowMapper.of(SaleDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("type", (d, rs, i) -> d.setType(rs.getString(i)))
+            .column("user_id", (d, rs, i) -> d.setUserId(rs.getLong(i)))
+            .column("customer_id", (d, rs, i) -> d.setCustomerId(RowMapper.nullableLong(rs, i)))
+            .column("supplier_id", (d, rs, i) -> d.setSupplierId(RowMapper.nullableLong(rs, i)))
+            .column("subtotal", (d, rs, i) -> d.setSubtotal(rs.getDouble(i)))
+            .column("tax", (d, rs, i) -> d.setTax(rs.getDouble(i)))
+            .column("discount", (d, rs, i) -> d.setDiscount(rs.getDouble(i)))
+            .column("total", (d, rs, i) -> d.setTotal(rs.getDouble(i)))
+            .column("payment_method", (d, rs, i) -> d.setPaymentMethod(rs.getString(i)))
+            .column("payment_status", (d, rs, i) -> d.setPaymentStatus(rs.getString(i)))
+            .column("notes", (d, rs, i) -> d.setNotes(rs.getString(i)))
+            .column("created_at", (d, rs, i) -> d.setCreatedAt(RowMapper.utc(rs, i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            // These UUID columns only exist in GET_UNSYNCED queries
+            .optional("customer_uuid", (d, rs, i) -> d.setCustomerUuid(rs.getString(i)))
+            .optional("supplier_uuid", (d, rs, i) -> d.setSupplierUuid(rs.getString(i)))
+            .build();
 
 
     /**
@@ -115,7 +160,7 @@ public class SaleDAO {
             ps.setDouble(idx++, dto.getTax());
             ps.setDouble(idx++, dto.getDiscount());
             ps.setDouble(idx++, dto.getTotal());
-            //payment_method in INSERT_TRANSACTIONAL_SQL, adjust if needed
+            ps.setString(idx++, dto.getPaymentMethod());
             ps.setString(idx++, dto.getPaymentStatus());
             ps.setString(idx++, dto.getNotes());
             ps.setString(idx++, UUID.randomUUID().toString());
@@ -206,8 +251,9 @@ public class SaleDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SaleDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                sales.add(mapToDTO(rs));
+                sales.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced sales for tenant: " + tenantId, e);
@@ -215,6 +261,32 @@ public class SaleDAO {
         return sales;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<SaleDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<SaleDTO> sales = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return sales;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SaleDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                sales.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced sales by ID for tenant: " + tenantId, e);
+        }
+        return sales;
+    }
+
     /**
      * Retrieves all unsynced sales/purchases of a specific type.
      * @param type The transaction type (e.g., "sale", "purchase").
@@ -228,8 +300,9 @@ public class SaleDAO {
             ps.setString(1, type);
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SaleDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                sales.add(mapToDTO(rs));
+                sales.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced sales by type '" + type + "' for tenant: " + tenantId, e);
@@ -250,7 +323,7 @@ public class SaleDAO {
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToDTO(rs);
+                return ROW_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get sale by ID: " + saleId, e);
@@ -271,8 +344,9 @@ public class SaleDAO {
             ps.setString(1, type);
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SaleDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                sales.add(mapToDTO(rs));
+                sales.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get sales by type '" + type + "' for tenant: " + tenantId, e);
@@ -283,12 +357,40 @@ public class SaleDAO {
     /**
      * Inserts or updates a sale from a remote source, marking it as synced.
      * @param dto The complete sale data from the remote source.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(SaleDTO dto) {
+    public boolean upsertRemote(SaleDTO dto) {
+        if (!sanitizeRemote(dto)) {
+            return true;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
+            bindUpsertRemote(ps, dto);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to upsert remote sale with UUID: " + dto.getUuid(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies a chunk of remote sales in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<SaleDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("sales", UPSERT_REMOTE_SQL, dtos, this::sanitizeRemote, SaleDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private boolean sanitizeRemote(SaleDTO dto) {
         // --- BEGIN DTO SANITIZATION BLOCK ---
         if (dto == null || dto.getUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert a null sale or a sale with a null UUID. Aborting operation.");
-            return;
+            return false;
         }
 
         // Sanitize NOT NULL fields to prevent database constraint violations or NullPointerExceptions.
@@ -315,42 +417,27 @@ public class SaleDAO {
             dto.setLastUpdatedAt(OffsetDateTime.now(ZoneOffset.UTC));
         }
         // --- END DTO SANITIZATION BLOCK ---
+        return true;
+    }
 
-        // The original UPSERT_REMOTE_SQL is missing `payment_method`. I've added it.
-        final String sql = """
-            INSERT INTO sales (uuid, tenant_id, type, user_id, customer_id, supplier_id, subtotal, tax, discount, total, payment_method, payment_status,
-                               notes, created_at, last_updated_at, is_deleted, is_synced)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
-            ON CONFLICT(uuid) DO UPDATE SET
-                tenant_id = excluded.tenant_id, type = excluded.type, user_id = excluded.user_id, customer_id = excluded.customer_id, supplier_id = excluded.supplier_id,
-                subtotal = excluded.subtotal, tax = excluded.tax, discount = excluded.discount, total = excluded.total, payment_method = excluded.payment_method,
-                payment_status = excluded.payment_status, notes = excluded.notes, created_at = excluded.created_at, last_updated_at = excluded.last_updated_at,
-                is_deleted = excluded.is_deleted, is_synced = true
-            """;
-
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            int idx = 1;
-            ps.setString(idx++, dto.getUuid());
-            ps.setString(idx++, dto.getTenantId());
-            ps.setString(idx++, dto.getType());
-            ps.setLong(idx++, dto.getUserId());
-            ps.setObject(idx++, dto.getCustomerId(), Types.BIGINT);
-            ps.setObject(idx++, dto.getSupplierId(), Types.BIGINT);
-            ps.setDouble(idx++, dto.getSubtotal());
-            ps.setDouble(idx++, dto.getTax());
-            ps.setDouble(idx++, dto.getDiscount());
-            ps.setDouble(idx++, dto.getTotal());
-            ps.setString(idx++, dto.getPaymentMethod()); // This field was missing from the original query string
-            ps.setString(idx++, dto.getPaymentStatus());
-            ps.setString(idx++, dto.getNotes());
-            ps.setTimestamp(idx++, Timestamp.valueOf(dto.getCreatedAt().toLocalDateTime()));
-            ps.setTimestamp(idx++, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(idx, dto.isDeleted());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to upsert remote sale with UUID: " + dto.getUuid(), e);
-        }
+    private void bindUpsertRemote(PreparedStatement ps, SaleDTO dto) throws SQLException {
+        int idx = 1;
+        ps.setString(idx++, dto.getUuid());
+        ps.setString(idx++, dto.getTenantId());
+        ps.setString(idx++, dto.getType());
+        ps.setLong(idx++, dto.getUserId());
+        ps.setObject(idx++, dto.getCustomerId(), Types.BIGINT);
+        ps.setObject(idx++, dto.getSupplierId(), Types.BIGINT);
+        ps.setDouble(idx++, dto.getSubtotal());
+        ps.setDouble(idx++, dto.getTax());
+        ps.setDouble(idx++, dto.getDiscount());
+        ps.setDouble(idx++, dto.getTotal());
+        ps.setString(idx++, dto.getPaymentMethod());
+        ps.setString(idx++, dto.getPaymentStatus());
+        ps.setString(idx++, dto.getNotes());
+        ps.setTimestamp(idx++, Timestamp.from(dto.getCreatedAt().toInstant()));
+        ps.setTimestamp(idx++, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(idx, dto.isDeleted());
     }
 
     /**
@@ -361,9 +448,8 @@ public class SaleDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark sale as synced: " + id, e);
@@ -371,67 +457,18 @@ public class SaleDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link SaleDTO} object.
-     * @param rs The ResultSet to map.
-     * @return A populated SaleDTO object.
-     * @throws SQLException if a database access error occurs.
-     */
-    private SaleDTO mapToDTO(ResultSet rs) throws SQLException {
-        SaleDTO s = new SaleDTO();
-        s.setId(rs.getLong("id"));
-        s.setUuid(rs.getString("uuid"));
-        s.setTenantId(rs.getString("tenant_id"));
-        s.setType(rs.getString("type"));
-        s.setUserId(rs.getLong("user_id"));
-        s.setCustomerId(rs.getObject("customer_id", Long.class));
-        s.setSupplierId(rs.getObject("supplier_id", Long.class));
-        s.setSubtotal(rs.getDouble("subtotal"));
-        s.setTax(rs.getDouble("tax"));
-        s.setDiscount(rs.getDouble("discount"));
-        s.setTotal(rs.getDouble("total"));
-        s.setPaymentMethod(rs.getString("payment_method"));
-        s.setPaymentStatus(rs.getString("payment_status"));
-        s.setNotes(rs.getString("notes"));
-
-        Timestamp createdAt = rs.getTimestamp("created_at");
-        if (createdAt != null) {
-            s.setCreatedAt(createdAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-        Timestamp lastUpdatedAt = rs.getTimestamp("last_updated_at");
-        if (lastUpdatedAt != null) {
-            s.setLastUpdatedAt(lastUpdatedAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-
-        s.setIsSynced(rs.getInt("is_synced"));
-        s.setDeleted(rs.getBoolean("is_deleted"));
-
-        // These UUID columns only exist in GET_UNSYNCED queries
-        if (hasColumn(rs, "customer_uuid")) {
-            s.setCustomerUuid(rs.getString("customer_uuid"));
-        }
-        if (hasColumn(rs, "supplier_uuid")) {
-            s.setSupplierUuid(rs.getString("supplier_uuid"));
-        }
-
-        return s;
-    }
-
-    /**
-     * Checks if a column exists in the ResultSet to avoid errors in mapToDTO.
-     * @param rs The ResultSet to check.
-     * @param columnName The name of the column.
-     * @return True if the column exists, false otherwise.
-     * @throws SQLException if metadata cannot be accessed.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded sales.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private boolean hasColumn(ResultSet rs, String columnName) throws SQLException {
-        ResultSetMetaData rsmd = rs.getMetaData();
-        int columns = rsmd.getColumnCount();
-        for (int x = 1; x <= columns; x++) {
-            if (columnName.equalsIgnoreCase(rsmd.getColumnName(x))) {
-                return true;
-            }
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("sales", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " sales as synced", e);
         }
-        return false;
     }
     /**
      * Retrieves a summarized purchase history for a specific customer.
@@ -470,8 +507,9 @@ public class SaleDAO {
             ps.setLong(1, customerId);
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SaleDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                sales.add(mapToDTO(rs));
+                sales.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get sales for customer: " + customerId, e);
@@ -2,6 +2,7 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.SaleItemDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
@@ -9,7 +10,10 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,6 +46,17 @@ public class SaleItemDAO {
         LEFT JOIN products p ON si.product_id = p.id
         WHERE si.tenant_id = ? AND si.is_synced = false
         """;
+    private static final String GET_UNSYNCED_BY_IDS_SQL = """
+        SELECT si.id, si.uuid, si.tenant_id, si.sale_id, si.product_id, si.supplier_product_code,
+               si.quantity, si.unit_price, si.cost_at_sale, si.tax_rate, si.discount, si.total,
+               si.last_updated_at, si.is_synced, si.is_deleted,
+               s.uuid AS sale_uuid,
+               p.uuid AS product_uuid
+        FROM sale_items si
+        LEFT JOIN sales s ON si.sale_id = s.id
+        LEFT JOIN products p ON si.product_id = p.id
+        WHERE si.id IN (SELECT value FROM json_each(?)) AND +si.tenant_id = ? AND si.is_synced = false
+        """;
     private static final String GET_COUNT_BY_SALE_ID_SQL = "SELECT COUNT(*) FROM sale_items WHERE sale_id = ? AND tenant_id = ? AND is_deleted = false";
 
     private static final String INSERT_TRANSACTIONAL_SQL = """
@@ -50,21 +65,52 @@ public class SaleItemDAO {
         VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false, false)
         """;
 
+    private static final String GET_IDS_BY_SALE_ID_SQL = "SELECT id, uuid FROM sale_items WHERE sale_id = ? AND tenant_id = ?";
+
     private static final String UPSERT_REMOTE_SQL = """
         INSERT INTO sale_items (uuid, tenant_id, sale_id, product_id, supplier_product_code,
                                 quantity, unit_price, cost_at_sale, tax_rate, discount, total, last_updated_at, is_deleted, is_synced)
-        VALUES (?, ?, (SELECT id FROM sales WHERE uuid = ?), (SELECT id FROM products WHERE uuid = ?), ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
         ON CONFLICT(uuid) DO UPDATE SET
             tenant_id = excluded.tenant_id,
-            sale_id = (SELECT id FROM sales WHERE uuid = ?),
-            product_id = (SELECT id FROM products WHERE uuid = ?),
+            sale_id = excluded.sale_id,
+            product_id = excluded.product_id,
             supplier_product_code = excluded.supplier_product_code,
             quantity = excluded.quantity, unit_price = excluded.unit_price, cost_at_sale = excluded.cost_at_sale, tax_rate = excluded.tax_rate,
             discount = excluded.discount, total = excluded.total, last_updated_at = excluded.last_updated_at, is_deleted = excluded.is_deleted,
             is_synced = true
+        WHERE (sale_items.last_updated_at IS NULL OR excluded.last_updated_at > sale_items.last_updated_at)
+          AND (excluded.tenant_id IS NOT sale_items.tenant_id OR excluded.sale_id IS NOT sale_items.sale_id OR
+               excluded.product_id IS NOT sale_items.product_id OR
+               excluded.supplier_product_code IS NOT sale_items.supplier_product_code OR
+               excluded.quantity IS NOT sale_items.quantity OR excluded.unit_price IS NOT sale_items.unit_price OR
+               excluded.cost_at_sale IS NOT sale_items.cost_at_sale OR excluded.tax_rate IS NOT sale_items.tax_rate OR
+               excluded.discount IS NOT sale_items.discount OR excluded.total IS NOT sale_items.total OR
+               excluded.is_deleted IS NOT sale_items.is_deleted)
         """;
 
-    private static final String MARK_SYNCED_SQL = "UPDATE sale_items SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE sale_items SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<SaleItemDTO> ROW_MAPPER = RowMapper.of(SaleItemDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("sale_id", (d, rs, i) -> d.setSaleId(rs.getLong(i)))
+            .column("product_id", (d, rs, i) -> d.setProductId(rs.getLong(i)))
+            .column("supplier_product_code", (d, rs, i) -> d.setSupplierProductCode(rs.getString(i)))
+            .column("quantity", (d, rs, i) -> d.setQuantity(rs.getDouble(i)))
+            .column("unit_price", (d, rs, i) -> d.setUnitPrice(rs.getDouble(i)))
+            .column("cost_at_sale", (d, rs, i) -> d.setCostAtSale(rs.getDouble(i)))
+            .column("tax_rate", (d, rs, i) -> d.setTaxRate(rs.getDouble(i)))
+            .column("discount", (d, rs, i) -> d.setDiscount(rs.getDouble(i)))
+            .column("total", (d, rs, i) -> d.setTotal(rs.getDouble(i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            // These UUID columns only exist in GET_UNSYNCED query
+            .optional("sale_uuid", (d, rs, i) -> d.setSaleUuid(rs.getString(i)))
+            .optional("product_uuid", (d, rs, i) -> d.setProductUuid(rs.getString(i)))
+            .build();
 
 
     /**
@@ -79,19 +125,7 @@ public class SaleItemDAO {
      */
     public long insertTransactional(Connection conn, SaleItemDTO dto, long saleId, String tenantId) throws SQLException {
         try (PreparedStatement ps = conn.prepareStatement(INSERT_TRANSACTIONAL_SQL, Statement.RETURN_GENERATED_KEYS)) {
-            int i = 1;
-            ps.setLong(i++, saleId);
-            ps.setLong(i++, dto.getProductId());
-            ps.setString(i++, dto.getSupplierProductCode());
-            ps.setDouble(i++, dto.getQuantity());
-            ps.setDouble(i++, dto.getUnitPrice());
-            ps.setDouble(i++, dto.getTaxRate());
-            ps.setDouble(i++, dto.getDiscount());
-            ps.setDouble(i++, dto.getTotal());
-            ps.setDouble(i++, dto.getCostAtSale());
-            ps.setString(i++, UUID.randomUUID().toString());
-            ps.setString(i++, tenantId);
-            ps.setTimestamp(i, Timestamp.valueOf(LocalDateTime.now()));
+            bindInsert(ps, dto, saleId, UUID.randomUUID().toString(), tenantId, Timestamp.valueOf(LocalDateTime.now()));
 
             int affectedRows = ps.executeUpdate();
             if (affectedRows == 0) {
@@ -108,23 +142,113 @@ public class SaleItemDAO {
         }
     }
 
+    /**
+     * Inserts all items of a sale as one JDBC batch using a provided transactional connection.
+     * The SQLite driver only reports the last generated key of a batch, so each row gets its UUID up front
+     * and the local IDs are read back with one query on the sale afterwards.
+     *
+     * @param conn     The transaction's connection object.
+     * @param items    The sale items, in invoice order.
+     * @param saleId   The ID of the parent sale record.
+     * @param tenantId The ID of the tenant.
+     * @return The generated local IDs, in the same order as {@code items}.
+     * @throws SQLException if any insert fails, allowing the caller to roll back the transaction.
+     */
+    public long[] insertBatchTransactional(Connection conn, List<SaleItemDTO> items, long saleId, String tenantId) throws SQLException {
+        String[] uuids = new String[items.size()];
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_TRANSACTIONAL_SQL)) {
+            for (int n = 0; n < items.size(); n++) {
+                uuids[n] = UUID.randomUUID().toString();
+                bindInsert(ps, items.get(n), saleId, uuids[n], tenantId, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        Map<String, Long> idsByUuid = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(GET_IDS_BY_SALE_ID_SQL)) {
+            ps.setLong(1, saleId);
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                idsByUuid.put(rs.getString(2), rs.getLong(1));
+            }
+        }
+        long[] ids = new long[uuids.length];
+        for (int n = 0; n < uuids.length; n++) {
+            Long id = idsByUuid.get(uuids[n]);
+            if (id == null) {
+                throw new SQLException("Creating sale item failed, no ID obtained for line " + (n + 1) + ".");
+            }
+            ids[n] = id;
+            UuidCache.SALE_ITEMS.remember(id, uuids[n]);
+        }
+        return ids;
+    }
+
+    private void bindInsert(PreparedStatement ps, SaleItemDTO dto, long saleId, String uuid, String tenantId, Timestamp now) throws SQLException {
+        int i = 1;
+        ps.setLong(i++, saleId);
+        ps.setLong(i++, dto.getProductId());
+        ps.setString(i++, dto.getSupplierProductCode());
+        ps.setDouble(i++, dto.getQuantity());
+        ps.setDouble(i++, dto.getUnitPrice());
+        ps.setDouble(i++, dto.getTaxRate());
+        ps.setDouble(i++, dto.getDiscount());
+        ps.setDouble(i++, dto.getTotal());
+        ps.setDouble(i++, dto.getCostAtSale());
+        ps.setString(i++, uuid);
+        ps.setString(i++, tenantId);
+        ps.setTimestamp(i, now);
+    }
+
     /**
      * Inserts or updates a sale item from a remote source, marking it as synced.
-     * Relies on subqueries to find local IDs from UUIDs for the parent sale and product.
+     * The local IDs of the parent sale and product are looked up from their UUIDs in {@link UuidCache} and bound
+     * as parameters.
      *
      * @param dto The DTO from the remote source. Must contain sale and product UUIDs.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(SaleItemDTO dto) {
+    public boolean upsertRemote(SaleItemDTO dto) {
+        if (!sanitizeRemote(dto)) {
+            return true;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
+            bindUpsertRemote(ps, dto);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to upsert remote sale item with UUID: " + dto.getUuid(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies a chunk of remote sale items in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<SaleItemDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("sale_items", UPSERT_REMOTE_SQL, dtos, this::sanitizeRemote, SaleItemDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private boolean sanitizeRemote(SaleItemDTO dto) {
         // --- BEGIN DTO SANITIZATION BLOCK ---
         if (dto == null || dto.getUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert a null sale item or an item with a null UUID. Aborting operation.");
-            return;
+            return false;
         }
 
         // A sale item must belong to a sale and a product. Abort if these critical foreign key UUIDs are missing.
         if (dto.getSaleUuid() == null || dto.getProductUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert sale item UUID {0} with a null sale_uuid or product_uuid. Aborting operation.", dto.getUuid());
-            return;
+            return false;
         }
 
         if (dto.getTenantId() == null) {
@@ -136,39 +260,31 @@ public class SaleItemDAO {
         // If they were missing from a remote source, the deserializer would have already defaulted them to 0.0.
         // Therefore, null checks are not necessary for them here.
 
-        // Prevent NullPointerException on .toLocalDateTime() later in the method.
+        // Prevent NullPointerException on .toInstant() later in the method.
         if (dto.getLastUpdatedAt() == null) {
             LOGGER.log(Level.WARNING, "Sanitizing null last_updated_at to current UTC time for sale item UUID: {0}", dto.getUuid());
             dto.setLastUpdatedAt(OffsetDateTime.now(ZoneOffset.UTC));
         }
         // --- END DTO SANITIZATION BLOCK ---
+        return true;
+    }
 
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            int i = 1;
-            // INSERT part
-            ps.setString(i++, dto.getUuid());
-            ps.setString(i++, dto.getTenantId());
-            ps.setString(i++, dto.getSaleUuid());
-            ps.setString(i++, dto.getProductUuid());
-            ps.setString(i++, dto.getSupplierProductCode());
-            ps.setDouble(i++, dto.getQuantity());
-            ps.setDouble(i++, dto.getUnitPrice());
-            ps.setDouble(i++, dto.getCostAtSale());
-            ps.setDouble(i++, dto.getTaxRate());
-            ps.setDouble(i++, dto.getDiscount());
-            ps.setDouble(i++, dto.getTotal());
-            ps.setTimestamp(i++, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(i++, dto.isDeleted());
-
-            // ON CONFLICT UPDATE part (re-binding UUIDs for subqueries)
-            ps.setString(i++, dto.getSaleUuid());
-            ps.setString(i, dto.getProductUuid());
-
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to upsert remote sale item with UUID: " + dto.getUuid(), e);
-        }
+    private void bindUpsertRemote(PreparedStatement ps, SaleItemDTO dto) throws SQLException {
+        int i = 1;
+        ps.setString(i++, dto.getUuid());
+        ps.setString(i++, dto.getTenantId());
+        // Foreign keys resolved from UUIDs in memory rather than by subqueries
+        ps.setObject(i++, UuidCache.SALES.idFor(dto.getSaleUuid()), Types.BIGINT);
+        ps.setObject(i++, UuidCache.PRODUCTS.idFor(dto.getProductUuid()), Types.BIGINT);
+        ps.setString(i++, dto.getSupplierProductCode());
+        ps.setDouble(i++, dto.getQuantity());
+        ps.setDouble(i++, dto.getUnitPrice());
+        ps.setDouble(i++, dto.getCostAtSale());
+        ps.setDouble(i++, dto.getTaxRate());
+        ps.setDouble(i++, dto.getDiscount());
+        ps.setDouble(i++, dto.getTotal());
+        ps.setTimestamp(i++, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(i, dto.isDeleted());
     }
 
     /**
@@ -185,8 +301,9 @@ public class SaleItemDAO {
             ps.setLong(1, saleId);
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SaleItemDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                items.add(mapToDTO(rs));
+                items.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get sale items for sale ID: " + saleId, e);
@@ -206,8 +323,9 @@ public class SaleItemDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SaleItemDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                items.add(mapToDTO(rs));
+                items.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced sale items for tenant: " + tenantId, e);
@@ -215,6 +333,32 @@ public class SaleItemDAO {
         return items;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<SaleItemDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<SaleItemDTO> items = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return items;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SaleItemDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                items.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced sale items by ID for tenant: " + tenantId, e);
+        }
+        return items;
+    }
+
     /**
      * Marks a specific sale item as synced.
      *
@@ -224,9 +368,8 @@ public class SaleItemDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark sale item as synced: " + id, e);
@@ -234,59 +377,17 @@ public class SaleItemDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link SaleItemDTO} object.
-     *
-     * @param rs The ResultSet to map.
-     * @return A populated SaleItemDTO object.
-     * @throws SQLException if a database access error occurs.
-     */
-    private SaleItemDTO mapToDTO(ResultSet rs) throws SQLException {
-        SaleItemDTO dto = new SaleItemDTO();
-        dto.setId(rs.getLong("id"));
-        dto.setUuid(rs.getString("uuid"));
-        dto.setTenantId(rs.getString("tenant_id"));
-        dto.setSaleId(rs.getLong("sale_id"));
-        dto.setProductId(rs.getLong("product_id"));
-        dto.setSupplierProductCode(rs.getString("supplier_product_code"));
-        dto.setQuantity(rs.getDouble("quantity"));
-        dto.setUnitPrice(rs.getDouble("unit_price"));
-        dto.setCostAtSale(rs.getDouble("cost_at_sale"));
-        dto.setTaxRate(rs.getDouble("tax_rate"));
-        dto.setDiscount(rs.getDouble("discount"));
-        dto.setTotal(rs.getDouble("total"));
-        Timestamp lastUpdatedAt = rs.getTimestamp("last_updated_at");
-        if (lastUpdatedAt != null) {
-            dto.setLastUpdatedAt(lastUpdatedAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-        dto.setIsSynced(rs.getInt("is_synced"));
-        dto.setDeleted(rs.getBoolean("is_deleted"));
-
-        // These UUID columns only exist in GET_UNSYNCED query
-        if (hasColumn(rs, "sale_uuid")) {
-            dto.setSaleUuid(rs.getString("sale_uuid"));
-        }
-        if (hasColumn(rs, "product_uuid")) {
-            dto.setProductUuid(rs.getString("product_uuid"));
-        }
-
-        return dto;
-    }
-
-    /**
-     * Checks if a column exists in the ResultSet to avoid errors in mapToDTO.
-     * @param rs The ResultSet to check.
-     * @param columnName The name of the column.
-     * @return True if the column exists, false otherwise.
-     * @throws SQLException if metadata cannot be accessed.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded sale items.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private boolean hasColumn(ResultSet rs, String columnName) throws SQLException {
-        ResultSetMetaData rsmd = rs.getMetaData();
-        int columns = rsmd.getColumnCount();
-        for (int x = 1; x <= columns; x++) {
-            if (columnName.equalsIgnoreCase(rsmd.getColumnName(x))) {
-                return true;
-            }
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("sale_items", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " sale items as synced", e);
         }
-        return false;
     }
 }
\ No newline at end of file
@@ -2,14 +2,16 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.SettingsDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -32,6 +34,7 @@ public class SettingsDAO {
     private static final String GET_ALL_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_deleted = false";
 
     private static final String GET_UNSYNCED_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_synced = false";
+    private static final String GET_UNSYNCED_BY_IDS_SQL = BASE_SELECT_SQL + " WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ? AND is_synced = false";
 
     private static final String UPSERT_LOCAL_SQL = """
         INSERT INTO settings(tenant_id, setting_key, setting_value, uuid, last_updated_at, is_synced, is_deleted)
@@ -54,12 +57,27 @@ public class SettingsDAO {
             last_updated_at = excluded.last_updated_at,
             is_deleted = excluded.is_deleted,
             is_synced = true
+        WHERE (settings.last_updated_at IS NULL OR excluded.last_updated_at > settings.last_updated_at)
+          AND (excluded.tenant_id IS NOT settings.tenant_id OR excluded.setting_key IS NOT settings.setting_key OR
+               excluded.setting_value IS NOT settings.setting_value OR
+               excluded.is_deleted IS NOT settings.is_deleted)
         """;
 
-    private static final String MARK_SYNCED_SQL = "UPDATE settings SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE settings SET is_synced = true WHERE id = ? AND tenant_id = ?";
 
     private static final String MARK_DELETED_SQL = "UPDATE settings SET is_deleted = true, is_synced = false, last_updated_at = ? WHERE setting_key = ? AND tenant_id = ?";
 
+    private static final RowMapper<SettingsDTO> ROW_MAPPER = RowMapper.of(SettingsDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("setting_key", (d, rs, i) -> d.setSettingKey(rs.getString(i)))
+            .column("setting_value", (d, rs, i) -> d.setSettingValue(rs.getString(i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            .build();
+
 
     /**
      * Retrieves all non-deleted settings for a specific tenant.
@@ -73,8 +91,9 @@ public class SettingsDAO {
              PreparedStatement ps = conn.prepareStatement(GET_ALL_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SettingsDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                settings.add(mapToDTO(rs));
+                settings.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get all settings for tenant: " + tenantId, e);
@@ -95,8 +114,9 @@ public class SettingsDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SettingsDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                settings.add(mapToDTO(rs));
+                settings.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced settings for tenant: " + tenantId, e);
@@ -104,6 +124,32 @@ public class SettingsDAO {
         return settings;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<SettingsDTO> getUnsyncedSettingsByIds(Collection<Long> ids, String tenantId) {
+        List<SettingsDTO> settings = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return settings;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SettingsDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                settings.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced settings by ID for tenant: " + tenantId, e);
+        }
+        return settings;
+    }
+
     /**
      * Inserts or updates a setting from a local change (e.g., user input).
      * The record is marked as unsynced. A new UUID is generated for new records.
@@ -133,24 +179,42 @@ public class SettingsDAO {
      * The record is marked as synced. Conflict is resolved based on the UUID.
      *
      * @param dto The complete setting data from the remote source.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(SettingsDTO dto) {
+    public boolean upsertRemote(SettingsDTO dto) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-
-            ps.setString(1, dto.getUuid());
-            ps.setString(2, dto.getTenantId());
-            ps.setString(3, dto.getSettingKey());
-            ps.setString(4, dto.getSettingValue());
-            ps.setTimestamp(5, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(6, dto.isDeleted());
-
+            bindUpsertRemote(ps, dto);
             ps.executeUpdate();
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to upsert remote setting with UUID: " + dto.getUuid(), e);
+            return false;
         }
     }
 
+    /**
+     * Applies a chunk of remote settings in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<SettingsDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("settings", UPSERT_REMOTE_SQL, dtos, Objects::nonNull, SettingsDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private void bindUpsertRemote(PreparedStatement ps, SettingsDTO dto) throws SQLException {
+
+        ps.setString(1, dto.getUuid());
+        ps.setString(2, dto.getTenantId());
+        ps.setString(3, dto.getSettingKey());
+        ps.setString(4, dto.getSettingValue());
+        ps.setTimestamp(5, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(6, dto.isDeleted());
+    }
+
     /**
      * Marks a specific setting as synced in the database.
      *
@@ -160,15 +224,29 @@ public class SettingsDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark setting as synced, id: " + id, e);
         }
     }
 
+    /**
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded settings.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
+     */
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("settings", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " settings as synced", e);
+        }
+    }
+
     /**
      * Performs a soft delete on a setting, marking it as deleted and unsynced.
      *
@@ -186,30 +264,4 @@ public class SettingsDAO {
             LOGGER.log(Level.SEVERE, "Failed to mark setting as deleted, key: " + settingKey, e);
         }
     }
-
-    /**
-     * Maps a {@link ResultSet} row to a {@link SettingsDTO} object.
-     *
-     * @param rs The ResultSet to map.
-     * @return A populated SettingsDTO object.
-     * @throws SQLException if a database access error occurs.
-     */
-    private SettingsDTO mapToDTO(ResultSet rs) throws SQLException {
-        SettingsDTO dto = new SettingsDTO();
-        dto.setId(rs.getLong("id"));
-        dto.setUuid(rs.getString("uuid"));
-        dto.setTenantId(rs.getString("tenant_id"));
-        dto.setSettingKey(rs.getString("setting_key"));
-        dto.setSettingValue(rs.getString("setting_value"));
-
-        Timestamp ts = rs.getTimestamp("last_updated_at");
-        if (ts != null) {
-            // Assuming database stores timestamps in UTC
-            dto.setLastUpdatedAt(ts.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-
-        dto.setIsSynced(rs.getInt("is_synced"));
-        dto.setDeleted(rs.getBoolean("is_deleted"));
-        return dto;
-    }
 }
\ No newline at end of file
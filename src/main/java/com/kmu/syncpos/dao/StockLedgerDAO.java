@@ -2,6 +2,7 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.StockLedgerDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
@@ -9,6 +10,7 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -44,6 +46,17 @@ public class StockLedgerDAO {
         LEFT JOIN sale_items si ON sl.sale_item_id = si.id
         WHERE sl.tenant_id = ? AND sl.is_synced = false
         """;
+    private static final String GET_UNSYNCED_BY_IDS_SQL = """
+        SELECT sl.id, sl.uuid, sl.tenant_id, sl.product_id, sl.quantity_delta, sl.reason,
+               sl.sale_item_id, sl.user_id, sl.notes, sl.created_at, sl.last_updated_at,
+               sl.is_deleted, sl.is_synced,
+               p.uuid AS product_uuid,
+               si.uuid AS sale_item_uuid
+        FROM stock_ledger sl
+        LEFT JOIN products p ON sl.product_id = p.id
+        LEFT JOIN sale_items si ON sl.sale_item_id = si.id
+        WHERE sl.id IN (SELECT value FROM json_each(?)) AND +sl.tenant_id = ? AND sl.is_synced = false
+        """;
 
     private static final String INSERT_TRANSACTIONAL_SQL = """
         INSERT INTO stock_ledger(product_id, quantity_delta, reason, sale_item_id, user_id, notes,
@@ -54,23 +67,49 @@ public class StockLedgerDAO {
     private static final String UPSERT_REMOTE_SQL = """
         INSERT INTO stock_ledger (uuid, tenant_id, product_id, quantity_delta, reason, sale_item_id, user_id, notes,
                                   created_at, last_updated_at, is_deleted, is_synced)
-        VALUES (?, ?, (SELECT id FROM products WHERE uuid = ?), ?, ?,
-                (SELECT id FROM sale_items WHERE uuid = ?), ?, ?, ?, ?, ?, true)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
         ON CONFLICT(uuid) DO UPDATE SET
             tenant_id = excluded.tenant_id,
-            product_id = (SELECT id FROM products WHERE uuid = ?),
+            product_id = excluded.product_id,
             quantity_delta = excluded.quantity_delta,
             reason = excluded.reason,
-            sale_item_id = (SELECT id FROM sale_items WHERE uuid = ?),
+            sale_item_id = excluded.sale_item_id,
             user_id = excluded.user_id,
             notes = excluded.notes,
             created_at = excluded.created_at,
             last_updated_at = excluded.last_updated_at,
             is_deleted = excluded.is_deleted,
             is_synced = true
+        WHERE (stock_ledger.last_updated_at IS NULL OR excluded.last_updated_at > stock_ledger.last_updated_at)
+          AND (excluded.tenant_id IS NOT stock_ledger.tenant_id OR
+               excluded.product_id IS NOT stock_ledger.product_id OR
+               excluded.quantity_delta IS NOT stock_ledger.quantity_delta OR
+               excluded.reason IS NOT stock_ledger.reason OR excluded.sale_item_id IS NOT stock_ledger.sale_item_id OR
+               excluded.user_id IS NOT stock_ledger.user_id OR excluded.notes IS NOT stock_ledger.notes OR
+               excluded.created_at IS NOT stock_ledger.created_at OR
+               excluded.is_deleted IS NOT stock_ledger.is_deleted)
         """;
 
-    private static final String MARK_SYNCED_SQL = "UPDATE stock_ledger SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE stock_ledger SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<StockLedgerDTO> ROW_MAPPER = RowMapper.of(StockLedgerDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("product_id", (d, rs, i) -> d.setProductId(rs.getLong(i)))
+            .column("quantity_delta", (d, rs, i) -> d.setQuantityDelta(rs.getDouble(i)))
+            .column("reason", (d, rs, i) -> d.setReason(rs.getString(i)))
+            .column("sale_item_id", (d, rs, i) -> d.setSaleItemId(RowMapper.nullableLong(rs, i)))
+            .column("user_id", (d, rs, i) -> d.setUserId(rs.getLong(i)))
+            .column("notes", (d, rs, i) -> d.setNotes(rs.getString(i)))
+            .column("created_at", (d, rs, i) -> d.setCreatedAt(RowMapper.utc(rs, i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            // These UUID columns only exist in GET_UNSYNCED query
+            .optional("product_uuid", (d, rs, i) -> d.setProductUuid(rs.getString(i)))
+            .optional("sale_item_uuid", (d, rs, i) -> d.setSaleItemUuid(rs.getString(i)))
+            .build();
 
 
     /**
@@ -83,38 +122,89 @@ public class StockLedgerDAO {
      */
     public void insertTransactional(Connection conn, StockLedgerDTO dto, String tenantId) throws SQLException {
         try (PreparedStatement ps = conn.prepareStatement(INSERT_TRANSACTIONAL_SQL)) {
-            ps.setLong(1, dto.getProductId());
-            ps.setDouble(2, dto.getQuantityDelta());
-            ps.setString(3, dto.getReason());
-            ps.setObject(4, dto.getSaleItemId(), Types.BIGINT);
-            ps.setLong(5, dto.getUserId());
-            ps.setString(6, dto.getNotes());
-            ps.setString(7, UUID.randomUUID().toString());
-            ps.setString(8, tenantId);
-            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-            ps.setTimestamp(9, now);  // created_at
-            ps.setTimestamp(10, now); // last_updated_at
+            bindInsert(ps, dto, tenantId, Timestamp.valueOf(LocalDateTime.now()));
             ps.executeUpdate();
         }
     }
 
+    /**
+     * Inserts several stock ledger entries as one JDBC batch using a provided transactional connection.
+     *
+     * @param conn     The transaction's connection object.
+     * @param entries  The stock adjustments to insert.
+     * @param tenantId The ID of the tenant.
+     * @throws SQLException if any insert fails, allowing the caller to roll back the transaction.
+     */
+    public void insertBatchTransactional(Connection conn, List<StockLedgerDTO> entries, String tenantId) throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_TRANSACTIONAL_SQL)) {
+            for (StockLedgerDTO dto : entries) {
+                bindInsert(ps, dto, tenantId, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void bindInsert(PreparedStatement ps, StockLedgerDTO dto, String tenantId, Timestamp now) throws SQLException {
+        ps.setLong(1, dto.getProductId());
+        ps.setDouble(2, dto.getQuantityDelta());
+        ps.setString(3, dto.getReason());
+        ps.setObject(4, dto.getSaleItemId(), Types.BIGINT);
+        ps.setLong(5, dto.getUserId());
+        ps.setString(6, dto.getNotes());
+        ps.setString(7, UUID.randomUUID().toString());
+        ps.setString(8, tenantId);
+        ps.setTimestamp(9, now);  // created_at
+        ps.setTimestamp(10, now); // last_updated_at
+    }
+
     /**
      * Inserts or updates a stock ledger entry from a remote source, marking it as synced.
-     * Relies on subqueries to find local IDs from UUIDs for product and the associated sale item.
+     * The local IDs of the product and the associated sale item are looked up from their UUIDs in {@link UuidCache}
+     * and bound as parameters.
      *
      * @param dto The DTO from the remote source. Must contain relevant UUIDs.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(StockLedgerDTO dto) {
+    public boolean upsertRemote(StockLedgerDTO dto) {
+        if (!sanitizeRemote(dto)) {
+            return true;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
+            bindUpsertRemote(ps, dto);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to upsert remote stock ledger entry with UUID: " + dto.getUuid(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies a chunk of remote stock ledger entries in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<StockLedgerDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("stock_ledger", UPSERT_REMOTE_SQL, dtos, this::sanitizeRemote, StockLedgerDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private boolean sanitizeRemote(StockLedgerDTO dto) {
         // --- BEGIN DTO SANITIZATION BLOCK ---
         if (dto == null || dto.getUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert a null stock ledger entry or one with a null UUID. Aborting operation.");
-            return;
+            return false;
         }
 
         // A stock ledger entry MUST be associated with a product. Abort if this critical foreign key is missing.
         if (dto.getProductUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert stock ledger entry UUID {0} with a null product_uuid. Aborting operation.", dto.getUuid());
-            return;
+            return false;
         }
 
         // Sanitize other NOT NULL fields to prevent database constraint violations or NullPointerExceptions.
@@ -128,7 +218,7 @@ public class StockLedgerDAO {
         }
         // Note: The primitive types (quantity_delta, user_id, is_deleted) cannot be null and don't need checks.
 
-        // Prevent NullPointerException on .toLocalDateTime() later in the method for nullable date fields.
+        // Prevent NullPointerException on .toInstant() later in the method for nullable date fields.
         if (dto.getCreatedAt() == null) {
             LOGGER.log(Level.WARNING, "Sanitizing null created_at to current UTC time for stock ledger UUID: {0}", dto.getUuid());
             dto.setCreatedAt(OffsetDateTime.now(ZoneOffset.UTC));
@@ -138,31 +228,23 @@ public class StockLedgerDAO {
             dto.setLastUpdatedAt(OffsetDateTime.now(ZoneOffset.UTC));
         }
         // --- END DTO SANITIZATION BLOCK ---
+        return true;
+    }
 
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            int i = 1;
-            // INSERT part
-            ps.setString(i++, dto.getUuid());
-            ps.setString(i++, dto.getTenantId());
-            ps.setString(i++, dto.getProductUuid());
-            ps.setDouble(i++, dto.getQuantityDelta());
-            ps.setString(i++, dto.getReason());
-            ps.setString(i++, dto.getSaleItemUuid()); // Can be null
-            ps.setLong(i++, dto.getUserId());
-            ps.setString(i++, dto.getNotes());
-            ps.setTimestamp(i++, Timestamp.valueOf(dto.getCreatedAt().toLocalDateTime()));
-            ps.setTimestamp(i++, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(i++, dto.isDeleted());
-
-            // ON CONFLICT UPDATE part (re-binding UUIDs for subqueries)
-            ps.setString(i++, dto.getProductUuid());
-            ps.setString(i, dto.getSaleItemUuid());
-
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to upsert remote stock ledger entry with UUID: " + dto.getUuid(), e);
-        }
+    private void bindUpsertRemote(PreparedStatement ps, StockLedgerDTO dto) throws SQLException {
+        int i = 1;
+        ps.setString(i++, dto.getUuid());
+        ps.setString(i++, dto.getTenantId());
+        // Foreign keys resolved from UUIDs in memory rather than by subqueries
+        ps.setObject(i++, UuidCache.PRODUCTS.idFor(dto.getProductUuid()), Types.BIGINT);
+        ps.setDouble(i++, dto.getQuantityDelta());
+        ps.setString(i++, dto.getReason());
+        ps.setObject(i++, UuidCache.SALE_ITEMS.idFor(dto.getSaleItemUuid()), Types.BIGINT); // Can be null
+        ps.setLong(i++, dto.getUserId());
+        ps.setString(i++, dto.getNotes());
+        ps.setTimestamp(i++, Timestamp.from(dto.getCreatedAt().toInstant()));
+        ps.setTimestamp(i++, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(i, dto.isDeleted());
     }
 
     /**
@@ -178,7 +260,7 @@ public class StockLedgerDAO {
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToDTO(rs);
+                return ROW_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get stock ledger entry by ID: " + id, e);
@@ -198,8 +280,9 @@ public class StockLedgerDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<StockLedgerDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                entries.add(mapToDTO(rs));
+                entries.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced stock ledger entries for tenant: " + tenantId, e);
@@ -207,6 +290,32 @@ public class StockLedgerDAO {
         return entries;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<StockLedgerDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<StockLedgerDTO> entries = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return entries;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<StockLedgerDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                entries.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced stock ledger entries by ID for tenant: " + tenantId, e);
+        }
+        return entries;
+    }
+
     /**
      * Retrieves all non-deleted stock ledger entries for a specific product.
      *
@@ -221,8 +330,9 @@ public class StockLedgerDAO {
             ps.setLong(1, productId);
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<StockLedgerDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                entries.add(mapToDTO(rs));
+                entries.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get ledger entries for product: " + productId, e);
@@ -239,9 +349,8 @@ public class StockLedgerDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark stock ledger entry as synced: " + id, e);
@@ -249,61 +358,17 @@ public class StockLedgerDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link StockLedgerDTO} object.
-     *
-     * @param rs The ResultSet to map.
-     * @return A populated StockLedgerDTO object.
-     * @throws SQLException if a database access error occurs.
-     */
-    private StockLedgerDTO mapToDTO(ResultSet rs) throws SQLException {
-        StockLedgerDTO dto = new StockLedgerDTO();
-        dto.setId(rs.getLong("id"));
-        dto.setUuid(rs.getString("uuid"));
-        dto.setTenantId(rs.getString("tenant_id"));
-        dto.setProductId(rs.getLong("product_id"));
-        dto.setQuantityDelta(rs.getDouble("quantity_delta"));
-        dto.setReason(rs.getString("reason"));
-        dto.setSaleItemId(rs.getObject("sale_item_id", Long.class));
-        dto.setUserId(rs.getLong("user_id"));
-        dto.setNotes(rs.getString("notes"));
-        dto.setDeleted(rs.getBoolean("is_deleted"));
-        dto.setIsSynced(rs.getInt("is_synced"));
-
-        Timestamp createdAt = rs.getTimestamp("created_at");
-        if (createdAt != null) {
-            dto.setCreatedAt(createdAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-        Timestamp lastUpdatedAt = rs.getTimestamp("last_updated_at");
-        if (lastUpdatedAt != null) {
-            dto.setLastUpdatedAt(lastUpdatedAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-
-        // These UUID columns only exist in GET_UNSYNCED query
-        if (hasColumn(rs, "product_uuid")) {
-            dto.setProductUuid(rs.getString("product_uuid"));
-        }
-        if (hasColumn(rs, "sale_item_uuid")) {
-            dto.setSaleItemUuid(rs.getString("sale_item_uuid"));
-        }
-
-        return dto;
-    }
-
-    /**
-     * Checks if a column exists in the ResultSet to avoid errors in mapToDTO.
-     * @param rs The ResultSet to check.
-     * @param columnName The name of the column.
-     * @return True if the column exists, false otherwise.
-     * @throws SQLException if metadata cannot be accessed.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded stock ledger entries.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private boolean hasColumn(ResultSet rs, String columnName) throws SQLException {
-        ResultSetMetaData rsmd = rs.getMetaData();
-        int columns = rsmd.getColumnCount();
-        for (int x = 1; x <= columns; x++) {
-            if (columnName.equalsIgnoreCase(rsmd.getColumnName(x))) {
-                return true;
-            }
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("stock_ledger", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " stock ledger entries as synced", e);
         }
-        return false;
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.SupplierDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
@@ -9,6 +10,7 @@ import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -33,6 +35,7 @@ public class SupplierDAO {
     private static final String GET_ALL_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_deleted = false ORDER BY name";
     private static final String GET_BY_ID_SQL = BASE_SELECT_SQL + " WHERE id = ? AND tenant_id = ? AND is_deleted = false";
     private static final String GET_UNSYNCED_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_synced = false";
+    private static final String GET_UNSYNCED_BY_IDS_SQL = BASE_SELECT_SQL + " WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ? AND is_synced = false";
 
     private static final String CREATE_LOCAL_SQL = """
         INSERT INTO suppliers(name, contact_person, email, phone, address, payment_terms, credit_limit,
@@ -55,10 +58,33 @@ public class SupplierDAO {
             tenant_id = excluded.tenant_id, name = excluded.name, contact_person = excluded.contact_person, email = excluded.email,
             phone = excluded.phone, address = excluded.address, payment_terms = excluded.payment_terms, credit_limit = excluded.credit_limit,
             last_updated_at = excluded.last_updated_at, is_deleted = excluded.is_deleted, is_synced = true
+        WHERE (suppliers.last_updated_at IS NULL OR excluded.last_updated_at > suppliers.last_updated_at)
+          AND (excluded.tenant_id IS NOT suppliers.tenant_id OR excluded.name IS NOT suppliers.name OR
+               excluded.contact_person IS NOT suppliers.contact_person OR excluded.email IS NOT suppliers.email OR
+               excluded.phone IS NOT suppliers.phone OR excluded.address IS NOT suppliers.address OR
+               excluded.payment_terms IS NOT suppliers.payment_terms OR
+               excluded.credit_limit IS NOT suppliers.credit_limit OR
+               excluded.is_deleted IS NOT suppliers.is_deleted)
         """;
 
     private static final String MARK_DELETED_SQL = "UPDATE suppliers SET is_deleted = true, is_synced = false, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
-    private static final String MARK_SYNCED_SQL = "UPDATE suppliers SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE suppliers SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<SupplierDTO> ROW_MAPPER = RowMapper.of(SupplierDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("name", (d, rs, i) -> d.setName(rs.getString(i)))
+            .column("contact_person", (d, rs, i) -> d.setContactPerson(rs.getString(i)))
+            .column("email", (d, rs, i) -> d.setEmail(rs.getString(i)))
+            .column("phone", (d, rs, i) -> d.setPhone(rs.getString(i)))
+            .column("address", (d, rs, i) -> d.setAddress(rs.getString(i)))
+            .column("payment_terms", (d, rs, i) -> d.setPaymentTerms(rs.getString(i)))
+            .column("credit_limit", (d, rs, i) -> d.setCreditLimit(RowMapper.nullableDouble(rs, i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            .build();
 
 
     /**
@@ -72,8 +98,9 @@ public class SupplierDAO {
              PreparedStatement ps = conn.prepareStatement(GET_ALL_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SupplierDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                suppliers.add(mapToDTO(rs));
+                suppliers.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get all suppliers for tenant: " + tenantId, e);
@@ -94,7 +121,7 @@ public class SupplierDAO {
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToDTO(rs);
+                return ROW_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get supplier by ID: " + supplierId, e);
@@ -153,12 +180,40 @@ public class SupplierDAO {
     /**
      * Inserts or updates a supplier from a remote source, marking it as synced.
      * @param dto The complete supplier data from the remote source.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
+     */
+    public boolean upsertRemote(SupplierDTO dto) {
+        if (!sanitizeRemote(dto)) {
+            return true;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
+            bindUpsertRemote(ps, dto);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to upsert remote supplier with UUID: " + dto.getUuid(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Applies a chunk of remote suppliers in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
      */
-    public void upsertRemote(SupplierDTO dto) {
+    public UpsertCountsDTO upsertRemoteBatch(List<SupplierDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("suppliers", UPSERT_REMOTE_SQL, dtos, this::sanitizeRemote, SupplierDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private boolean sanitizeRemote(SupplierDTO dto) {
         // --- BEGIN DTO SANITIZATION BLOCK ---
         if (dto == null || dto.getUuid() == null) {
             LOGGER.log(Level.SEVERE, "Attempted to upsert a null supplier or a supplier with a null UUID. Aborting operation.");
-            return;
+            return false;
         }
 
         // Sanitize fields with NOT NULL constraints in the schema.
@@ -176,31 +231,28 @@ public class SupplierDAO {
             dto.setCreditLimit(0.0);
         }
 
-        // Sanitize last_updated_at to prevent NullPointerException when calling .toLocalDateTime()
+        // Sanitize last_updated_at to prevent NullPointerException when calling .toInstant()
         if (dto.getLastUpdatedAt() == null) {
             LOGGER.log(Level.WARNING, "Sanitizing null last_updated_at to current UTC time for supplier UUID: {0}", dto.getUuid());
             dto.setLastUpdatedAt(OffsetDateTime.now(ZoneOffset.UTC));
         }
         // --- END DTO SANITIZATION BLOCK ---
+        return true;
+    }
 
-        try (Connection conn = DatabaseManager.getInstance().getConnection();
-             PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            ps.setString(1, dto.getUuid());
-            ps.setString(2, dto.getTenantId());
-            ps.setString(3, dto.getName());
-            ps.setString(4, dto.getContactPerson());
-            ps.setString(5, dto.getEmail());
-            ps.setString(6, dto.getPhone());
-            ps.setString(7, dto.getAddress());
-            ps.setString(8, dto.getPaymentTerms());
-            // This line is now safe because the sanitization block guarantees getCreditLimit() is not null.
-            ps.setDouble(9, dto.getCreditLimit());
-            ps.setTimestamp(10, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(11, dto.isDeleted());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to upsert remote supplier with UUID: " + dto.getUuid(), e);
-        }
+    private void bindUpsertRemote(PreparedStatement ps, SupplierDTO dto) throws SQLException {
+        ps.setString(1, dto.getUuid());
+        ps.setString(2, dto.getTenantId());
+        ps.setString(3, dto.getName());
+        ps.setString(4, dto.getContactPerson());
+        ps.setString(5, dto.getEmail());
+        ps.setString(6, dto.getPhone());
+        ps.setString(7, dto.getAddress());
+        ps.setString(8, dto.getPaymentTerms());
+        // This line is now safe because the sanitization block guarantees getCreditLimit() is not null.
+        ps.setDouble(9, dto.getCreditLimit());
+        ps.setTimestamp(10, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(11, dto.isDeleted());
     }
 
     /**
@@ -214,8 +266,9 @@ public class SupplierDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SupplierDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                suppliers.add(mapToDTO(rs));
+                suppliers.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced suppliers for tenant: " + tenantId, e);
@@ -223,6 +276,32 @@ public class SupplierDAO {
         return suppliers;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<SupplierDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<SupplierDTO> suppliers = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return suppliers;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<SupplierDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                suppliers.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced suppliers by ID for tenant: " + tenantId, e);
+        }
+        return suppliers;
+    }
+
     /**
      * Performs a soft delete on a supplier.
      * @param supplierId The local ID of the supplier to delete.
@@ -248,9 +327,8 @@ public class SupplierDAO {
     public void markAsSynced(long supplierId, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, supplierId);
-            ps.setString(3, tenantId);
+            ps.setLong(1, supplierId);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark supplier as synced: " + supplierId, e);
@@ -258,31 +336,17 @@ public class SupplierDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link SupplierDTO} object.
-     * @param rs The ResultSet to map.
-     * @return A populated SupplierDTO object.
-     * @throws SQLException if a database access error occurs.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded suppliers.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private SupplierDTO mapToDTO(ResultSet rs) throws SQLException {
-        SupplierDTO s = new SupplierDTO();
-        s.setId(rs.getLong("id"));
-        s.setUuid(rs.getString("uuid"));
-        s.setTenantId(rs.getString("tenant_id"));
-        s.setName(rs.getString("name"));
-        s.setContactPerson(rs.getString("contact_person"));
-        s.setEmail(rs.getString("email"));
-        s.setPhone(rs.getString("phone"));
-        s.setAddress(rs.getString("address"));
-        s.setPaymentTerms(rs.getString("payment_terms"));
-        s.setCreditLimit((Double) rs.getObject("credit_limit"));
-
-        Timestamp lastUpdatedAt = rs.getTimestamp("last_updated_at");
-        if (lastUpdatedAt != null) {
-            s.setLastUpdatedAt(lastUpdatedAt.toLocalDateTime().atOffset(ZoneOffset.UTC));
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("suppliers", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " suppliers as synced", e);
         }
-
-        s.setIsSynced(rs.getInt("is_synced"));
-        s.setDeleted(rs.getBoolean("is_deleted"));
-        return s;
     }
 }
\ No newline at end of file
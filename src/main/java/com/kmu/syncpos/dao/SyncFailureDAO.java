@@ -0,0 +1,163 @@
+// src/main/java/com/kmu/syncpos/dao/SyncFailureDAO.java
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.util.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for the 'sync_failures' table, which counts the failed uploads of each row.
+ * A row that failed is held back until its backoff has passed; a row the server keeps rejecting is
+ * dead-lettered and held back for good. Both end when the row is edited again or marked synced, as
+ * triggers on the synced tables then delete its entry (see migration 8).
+ */
+public class SyncFailureDAO {
+
+    private static final Logger LOGGER = Logger.getLogger(SyncFailureDAO.class.getName());
+
+    private static final String GET_HELD_BACK_SQL = """
+        SELECT row_id FROM sync_failures
+        WHERE tenant_id = ? AND table_name = ? AND row_id IN (SELECT value FROM json_each(?))
+          AND (dead_lettered_at IS NOT NULL OR next_attempt_at > CURRENT_TIMESTAMP)
+        """;
+
+    private static final String RECORD_FAILURE_SQL = """
+        INSERT INTO sync_failures (tenant_id, table_name, row_id, attempts, http_status, last_error)
+        VALUES (?, ?, ?, 1, ?, ?)
+        ON CONFLICT(tenant_id, table_name, row_id) DO UPDATE SET
+            attempts = attempts + 1,
+            http_status = excluded.http_status,
+            last_error = excluded.last_error,
+            last_failed_at = CURRENT_TIMESTAMP
+        RETURNING attempts
+        """;
+
+    private static final String SCHEDULE_RETRY_SQL = """
+        UPDATE sync_failures SET next_attempt_at = datetime('now', ?)
+        WHERE tenant_id = ? AND table_name = ? AND row_id = ?
+        """;
+
+    private static final String DEAD_LETTER_SQL = """
+        UPDATE sync_failures SET dead_lettered_at = CURRENT_TIMESTAMP, next_attempt_at = NULL
+        WHERE tenant_id = ? AND table_name = ? AND row_id = ?
+        """;
+
+    private static final String COUNT_DEAD_LETTERS_SQL = """
+        SELECT table_name, COUNT(*) FROM sync_failures
+        WHERE tenant_id = ? AND dead_lettered_at IS NOT NULL
+        GROUP BY table_name
+        """;
+
+    /**
+     * @param tableName The synced table.
+     * @param rowIds    Rows about to be uploaded.
+     * @param tenantId  The UUID of the tenant.
+     * @return Those of the rows that are still backing off or are dead-lettered, and must not be uploaded now.
+     */
+    public Set<Long> getHeldBack(String tableName, Collection<Long> rowIds, String tenantId) {
+        Set<Long> heldBack = new HashSet<>();
+        if (rowIds.isEmpty()) {
+            return heldBack;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_HELD_BACK_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tableName);
+            ps.setString(3, IdList.toJson(rowIds));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                heldBack.add(rs.getLong(1));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read upload failures for table: " + tableName, e);
+        }
+        return heldBack;
+    }
+
+    /**
+     * Counts one more failed upload of a row.
+     * @param tableName  The synced table.
+     * @param rowId      The local ID of the row.
+     * @param tenantId   The UUID of the tenant.
+     * @param httpStatus The HTTP status of the failed request, 0 if there was no response.
+     * @param error      The server's error message, may be null.
+     * @return The number of failed uploads of the row so far, or 0 if it could not be recorded.
+     */
+    public int recordFailure(String tableName, long rowId, String tenantId, int httpStatus, String error) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(RECORD_FAILURE_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tableName);
+            ps.setLong(3, rowId);
+            ps.setInt(4, httpStatus);
+            ps.setString(5, error);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to record upload failure for " + tableName + " row " + rowId, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Holds a failed row back from uploads until the given delay has passed.
+     */
+    public void scheduleRetry(String tableName, long rowId, String tenantId, Duration delay) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(SCHEDULE_RETRY_SQL)) {
+            ps.setString(1, "+" + delay.toSeconds() + " seconds");
+            ps.setString(2, tenantId);
+            ps.setString(3, tableName);
+            ps.setLong(4, rowId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to schedule upload retry for " + tableName + " row " + rowId, e);
+        }
+    }
+
+    /**
+     * Stops uploading a row until it is edited again. The row stays unsynced, and its entry keeps the
+     * attempts and the last error for whoever has to fix the data.
+     */
+    public void deadLetter(String tableName, long rowId, String tenantId) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(DEAD_LETTER_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tableName);
+            ps.setLong(3, rowId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to dead-letter " + tableName + " row " + rowId, e);
+        }
+    }
+
+    /**
+     * @param tenantId The UUID of the tenant.
+     * @return The number of dead-lettered rows per table; tables without any are left out.
+     */
+    public Map<String, Integer> countDeadLetters(String tenantId) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(COUNT_DEAD_LETTERS_SQL)) {
+            ps.setString(1, tenantId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getInt(2));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to count dead-lettered rows for tenant: " + tenantId, e);
+        }
+        return counts;
+    }
+}
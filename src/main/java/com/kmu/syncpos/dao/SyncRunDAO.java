@@ -0,0 +1,197 @@
+// src/main/java/com/kmu/syncpos/dao/SyncRunDAO.java
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.dto.SyncRunDTO;
+import com.kmu.syncpos.dto.SyncTableMetricsDTO;
+import com.kmu.syncpos.util.ConfigLoader;
+import com.kmu.syncpos.util.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for the sync history: 'sync_runs' (one row per run) and 'sync_run_tables'
+ * (the metrics of every table the run pushed or pulled). Only the newest {@code sync.history.max.runs}
+ * runs are kept.
+ */
+public class SyncRunDAO {
+
+    private static final Logger LOGGER = Logger.getLogger(SyncRunDAO.class.getName());
+    private static final int MAX_RUNS = ConfigLoader.getIntProperty("sync.history.max.runs", 1000);
+
+    private static final String INSERT_RUN_SQL = """
+        INSERT INTO sync_runs (tenant_id, is_initial, started_at, duration_ms, succeeded, error, total_rows, total_bytes)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final String INSERT_TABLE_SQL = """
+        INSERT INTO sync_run_tables (run_id, phase, table_name, rows, applied, skipped, conflicts, bytes_sent, bytes_received,
+                                     duration_ms, network_ms, json_ms, database_ms, failures, retries)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final String PRUNE_TABLES_SQL = """
+        DELETE FROM sync_run_tables WHERE run_id IN (SELECT id FROM sync_runs WHERE id <= ? - ?)
+        """;
+
+    private static final String PRUNE_RUNS_SQL = "DELETE FROM sync_runs WHERE id <= ? - ?";
+
+    private static final String GET_RECENT_RUNS_SQL = """
+        SELECT id, tenant_id, is_initial, started_at, duration_ms, succeeded, error
+        FROM sync_runs WHERE tenant_id = ?
+        ORDER BY id DESC
+        LIMIT ?
+        """;
+
+    private static final String GET_RUN_TABLES_SQL = """
+        SELECT run_id, phase, table_name, rows, applied, skipped, conflicts, bytes_sent, bytes_received, duration_ms, network_ms, json_ms,
+               database_ms, failures, retries
+        FROM sync_run_tables WHERE run_id IN (SELECT value FROM json_each(?))
+        """;
+
+    private static final String GET_LAST_PHASE_SQL = """
+        SELECT r.started_at FROM sync_runs r
+        WHERE r.tenant_id = ?
+          AND EXISTS (SELECT 1 FROM sync_run_tables t WHERE t.run_id = r.id AND t.phase = ?)
+        ORDER BY r.id DESC
+        LIMIT 1
+        """;
+
+    /**
+     * Appends a run to the history and drops the runs that fall out of it.
+     * @param run The finished run.
+     */
+    public void save(SyncRunDTO run) {
+        try {
+            DatabaseManager.getInstance().inTransaction(conn -> {
+                long runId;
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_RUN_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, run.tenantId());
+                    ps.setBoolean(2, run.initial());
+                    ps.setString(3, run.startedAt().toString());
+                    ps.setLong(4, run.durationMs());
+                    ps.setBoolean(5, run.succeeded());
+                    ps.setString(6, run.error());
+                    ps.setLong(7, run.totalRows());
+                    ps.setLong(8, run.totalBytes());
+                    ps.executeUpdate();
+                    ResultSet keys = ps.getGeneratedKeys();
+                    if (!keys.next()) {
+                        throw new SQLException("No ID generated for sync run.");
+                    }
+                    runId = keys.getLong(1);
+                }
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_TABLE_SQL)) {
+                    for (SyncTableMetricsDTO t : run.tables()) {
+                        ps.setLong(1, runId);
+                        ps.setString(2, t.phase());
+                        ps.setString(3, t.table());
+                        ps.setLong(4, t.rows());
+                        ps.setLong(5, t.applied());
+                        ps.setLong(6, t.skipped());
+                        ps.setLong(7, t.conflicts());
+                        ps.setLong(8, t.bytesSent());
+                        ps.setLong(9, t.bytesReceived());
+                        ps.setLong(10, t.durationMs());
+                        ps.setLong(11, t.networkMs());
+                        ps.setLong(12, t.jsonMs());
+                        ps.setLong(13, t.databaseMs());
+                        ps.setInt(14, t.failures());
+                        ps.setInt(15, t.retries());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                for (String sql : List.of(PRUNE_TABLES_SQL, PRUNE_RUNS_SQL)) {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setLong(1, runId);
+                        ps.setInt(2, MAX_RUNS);
+                        ps.executeUpdate();
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to record sync run.", e);
+        }
+    }
+
+    /**
+     * @param tenantId The UUID of the tenant.
+     * @param limit    The maximum number of runs to return.
+     * @return The tenant's newest runs, newest first, with their table metrics.
+     */
+    public List<SyncRunDTO> getRecentRuns(String tenantId, int limit) {
+        Map<Long, SyncRunDTO> runs = new LinkedHashMap<>();
+        Map<Long, List<SyncTableMetricsDTO>> tables = new LinkedHashMap<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(GET_RECENT_RUNS_SQL)) {
+                ps.setString(1, tenantId);
+                ps.setInt(2, limit);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    long id = rs.getLong("id");
+                    List<SyncTableMetricsDTO> runTables = new ArrayList<>();
+                    tables.put(id, runTables);
+                    runs.put(id, new SyncRunDTO(rs.getString("tenant_id"), rs.getBoolean("is_initial"),
+                            parseInstant(rs.getString("started_at")), rs.getLong("duration_ms"), rs.getBoolean("succeeded"),
+                            rs.getString("error"), runTables));
+                }
+            }
+            if (runs.isEmpty()) {
+                return List.of();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(GET_RUN_TABLES_SQL)) {
+                ps.setString(1, IdList.toJson(runs.keySet()));
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    tables.get(rs.getLong("run_id")).add(new SyncTableMetricsDTO(rs.getString("phase"), rs.getString("table_name"),
+                            rs.getLong("rows"), rs.getLong("applied"), rs.getLong("skipped"), rs.getLong("conflicts"), rs.getLong("bytes_sent"), rs.getLong("bytes_received"), rs.getLong("duration_ms"),
+                            rs.getLong("network_ms"), rs.getLong("json_ms"), rs.getLong("database_ms"),
+                            rs.getInt("failures"), rs.getInt("retries")));
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read sync history for tenant: " + tenantId, e);
+        }
+        return new ArrayList<>(runs.values());
+    }
+
+    /**
+     * @param tenantId The UUID of the tenant.
+     * @param phase    The phase, e.g. "reconcile".
+     * @return When the newest run that went through the phase started, whether or not the phase failed,
+     *         or null if the history has none.
+     */
+    public Instant getLastPhaseStart(String tenantId, String phase) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_LAST_PHASE_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, phase);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? parseInstant(rs.getString(1)) : null;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read sync history for tenant: " + tenantId, e);
+            return null;
+        }
+    }
+
+    private static Instant parseInstant(String value) {
+        try {
+            return value == null ? null : Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+// src/main/java/com/kmu/syncpos/dao/SyncStateDAO.java
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.dto.SyncWatermarkDTO;
+import com.kmu.syncpos.util.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data Access Object for the sync bookkeeping tables: 'sync_state', which stores the incremental pull watermark
+ * of each synced table, and 'sync_checkpoints', which tracks the initial sync table by table so that an interrupted
+ * download resumes where it stopped instead of starting over.
+ */
+public class SyncStateDAO {
+
+    private static final Logger LOGGER = Logger.getLogger(SyncStateDAO.class.getName());
+
+    private static final String GET_WATERMARK_SQL = """
+        SELECT last_updated_at, last_uuid FROM sync_state WHERE tenant_id = ? AND table_name = ?
+        """;
+
+    private static final String SAVE_WATERMARK_SQL = """
+        INSERT INTO sync_state (tenant_id, table_name, last_updated_at, last_uuid, synced_at)
+        VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT(tenant_id, table_name) DO UPDATE SET
+            last_updated_at = excluded.last_updated_at,
+            last_uuid = excluded.last_uuid,
+            synced_at = excluded.synced_at
+        """;
+
+    private static final String DELETE_WATERMARK_SQL = "DELETE FROM sync_state WHERE tenant_id = ? AND table_name = ?";
+
+    private static final String GET_COMPLETED_TABLES_SQL = """
+        SELECT table_name FROM sync_checkpoints WHERE tenant_id = ? AND completed_at IS NOT NULL
+        """;
+
+    private static final String RECORD_PAGE_SQL = """
+        INSERT INTO sync_checkpoints (tenant_id, table_name, pages_applied, rows_applied)
+        VALUES (?, ?, 1, ?)
+        ON CONFLICT(tenant_id, table_name) DO UPDATE SET
+            pages_applied = pages_applied + 1,
+            rows_applied = rows_applied + excluded.rows_applied
+        """;
+
+    private static final String MARK_COMPLETED_SQL = """
+        INSERT INTO sync_checkpoints (tenant_id, table_name, completed_at)
+        VALUES (?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT(tenant_id, table_name) DO UPDATE SET completed_at = excluded.completed_at
+        """;
+
+    private static final String RECORD_VERIFICATION_SQL = """
+        UPDATE sync_checkpoints SET local_count = ?, server_count = ?, verified_at = CURRENT_TIMESTAMP
+        WHERE tenant_id = ? AND table_name = ?
+        """;
+
+    // Table names cannot be bound, so this is formatted per table (countLocalRows only accepts plain identifiers).
+    // The _TEMPLATE suffix keeps it out of the query plan check, which prepares every *_SQL constant as it is.
+    private static final String COUNT_ROWS_SQL_TEMPLATE = "SELECT COUNT(*) FROM %s WHERE tenant_id = ?";
+
+    /**
+     * @param tenantId  The UUID of the tenant.
+     * @param tableName The remote table name, e.g. "sale_items".
+     * @return The watermark reached by the last pull, or null if the table has never been pulled (or the lookup failed),
+     *         in which case the next pull downloads the whole table.
+     */
+    public SyncWatermarkDTO getWatermark(String tenantId, String tableName) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_WATERMARK_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tableName);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                return new SyncWatermarkDTO(rs.getString("last_updated_at"), rs.getString("last_uuid"));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read sync watermark for table: " + tableName, e);
+        }
+        return null;
+    }
+
+    /**
+     * Moves a table's watermark. Call this only once the rows up to the watermark have been committed locally;
+     * a failed save merely means those rows are downloaded (and upserted) again on the next pull.
+     * @param tenantId  The UUID of the tenant.
+     * @param tableName The remote table name.
+     * @param watermark The newest row now applied locally.
+     */
+    public void saveWatermark(String tenantId, String tableName, SyncWatermarkDTO watermark) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(SAVE_WATERMARK_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tableName);
+            ps.setString(3, watermark.lastUpdatedAt());
+            ps.setString(4, watermark.lastUuid());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to save sync watermark for table: " + tableName, e);
+        }
+    }
+
+    /**
+     * Forgets a table's watermark, so that the next pull downloads the whole table again.
+     * @param tenantId  The UUID of the tenant.
+     * @param tableName The remote table name.
+     */
+    public void resetWatermark(String tenantId, String tableName) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(DELETE_WATERMARK_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tableName);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to reset sync watermark for table: " + tableName, e);
+        }
+    }
+
+    /**
+     * @param tenantId The UUID of the tenant.
+     * @return The tables the initial sync has downloaded to the end.
+     */
+    public Set<String> getCompletedTables(String tenantId) {
+        Set<String> tables = new HashSet<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_COMPLETED_TABLES_SQL)) {
+            ps.setString(1, tenantId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read initial sync checkpoints for tenant: " + tenantId, e);
+        }
+        return tables;
+    }
+
+    /**
+     * @param tenantId The UUID of the tenant.
+     * @param tables   Every synced table.
+     * @return true if the initial sync has completed all of the given tables.
+     */
+    public boolean isInitialSyncComplete(String tenantId, Collection<String> tables) {
+        return getCompletedTables(tenantId).containsAll(tables);
+    }
+
+    /**
+     * Counts a page of the initial sync once it has been committed, next to the watermark it advanced.
+     * @param tenantId  The UUID of the tenant.
+     * @param tableName The remote table name.
+     * @param rows      The number of rows in the page.
+     */
+    public void recordPage(String tenantId, String tableName, int rows) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(RECORD_PAGE_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tableName);
+            ps.setInt(3, rows);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to record initial sync page for table: " + tableName, e);
+        }
+    }
+
+    /**
+     * Records that the initial sync has downloaded a table to the end; a resumed initial sync skips it.
+     * @param tenantId  The UUID of the tenant.
+     * @param tableName The remote table name.
+     */
+    public void markCompleted(String tenantId, String tableName) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(MARK_COMPLETED_SQL)) {
+            ps.setString(1, tenantId);
+            ps.setString(2, tableName);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark initial sync of table complete: " + tableName, e);
+        }
+    }
+
+    /**
+     * Stores the outcome of the row count check that ends the initial sync.
+     * @param tenantId    The UUID of the tenant.
+     * @param tableName   The remote table name.
+     * @param localCount  The tenant's rows in the local table.
+     * @param serverCount The tenant's rows in the remote table.
+     */
+    public void recordVerification(String tenantId, String tableName, long localCount, long serverCount) {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(RECORD_VERIFICATION_SQL)) {
+            ps.setLong(1, localCount);
+            ps.setLong(2, serverCount);
+            ps.setString(3, tenantId);
+            ps.setString(4, tableName);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to record row count check for table: " + tableName, e);
+        }
+    }
+
+    /**
+     * @param tableName A synced table; must be a plain identifier, as it is part of the SQL text.
+     * @param tenantId  The UUID of the tenant.
+     * @return The tenant's rows in the local table (soft-deleted ones included, as on the server), or -1 on failure.
+     */
+    public long countLocalRows(String tableName, String tenantId) {
+        if (!tableName.matches("[a-z_]+")) {
+            throw new IllegalArgumentException("Not a table name: " + tableName);
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(COUNT_ROWS_SQL_TEMPLATE.formatted(tableName))) {
+            ps.setString(1, tenantId);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to count local rows of table: " + tableName, e);
+            return -1;
+        }
+    }
+}
@@ -11,6 +11,21 @@ import java.util.UUID;
 
 public class TenantDAO {
 
+    // findActiveTenant only selects uuid, license_key and status, hence the optional columns
+    private static final RowMapper<Tenant> MODEL_MAPPER = RowMapper.of(Tenant::new)
+            .optional("id", (t, rs, i) -> t.setId(rs.getLong(i)))
+            .column("uuid", (t, rs, i) -> t.setUuid(rs.getString(i)))
+            .column("license_key", (t, rs, i) -> t.setLicenseKey(rs.getString(i)))
+            .optional("owner_email", (t, rs, i) -> t.setOwnerEmail(rs.getString(i)))
+            .column("status", (t, rs, i) -> t.setStatus(rs.getString(i)))
+            .optional("expiry_date", (t, rs, i) -> {
+                Date expiryDate = rs.getDate(i);
+                if (expiryDate != null) {
+                    t.setExpiryDate(expiryDate.toLocalDate());
+                }
+            })
+            .build();
+
     public Tenant findActiveTenant() {
         // Assuming there should only be one active tenant
         String sql = "SELECT uuid, license_key, status FROM tenants WHERE status = 'ACTIVE' LIMIT 1";
@@ -19,11 +34,7 @@ public class TenantDAO {
 
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
-                Tenant tenant = new Tenant();
-                tenant.setUuid(rs.getString("uuid"));
-                tenant.setLicenseKey(rs.getString("license_key"));
-                tenant.setStatus(rs.getString("status"));
-                return tenant;
+                return MODEL_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             System.err.println("Error finding active tenant: " + e.getMessage());
@@ -77,26 +88,11 @@ public class TenantDAO {
             ps.setString(1, tenantUuid);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToModel(rs); // Assuming you have a mapToModel method in TenantDAO
+                return MODEL_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             System.err.println("TenantDAO.findByUuid: " + e.getMessage());
         }
         return null;
     }
-
-    // You will also need this helper method in TenantDAO if it doesn't exist
-    private Tenant mapToModel(ResultSet rs) throws SQLException {
-        Tenant t = new Tenant();
-        t.setId(rs.getLong("id"));
-        t.setUuid(rs.getString("uuid"));
-        t.setLicenseKey(rs.getString("license_key"));
-        t.setOwnerEmail(rs.getString("owner_email"));
-        t.setStatus(rs.getString("status"));
-        Date expiryDate = rs.getDate("expiry_date");
-        if (expiryDate != null) {
-            t.setExpiryDate(expiryDate.toLocalDate());
-        }
-        return t;
-    }
 }
\ No newline at end of file
@@ -2,13 +2,15 @@
 package com.kmu.syncpos.dao;
 
 import com.kmu.syncpos.dto.UnitDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,6 +33,7 @@ public class UnitDAO {
     private static final String GET_ALL_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_deleted = false ORDER BY name";
     private static final String GET_BY_ID_SQL = BASE_SELECT_SQL + " WHERE id = ? AND tenant_id = ? AND is_deleted = false";
     private static final String GET_UNSYNCED_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_synced = false";
+    private static final String GET_UNSYNCED_BY_IDS_SQL = BASE_SELECT_SQL + " WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ? AND is_synced = false";
 
     private static final String CREATE_LOCAL_SQL = """
         INSERT INTO units(name, abbreviation, uuid, tenant_id, last_updated_at, is_synced, is_deleted)
@@ -53,10 +56,24 @@ public class UnitDAO {
             last_updated_at = excluded.last_updated_at,
             is_deleted = excluded.is_deleted,
             is_synced = true
+        WHERE (units.last_updated_at IS NULL OR excluded.last_updated_at > units.last_updated_at)
+          AND (excluded.tenant_id IS NOT units.tenant_id OR excluded.name IS NOT units.name OR
+               excluded.abbreviation IS NOT units.abbreviation OR excluded.is_deleted IS NOT units.is_deleted)
         """;
 
     private static final String MARK_DELETED_SQL = "UPDATE units SET is_deleted = true, is_synced = false, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
-    private static final String MARK_SYNCED_SQL = "UPDATE units SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE units SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<UnitDTO> ROW_MAPPER = RowMapper.of(UnitDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("name", (d, rs, i) -> d.setName(rs.getString(i)))
+            .column("abbreviation", (d, rs, i) -> d.setAbbreviation(rs.getString(i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            .build();
 
     /**
      * Retrieves all non-deleted units for a specific tenant.
@@ -69,8 +86,9 @@ public class UnitDAO {
              PreparedStatement ps = conn.prepareStatement(GET_ALL_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<UnitDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                units.add(mapToDTO(rs));
+                units.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get all units for tenant: " + tenantId, e);
@@ -91,7 +109,7 @@ public class UnitDAO {
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToDTO(rs);
+                return ROW_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unit by ID: " + unitId, e);
@@ -140,22 +158,41 @@ public class UnitDAO {
     /**
      * Inserts or updates a unit from a remote source, marking it as synced.
      * @param dto The complete unit data from the remote source.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(UnitDTO dto) {
+    public boolean upsertRemote(UnitDTO dto) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            ps.setString(1, dto.getUuid());
-            ps.setString(2, dto.getTenantId());
-            ps.setString(3, dto.getName());
-            ps.setString(4, dto.getAbbreviation());
-            ps.setTimestamp(5, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
-            ps.setBoolean(6, dto.isDeleted());
+            bindUpsertRemote(ps, dto);
             ps.executeUpdate();
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to upsert remote unit with UUID: " + dto.getUuid(), e);
+            return false;
         }
     }
 
+    /**
+     * Applies a chunk of remote units in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<UnitDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("units", UPSERT_REMOTE_SQL, dtos, Objects::nonNull, UnitDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private void bindUpsertRemote(PreparedStatement ps, UnitDTO dto) throws SQLException {
+        ps.setString(1, dto.getUuid());
+        ps.setString(2, dto.getTenantId());
+        ps.setString(3, dto.getName());
+        ps.setString(4, dto.getAbbreviation());
+        ps.setTimestamp(5, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+        ps.setBoolean(6, dto.isDeleted());
+    }
+
     /**
      * Retrieves all units that have not been synced.
      * @param tenantId The UUID of the tenant.
@@ -167,8 +204,9 @@ public class UnitDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<UnitDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                units.add(mapToDTO(rs));
+                units.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced units for tenant: " + tenantId, e);
@@ -176,6 +214,32 @@ public class UnitDAO {
         return units;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<UnitDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<UnitDTO> units = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return units;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<UnitDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                units.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced units by ID for tenant: " + tenantId, e);
+        }
+        return units;
+    }
+
     /**
      * Performs a soft delete on a unit.
      * @param id       The local ID of the unit to delete.
@@ -201,9 +265,8 @@ public class UnitDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark unit as synced: " + id, e);
@@ -211,26 +274,17 @@ public class UnitDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link UnitDTO} object.
-     * @param rs The ResultSet to map.
-     * @return A populated UnitDTO object.
-     * @throws SQLException if a database access error occurs.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded units.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private UnitDTO mapToDTO(ResultSet rs) throws SQLException {
-        UnitDTO dto = new UnitDTO();
-        dto.setId(rs.getLong("id"));
-        dto.setUuid(rs.getString("uuid"));
-        dto.setTenantId(rs.getString("tenant_id"));
-        dto.setName(rs.getString("name"));
-        dto.setAbbreviation(rs.getString("abbreviation"));
-        dto.setIsSynced(rs.getInt("is_synced"));
-        dto.setDeleted(rs.getBoolean("is_deleted"));
-
-        Timestamp ts = rs.getTimestamp("last_updated_at");
-        if (ts != null) {
-            dto.setLastUpdatedAt(ts.toLocalDateTime().atOffset(ZoneOffset.UTC));
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("units", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " units as synced", e);
         }
-
-        return dto;
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 // src/main/java/com/kmu/syncpos/dao/UserDAO.java
 package com.kmu.syncpos.dao;
 
+import com.kmu.syncpos.dto.UpsertCountsDTO;
 import com.kmu.syncpos.dto.UserDTO;
 import com.kmu.syncpos.models.User;
 import com.kmu.syncpos.util.DatabaseManager;
@@ -8,9 +9,10 @@ import com.kmu.syncpos.util.PasswordUtil;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,6 +39,7 @@ public class UserDAO {
     private static final String GET_ALL_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_deleted = false ORDER BY username";
     private static final String GET_BY_ID_SQL = BASE_SELECT_SQL + " WHERE id = ? AND tenant_id = ? AND is_deleted = false";
     private static final String GET_UNSYNCED_SQL = BASE_SELECT_SQL + " WHERE tenant_id = ? AND is_synced = false";
+    private static final String GET_UNSYNCED_BY_IDS_SQL = BASE_SELECT_SQL + " WHERE id IN (SELECT value FROM json_each(?)) AND +tenant_id = ? AND is_synced = false";
 
     private static final String CREATE_LOCAL_SQL = """
         INSERT INTO users(username, firstname, lastname, password_hash, email, phone, role, is_active,
@@ -55,10 +58,53 @@ public class UserDAO {
             tenant_id = excluded.tenant_id, username = excluded.username, firstname = excluded.firstname, lastname = excluded.lastname, password_hash = excluded.password_hash,
             email = excluded.email, phone = excluded.phone, role = excluded.role, is_active = excluded.is_active, is_deleted = excluded.is_deleted,
             last_updated_at = excluded.last_updated_at, is_synced = true
+        WHERE (users.last_updated_at IS NULL OR excluded.last_updated_at > users.last_updated_at)
+          AND (excluded.tenant_id IS NOT users.tenant_id OR excluded.username IS NOT users.username OR
+               excluded.firstname IS NOT users.firstname OR excluded.lastname IS NOT users.lastname OR
+               excluded.password_hash IS NOT users.password_hash OR excluded.email IS NOT users.email OR
+               excluded.phone IS NOT users.phone OR excluded.role IS NOT users.role OR
+               excluded.is_active IS NOT users.is_active OR excluded.is_deleted IS NOT users.is_deleted)
         """;
 
     private static final String MARK_DELETED_SQL = "UPDATE users SET is_deleted = true, is_active = false, is_synced = false, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
-    private static final String MARK_SYNCED_SQL = "UPDATE users SET is_synced = true, last_updated_at = ? WHERE id = ? AND tenant_id = ?";
+    private static final String MARK_SYNCED_SQL = "UPDATE users SET is_synced = true WHERE id = ? AND tenant_id = ?";
+
+    private static final RowMapper<UserDTO> ROW_MAPPER = RowMapper.of(UserDTO::new)
+            .column("id", (d, rs, i) -> d.setId(rs.getLong(i)))
+            .column("uuid", (d, rs, i) -> d.setUuid(rs.getString(i)))
+            .column("tenant_id", (d, rs, i) -> d.setTenantId(rs.getString(i)))
+            .column("username", (d, rs, i) -> d.setUsername(rs.getString(i)))
+            .column("firstname", (d, rs, i) -> d.setFirstname(rs.getString(i)))
+            .column("lastname", (d, rs, i) -> d.setLastname(rs.getString(i)))
+            .column("password_hash", (d, rs, i) -> d.setPasswordHash(rs.getString(i)))
+            .column("email", (d, rs, i) -> d.setEmail(rs.getString(i)))
+            .column("phone", (d, rs, i) -> d.setPhone(rs.getString(i)))
+            .column("role", (d, rs, i) -> d.setRole(rs.getString(i)))
+            .column("is_active", (d, rs, i) -> d.setActive(rs.getBoolean(i)))
+            .column("last_updated_at", (d, rs, i) -> d.setLastUpdatedAt(RowMapper.utc(rs, i)))
+            .column("is_synced", (d, rs, i) -> d.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (d, rs, i) -> d.setDeleted(rs.getBoolean(i)))
+            .build();
+
+    private static final RowMapper<User> MODEL_MAPPER = RowMapper.of(User::new)
+            .column("id", (u, rs, i) -> u.setId(rs.getLong(i)))
+            .column("uuid", (u, rs, i) -> u.setUuid(rs.getString(i)))
+            .column("tenant_id", (u, rs, i) -> u.setTenantId(rs.getString(i)))
+            .column("username", (u, rs, i) -> u.setUsername(rs.getString(i)))
+            .column("firstname", (u, rs, i) -> u.setFirstname(rs.getString(i)))
+            .column("lastname", (u, rs, i) -> u.setLastname(rs.getString(i)))
+            .column("password_hash", (u, rs, i) -> u.setPasswordHash(rs.getString(i)))
+            .column("email", (u, rs, i) -> u.setEmail(rs.getString(i)))
+            .column("phone", (u, rs, i) -> u.setPhone(rs.getString(i)))
+            .column("role", (u, rs, i) -> u.setRole(rs.getString(i)))
+            .column("is_active", (u, rs, i) -> u.setIsActive(rs.getBoolean(i)))
+            .column("last_updated_at", (u, rs, i) -> {
+                Timestamp ts = rs.getTimestamp(i);
+                u.setLastUpdatedAt(ts == null ? null : ts.toLocalDateTime());
+            })
+            .column("is_synced", (u, rs, i) -> u.setIsSynced(rs.getInt(i)))
+            .column("is_deleted", (u, rs, i) -> u.setIsDeleted(rs.getBoolean(i)))
+            .build();
 
     /**
      * Authenticates a user against the database. On success, returns a full User model
@@ -78,7 +124,7 @@ public class UserDAO {
             if (rs.next()) {
                 String hash = rs.getString("password_hash");
                 if (PasswordUtil.checkPassword(plainPassword, hash)) {
-                    return mapToModel(rs);
+                    return MODEL_MAPPER.bind(rs).map(rs);
                 }
             }
         } catch (SQLException e) {
@@ -101,7 +147,7 @@ public class UserDAO {
             ps.setString(1, username);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToModel(rs);
+                return MODEL_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to find user by global username: " + username, e);
@@ -124,7 +170,7 @@ public class UserDAO {
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToModel(rs);
+                return MODEL_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to find user by username: " + username + " for tenant: " + tenantId, e);
@@ -143,8 +189,9 @@ public class UserDAO {
              PreparedStatement ps = conn.prepareStatement(GET_ALL_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<UserDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                users.add(mapToDTO(rs));
+                users.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get all users for tenant: " + tenantId, e);
@@ -165,7 +212,7 @@ public class UserDAO {
             ps.setString(2, tenantId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                return mapToDTO(rs);
+                return ROW_MAPPER.bind(rs).map(rs);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get user by ID: " + userId, e);
@@ -234,29 +281,48 @@ public class UserDAO {
      * Inserts or updates a user from a remote source, marking it as synced.
      * This method assumes the DTO contains a pre-hashed password.
      * @param dto The complete user data from the remote source.
+     * @return false if the row could not be written. A row the sanitization rejects is skipped and counts as handled.
      */
-    public void upsertRemote(UserDTO dto) {
+    public boolean upsertRemote(UserDTO dto) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(UPSERT_REMOTE_SQL)) {
-            int idx = 1;
-            ps.setString(idx++, dto.getUuid());
-            ps.setString(idx++, dto.getTenantId());
-            ps.setString(idx++, dto.getUsername());
-            ps.setString(idx++, dto.getFirstname());
-            ps.setString(idx++, dto.getLastname());
-            ps.setString(idx++, dto.getPasswordHash());
-            ps.setString(idx++, dto.getEmail());
-            ps.setString(idx++, dto.getPhone());
-            ps.setString(idx++, dto.getRole());
-            ps.setBoolean(idx++, dto.isActive());
-            ps.setBoolean(idx++, dto.isDeleted());
-            ps.setTimestamp(idx, Timestamp.valueOf(dto.getLastUpdatedAt().toLocalDateTime()));
+            bindUpsertRemote(ps, dto);
             ps.executeUpdate();
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to upsert remote user with UUID: " + dto.getUuid(), e);
+            return false;
         }
     }
 
+    /**
+     * Applies a chunk of remote users in one transaction with a single JDBC batch, marking them as synced.
+     * Used by the initial download instead of calling {@link #upsertRemote} (one commit) per row.
+     *
+     * @param dtos The DTOs from the remote source.
+     * @return How many records were applied, skipped as not newer or unchanged, or met an unsynced local edit.
+     * @throws SQLException if the batch fails; none of the chunk is kept.
+     */
+    public UpsertCountsDTO upsertRemoteBatch(List<UserDTO> dtos) throws SQLException {
+        return RemoteBatch.upsert("users", UPSERT_REMOTE_SQL, dtos, Objects::nonNull, UserDTO::getUuid, this::bindUpsertRemote);
+    }
+
+    private void bindUpsertRemote(PreparedStatement ps, UserDTO dto) throws SQLException {
+        int idx = 1;
+        ps.setString(idx++, dto.getUuid());
+        ps.setString(idx++, dto.getTenantId());
+        ps.setString(idx++, dto.getUsername());
+        ps.setString(idx++, dto.getFirstname());
+        ps.setString(idx++, dto.getLastname());
+        ps.setString(idx++, dto.getPasswordHash());
+        ps.setString(idx++, dto.getEmail());
+        ps.setString(idx++, dto.getPhone());
+        ps.setString(idx++, dto.getRole());
+        ps.setBoolean(idx++, dto.isActive());
+        ps.setBoolean(idx++, dto.isDeleted());
+        ps.setTimestamp(idx, Timestamp.from(dto.getLastUpdatedAt().toInstant()));
+    }
+
     /**
      * Performs a soft delete on a user, also marking them as inactive.
      * @param userId   The local ID of the user to delete.
@@ -285,8 +351,9 @@ public class UserDAO {
              PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_SQL)) {
             ps.setString(1, tenantId);
             ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<UserDTO> rows = ROW_MAPPER.bind(rs);
             while (rs.next()) {
-                users.add(mapToDTO(rs));
+                users.add(rows.map(rs));
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to get unsynced users for tenant: " + tenantId, e);
@@ -294,6 +361,32 @@ public class UserDAO {
         return users;
     }
 
+    /**
+     * Retrieves the given rows if they are still unsynced, for the push driven by the change_log.
+     * @param ids The local IDs of the rows.
+     * @param tenantId The UUID of the tenant.
+     * @return The rows among the given IDs that still need to be uploaded.
+     */
+    public List<UserDTO> getUnsyncedByIds(Collection<Long> ids, String tenantId) {
+        List<UserDTO> users = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return users;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(GET_UNSYNCED_BY_IDS_SQL)) {
+            ps.setString(1, IdList.toJson(ids));
+            ps.setString(2, tenantId);
+            ResultSet rs = ps.executeQuery();
+            RowMapper.Bound<UserDTO> rows = ROW_MAPPER.bind(rs);
+            while (rs.next()) {
+                users.add(rows.map(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to get unsynced users by ID for tenant: " + tenantId, e);
+        }
+        return users;
+    }
+
     /**
      * Marks a specific user as synced.
      * @param id The local database ID of the user.
@@ -302,9 +395,8 @@ public class UserDAO {
     public void markAsSynced(long id, String tenantId) {
         try (Connection conn = DatabaseManager.getInstance().getConnection();
              PreparedStatement ps = conn.prepareStatement(MARK_SYNCED_SQL)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(2, id);
-            ps.setString(3, tenantId);
+            ps.setLong(1, id);
+            ps.setString(2, tenantId);
             ps.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to mark user as synced: " + id, e);
@@ -312,58 +404,17 @@ public class UserDAO {
     }
 
     /**
-     * Maps a {@link ResultSet} row to a {@link UserDTO} object for data transfer.
-     * @param rs The ResultSet to map.
-     * @return A populated UserDTO object.
-     * @throws SQLException if a database access error occurs.
-     */
-    private UserDTO mapToDTO(ResultSet rs) throws SQLException {
-        UserDTO u = new UserDTO();
-        u.setId(rs.getLong("id"));
-        u.setUuid(rs.getString("uuid"));
-        u.setTenantId(rs.getString("tenant_id"));
-        u.setUsername(rs.getString("username"));
-        u.setFirstname(rs.getString("firstname"));
-        u.setLastname(rs.getString("lastname"));
-        u.setPasswordHash(rs.getString("password_hash"));
-        u.setEmail(rs.getString("email"));
-        u.setPhone(rs.getString("phone"));
-        u.setRole(rs.getString("role"));
-        u.setActive(rs.getBoolean("is_active"));
-        Timestamp ts = rs.getTimestamp("last_updated_at");
-        if (ts != null) {
-            u.setLastUpdatedAt(ts.toLocalDateTime().atOffset(ZoneOffset.UTC));
-        }
-        u.setIsSynced(rs.getInt("is_synced")); // Corrected to use getBoolean
-        u.setDeleted(rs.getBoolean("is_deleted"));
-        return u;
-    }
-
-    /**
-     * Maps a {@link ResultSet} row to a {@link User} model object for application logic.
-     * @param rs The ResultSet to map.
-     * @return A populated User model object.
-     * @throws SQLException if a database access error occurs.
+     * Marks a batch of acknowledged uploads as synced and drops their change_log entries.
+     * See {@link ChangeLogDAO#acknowledge}.
+     * @param ids The local IDs of the uploaded users.
+     * @param uptoSeq The last change_log sequence number read before the rows were loaded for upload.
+     * @param tenantId The UUID of the tenant.
      */
-    private User mapToModel(ResultSet rs) throws SQLException {
-        User u = new User();
-        u.setId(rs.getLong("id"));
-        u.setUuid(rs.getString("uuid"));
-        u.setTenantId(rs.getString("tenant_id"));
-        u.setUsername(rs.getString("username"));
-        u.setFirstname(rs.getString("firstname"));
-        u.setLastname(rs.getString("lastname"));
-        u.setPasswordHash(rs.getString("password_hash"));
-        u.setEmail(rs.getString("email"));
-        u.setPhone(rs.getString("phone"));
-        u.setRole(rs.getString("role"));
-        u.setIsActive(rs.getBoolean("is_active"));
-        Timestamp ts = rs.getTimestamp("last_updated_at");
-        if (ts != null) {
-            u.setLastUpdatedAt(ts.toLocalDateTime());
+    public void markAllAsSynced(Collection<Long> ids, long uptoSeq, String tenantId) {
+        try {
+            ChangeLogDAO.acknowledge("users", ids, uptoSeq, tenantId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to mark " + ids.size() + " users as synced", e);
         }
-        u.setIsSynced(rs.getInt("is_synced")); // Corrected to use getBoolean
-        u.setIsDeleted(rs.getBoolean("is_deleted"));
-        return u;
     }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+// src/main/java/com/kmu/syncpos/dao/UuidCache.java
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.util.ConfigLoader;
+import com.kmu.syncpos.util.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bidirectional UUID to local ID cache for one table.
+ * Sync records reference each other by UUID while local rows reference each other by ID. The remote upserts
+ * and the push-side UUID enrichment resolve those references here instead of running a lookup query per row.
+ * <p>
+ * The cache fills lazily: a miss reads the row through {@link DatabaseManager#getConnection()} (so inside a
+ * transaction it also sees rows the transaction has just written) and remembers the pair. Misses are not
+ * remembered, because a parent may arrive later in the same sync. A UUID and its ID never change once a row
+ * exists and rows are only ever soft-deleted, so the one way an entry can go stale is a rollback of the
+ * transaction that created the row; entries learned inside a transaction are dropped again if it rolls back.
+ */
+public final class UuidCache {
+
+    private static final int MAX_ENTRIES = ConfigLoader.getIntProperty("database.uuid.cache.max.entries", 100_000);
+
+    public static final UuidCache USERS = new UuidCache("users");
+    public static final UuidCache CATEGORIES = new UuidCache("categories");
+    public static final UuidCache UNITS = new UuidCache("units");
+    public static final UuidCache SUPPLIERS = new UuidCache("suppliers");
+    public static final UuidCache CUSTOMERS = new UuidCache("customers");
+    public static final UuidCache PRODUCTS = new UuidCache("products");
+    public static final UuidCache SALES = new UuidCache("sales");
+    public static final UuidCache SALE_ITEMS = new UuidCache("sale_items");
+
+    private final String table;
+    private final String idByUuidSql;
+    private final String uuidByIdSql;
+    private final Map<String, Long> ids = new ConcurrentHashMap<>();
+    private final Map<Long, String> uuids = new ConcurrentHashMap<>();
+
+    private UuidCache(String table) {
+        this.table = table;
+        this.idByUuidSql = "SELECT id FROM " + table + " WHERE uuid = ?";
+        this.uuidByIdSql = "SELECT uuid FROM " + table + " WHERE id = ?";
+    }
+
+    /**
+     * @param uuid The UUID of a row, may be null.
+     * @return The local ID of the row, or null if the UUID is null or no such row exists (yet).
+     * @throws SQLException if the lookup on a cache miss fails.
+     */
+    public Long idFor(String uuid) throws SQLException {
+        if (uuid == null) {
+            return null;
+        }
+        Long id = ids.get(uuid);
+        if (id != null) {
+            return id;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(idByUuidSql)) {
+            ps.setString(1, uuid);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                id = rs.getLong(1);
+                remember(id, uuid);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @param id The local ID of a row, may be null.
+     * @return The UUID of the row, or null if the ID is null, not positive or no such row exists.
+     * @throws SQLException if the lookup on a cache miss fails.
+     */
+    public String uuidFor(Long id) throws SQLException {
+        if (id == null || id <= 0) {
+            return null;
+        }
+        String uuid = uuids.get(id);
+        if (uuid != null) {
+            return uuid;
+        }
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(uuidByIdSql)) {
+            ps.setLong(1, id);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                uuid = rs.getString(1);
+                remember(id, uuid);
+            }
+        }
+        return uuid;
+    }
+
+    /**
+     * Records a pair the caller already knows, e.g. right after inserting a row with a generated UUID.
+     */
+    public void remember(long id, String uuid) {
+        if (ids.size() >= MAX_ENTRIES) {
+            // Crude bound for very large tables (sale items on a big initial sync): start over rather than track recency.
+            clear();
+        }
+        ids.put(uuid, id);
+        uuids.put(id, uuid);
+        DatabaseManager.getInstance().onRollback(() -> forget(id, uuid));
+    }
+
+    /**
+     * Drops every entry, e.g. after the local database has been replaced.
+     */
+    public void clear() {
+        ids.clear();
+        uuids.clear();
+    }
+
+    private void forget(long id, String uuid) {
+        ids.remove(uuid, id);
+        uuids.remove(id, uuid);
+    }
+
+    @Override
+    public String toString() {
+        return "UuidCache[" + table + ", " + ids.size() + " entries]";
+    }
+}
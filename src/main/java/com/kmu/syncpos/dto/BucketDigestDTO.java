@@ -0,0 +1,13 @@
+// src/main/java/com/kmu/syncpos/dto/BucketDigestDTO.java
+package com.kmu.syncpos.dto;
+
+/**
+ * The digest of the rows of one table whose UUID starts with a given prefix, as computed by the server's
+ * {@code sync_digest} function or locally; see {@code RowDigest} for the definition both sides share.
+ *
+ * @param bucket The UUID prefix (lowercase hex).
+ * @param rows   The number of rows in the bucket.
+ * @param digest The wrapping 64-bit sum of the rows' digests.
+ */
+public record BucketDigestDTO(String bucket, long rows, long digest) {
+}
@@ -1,5 +1,6 @@
 package com.kmu.syncpos.dto;
 
+import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import lombok.Getter;
 import lombok.Setter;
@@ -9,13 +10,13 @@ import java.time.OffsetDateTime;
 @Getter
 @Setter
 public class CategoryDTO extends BaseDTO {
-    private String uuid;
+    @Expose private String uuid;
 
-    @SerializedName("tenant_id")
+    @Expose @SerializedName("tenant_id")
     private String tenantId;
 
-    private String name;
-    private String description;
+    @Expose private String name;
+    @Expose private String description;
 
     // --- Relational IDs & UUIDs ---
 
@@ -24,16 +25,16 @@ public class CategoryDTO extends BaseDTO {
     private Long parentId;
 
     // [For Syncing] The UUID of the parent category. ESSENTIAL for the DAO's upsert method.
-    @SerializedName("parent_uuid")
+    @Expose @SerializedName("parent_uuid")
     private String parentUuid;
 
     // --- Timestamps & Flags ---
 
-    @SerializedName("last_updated_at")
+    @Expose @SerializedName("last_updated_at")
     private OffsetDateTime lastUpdatedAt;
 
     private transient int isSynced;
 
-    @SerializedName("is_deleted")
+    @Expose @SerializedName("is_deleted")
     private boolean isDeleted;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.kmu.syncpos.dto;
 
+import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import lombok.Getter;
 import lombok.Setter;
@@ -11,71 +12,71 @@ import java.time.OffsetDateTime;
 public class ProductDTO extends BaseDTO {
 
     // Global unique identifier for this product. This is the primary key for syncing.
-    private String uuid;
+    @Expose private String uuid;
 
-    @SerializedName("tenant_id")
+    @Expose @SerializedName("tenant_id")
     private String tenantId;
 
-    private String sku;
-    private String barcode;
-    private String name;
-    private String description;
+    @Expose private String sku;
+    @Expose private String barcode;
+    @Expose private String name;
+    @Expose private String description;
 
-    @SerializedName("product_type")
+    @Expose @SerializedName("product_type")
     private String productType;
 
     // --- Relational IDs ---
     @SerializedName("category_id")
     private Long categoryId;
 
-    @SerializedName("category_uuid")
+    @Expose @SerializedName("category_uuid")
     private String categoryUuid;
 
     @SerializedName("unit_id")
     private Long unitId;
 
-    @SerializedName("unit_uuid")
+    @Expose @SerializedName("unit_uuid")
     private String unitUuid;
 
     @SerializedName("supplier_id")
     private Long supplierId;
 
-    @SerializedName("supplier_uuid")
+    @Expose @SerializedName("supplier_uuid")
     private String supplierUuid;
 
 
     // --- Financial & Stock Data ---
 
-    @SerializedName("purchase_price")
+    @Expose @SerializedName("purchase_price")
     private Double purchasePrice; // REFINED: Use Double wrapper for nullability
 
-    @SerializedName("selling_price")
+    @Expose @SerializedName("selling_price")
     private Double sellingPrice;  // REFINED: Use Double wrapper for nullability
 
-    @SerializedName("tax_rate")
+    @Expose @SerializedName("tax_rate")
     private Double taxRate;       // REFINED: Use Double wrapper for nullability
 
-    @SerializedName("min_stock_level")
+    @Expose @SerializedName("min_stock_level")
     private Double minStockLevel; // REFINED: Use Integer wrapper for nullability
 
-    @SerializedName("reorder_quantity")
+    @Expose @SerializedName("reorder_quantity")
     private Double reorderQuantity; // REFINED: Use Integer wrapper for nullability
 
-    @SerializedName("current_stock")
+    @Expose @SerializedName("current_stock")
     private Double currentStock; // REFINED: Use Double wrapper for nullability
 
 
     // --- Timestamps & Flags ---
 
-    @SerializedName("is_active")
+    @Expose @SerializedName("is_active")
     private boolean isActive;
 
-    @SerializedName("last_updated_at")
+    @Expose @SerializedName("last_updated_at")
     private OffsetDateTime lastUpdatedAt;
 
     // Local-only flag, not serialized.
     private transient int isSynced;
 
-    @SerializedName("is_deleted")
+    @Expose @SerializedName("is_deleted")
     private boolean isDeleted;
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 // src/main/java/com/kmu/syncpos/dto/ProductSupplierDTO.java
 package com.kmu.syncpos.dto;
 
+import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import lombok.Getter;
 import lombok.Setter;
@@ -14,9 +15,9 @@ import java.time.OffsetDateTime;
 @Getter
 @Setter
 public class ProductSupplierDTO extends BaseDTO{
-    private String uuid;
+    @Expose private String uuid;
 
-    @SerializedName("tenant_id")
+    @Expose @SerializedName("tenant_id")
     private String tenantId;
 
     // --- Relational IDs for Local Use ---
@@ -27,22 +28,22 @@ public class ProductSupplierDTO extends BaseDTO{
     private long supplierId;
 
     // --- Relational UUIDs for Syncing ---
-    @SerializedName("product_uuid")
+    @Expose @SerializedName("product_uuid")
     private String productUuid;
 
-    @SerializedName("supplier_uuid")
+    @Expose @SerializedName("supplier_uuid")
     private String supplierUuid;
 
     // --- Data Field ---
-    @SerializedName("supplier_product_code")
+    @Expose @SerializedName("supplier_product_code")
     private String supplierProductCode;
 
     // --- Timestamps & Flags ---
-    @SerializedName("last_updated_at")
+    @Expose @SerializedName("last_updated_at")
     private OffsetDateTime lastUpdatedAt;
 
     private transient int isSynced;
 
-    @SerializedName("is_deleted")
+    @Expose @SerializedName("is_deleted")
     private boolean isDeleted;
 }
\ No newline at end of file
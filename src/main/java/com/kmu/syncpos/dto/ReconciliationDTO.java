@@ -0,0 +1,30 @@
+// src/main/java/com/kmu/syncpos/dto/ReconciliationDTO.java
+package com.kmu.syncpos.dto;
+
+/**
+ * What reconciling one table with the server found and repaired.
+ *
+ * @param table           The reconciled table.
+ * @param bucketsCompared Buckets whose digests were compared, at every level.
+ * @param leavesCompared  Mismatching buckets small enough to be compared row by row.
+ * @param missingLocally  Rows only the server has; they were downloaded.
+ * @param missingOnServer Synced rows the server does not have; they were queued for upload again.
+ * @param different       Synced rows whose content differs; the server's version was downloaded.
+ * @param pendingUpload   Rows that differ only because a local edit has not been uploaded yet; left alone.
+ * @param repaired        Rows downloaded or queued for upload.
+ */
+public record ReconciliationDTO(String table, int bucketsCompared, int leavesCompared, int missingLocally,
+                                int missingOnServer, int different, int pendingUpload, int repaired) {
+
+    public boolean inSync() {
+        return missingLocally == 0 && missingOnServer == 0 && different == 0;
+    }
+
+    @Override
+    public String toString() {
+        return inSync()
+                ? String.format("%s: in sync, %d pending upload (%d buckets compared)", table, pendingUpload, bucketsCompared)
+                : String.format("%s: %d missing locally, %d missing on the server, %d different, %d pending upload; %d repaired (%d buckets, %d leaves compared)",
+                        table, missingLocally, missingOnServer, different, pendingUpload, repaired, bucketsCompared, leavesCompared);
+    }
+}
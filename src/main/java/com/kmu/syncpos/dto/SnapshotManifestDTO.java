@@ -0,0 +1,37 @@
+// src/main/java/com/kmu/syncpos/dto/SnapshotManifestDTO.java
+package com.kmu.syncpos.dto;
+
+import java.util.List;
+
+/**
+ * The table of contents of a snapshot archive: which tenant it belongs to and, per table, its segment.
+ *
+ * @param formatVersion The archive layout; readers refuse versions they do not know.
+ * @param tenantId      The UUID of the tenant whose rows the archive holds.
+ * @param createdAt     When the snapshot was taken (ISO-8601).
+ * @param tables        One entry per synced table.
+ */
+public record SnapshotManifestDTO(int formatVersion, String tenantId, String createdAt, List<Table> tables) {
+
+    /**
+     * @param name          The synced table.
+     * @param file          The archive entry holding its rows, one JSON object per line, as the server sends them.
+     * @param rows          The number of rows (lines) in the entry.
+     * @param sha256        The hex SHA-256 of the uncompressed entry.
+     * @param lastUpdatedAt The watermark of the last row with a last_updated_at, or null if none has one.
+     * @param lastUuid      The UUID of that row.
+     */
+    public record Table(String name, String file, long rows, String sha256, String lastUpdatedAt, String lastUuid) {
+
+        /**
+         * @return Where an incremental pull continues after the snapshot, or null to pull the table from the start.
+         */
+        public SyncWatermarkDTO watermark() {
+            return lastUpdatedAt == null || lastUuid == null ? null : new SyncWatermarkDTO(lastUpdatedAt, lastUuid);
+        }
+    }
+
+    public Table table(String name) {
+        return tables.stream().filter(t -> t.name().equals(name)).findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,13 @@
+// src/main/java/com/kmu/syncpos/dto/StockDriftDTO.java
+package com.kmu.syncpos.dto;
+
+/**
+ * A product whose stored stock balance does not match the sum of its ledger entries.
+ *
+ * @param productId       The local product ID.
+ * @param productName     The product's name, or null if the product row no longer exists.
+ * @param ledgerQuantity  The balance recomputed from non-deleted ledger entries.
+ * @param balanceQuantity The balance currently stored in 'product_stock'.
+ */
+public record StockDriftDTO(long productId, String productName, double ledgerQuantity, double balanceQuantity) {
+}
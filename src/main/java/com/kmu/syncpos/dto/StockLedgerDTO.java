@@ -1,6 +1,7 @@
 // src/main/java/com/kmu/syncpos/dto/StockLedgerDTO.java
 package com.kmu.syncpos.dto;
 
+import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import lombok.Getter;
 import lombok.Setter;
@@ -10,11 +11,11 @@ import java.time.OffsetDateTime;
 @Getter
 @Setter
 public class StockLedgerDTO extends BaseDTO {
-    private String uuid;
+    @Expose private String uuid;
 
-    @SerializedName("tenant_id")
+    @Expose @SerializedName("tenant_id")
     private String tenantId;
-    @SerializedName("user_uuid") private String userUuid;
+    @Expose @SerializedName("user_uuid") private String userUuid;
 
     // --- Relational IDs & UUIDs ---
 
@@ -22,7 +23,7 @@ public class StockLedgerDTO extends BaseDTO {
     private long productId; // Local DB ID
 
     // This is ESSENTIAL for the DAO's upsert method.
-    @SerializedName("product_uuid")
+    @Expose @SerializedName("product_uuid")
     private String productUuid; // UUID for syncing
 
     // Maps to the 'sale_item_id' column in the database.
@@ -30,7 +31,7 @@ public class StockLedgerDTO extends BaseDTO {
     private Long saleItemId; // Local DB ID (nullable)
 
     // This is ESSENTIAL for the DAO's upsert method.
-    @SerializedName("sale_item_uuid")
+    @Expose @SerializedName("sale_item_uuid")
     private String saleItemUuid;
 
     @SerializedName("user_id")
@@ -38,21 +39,21 @@ public class StockLedgerDTO extends BaseDTO {
 
     // --- Data Fields ---
 
-    @SerializedName("quantity_delta")
+    @Expose @SerializedName("quantity_delta")
     private double quantityDelta;
 
-    private String reason;
-    private String notes;
+    @Expose private String reason;
+    @Expose private String notes;
 
     // --- Timestamps & Flags ---
 
-    @SerializedName("created_at")
+    @Expose @SerializedName("created_at")
     private OffsetDateTime createdAt;
 
-    @SerializedName("last_updated_at")
+    @Expose @SerializedName("last_updated_at")
     private OffsetDateTime lastUpdatedAt;
 
-    @SerializedName("is_deleted")
+    @Expose @SerializedName("is_deleted")
     private boolean isDeleted;
 
     private transient int isSynced;
@@ -0,0 +1,28 @@
+// src/main/java/com/kmu/syncpos/dto/SyncRunDTO.java
+package com.kmu.syncpos.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One run of the sync service, as recorded in the 'sync_runs' history.
+ *
+ * @param tenantId   The UUID of the tenant.
+ * @param initial    true for the initial download after activation.
+ * @param startedAt  When the run started.
+ * @param durationMs Wall-clock time of the whole run.
+ * @param succeeded  false if the run ended with an error.
+ * @param error      The error message of a failed run, null otherwise.
+ * @param tables     The metrics of every table the run pushed or pulled, in the order they finished.
+ */
+public record SyncRunDTO(String tenantId, boolean initial, Instant startedAt, long durationMs, boolean succeeded, String error,
+                         List<SyncTableMetricsDTO> tables) {
+
+    public long totalRows() {
+        return tables.stream().mapToLong(SyncTableMetricsDTO::rows).sum();
+    }
+
+    public long totalBytes() {
+        return tables.stream().mapToLong(t -> t.bytesSent() + t.bytesReceived()).sum();
+    }
+}
@@ -0,0 +1,40 @@
+// src/main/java/com/kmu/syncpos/dto/SyncTableMetricsDTO.java
+package com.kmu.syncpos.dto;
+
+/**
+ * What syncing one table in one phase (push or pull) cost.
+ * The three stage times show where the time went: waiting on the server and the network, (de)serializing JSON,
+ * or reading and writing SQLite. They are summed over the table's requests and can add up to less than the
+ * duration, which also covers waiting for a pooled connection and bookkeeping.
+ *
+ * @param phase         "push" or "pull".
+ * @param table         The synced table.
+ * @param rows          Rows uploaded and acknowledged, or downloaded and saved.
+ * @param applied       Downloaded rows that were newer than the local row and written over it (pull only).
+ * @param skipped       Downloaded rows that were not newer than the local row, or identical to it (pull only).
+ * @param conflicts     Downloaded rows that met a local edit not yet uploaded; the newer version won (pull only).
+ * @param bytesSent     Request bytes on the wire.
+ * @param bytesReceived Response bytes on the wire.
+ * @param durationMs    Wall-clock time of the table's step.
+ * @param networkMs     Time spent in HTTP requests, up to the response headers (for uploads: the whole request).
+ * @param jsonMs        Time spent serializing uploads and parsing downloaded rows (including reading the response body).
+ * @param databaseMs    Time spent loading and writing local rows.
+ * @param failures      Failed steps plus records the server rejected.
+ * @param retries       Requests repeated after a transient failure.
+ */
+public record SyncTableMetricsDTO(String phase, String table, long rows, long applied, long skipped, long conflicts,
+                                  long bytesSent, long bytesReceived, long durationMs, long networkMs, long jsonMs, long databaseMs, int failures, int retries) {
+
+    public double rowsPerSecond() {
+        return durationMs == 0 ? rows * 1000.0 : rows * 1000.0 / durationMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %d rows in %d ms (%.0f rows/s; %snetwork %d ms, json %d ms, db %d ms; %.1f KB out, %.1f KB in%s%s)",
+                phase, table, rows, durationMs, rowsPerSecond(),
+                applied + skipped > 0 ? applied + " applied, " + skipped + " skipped, " + conflicts + " conflicts; " : "",
+                networkMs, jsonMs, databaseMs, bytesSent / 1024.0, bytesReceived / 1024.0,
+                failures > 0 ? "; " + failures + " failed" : "", retries > 0 ? "; " + retries + " retried" : "");
+    }
+}
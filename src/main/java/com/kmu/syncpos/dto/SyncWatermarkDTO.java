@@ -0,0 +1,13 @@
+// src/main/java/com/kmu/syncpos/dto/SyncWatermarkDTO.java
+package com.kmu.syncpos.dto;
+
+/**
+ * The position an incremental pull of one table has reached: the newest remote row applied locally.
+ * Rows are pulled in (last_updated_at, uuid) order, so the UUID breaks ties between rows written in
+ * the same instant.
+ *
+ * @param lastUpdatedAt The row's last_updated_at exactly as the server rendered it.
+ * @param lastUuid      The row's UUID.
+ */
+public record SyncWatermarkDTO(String lastUpdatedAt, String lastUuid) {
+}
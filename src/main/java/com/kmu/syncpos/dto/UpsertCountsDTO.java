@@ -0,0 +1,19 @@
+// src/main/java/com/kmu/syncpos/dto/UpsertCountsDTO.java
+package com.kmu.syncpos.dto;
+
+/**
+ * The outcome of applying pulled records to a local table.
+ * A record is applied only if it is newer than the local row and differs from it; otherwise the local row is kept.
+ *
+ * @param applied   Records inserted or written over the local row.
+ * @param skipped   Records that were not newer than the local row, identical to it, or failed sanitization.
+ * @param conflicts Records (applied or skipped) whose local row had an edit not yet uploaded; the newer version won.
+ */
+public record UpsertCountsDTO(int applied, int skipped, int conflicts) {
+
+    public static final UpsertCountsDTO NONE = new UpsertCountsDTO(0, 0, 0);
+
+    public UpsertCountsDTO plus(UpsertCountsDTO other) {
+        return new UpsertCountsDTO(applied + other.applied, skipped + other.skipped, conflicts + other.conflicts);
+    }
+}
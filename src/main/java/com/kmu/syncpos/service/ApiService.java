@@ -3,18 +3,28 @@ package com.kmu.syncpos.service;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import com.kmu.syncpos.util.ConfigLoader;
+import com.kmu.syncpos.util.HttpClientManager;
 import com.kmu.syncpos.util.LocalDateAdapter;
 import com.kmu.syncpos.util.OffsetDateTimeAdapter;
 import okhttp3.*;
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import com.kmu.syncpos.dto.*;
 
@@ -22,6 +32,8 @@ import com.kmu.syncpos.dto.*;
  * A service for communicating with the remote Supabase API.
  * This class is responsible for all HTTP requests and serialization/deserialization.
  * Configuration is loaded from application.properties file.
+ * All instances share the process-wide client of {@link HttpClientManager}; every request is tagged
+ * with its table, so that {@link com.kmu.syncpos.util.TrafficStats} counts its bytes under that table.
  */
 public final class ApiService {
 
@@ -29,20 +41,31 @@ public final class ApiService {
     private static final String SUPABASE_URL = ConfigLoader.getSupabaseUrl();
     private static final String SUPABASE_ANON_KEY = ConfigLoader.getSupabaseAnonKey();
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final UploadResult MISSING_BATCH_FUNCTION =
+            new UploadResult(UploadResult.Kind.PERMANENT, 404, "Batch function not deployed");
 
     // --- Shared Components ---
-    private final OkHttpClient client = new OkHttpClient();
-    private final Gson gson = new GsonBuilder()
-            .excludeFieldsWithoutExposeAnnotation()
-            .registerTypeAdapter(OffsetDateTime.class, new OffsetDateTimeAdapter())
-            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-            .create();
-
-    private <D> boolean post(String table, D dto) {
+    private final OkHttpClient client = HttpClientManager.getInstance().getClient();
+    private final Set<String> missingRpcFunctions = ConcurrentHashMap.newKeySet();
+    private final Gson gson = syncGson();
+
+    /**
+     * @return The JSON mapping of the DTOs to and from the server's rows; snapshots use the same one.
+     */
+    static Gson syncGson() {
+        return new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .registerTypeAdapter(OffsetDateTime.class, new OffsetDateTimeAdapter())
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .create();
+    }
+
+    private <D> UploadResult post(String table, D dto) {
         String url = SUPABASE_URL + "/rest/v1/" + table;
-        RequestBody body = RequestBody.create(gson.toJson(dto), JSON);
+        RequestBody body = toJsonBody(dto);
         Request req = new Request.Builder()
                 .url(url)
+                .tag(String.class, table)
                 .addHeader("apikey", SUPABASE_ANON_KEY)
                 .addHeader("Authorization", "Bearer " + SUPABASE_ANON_KEY)
                 .addHeader("Content-Type", "application/json")
@@ -50,15 +73,14 @@ public final class ApiService {
                 .post(body)
                 .build();
 
-        try (Response resp = client.newCall(req).execute()) {
+        try (Response resp = timedUpload(req)) {
             if (!resp.isSuccessful()) {
-                logError("POST", url, resp);
-                return false;
+                return uploadFailure("POST", url, resp);
             }
-            return true;
+            return UploadResult.SUCCESS;
         } catch (IOException e) {
             logException("POST", url, e);
-            return false;
+            return UploadResult.forException(e);
         }
     }
 
@@ -66,6 +88,7 @@ public final class ApiService {
         String url = SUPABASE_URL + "/rest/v1/tenants?license_key=eq." + licenseKey + "&limit=1";
         Request req = new Request.Builder()
                 .url(url)
+                .tag(String.class, "tenants")
                 .addHeader("apikey", SUPABASE_ANON_KEY)
                 .addHeader("Authorization", "Bearer " + SUPABASE_ANON_KEY)
                 .addHeader("Accept", "application/vnd.pgrst.object+json")
@@ -83,84 +106,338 @@ public final class ApiService {
         }
     }
 
-    private <T> List<T> getAllForTenant(String tableName, String tenantId, Type typeOfT) {
-        String url = SUPABASE_URL + "/rest/v1/" + tableName + "?tenant_id=eq." + tenantId;
+    /**
+     * Receives the rows of an incremental pull one page at a time.
+     */
+    @FunctionalInterface
+    public interface PageConsumer<T> {
+        /**
+         * @param page    Up to one page of rows, in (last_updated_at, uuid) order.
+         * @param reached The watermark of the last row in the page that has a last_updated_at, or null if none has.
+         *                It is read from the raw JSON, which keeps the server's exact rendering of the timestamp.
+         */
+        void accept(List<T> page, SyncWatermarkDTO reached);
+    }
+
+    /**
+     * Streams a tenant's rows of one table that are newer than a watermark, one keyset-paginated request per page.
+     * Each response is parsed incrementally and a page is handed to the consumer once its response is closed, so
+     * memory use is bounded by the page size rather than the table size and no connection is held during local writes.
+     * @param since    The watermark of the last pull, or null to fetch the whole table.
+     * @param pageSize The maximum number of rows per request (and per call of the consumer).
+     * @return true if the table was read to the end; false if a request failed, ending the pull early
+     *         (the consumer has received the pages before it).
+     */
+    private <T> boolean streamChangesForTenant(String tableName, String tenantId, SyncWatermarkDTO since, Class<T> type,
+                                           int pageSize, PageConsumer<T> consumer) {
+        return streamChangesForTenant(tableName, tenantId, since, row -> gson.fromJson(row, type), pageSize, consumer);
+    }
+
+    private <T> boolean streamChangesForTenant(String tableName, String tenantId, SyncWatermarkDTO since, Function<JsonObject, T> mapper,
+                                           int pageSize, PageConsumer<T> consumer) {
+        // Rows without a last_updated_at sort last and can never pass a watermark filter, so only a full pull sees them.
+        boolean includeUntimed = since == null;
+        String afterUpdatedAt = since == null ? null : since.lastUpdatedAt();
+        String afterUuid = since == null ? null : since.lastUuid();
+        while (true) {
+            HttpUrl url = changesUrl(tableName, tenantId, afterUpdatedAt, afterUuid, includeUntimed, pageSize);
+            Request req = new Request.Builder()
+                    .url(url)
+                    .tag(String.class, tableName)
+                    .addHeader("apikey", SUPABASE_ANON_KEY)
+                    .addHeader("Authorization", "Bearer " + SUPABASE_ANON_KEY)
+                    .build();
+
+            List<T> page = new ArrayList<>(pageSize);
+            SyncWatermarkDTO reached = null;
+            String lastUpdatedAt = null;
+            String lastUuid = null;
+            long requestStart = System.nanoTime();
+            try (Response resp = client.newCall(req).execute()) {
+                long parseStart = System.nanoTime();
+                SyncMetrics.addTime(SyncMetrics.Stage.NETWORK, parseStart - requestStart);
+                if (!resp.isSuccessful()) {
+                    logError("GET " + tableName, url.toString(), resp);
+                    return false;
+                }
+                JsonReader reader = new JsonReader(resp.body().charStream());
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    // Only one row's parse tree exists at a time.
+                    JsonObject row = JsonParser.parseReader(reader).getAsJsonObject();
+                    page.add(mapper.apply(row));
+                    lastUpdatedAt = stringOrNull(row, "last_updated_at");
+                    lastUuid = stringOrNull(row, "uuid");
+                    if (lastUpdatedAt != null && lastUuid != null) {
+                        reached = new SyncWatermarkDTO(lastUpdatedAt, lastUuid);
+                    }
+                }
+                reader.endArray();
+                // The body is read while it is parsed, so this includes receiving it.
+                SyncMetrics.addTime(SyncMetrics.Stage.JSON, System.nanoTime() - parseStart);
+            } catch (IOException | JsonParseException | IllegalStateException e) {
+                logException("GET " + tableName, url.toString(), e);
+                return false;
+            }
+
+            if (page.isEmpty()) {
+                return true;
+            }
+            consumer.accept(page, reached);
+            if (page.size() < pageSize || lastUuid == null) {
+                return true;
+            }
+            afterUpdatedAt = lastUpdatedAt;
+            afterUuid = lastUuid;
+        }
+    }
+
+    /**
+     * Builds the request for the page following the row (afterUpdatedAt, afterUuid); the first page when afterUuid is null.
+     */
+    private static HttpUrl changesUrl(String tableName, String tenantId, String afterUpdatedAt, String afterUuid,
+                                      boolean includeUntimed, int limit) {
+        HttpUrl.Builder urlBuilder = HttpUrl.get(SUPABASE_URL + "/rest/v1/" + tableName).newBuilder()
+                .addQueryParameter("tenant_id", "eq." + tenantId)
+                .addQueryParameter("order", "last_updated_at.asc,uuid.asc")
+                .addQueryParameter("limit", String.valueOf(limit));
+        if (afterUuid != null) {
+            // Values are quoted because timestamps contain PostgREST's reserved ':' and '.'.
+            String uuid = "\"" + afterUuid + "\"";
+            if (afterUpdatedAt == null) {
+                urlBuilder.addQueryParameter("and", "(last_updated_at.is.null,uuid.gt." + uuid + ")");
+            } else {
+                String ts = "\"" + afterUpdatedAt + "\"";
+                urlBuilder.addQueryParameter("or", "(last_updated_at.gt." + ts
+                        + ",and(last_updated_at.eq." + ts + ",uuid.gt." + uuid + ")"
+                        + (includeUntimed ? ",last_updated_at.is.null)" : ")"));
+            }
+        }
+        return urlBuilder.build();
+    }
+
+    static String stringOrNull(JsonObject row, String member) {
+        JsonElement value = row.get(member);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    /**
+     * Asks the server how many rows a tenant has in one table, without downloading them.
+     * @return The exact row count, or -1 if it could not be determined.
+     */
+    public long countForTenant(String tableName, String tenantId) {
+        HttpUrl url = HttpUrl.get(SUPABASE_URL + "/rest/v1/" + tableName).newBuilder()
+                .addQueryParameter("tenant_id", "eq." + tenantId)
+                .build();
         Request req = new Request.Builder()
                 .url(url)
+                .tag(String.class, tableName)
+                .head()
                 .addHeader("apikey", SUPABASE_ANON_KEY)
                 .addHeader("Authorization", "Bearer " + SUPABASE_ANON_KEY)
+                .addHeader("Prefer", "count=exact")
                 .build();
 
         try (Response resp = client.newCall(req).execute()) {
+            // PostgREST reports the total after the slash, e.g. "0-24/25" or "*/0".
+            String contentRange = resp.header("Content-Range");
+            if (!resp.isSuccessful() || contentRange == null || contentRange.endsWith("/*")) {
+                logError("HEAD " + tableName, url.toString(), resp);
+                return -1;
+            }
+            return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1));
+        } catch (IOException | NumberFormatException e) {
+            logException("HEAD " + tableName, url.toString(), e);
+            return -1;
+        }
+    }
+
+    // --- Reconciliation ---
+    // The digest functions compute RowDigest's definition on the server: sync_digest(p_tenant_id, p_table, p_prefix,
+    // p_length) returns [{bucket, rows, digest}] for the buckets of length p_length under p_prefix, and
+    // sync_row_digests(p_tenant_id, p_table, p_prefix) returns [{uuid, digest}] for the rows under p_prefix.
+
+    /**
+     * @return The server's digests of the non-empty buckets of length {@code length} under a UUID prefix,
+     *         or null if the request failed.
+     */
+    public List<BucketDigestDTO> fetchBucketDigests(String tableName, String tenantId, String prefix, int length) {
+        JsonArray rows = callRpcForRows(tableName, "sync_digest",
+                Map.of("p_tenant_id", tenantId, "p_table", tableName, "p_prefix", prefix, "p_length", length));
+        if (rows == null) {
+            return null;
+        }
+        List<BucketDigestDTO> buckets = new ArrayList<>(rows.size());
+        for (JsonElement row : rows) {
+            JsonObject bucket = row.getAsJsonObject();
+            buckets.add(new BucketDigestDTO(bucket.get("bucket").getAsString(), bucket.get("rows").getAsLong(),
+                    Long.parseLong(bucket.get("digest").getAsString())));
+        }
+        return buckets;
+    }
+
+    /**
+     * @return The server's digest of every row under a UUID prefix, by UUID, or null if the request failed.
+     */
+    public Map<String, Long> fetchRowDigests(String tableName, String tenantId, String prefix) {
+        JsonArray rows = callRpcForRows(tableName, "sync_row_digests",
+                Map.of("p_tenant_id", tenantId, "p_table", tableName, "p_prefix", prefix));
+        if (rows == null) {
+            return null;
+        }
+        Map<String, Long> digests = new HashMap<>(rows.size() * 2);
+        for (JsonElement row : rows) {
+            JsonObject digest = row.getAsJsonObject();
+            digests.put(digest.get("uuid").getAsString(), Long.parseLong(digest.get("digest").getAsString()));
+        }
+        return digests;
+    }
+
+    /**
+     * Downloads specific rows of a tenant, e.g. the ones reconciliation found missing or different.
+     * @return The rows the server has, or null if a request failed.
+     */
+    public <T> List<T> fetchByUuids(String tableName, String tenantId, Collection<String> uuids, Class<T> type) {
+        List<T> found = new ArrayList<>(uuids.size());
+        List<String> all = List.copyOf(uuids);
+        // Keeps the query string of each request well below common URL length limits.
+        for (int from = 0; from < all.size(); from += 100) {
+            HttpUrl url = HttpUrl.get(SUPABASE_URL + "/rest/v1/" + tableName).newBuilder()
+                    .addQueryParameter("tenant_id", "eq." + tenantId)
+                    .addQueryParameter("uuid", "in.(" + String.join(",", all.subList(from, Math.min(from + 100, all.size()))) + ")")
+                    .build();
+            Request req = new Request.Builder()
+                    .url(url)
+                    .tag(String.class, tableName)
+                    .addHeader("apikey", SUPABASE_ANON_KEY)
+                    .addHeader("Authorization", "Bearer " + SUPABASE_ANON_KEY)
+                    .build();
+            try (Response resp = timedUpload(req)) {
+                if (!resp.isSuccessful()) {
+                    logError("GET " + tableName, url.toString(), resp);
+                    return null;
+                }
+                for (JsonElement row : JsonParser.parseString(resp.body().string()).getAsJsonArray()) {
+                    found.add(gson.fromJson(row, type));
+                }
+            } catch (IOException | JsonParseException | IllegalStateException e) {
+                logException("GET " + tableName, url.toString(), e);
+                return null;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * A function the server does not have is remembered, so it is not called again until the app restarts.
+     */
+    private JsonArray callRpcForRows(String table, String functionName, Object payload) {
+        if (missingRpcFunctions.contains(functionName)) {
+            return null;
+        }
+        String url = SUPABASE_URL + "/rpc/" + functionName;
+        Request req = new Request.Builder()
+                .url(url)
+                .tag(String.class, table)
+                .addHeader("apikey", SUPABASE_ANON_KEY)
+                .addHeader("Authorization", "Bearer " + SUPABASE_ANON_KEY)
+                .post(toJsonBody(payload))
+                .build();
+        try (Response resp = timedUpload(req)) {
             if (!resp.isSuccessful()) {
-                logError("GET " + tableName, url, resp);
-                return Collections.emptyList();
+                logError("RPC " + functionName, url, resp);
+                if (resp.code() == 404) {
+                    missingRpcFunctions.add(functionName);
+                }
+                return null;
             }
-            return gson.fromJson(resp.body().string(), typeOfT);
-        } catch (IOException e) {
-            logException("GET " + tableName, url, e);
-            return Collections.emptyList();
+            return JsonParser.parseString(resp.body().string()).getAsJsonArray();
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            logException("RPC " + functionName, url, e);
+            return null;
         }
     }
 
     // --- Entity-Specific POST Methods ---
 
-    public boolean postSettings(SettingsDTO dto) {
+    public UploadResult postSettings(SettingsDTO dto) {
         return post("settings", dto);
     }
-    public boolean postUser(UserDTO dto) { return postRpc("upsert_user", dto); }
-    public boolean postSupplier(SupplierDTO dto) { return postRpc("upsert_supplier", dto); }
-    public boolean postCustomer(CustomerDTO dto) { return postRpc("upsert_customer", dto); }
-    public boolean postCategory(CategoryDTO dto) { return postRpc("upsert_category", dto); }
-    public boolean postUnit(UnitDTO dto) { return postRpc("upsert_unit", dto); }
-    public boolean postProduct(ProductDTO dto) { return postRpc("upsert_product", dto); }
-    public boolean postProductSupplier(ProductSupplierDTO dto) { return postRpc("upsert_product_supplier", dto); }
-    public boolean postSale(SaleDTO dto) { return postRpc("upsert_sale", dto); }
-    public boolean postSaleItem(SaleItemDTO dto) { return postRpc("upsert_sale_item", dto); }
-    public boolean postPayment(PaymentDTO dto) { return postRpc("upsert_payment", dto); }
-    public boolean postStockLedger(StockLedgerDTO dto) { return postRpc("upsert_stock_ledger", dto); }
+    public UploadResult postUser(UserDTO dto) { return postRpc("users", "upsert_user", dto); }
+    public UploadResult postSupplier(SupplierDTO dto) { return postRpc("suppliers", "upsert_supplier", dto); }
+    public UploadResult postCustomer(CustomerDTO dto) { return postRpc("customers", "upsert_customer", dto); }
+    public UploadResult postCategory(CategoryDTO dto) { return postRpc("categories", "upsert_category", dto); }
+    public UploadResult postUnit(UnitDTO dto) { return postRpc("units", "upsert_unit", dto); }
+    public UploadResult postProduct(ProductDTO dto) { return postRpc("products", "upsert_product", dto); }
+    public UploadResult postProductSupplier(ProductSupplierDTO dto) { return postRpc("product_suppliers", "upsert_product_supplier", dto); }
+    public UploadResult postSale(SaleDTO dto) { return postRpc("sales", "upsert_sale", dto); }
+    public UploadResult postSaleItem(SaleItemDTO dto) { return postRpc("sale_items", "upsert_sale_item", dto); }
+    public UploadResult postPayment(PaymentDTO dto) { return postRpc("payments", "upsert_payment", dto); }
+    public UploadResult postStockLedger(StockLedgerDTO dto) { return postRpc("stock_ledger", "upsert_stock_ledger", dto); }
+
+    // --- Entity-Specific Batch POST Methods ---
+    // Each uploads a whole batch in one request; it only succeeds if the server accepted all of it.
+
+    public UploadResult postSettingsBatch(List<SettingsDTO> dtos) {
+        return post("settings", dtos); // PostgREST upserts a JSON array in one statement
+    }
+    public UploadResult postUserBatch(List<UserDTO> dtos) { return postRpcBatch("users", "upsert_user_batch", dtos); }
+    public UploadResult postSupplierBatch(List<SupplierDTO> dtos) { return postRpcBatch("suppliers", "upsert_supplier_batch", dtos); }
+    public UploadResult postCustomerBatch(List<CustomerDTO> dtos) { return postRpcBatch("customers", "upsert_customer_batch", dtos); }
+    public UploadResult postCategoryBatch(List<CategoryDTO> dtos) { return postRpcBatch("categories", "upsert_category_batch", dtos); }
+    public UploadResult postUnitBatch(List<UnitDTO> dtos) { return postRpcBatch("units", "upsert_unit_batch", dtos); }
+    public UploadResult postProductBatch(List<ProductDTO> dtos) { return postRpcBatch("products", "upsert_product_batch", dtos); }
+    public UploadResult postProductSupplierBatch(List<ProductSupplierDTO> dtos) { return postRpcBatch("product_suppliers", "upsert_product_supplier_batch", dtos); }
+    public UploadResult postSaleBatch(List<SaleDTO> dtos) { return postRpcBatch("sales", "upsert_sale_batch", dtos); }
+    public UploadResult postSaleItemBatch(List<SaleItemDTO> dtos) { return postRpcBatch("sale_items", "upsert_sale_item_batch", dtos); }
+    public UploadResult postPaymentBatch(List<PaymentDTO> dtos) { return postRpcBatch("payments", "upsert_payment_batch", dtos); }
+    public UploadResult postStockLedgerBatch(List<StockLedgerDTO> dtos) { return postRpcBatch("stock_ledger", "upsert_stock_ledger_batch", dtos); }
 
-    // --- Entity-Specific GET ALL Methods ---
+    // --- Entity-Specific Incremental GET Methods ---
+    // Each streams the tenant's rows changed after the given watermark (all rows when it is null) to the consumer.
 
-    public List<CategoryDTO> getAllCategories(String tenantId) {
-        return getAllForTenant("categories", tenantId, new TypeToken<List<CategoryDTO>>() {}.getType());
+    public boolean streamCategoryChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<CategoryDTO> consumer) {
+        return streamChangesForTenant("categories", tenantId, since, CategoryDTO.class, pageSize, consumer);
     }
-    public List<CustomerDTO> getAllCustomers(String tenantId) {
-        return getAllForTenant("customers", tenantId, new TypeToken<List<CustomerDTO>>() {}.getType());
+    public boolean streamCustomerChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<CustomerDTO> consumer) {
+        return streamChangesForTenant("customers", tenantId, since, CustomerDTO.class, pageSize, consumer);
     }
-    public List<ProductDTO> getAllProducts(String tenantId) {
-        return getAllForTenant("products", tenantId, new TypeToken<List<ProductDTO>>() {}.getType());
+    public boolean streamProductChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<ProductDTO> consumer) {
+        return streamChangesForTenant("products", tenantId, since, ProductDTO.class, pageSize, consumer);
     }
-    public List<SettingsDTO> getAllSettings(String tenantId) {
-        return getAllForTenant("settings", tenantId, new TypeToken<List<SettingsDTO>>() {}.getType());
+    public boolean streamSettingsChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<SettingsDTO> consumer) {
+        return streamChangesForTenant("settings", tenantId, since, SettingsDTO.class, pageSize, consumer);
     }
-    public List<SupplierDTO> getAllSuppliers(String tenantId) {
-        return getAllForTenant("suppliers", tenantId, new TypeToken<List<SupplierDTO>>() {}.getType());
+    public boolean streamSupplierChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<SupplierDTO> consumer) {
+        return streamChangesForTenant("suppliers", tenantId, since, SupplierDTO.class, pageSize, consumer);
     }
-    public List<UnitDTO> getAllUnits(String tenantId) {
-        return getAllForTenant("units", tenantId, new TypeToken<List<UnitDTO>>() {}.getType());
+    public boolean streamUnitChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<UnitDTO> consumer) {
+        return streamChangesForTenant("units", tenantId, since, UnitDTO.class, pageSize, consumer);
     }
-    public List<UserDTO> getAllUsers(String tenantId) {
-        return getAllForTenant("users", tenantId, new TypeToken<List<UserDTO>>() {}.getType());
+    public boolean streamUserChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<UserDTO> consumer) {
+        return streamChangesForTenant("users", tenantId, since, UserDTO.class, pageSize, consumer);
     }
-    public List<SaleDTO> getAllSales(String tenantId) {
-        return getAllForTenant("sales", tenantId, new TypeToken<List<SaleDTO>>() {}.getType());
+    public boolean streamSaleChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<SaleDTO> consumer) {
+        return streamChangesForTenant("sales", tenantId, since, SaleDTO.class, pageSize, consumer);
     }
-    public List<SaleItemDTO> getAllSaleItems(String tenantId) {
-        return getAllForTenant("sale_items", tenantId, new TypeToken<List<SaleItemDTO>>() {}.getType());
+    public boolean streamSaleItemChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<SaleItemDTO> consumer) {
+        return streamChangesForTenant("sale_items", tenantId, since, SaleItemDTO.class, pageSize, consumer);
     }
-    public List<PaymentDTO> getAllPayments(String tenantId) {
-        return getAllForTenant("payments", tenantId, new TypeToken<List<PaymentDTO>>() {}.getType());
+    public boolean streamPaymentChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<PaymentDTO> consumer) {
+        return streamChangesForTenant("payments", tenantId, since, PaymentDTO.class, pageSize, consumer);
     }
-
-    // --- CHANGE 2: CORRECTED TABLE NAME ---
-    public List<StockLedgerDTO> getAllStockLedgerEntries(String tenantId) {
-        return getAllForTenant("stock_ledger", tenantId, new TypeToken<List<StockLedgerDTO>>() {}.getType());
+    public boolean streamStockLedgerChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<StockLedgerDTO> consumer) {
+        return streamChangesForTenant("stock_ledger", tenantId, since, StockLedgerDTO.class, pageSize, consumer);
+    }
+    public boolean streamProductSupplierChanges(String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<ProductSupplierDTO> consumer) {
+        return streamChangesForTenant("product_suppliers", tenantId, since, ProductSupplierDTO.class, pageSize, consumer);
     }
 
-    // --- CHANGE 3: ADDED NEW GET ALL METHOD ---
-    public List<ProductSupplierDTO> getAllProductSuppliers(String tenantId) {
-        return getAllForTenant("product_suppliers", tenantId, new TypeToken<List<ProductSupplierDTO>>() {}.getType());
+    /**
+     * Streams a tenant's rows of any synced table as the server sends them, e.g. to write a snapshot.
+     */
+    public boolean streamRawChanges(String tableName, String tenantId, SyncWatermarkDTO since, int pageSize, PageConsumer<JsonObject> consumer) {
+        return streamChangesForTenant(tableName, tenantId, since, Function.identity(), pageSize, consumer);
     }
 
     // --- Logging Helper Methods ---
@@ -173,36 +450,82 @@ public final class ApiService {
         }
     }
 
+    private RequestBody toJsonBody(Object payload) {
+        long start = System.nanoTime();
+        RequestBody body = RequestBody.create(gson.toJson(payload), JSON);
+        SyncMetrics.addTime(SyncMetrics.Stage.JSON, System.nanoTime() - start);
+        return body;
+    }
+
+    private Response timedUpload(Request req) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return client.newCall(req).execute();
+        } finally {
+            SyncMetrics.addTime(SyncMetrics.Stage.NETWORK, System.nanoTime() - start);
+        }
+    }
+
+    private UploadResult uploadFailure(String method, String url, Response resp) {
+        String error;
+        try {
+            error = resp.body().string();
+        } catch (IOException | NullPointerException e) {
+            error = null;
+        }
+        System.err.printf("%s request to %s failed (%d): %s%n", method, url, resp.code(), error);
+        return UploadResult.forStatus(resp.code(), error);
+    }
+
     private void logException(String method, String url, Exception e) {
         System.err.printf("%s request to %s threw an exception: %s%n", method, url, e.getMessage());
     }
     // Add this new helper method to ApiService.java
-    private <D> boolean postRpc(String functionName, D dto) {
-        String url = SUPABASE_URL + "/rpc/" + functionName;
-
+    private <D> UploadResult postRpc(String table, String functionName, D dto) {
         // The payload needs to be wrapped in an object with a key that matches the function's parameter name.
         // We've consistently named our parameter 'item'.
-        String jsonPayload = gson.toJson(Map.of("item", dto));
+        return callRpc(table, functionName, Map.of("item", dto));
+    }
+
+    /**
+     * Uploads many records with one call of a set-based RPC, e.g. {@code upsert_sale_batch(items jsonb)}, which must
+     * apply the whole array in one server transaction. Deployments without that function answer 404; it is then
+     * remembered as missing, so callers go straight to per-record uploads for the rest of the session.
+     * A missing function is reported as a permanent failure, as retrying the batch cannot help.
+     */
+    private <D> UploadResult postRpcBatch(String table, String functionName, List<D> dtos) {
+        if (missingRpcFunctions.contains(functionName)) {
+            return MISSING_BATCH_FUNCTION;
+        }
+        UploadResult result = callRpc(table, functionName, Map.of("items", dtos));
+        if (result.httpStatus() == 404) {
+            missingRpcFunctions.add(functionName);
+            return MISSING_BATCH_FUNCTION;
+        }
+        return result;
+    }
 
-        RequestBody body = RequestBody.create(jsonPayload, JSON);
+    private UploadResult callRpc(String table, String functionName, Object payload) {
+        String url = SUPABASE_URL + "/rpc/" + functionName;
+        RequestBody body = toJsonBody(payload);
 
         Request req = new Request.Builder()
                 .url(url)
+                .tag(String.class, table)
                 .addHeader("apikey", SUPABASE_ANON_KEY)
                 .addHeader("Authorization", "Bearer " + SUPABASE_ANON_KEY)
                 .addHeader("Content-Type", "application/json") // Added for clarity
                 .post(body)
                 .build();
 
-        try (Response resp = client.newCall(req).execute()) {
+        try (Response resp = timedUpload(req)) {
             if (!resp.isSuccessful()) {
-                logError("RPC " + functionName, url, resp);
-                return false;
+                return uploadFailure("RPC " + functionName, url, resp);
             }
-            return true;
+            return UploadResult.SUCCESS;
         } catch (IOException e) {
             logException("RPC " + functionName, url, e);
-            return false;
+            return UploadResult.forException(e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+// src/main/java/com/kmu/syncpos/service/PagePipeline.java
+package com.kmu.syncpos.service;
+
+import com.kmu.syncpos.dto.SyncWatermarkDTO;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Overlaps the download of a table's pages with writing them.
+ * The pages are fetched on a separate thread into a bounded queue, while the calling thread takes them out and
+ * applies them, in order. So page k+1 downloads while page k is written to SQLite, and at most {@code depth}
+ * pages wait in memory when the database is the slower side. Since the caller still returns only after the last
+ * page is applied, a table's step completes at the same point as before and the dependent tables wait for it.
+ */
+final class PagePipeline {
+
+    /**
+     * Streams a table's pages to a consumer, e.g. {@code consumer -> apiService.streamSaleChanges(..., consumer)}.
+     */
+    @FunctionalInterface
+    interface Source<T> {
+        /**
+         * @return true if the table was read to the end.
+         */
+        boolean stream(ApiService.PageConsumer<T> consumer);
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService FETCHERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "sync-fetch-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // A downloaded page, or, with end set, the outcome of the download.
+    private record Item<T>(List<T> page, SyncWatermarkDTO reached, boolean end, boolean complete, Throwable error) {
+    }
+
+    private PagePipeline() {
+    }
+
+    /**
+     * Streams the source's pages into the sink, applying each page on the calling thread.
+     * @param source The download.
+     * @param depth  The maximum number of downloaded pages waiting to be applied.
+     * @param sink   Applies one page; if it throws, the download is cancelled and the exception is rethrown.
+     * @return true if the table was read to the end; false if the download ended early (the pages before were applied).
+     */
+    static <T> boolean run(Source<T> source, int depth, ApiService.PageConsumer<T> sink) {
+        BlockingQueue<Item<T>> queue = new ArrayBlockingQueue<>(Math.max(1, depth));
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Future<?> fetcher = FETCHERS.submit(SyncMetrics.inCurrentStep(() -> {
+            Item<T> end;
+            try {
+                boolean complete = source.stream((page, reached) -> {
+                    if (cancelled.get()) {
+                        throw new CancellationException();
+                    }
+                    try {
+                        queue.put(new Item<>(page, reached, false, false, null));
+                    } catch (InterruptedException e) {
+                        throw new CancellationException();
+                    }
+                });
+                end = new Item<>(null, null, true, complete, null);
+            } catch (CancellationException e) {
+                return;
+            } catch (RuntimeException | Error e) {
+                end = new Item<>(null, null, true, false, e);
+            }
+            if (cancelled.get()) {
+                return; // Nobody is waiting for the outcome any more
+            }
+            try {
+                queue.put(end);
+            } catch (InterruptedException e) {
+                // Cancelled while the queue was full
+            }
+        }));
+
+        boolean finished = false;
+        try {
+            while (true) {
+                Item<T> item = queue.take();
+                if (item.end()) {
+                    finished = true;
+                    if (item.error() instanceof RuntimeException e) {
+                        throw e;
+                    }
+                    if (item.error() instanceof Error e) {
+                        throw e;
+                    }
+                    return item.complete();
+                }
+                sink.accept(item.page(), item.reached());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a download.", e);
+        } finally {
+            if (!finished) {
+                // The sink failed or we were interrupted: stop the download and unblock it if the queue is full.
+                cancelled.set(true);
+                fetcher.cancel(true);
+                queue.clear();
+            }
+        }
+    }
+}
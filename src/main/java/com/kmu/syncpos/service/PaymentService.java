@@ -8,7 +8,6 @@ import com.kmu.syncpos.dto.PaymentDTO;
 import com.kmu.syncpos.dto.SaleDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
@@ -38,15 +37,13 @@ public class PaymentService {
         }
 
         // 2. Perform the rest as a single transaction.
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            conn.setAutoCommit(false);
-
-            try {
+        try {
+            DatabaseManager.getInstance().inTransaction(conn -> {
                 // a. Insert the new payment record.
                 paymentDAO.insertTransactional(conn, paymentDto, tenantId);
 
-                // b. Get all payments for the sale using the transactional connection
-                // to ensure we include the payment we just inserted.
+                // b. Get all payments for the sale. Inside inTransaction this runs on the same
+                // connection, so it includes the payment we just inserted.
                 List<PaymentDTO> allPayments = paymentDAO.getPaymentsForSale(paymentDto.getSaleId(), tenantId);
                 double totalPaid = allPayments.stream().mapToDouble(PaymentDTO::getAmount).sum();
 
@@ -55,18 +52,12 @@ public class PaymentService {
 
                 // d. Update the parent sale's payment status.
                 saleDAO.updatePaymentStatusTransactional(conn, paymentDto.getSaleId(), newStatus, tenantId);
-
-                conn.commit();
-                return true;
-
-            } catch (SQLException e) {
-                System.err.println("PaymentService.processNewPayment failed, rolling back transaction: " + e.getMessage());
-                conn.rollback();
-                return false;
-            }
+                return null;
+            });
+            return true;
 
         } catch (SQLException e) {
-            System.err.println("PaymentService: Failed to get or close database connection: " + e.getMessage());
+            System.err.println("PaymentService.processNewPayment failed, rolled back transaction: " + e.getMessage());
             return false;
         }
     }
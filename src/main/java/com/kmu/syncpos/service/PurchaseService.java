@@ -10,10 +10,11 @@ import com.kmu.syncpos.dto.*;
 import com.kmu.syncpos.models.User;
 import com.kmu.syncpos.util.DatabaseManager;
 
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class PurchaseService {
 
@@ -39,49 +40,47 @@ public class PurchaseService {
         purchaseDto.setUserId(currentUser.getId());
         purchaseDto.setType("purchase");
 
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            conn.setAutoCommit(false);
-
-            try {
+        try {
+            // productSupplierDAO.findByProductsAndSupplier runs on the transaction's connection
+            DatabaseManager.getInstance().inTransaction(conn -> {
                 long purchaseId = saleDAO.insertTransactional(conn, purchaseDto, tenantId);
 
+                // --- CHANGE 2: LOOK UP AND SET THE SUPPLIER-SPECIFIC CODE ---
+                // All links for the invoice in one query; the supplier is on the main purchase DTO.
+                Map<Long, ProductSupplierDTO> psLinks = productSupplierDAO.findByProductsAndSupplier(
+                        itemDtos.stream().map(SaleItemDTO::getProductId).toList(),
+                        purchaseDto.getSupplierId(),
+                        tenantId
+                );
                 for (SaleItemDTO itemDto : itemDtos) {
                     itemDto.setCostAtSale(itemDto.getUnitPrice());
 
-                    // --- CHANGE 2: LOOK UP AND SET THE SUPPLIER-SPECIFIC CODE ---
-                    ProductSupplierDTO psLink = productSupplierDAO.findByProductAndSupplier(
-                            itemDto.getProductId(),
-                            purchaseDto.getSupplierId(), // The supplier is on the main purchase DTO
-                            tenantId
-                    );
-
+                    ProductSupplierDTO psLink = psLinks.get(itemDto.getProductId());
                     if (psLink != null) {
                         itemDto.setSupplierProductCode(psLink.getSupplierProductCode());
                     }
                     // If no link is found, the code will remain null, which is acceptable.
+                }
+                long[] purchaseItemIds = saleItemDAO.insertBatchTransactional(conn, itemDtos, purchaseId, tenantId);
 
-                    long purchaseItemId = saleItemDAO.insertTransactional(conn, itemDto, purchaseId, tenantId);
-
+                List<StockLedgerDTO> ledgerEntries = new ArrayList<>(itemDtos.size());
+                for (int i = 0; i < itemDtos.size(); i++) {
+                    SaleItemDTO itemDto = itemDtos.get(i);
                     StockLedgerDTO ledgerEntry = new StockLedgerDTO();
                     ledgerEntry.setProductId(itemDto.getProductId());
                     ledgerEntry.setQuantityDelta(itemDto.getQuantity());
                     ledgerEntry.setReason("purchase");
-                    ledgerEntry.setSaleItemId(purchaseItemId);
+                    ledgerEntry.setSaleItemId(purchaseItemIds[i]);
                     ledgerEntry.setUserId(currentUser.getId());
                     ledgerEntry.setNotes("Purchase #" + purchaseId);
-                    stockLedgerDAO.insertTransactional(conn, ledgerEntry, tenantId);
+                    ledgerEntries.add(ledgerEntry);
                 }
-
-                conn.commit();
-                return true;
-
-            } catch (SQLException e) {
-                System.err.println("PurchaseService.processNewPurchase failed, rolling back: " + e.getMessage());
-                conn.rollback();
-                return false;
-            }
+                stockLedgerDAO.insertBatchTransactional(conn, ledgerEntries, tenantId);
+                return purchaseId;
+            });
+            return true;
         } catch (SQLException e) {
-            System.err.println("PurchaseService: Failed to get or close database connection: " + e.getMessage());
+            System.err.println("PurchaseService.processNewPurchase failed, rolled back: " + e.getMessage());
             return false;
         }
     }
@@ -129,20 +128,15 @@ public class PurchaseService {
     public boolean cancelPurchase(long purchaseId) {
         try {
             String tenantId = TenantContext.getTenant().getUuid();
-            try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-                conn.setAutoCommit(false);
-                try {
+            try {
+                DatabaseManager.getInstance().inTransaction(conn -> {
                     // The existing SaleDAO.delete is already transactional and handles all related tables.
                     saleDAO.markAsSynced( purchaseId, tenantId);
-                    conn.commit();
-                    return true;
-                } catch (SQLException e) {
-                    conn.rollback();
-                    System.err.println("PurchaseService.cancelPurchase failed, rolling back: " + e.getMessage());
-                    return false;
-                }
+                    return null;
+                });
+                return true;
             } catch (SQLException e) {
-                System.err.println("PurchaseService: Database connection error during cancellation. " + e.getMessage());
+                System.err.println("PurchaseService.cancelPurchase failed, rolled back: " + e.getMessage());
                 return false;
             }
         } catch (IllegalStateException e) {
@@ -0,0 +1,191 @@
+// src/main/java/com/kmu/syncpos/service/Reconciler.java
+package com.kmu.syncpos.service;
+
+import com.kmu.syncpos.dao.ProductDAO;
+import com.kmu.syncpos.dao.ReconcileDAO;
+import com.kmu.syncpos.dao.SaleDAO;
+import com.kmu.syncpos.dao.StockLedgerDAO;
+import com.kmu.syncpos.dto.BucketDigestDTO;
+import com.kmu.syncpos.dto.ProductDTO;
+import com.kmu.syncpos.dto.ReconciliationDTO;
+import com.kmu.syncpos.dto.SaleDTO;
+import com.kmu.syncpos.dto.StockLedgerDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
+import com.kmu.syncpos.util.ConfigLoader;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Checks that a till's copy of a table matches the server's without downloading it.
+ * <p>
+ * Both sides digest their rows into buckets by UUID prefix (see {@link RowDigest}). Starting with the 256 buckets
+ * of 2 hex digits, only the buckets whose digests differ are split further, 2 digits at a time, until a bucket holds
+ * at most {@code sync.reconcile.leaf.rows} rows; such a bucket is compared row by row. A table in sync therefore
+ * costs one request of 256 digests, and a handful of drifted rows a few more requests each.
+ * <p>
+ * Drift found in synced rows is repaired: rows the server lacks are queued for upload again, and rows missing or
+ * different locally are replaced by the server's version. Rows with local edits not uploaded yet are left alone;
+ * the next push resolves them.
+ */
+public final class Reconciler {
+
+    private static final int FIRST_LEVEL = 2;
+    private static final int LAST_LEVEL = 8; // The hex digits before the UUID's first '-'
+
+    @FunctionalInterface
+    private interface Apply<T> {
+        UpsertCountsDTO apply(List<T> rows) throws SQLException;
+    }
+
+    private record Target<T>(Class<T> type, Apply<T> apply) {
+    }
+
+    private final ApiService apiService;
+    private final ReconcileDAO reconcileDAO = new ReconcileDAO();
+    private final int leafRows = Math.max(1, ConfigLoader.getIntProperty("sync.reconcile.leaf.rows", 256));
+    private final Map<String, Target<?>> targets = Map.of(
+            "products", new Target<>(ProductDTO.class, new ProductDAO()::upsertRemoteBatch),
+            "sales", new Target<>(SaleDTO.class, new SaleDAO()::upsertRemoteBatch),
+            "stock_ledger", new Target<>(StockLedgerDTO.class, new StockLedgerDAO()::upsertRemoteBatch));
+
+    public Reconciler(ApiService apiService) {
+        this.apiService = apiService;
+    }
+
+    /**
+     * @return The tables that can be reconciled.
+     */
+    public static Set<String> tables() {
+        return RowDigest.COLUMNS.keySet();
+    }
+
+    /**
+     * Compares one table with the server and repairs the drift found.
+     * @throws IllegalStateException if a request or the local database fails; nothing is repaired from an incomplete comparison
+     *                               of a leaf bucket, but leaves already repaired stay repaired.
+     */
+    public ReconciliationDTO reconcile(String tableName, String tenantId) {
+        List<RowDigest.Column> columns = RowDigest.COLUMNS.get(tableName);
+        if (columns == null || !targets.containsKey(tableName)) {
+            throw new IllegalArgumentException("Table cannot be reconciled: " + tableName);
+        }
+        Run run = new Run(tableName, tenantId, columns);
+        try {
+            run.compareBuckets("", FIRST_LEVEL);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Reconciliation of " + tableName + " failed: " + e.getMessage(), e);
+        }
+        return new ReconciliationDTO(tableName, run.buckets, run.leaves, run.missingLocally, run.missingOnServer,
+                run.different, run.pendingUpload, run.repaired);
+    }
+
+    // The state of reconciling one table.
+    private final class Run {
+        final String table;
+        final String tenantId;
+        final List<RowDigest.Column> columns;
+        final List<String> columnNames = new ArrayList<>();
+        int buckets, leaves, missingLocally, missingOnServer, different, pendingUpload, repaired;
+
+        Run(String table, String tenantId, List<RowDigest.Column> columns) {
+            this.table = table;
+            this.tenantId = tenantId;
+            this.columns = columns;
+            columns.forEach(c -> columnNames.add(c.name()));
+        }
+
+        void compareBuckets(String prefix, int length) throws SQLException {
+            List<BucketDigestDTO> remoteList = apiService.fetchBucketDigests(table, tenantId, prefix, length);
+            if (remoteList == null) {
+                throw new IllegalStateException("Could not fetch the server's digests of " + table + ".");
+            }
+            Map<String, BucketDigestDTO> remote = new HashMap<>();
+            remoteList.forEach(b -> remote.put(b.bucket(), b));
+            Map<String, BucketDigestDTO> local = localBuckets(prefix, length);
+
+            Set<String> all = new TreeSet<>(remote.keySet());
+            all.addAll(local.keySet());
+            for (String bucket : all) {
+                buckets++;
+                BucketDigestDTO r = remote.get(bucket);
+                BucketDigestDTO l = local.get(bucket);
+                if (r != null && l != null && r.rows() == l.rows() && r.digest() == l.digest()) {
+                    continue;
+                }
+                long rows = Math.max(r == null ? 0 : r.rows(), l == null ? 0 : l.rows());
+                if (rows <= leafRows || length >= LAST_LEVEL) {
+                    compareRows(bucket);
+                } else {
+                    compareBuckets(bucket, length + 2);
+                }
+            }
+        }
+
+        Map<String, BucketDigestDTO> localBuckets(String prefix, int length) throws SQLException {
+            Map<String, long[]> sums = new HashMap<>();
+            reconcileDAO.scan(table, columnNames, tenantId, prefix, (uuid, values) -> {
+                long[] sum = sums.computeIfAbsent(RowDigest.bucketOf(uuid, length), k -> new long[2]);
+                sum[0]++;
+                sum[1] += RowDigest.of(columns, values);
+            });
+            Map<String, BucketDigestDTO> buckets = new HashMap<>();
+            sums.forEach((bucket, sum) -> buckets.put(bucket, new BucketDigestDTO(bucket, sum[0], sum[1])));
+            return buckets;
+        }
+
+        void compareRows(String bucket) throws SQLException {
+            leaves++;
+            Map<String, Long> remote = apiService.fetchRowDigests(table, tenantId, bucket);
+            if (remote == null) {
+                throw new IllegalStateException("Could not fetch the server's row digests of " + table + ".");
+            }
+            Map<String, Long> local = new HashMap<>();
+            reconcileDAO.scan(table, columnNames, tenantId, bucket, (uuid, values) -> local.put(uuid, RowDigest.of(columns, values)));
+
+            Set<String> onlyRemote = new HashSet<>(remote.keySet());
+            onlyRemote.removeAll(local.keySet());
+            Set<String> onlyLocal = new HashSet<>();
+            Set<String> changed = new HashSet<>();
+            local.forEach((uuid, digest) -> {
+                Long remoteDigest = remote.get(uuid);
+                if (remoteDigest == null) {
+                    onlyLocal.add(uuid);
+                } else if (remoteDigest.longValue() != digest) {
+                    changed.add(uuid);
+                }
+            });
+            Set<String> suspects = new HashSet<>(onlyLocal);
+            suspects.addAll(changed);
+            Set<String> unsynced = reconcileDAO.getUnsynced(table, tenantId, suspects);
+            onlyLocal.removeAll(unsynced);
+            changed.removeAll(unsynced);
+            pendingUpload += unsynced.size();
+            missingLocally += onlyRemote.size();
+            missingOnServer += onlyLocal.size();
+            different += changed.size();
+
+            repaired += reconcileDAO.requeueForUpload(table, tenantId, onlyLocal);
+            Set<String> download = new HashSet<>(onlyRemote);
+            download.addAll(changed);
+            if (!download.isEmpty()) {
+                reconcileDAO.releaseForDownload(table, tenantId, changed);
+                repaired += download(targets.get(table), download);
+            }
+        }
+
+        <T> int download(Target<T> target, Set<String> uuids) throws SQLException {
+            List<T> rows = apiService.fetchByUuids(table, tenantId, uuids, target.type());
+            if (rows == null) {
+                throw new IllegalStateException("Could not download the drifted rows of " + table + ".");
+            }
+            return target.apply().apply(rows).applied();
+        }
+    }
+}
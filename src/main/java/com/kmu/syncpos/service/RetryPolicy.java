@@ -0,0 +1,67 @@
+// src/main/java/com/kmu/syncpos/service/RetryPolicy.java
+package com.kmu.syncpos.service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Exponential backoff with jitter.
+ * The delay before retry n is drawn between half and all of {@code min(maxDelay, baseDelay * 2^(n-1))}, so the
+ * waits grow quickly when a server is struggling, while tills that failed at the same moment do not all
+ * come back at the same moment.
+ */
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+
+    /**
+     * @param maxAttempts The number of attempts {@link #run(Supplier)} makes, the first one included.
+     * @param baseDelay   The delay before the first retry, before jitter.
+     * @param maxDelay    The longest delay, before jitter.
+     */
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param failures The number of failed attempts so far (at least 1).
+     * @return How long to wait before the next attempt.
+     */
+    public Duration delayAfter(int failures) {
+        int doublings = Math.min(Math.max(failures, 1) - 1, 30);
+        long ceiling = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << doublings);
+        if (ceiling <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis(ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1));
+    }
+
+    /**
+     * Makes an upload, repeating it after a backoff delay while it fails transiently.
+     * @param upload The request to make.
+     * @return The result of the last attempt; still transient if every attempt failed, or the thread was interrupted.
+     */
+    public UploadResult run(Supplier<UploadResult> upload) {
+        UploadResult result = upload.get();
+        for (int attempt = 1; attempt < maxAttempts && result.isTransient(); attempt++) {
+            try {
+                Thread.sleep(delayAfter(attempt).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+            SyncMetrics.addRetry();
+            result = upload.get();
+        }
+        return result;
+    }
+}
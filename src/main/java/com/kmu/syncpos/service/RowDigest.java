@@ -0,0 +1,103 @@
+// src/main/java/com/kmu/syncpos/service/RowDigest.java
+package com.kmu.syncpos.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The row digests that reconciliation compares; the server's {@code sync_digest} and {@code sync_row_digests}
+ * functions must compute exactly the same values.
+ * <ul>
+ *     <li>A row's canonical form is its {@link #COLUMNS} joined with '|': text with '\' and '|' escaped by a '\',
+ *     numbers rounded half up to 4 decimals ({@code round(x::numeric, 4)::text} in Postgres), flags as 1 or 0,
+ *     and NULL as {@code \N}.</li>
+ *     <li>A row's digest is the first 8 bytes of the MD5 of its canonical form (UTF-8), as a signed big-endian long.</li>
+ *     <li>A bucket is the set of rows whose lowercase UUID starts with a given hex prefix; its digest is the sum of
+ *     its rows' digests, wrapping around at 64 bits. Sums compose, so a bucket's digest is the sum of its sub-buckets'.</li>
+ * </ul>
+ * Only columns both sides store alike are digested: local foreign keys are row IDs, not UUIDs, and the
+ * last_updated_at of a row edited on this till is the till's time, which the server need not keep.
+ */
+public final class RowDigest {
+
+    public enum Kind { TEXT, NUMBER, FLAG }
+
+    public record Column(String name, Kind kind) {
+    }
+
+    /**
+     * The digested columns of every table that can be reconciled, the UUID first.
+     */
+    public static final Map<String, List<Column>> COLUMNS = Map.of(
+            "products", List.of(text("uuid"), text("sku"), text("name"), number("purchase_price"), number("selling_price"),
+                    number("tax_rate"), flag("is_active"), flag("is_deleted")),
+            "sales", List.of(text("uuid"), text("type"), number("subtotal"), number("tax"), number("discount"),
+                    number("total"), text("payment_status"), flag("is_deleted")),
+            "stock_ledger", List.of(text("uuid"), number("quantity_delta"), text("reason"), flag("is_deleted")));
+
+    private RowDigest() {
+    }
+
+    /**
+     * @param columns The table's digested columns.
+     * @param values  Reads a column of the row, as stored locally or as decoded from the server's JSON.
+     * @return The row's digest.
+     */
+    public static long of(List<Column> columns, Function<String, Object> values) {
+        StringBuilder canonical = new StringBuilder(128);
+        for (Column column : columns) {
+            if (!canonical.isEmpty()) {
+                canonical.append('|');
+            }
+            canonical.append(canonical(column.kind(), values.apply(column.name())));
+        }
+        return ByteBuffer.wrap(md5().digest(canonical.toString().getBytes(StandardCharsets.UTF_8))).getLong();
+    }
+
+    /**
+     * @return The bucket of a UUID at the given prefix length.
+     */
+    public static String bucketOf(String uuid, int length) {
+        return uuid.substring(0, Math.min(length, uuid.length())).toLowerCase(Locale.ROOT);
+    }
+
+    static String canonical(Kind kind, Object value) {
+        if (value == null) {
+            return "\\N";
+        }
+        return switch (kind) {
+            case TEXT -> value.toString().replace("\\", "\\\\").replace("|", "\\|");
+            case NUMBER -> (value instanceof Double d ? BigDecimal.valueOf(d) : new BigDecimal(value.toString()))
+                    .setScale(4, RoundingMode.HALF_UP).toPlainString();
+            case FLAG -> value instanceof Boolean b ? (b ? "1" : "0") : (new BigDecimal(value.toString()).signum() != 0 ? "1" : "0");
+        };
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available.", e); // Every JRE must provide it
+        }
+    }
+
+    private static Column text(String name) {
+        return new Column(name, Kind.TEXT);
+    }
+
+    private static Column number(String name) {
+        return new Column(name, Kind.NUMBER);
+    }
+
+    private static Column flag(String name) {
+        return new Column(name, Kind.FLAG);
+    }
+}
@@ -7,10 +7,11 @@ import com.kmu.syncpos.dto.*;
 import com.kmu.syncpos.models.User;
 import com.kmu.syncpos.util.DatabaseManager;
 
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class SaleService {
 
@@ -43,36 +44,40 @@ public class SaleService {
         saleDto.setUserId(currentUser.getId());
         saleDto.setType("sale");
 
-        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-            conn.setAutoCommit(false);
-            try {
+        try {
+            // productDAO.getByIds runs on the transaction's connection (see DatabaseManager.inTransaction)
+            return DatabaseManager.getInstance().inTransaction(conn -> {
                 long saleId = saleDAO.insertTransactional(conn, saleDto, tenantId);
+
+                // One query for all products on the invoice, then one batch each for items and ledger entries.
+                Map<Long, ProductDTO> products = productDAO.getByIds(
+                        itemDtos.stream().map(SaleItemDTO::getProductId).toList(), tenantId);
                 for (SaleItemDTO itemDto : itemDtos) {
-                    ProductDTO product = productDAO.getById(itemDto.getProductId(), tenantId);
+                    ProductDTO product = products.get(itemDto.getProductId());
                     if (product == null) {
                         throw new SQLException("Product with ID " + itemDto.getProductId() + " not found.");
                     }
                     itemDto.setCostAtSale(product.getPurchasePrice());
-                    long saleItemId = saleItemDAO.insertTransactional(conn, itemDto, saleId, tenantId);
+                }
+                long[] saleItemIds = saleItemDAO.insertBatchTransactional(conn, itemDtos, saleId, tenantId);
 
+                List<StockLedgerDTO> ledgerEntries = new ArrayList<>(itemDtos.size());
+                for (int i = 0; i < itemDtos.size(); i++) {
+                    SaleItemDTO itemDto = itemDtos.get(i);
                     StockLedgerDTO ledgerEntry = new StockLedgerDTO();
                     ledgerEntry.setProductId(itemDto.getProductId());
                     ledgerEntry.setQuantityDelta(-itemDto.getQuantity());
                     ledgerEntry.setReason("sale");
-                    ledgerEntry.setSaleItemId(saleItemId);
+                    ledgerEntry.setSaleItemId(saleItemIds[i]);
                     ledgerEntry.setUserId(currentUser.getId());
                     ledgerEntry.setNotes("Sale #" + saleId);
-                    stockLedgerDAO.insertTransactional(conn, ledgerEntry, tenantId);
+                    ledgerEntries.add(ledgerEntry);
                 }
-                conn.commit();
+                stockLedgerDAO.insertBatchTransactional(conn, ledgerEntries, tenantId);
                 return saleId;
-            } catch (SQLException e) {
-                conn.rollback();
-                System.err.println("SaleService.processNewSale failed, rolling back: " + e.getMessage());
-                return 0;
-            }
+            });
         } catch (SQLException e) {
-            System.err.println("SaleService: Failed to get or close database connection: " + e.getMessage());
+            System.err.println("SaleService.processNewSale failed, rolled back: " + e.getMessage());
             return 0;
         }
     }
@@ -119,19 +124,14 @@ public class SaleService {
     public boolean cancelSale(long saleId) {
         try {
             String tenantId = TenantContext.getTenant().getUuid();
-            try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-                conn.setAutoCommit(false);
-                try {
+            try {
+                DatabaseManager.getInstance().inTransaction(conn -> {
                     saleDAO.markAsSynced( saleId, tenantId);
-                    conn.commit();
-                    return true;
-                } catch (SQLException e) {
-                    conn.rollback();
-                    System.err.println("SaleService.cancelSale failed, rolling back: " + e.getMessage());
-                    return false;
-                }
+                    return null;
+                });
+                return true;
             } catch (SQLException e) {
-                System.err.println("SaleService: Database connection error during cancellation. " + e.getMessage());
+                System.err.println("SaleService.cancelSale failed, rolled back: " + e.getMessage());
                 return false;
             }
         } catch (IllegalStateException e) {
@@ -6,7 +6,6 @@ import com.kmu.syncpos.dao.SettingsDAO;
 import com.kmu.syncpos.dto.SettingsDTO;
 import com.kmu.syncpos.util.DatabaseManager;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
@@ -56,25 +55,20 @@ public class SettingsService {
     public boolean saveAllSettings(Map<String, String> settingsMap) {
         try {
             String tenantId = TenantContext.getTenant().getUuid();
-            try (Connection conn = DatabaseManager.getInstance().getConnection()) {
-                conn.setAutoCommit(false);
-                try {
+            try {
+                DatabaseManager.getInstance().inTransaction(conn -> {
                     for (Map.Entry<String, String> entry : settingsMap.entrySet()) {
                         SettingsDTO dto = new SettingsDTO();
                         dto.setSettingKey(entry.getKey());
                         dto.setSettingValue(entry.getValue());
-                        // Use the new DAO method that accepts a connection
+                        // upsertLocal picks up the transaction's connection
                         settingsDAO.upsertLocal(dto, tenantId);
                     }
-                    conn.commit();
-                    return true;
-                } catch (SQLException e) {
-                    conn.rollback();
-                    System.err.println("SettingsService: Transaction failed, rolling back. " + e.getMessage());
-                    return false;
-                }
+                    return null;
+                });
+                return true;
             } catch (SQLException e) {
-                System.err.println("SettingsService: Database connection error. " + e.getMessage());
+                System.err.println("SettingsService: Transaction failed, rolled back. " + e.getMessage());
                 return false;
             }
         } catch (IllegalStateException e) {
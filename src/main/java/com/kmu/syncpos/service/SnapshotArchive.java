@@ -0,0 +1,208 @@
+// src/main/java/com/kmu/syncpos/service/SnapshotArchive.java
+package com.kmu.syncpos.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.kmu.syncpos.dto.SnapshotManifestDTO;
+import com.kmu.syncpos.dto.SyncWatermarkDTO;
+import com.kmu.syncpos.util.ConfigLoader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A compressed snapshot of a tenant's synced tables, used to bootstrap a new till without replaying the
+ * tenant's history through the REST API.
+ * <p>
+ * The archive is a zip file holding {@code manifest.json} (a {@link SnapshotManifestDTO}) and one NDJSON segment
+ * per table: the server's rows, one JSON object per line, in (last_updated_at, uuid) order. The manifest records
+ * each segment's row count, SHA-256 and watermark, so after importing a table the incremental pull continues
+ * where the snapshot ends.
+ * <p>
+ * Opening an archive verifies the tenant and every checksum before a single row is applied, so a truncated or
+ * corrupt download is refused as a whole rather than half imported.
+ * The till only reads archives; they are written by a server-side export.
+ */
+public final class SnapshotArchive implements AutoCloseable {
+
+    public static final int FORMAT_VERSION = 1;
+    public static final String MANIFEST = "manifest.json";
+    private static final Gson MANIFEST_GSON = new Gson();
+
+    private final ZipFile zip;
+    private final SnapshotManifestDTO manifest;
+    private final Gson gson = ApiService.syncGson();
+
+    private SnapshotArchive(ZipFile zip, SnapshotManifestDTO manifest) {
+        this.zip = zip;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Looks for the snapshot configured in {@code sync.snapshot.path}: either an archive, or a directory holding
+     * {@code <tenant uuid>.zip}.
+     * @return The verified archive, or null if none is configured or it cannot be used (the reason is logged).
+     */
+    public static SnapshotArchive find(String tenantId) {
+        String configured = ConfigLoader.getProperty("sync.snapshot.path", "");
+        if (configured.isBlank()) {
+            return null;
+        }
+        Path path = Path.of(configured);
+        if (Files.isDirectory(path)) {
+            path = path.resolve(tenantId + ".zip");
+        }
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return open(path, tenantId);
+        } catch (IOException e) {
+            System.err.println("SnapshotArchive: Ignoring snapshot " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens an archive and verifies it.
+     * @throws IOException if it cannot be read, belongs to another tenant, or a segment does not match the manifest.
+     */
+    public static SnapshotArchive open(Path path, String tenantId) throws IOException {
+        ZipFile zip = new ZipFile(path.toFile());
+        try {
+            SnapshotManifestDTO manifest;
+            ZipEntry manifestEntry = zip.getEntry(MANIFEST);
+            if (manifestEntry == null) {
+                throw new IOException("No " + MANIFEST + " in the archive.");
+            }
+            try (BufferedReader reader = reader(zip.getInputStream(manifestEntry))) {
+                manifest = MANIFEST_GSON.fromJson(reader, SnapshotManifestDTO.class);
+            } catch (JsonParseException e) {
+                throw new IOException("Unreadable " + MANIFEST + ".", e);
+            }
+            if (manifest == null || manifest.formatVersion() != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format.");
+            }
+            if (!tenantId.equals(manifest.tenantId())) {
+                throw new IOException("The snapshot belongs to another tenant.");
+            }
+            for (SnapshotManifestDTO.Table table : manifest.tables()) {
+                verify(zip, table);
+            }
+            return new SnapshotArchive(zip, manifest);
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    private static void verify(ZipFile zip, SnapshotManifestDTO.Table table) throws IOException {
+        ZipEntry entry = zip.getEntry(table.file());
+        if (entry == null) {
+            throw new IOException("Missing segment " + table.file() + ".");
+        }
+        MessageDigest digest = sha256();
+        long lines = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new DigestInputStream(zip.getInputStream(entry), digest)) {
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        if (!HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(table.sha256())) {
+            throw new IOException("Checksum mismatch in " + table.file() + ".");
+        }
+        if (lines != table.rows()) {
+            throw new IOException(table.file() + " holds " + lines + " rows, the manifest says " + table.rows() + ".");
+        }
+    }
+
+    public SnapshotManifestDTO manifest() {
+        return manifest;
+    }
+
+    /**
+     * @return The table's segment, or null if the archive has none.
+     */
+    public SnapshotManifestDTO.Table table(String name) {
+        return manifest.table(name);
+    }
+
+    /**
+     * Streams a table's rows to a consumer, one page at a time, like an incremental pull from the start.
+     * @return true if the segment was read to the end; false if it could not be read (the reason is logged).
+     */
+    public <T> boolean stream(String tableName, Class<T> type, int pageSize, ApiService.PageConsumer<T> consumer) {
+        SnapshotManifestDTO.Table table = manifest.table(tableName);
+        if (table == null) {
+            return false;
+        }
+        try (BufferedReader reader = reader(zip.getInputStream(zip.getEntry(table.file())))) {
+            List<T> page = new ArrayList<>(pageSize);
+            SyncWatermarkDTO reached = null;
+            long parseStart = System.nanoTime();
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JsonObject row = JsonParser.parseString(line).getAsJsonObject();
+                page.add(gson.fromJson(row, type));
+                String lastUpdatedAt = ApiService.stringOrNull(row, "last_updated_at");
+                String lastUuid = ApiService.stringOrNull(row, "uuid");
+                if (lastUpdatedAt != null && lastUuid != null) {
+                    reached = new SyncWatermarkDTO(lastUpdatedAt, lastUuid);
+                }
+                if (page.size() == pageSize) {
+                    SyncMetrics.addTime(SyncMetrics.Stage.JSON, System.nanoTime() - parseStart);
+                    consumer.accept(page, reached);
+                    page = new ArrayList<>(pageSize);
+                    parseStart = System.nanoTime();
+                }
+            }
+            SyncMetrics.addTime(SyncMetrics.Stage.JSON, System.nanoTime() - parseStart);
+            if (!page.isEmpty()) {
+                consumer.accept(page, reached);
+            }
+            return true;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            System.err.println("SnapshotArchive: Failed to read " + table.file() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e); // Every JRE must provide it
+        }
+    }
+
+    private static BufferedReader reader(InputStream entry) {
+        return new BufferedReader(new InputStreamReader(entry, StandardCharsets.UTF_8), 64 * 1024);
+    }
+}
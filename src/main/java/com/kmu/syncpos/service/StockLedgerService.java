@@ -2,7 +2,9 @@ package com.kmu.syncpos.service;
 
 import com.kmu.syncpos.auth.SessionContext;
 import com.kmu.syncpos.auth.TenantContext;
+import com.kmu.syncpos.dao.ProductStockDAO;
 import com.kmu.syncpos.dao.StockLedgerDAO;
+import com.kmu.syncpos.dto.StockDriftDTO;
 import com.kmu.syncpos.dto.StockLedgerDTO;
 import com.kmu.syncpos.dto.UserDTO;
 import com.kmu.syncpos.models.User;
@@ -21,6 +23,7 @@ import java.util.List;
 public class StockLedgerService {
 
     private final StockLedgerDAO stockLedgerDAO = new StockLedgerDAO();
+    private final ProductStockDAO productStockDAO = new ProductStockDAO();
 
     /**
      * Retrieves the complete inventory adjustment history for a specific product.
@@ -122,4 +125,31 @@ public class StockLedgerService {
         }
         return stockLedgerDAO.getUnsynced(tenantId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Compares the materialized stock balances of the current tenant with the ledger.
+     * Backs the "Verify Stock Balances" action in Settings.
+     * @return The products whose stored balance has drifted from the ledger; empty if all match.
+     * @throws SQLException if the balances could not be read.
+     */
+    public List<StockDriftDTO> verifyStockBalances() throws SQLException {
+        String tenantId = TenantContext.getTenant().getUuid();
+        return productStockDAO.findDrift(tenantId);
+    }
+
+    /**
+     * Recomputes all stock balances of the current tenant from the ledger, reporting the drift found first.
+     * Backs the "Rebuild Stock Balances" action in Settings. Both steps run in one transaction.
+     * @return The drift that was corrected; empty if the balances were already correct.
+     * @throws SQLException if the rebuild failed; the transaction is rolled back and no balance changes.
+     */
+    public List<StockDriftDTO> rebuildStockBalances() throws SQLException {
+        String tenantId = TenantContext.getTenant().getUuid();
+        return DatabaseManager.getInstance().inTransaction(conn -> {
+            List<StockDriftDTO> drift = productStockDAO.findDrift(tenantId);
+            int rows = productStockDAO.rebuildTransactional(conn, tenantId);
+            System.out.println("Rebuilt " + rows + " stock balances (" + drift.size() + " had drifted).");
+            return drift;
+        });
+    }
+}
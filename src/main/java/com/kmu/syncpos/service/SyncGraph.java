@@ -0,0 +1,132 @@
+// src/main/java/com/kmu/syncpos/service/SyncGraph.java
+package com.kmu.syncpos.service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one sync step per table on a bounded thread pool, in foreign-key order.
+ * A step starts as soon as the steps of all its parent tables have completed, so tables that do not
+ * depend on each other (e.g. users and categories, or sale items and payments) are synced concurrently.
+ * If a step fails, the steps depending on it are skipped; unrelated steps still run.
+ */
+public final class SyncGraph {
+
+    private final Map<String, List<String>> parents;
+    private final Map<String, Runnable> steps = new LinkedHashMap<>();
+
+    /**
+     * @param parents For every table, the tables whose steps must complete before its own starts.
+     */
+    public SyncGraph(Map<String, List<String>> parents) {
+        this.parents = parents;
+    }
+
+    /**
+     * Registers the work for one table. Tables without a step count as already done.
+     */
+    public SyncGraph step(String table, Runnable work) {
+        if (!parents.containsKey(table)) {
+            throw new IllegalArgumentException("No dependencies declared for table: " + table);
+        }
+        steps.put(table, work);
+        return this;
+    }
+
+    /**
+     * The outcome of {@link #run(int)}.
+     *
+     * @param timings  The wall-clock time of every step that ran, in completion order.
+     * @param failures The exception of every step that failed.
+     * @param skipped  The steps not run because a step they depend on failed.
+     * @param elapsed  The wall-clock time of the whole run.
+     */
+    public record Result(Map<String, Duration> timings, Map<String, Throwable> failures, Set<String> skipped, Duration elapsed) {
+    }
+
+    /**
+     * Runs every registered step and waits for all of them.
+     *
+     * @param parallelism The maximum number of steps running at the same time.
+     * @return The per-step timings and failures.
+     * @throws InterruptedException if the calling thread is interrupted; running steps are interrupted too.
+     */
+    public Result run(int parallelism) throws InterruptedException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread thread = new Thread(r, "sync-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Duration> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        try {
+            for (String table : steps.keySet()) {
+                schedule(table, futures, new HashSet<>(), executor, timings, failures);
+            }
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).get();
+        } catch (ExecutionException e) {
+            // Failures are recorded per step; a failed future only means dependents were skipped.
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<String> skipped = new HashSet<>();
+        futures.forEach((table, future) -> {
+            if (future.isCompletedExceptionally() && !failures.containsKey(table)) {
+                skipped.add(table);
+            }
+        });
+        return new Result(timings, failures, skipped, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private CompletableFuture<Void> schedule(String table, Map<String, CompletableFuture<Void>> futures, Set<String> visiting,
+                                             ExecutorService executor, Map<String, Duration> timings, Map<String, Throwable> failures) {
+        CompletableFuture<Void> future = futures.get(table);
+        if (future != null) {
+            return future;
+        }
+        if (!visiting.add(table)) {
+            throw new IllegalStateException("Sync dependencies form a cycle through table: " + table);
+        }
+        List<String> tableParents = parents.get(table);
+        if (tableParents == null) {
+            throw new IllegalStateException("No dependencies declared for table: " + table);
+        }
+        CompletableFuture<?>[] parentFutures = tableParents.stream()
+                .map(parent -> schedule(parent, futures, visiting, executor, timings, failures))
+                .toArray(CompletableFuture[]::new);
+        Runnable work = steps.get(table);
+        future = CompletableFuture.allOf(parentFutures).thenRunAsync(() -> {
+            if (work == null) {
+                return;
+            }
+            long stepStart = System.nanoTime();
+            try {
+                work.run();
+            } catch (RuntimeException | Error e) {
+                failures.put(table, e);
+                throw new CompletionException(e);
+            } finally {
+                timings.put(table, Duration.ofNanos(System.nanoTime() - stepStart));
+            }
+        }, executor);
+        futures.put(table, future);
+        visiting.remove(table);
+        return future;
+    }
+}
@@ -0,0 +1,240 @@
+// src/main/java/com/kmu/syncpos/service/SyncMetrics.java
+package com.kmu.syncpos.service;
+
+import com.kmu.syncpos.dto.SyncRunDTO;
+import com.kmu.syncpos.dto.SyncTableMetricsDTO;
+import com.kmu.syncpos.dto.UpsertCountsDTO;
+import com.kmu.syncpos.util.TrafficStats;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process registry of sync metrics: the last run, and totals per phase and table since the process started.
+ * <p>
+ * A {@link Run} measures one sync cycle. Each table step it wraps runs with a per-thread collector, which the
+ * instrumentation points ({@link #addTime}, {@link #addRows}, {@link #addUpserts}, {@link #addFailure}, {@link #addRetry}) add to;
+ * outside a step, e.g. during a login, they do nothing. Bytes on the wire come from {@link TrafficStats}.
+ */
+public final class SyncMetrics {
+
+    /** Where the time of a sync step goes. */
+    public enum Stage { NETWORK, JSON, DATABASE }
+
+    private static final SyncMetrics INSTANCE = new SyncMetrics();
+    private static final ThreadLocal<Collector> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, SyncTableMetricsDTO> totals = new ConcurrentHashMap<>();
+    private volatile SyncRunDTO lastRun;
+
+    private SyncMetrics() {
+    }
+
+    public static SyncMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    // --- Instrumentation points, called on the thread running a step ---
+
+    public static void addTime(Stage stage, long nanos) {
+        Collector collector = CURRENT.get();
+        if (collector != null) {
+            collector.stageNanos[stage.ordinal()].add(nanos);
+        }
+    }
+
+    public static void addRows(long rows) {
+        Collector collector = CURRENT.get();
+        if (collector != null) {
+            collector.rows.add(rows);
+        }
+    }
+
+    public static void addUpserts(UpsertCountsDTO counts) {
+        Collector collector = CURRENT.get();
+        if (collector != null) {
+            collector.applied.add(counts.applied());
+            collector.skipped.add(counts.skipped());
+            collector.conflicts.add(counts.conflicts());
+        }
+    }
+
+    public static void addFailure() {
+        Collector collector = CURRENT.get();
+        if (collector != null) {
+            collector.failures.increment();
+        }
+    }
+
+    public static void addRetry() {
+        Collector collector = CURRENT.get();
+        if (collector != null) {
+            collector.retries.increment();
+        }
+    }
+
+    /**
+     * Lets work handed to another thread, e.g. a page download running ahead of the step, count towards the current step.
+     */
+    public static Runnable inCurrentStep(Runnable work) {
+        Collector collector = CURRENT.get();
+        if (collector == null) {
+            return work;
+        }
+        return () -> {
+            CURRENT.set(collector);
+            try {
+                work.run();
+            } finally {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    // --- Registry ---
+
+    /**
+     * @return The metrics of the last finished run, or null if no sync has finished yet.
+     */
+    public SyncRunDTO getLastRun() {
+        return lastRun;
+    }
+
+    /**
+     * @return For every "phase table" key, e.g. "pull sales", the sum of all runs since the process started.
+     */
+    public Map<String, SyncTableMetricsDTO> getTotals() {
+        return Collections.unmodifiableMap(new TreeMap<>(totals));
+    }
+
+    public Run startRun(String tenantId, boolean initial) {
+        return new Run(tenantId, initial);
+    }
+
+    private void finished(SyncRunDTO run) {
+        lastRun = run;
+        for (SyncTableMetricsDTO t : run.tables()) {
+            totals.merge(t.phase() + " " + t.table(), t, (a, b) -> new SyncTableMetricsDTO(a.phase(), a.table(),
+                    a.rows() + b.rows(), a.applied() + b.applied(), a.skipped() + b.skipped(), a.conflicts() + b.conflicts(),
+                    a.bytesSent() + b.bytesSent(), a.bytesReceived() + b.bytesReceived(),
+                    a.durationMs() + b.durationMs(), a.networkMs() + b.networkMs(), a.jsonMs() + b.jsonMs(),
+                    a.databaseMs() + b.databaseMs(), a.failures() + b.failures(), a.retries() + b.retries()));
+        }
+    }
+
+    private static final class Collector {
+        final String phase;
+        final String table;
+        final LongAdder rows = new LongAdder();
+        final LongAdder applied = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder[] stageNanos = {new LongAdder(), new LongAdder(), new LongAdder()};
+        volatile long durationNanos;
+        volatile TrafficStats.Totals traffic;
+
+        Collector(String phase, String table) {
+            this.phase = phase;
+            this.table = table;
+        }
+
+        SyncTableMetricsDTO toDTO() {
+            TrafficStats.Totals t = traffic;
+            return new SyncTableMetricsDTO(phase, table, rows.sum(), applied.sum(), skipped.sum(), conflicts.sum(), t == null ? 0 : t.bytesSent(), t == null ? 0 : t.bytesReceived(),
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos), millis(Stage.NETWORK), millis(Stage.JSON), millis(Stage.DATABASE),
+                    failures.intValue(), retries.intValue());
+        }
+
+        private long millis(Stage stage) {
+            return TimeUnit.NANOSECONDS.toMillis(stageNanos[stage.ordinal()].sum());
+        }
+    }
+
+    /**
+     * The measurements of one sync cycle. Phases run one after the other; the steps of a phase may run in parallel.
+     */
+    public final class Run {
+
+        @FunctionalInterface
+        public interface PhaseWork {
+            void run() throws Exception;
+        }
+
+        private final String tenantId;
+        private final boolean initial;
+        private final Instant startedAt = Instant.now();
+        private final long start = System.nanoTime();
+        private final Map<String, Collector> collectors = Collections.synchronizedMap(new LinkedHashMap<>());
+        private volatile String phase = "sync";
+
+        private Run(String tenantId, boolean initial) {
+            this.tenantId = tenantId;
+            this.initial = initial;
+        }
+
+        /**
+         * Runs one phase ("push" or "pull") and attributes the traffic each table caused during it.
+         */
+        public void phase(String name, PhaseWork work) throws Exception {
+            phase = name;
+            Map<String, TrafficStats.Totals> trafficBefore = TrafficStats.snapshot();
+            try {
+                work.run();
+            } finally {
+                Map<String, TrafficStats.Totals> traffic = TrafficStats.since(trafficBefore);
+                synchronized (collectors) {
+                    collectors.values().stream()
+                            .filter(c -> c.phase.equals(name))
+                            .forEach(c -> c.traffic = traffic.get(c.table));
+                }
+            }
+        }
+
+        /**
+         * Wraps the step of one table in the current phase, so that its instrumentation is collected.
+         */
+        public Runnable step(String table, Runnable work) {
+            String stepPhase = phase;
+            return () -> {
+                Collector collector = new Collector(stepPhase, table);
+                CURRENT.set(collector);
+                long stepStart = System.nanoTime();
+                try {
+                    work.run();
+                } catch (RuntimeException | Error e) {
+                    collector.failures.increment();
+                    throw e;
+                } finally {
+                    collector.durationNanos = System.nanoTime() - stepStart;
+                    CURRENT.remove();
+                    collectors.put(stepPhase + " " + table, collector);
+                }
+            };
+        }
+
+        /**
+         * Ends the run and makes it the registry's last run.
+         * @param error The exception the run failed with, or null if it succeeded.
+         */
+        public SyncRunDTO finish(Throwable error) {
+            List<SyncTableMetricsDTO> tables = new ArrayList<>();
+            synchronized (collectors) {
+                collectors.values().forEach(c -> tables.add(c.toDTO()));
+            }
+            SyncRunDTO run = new SyncRunDTO(tenantId, initial, startedAt, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    error == null, error == null ? null : String.valueOf(error.getMessage()), List.copyOf(tables));
+            finished(run);
+            return run;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+// src/main/java/com/kmu/syncpos/service/SyncScheduler.java
+package com.kmu.syncpos.service;
+
+import com.kmu.syncpos.util.ChangeNotifier;
+import com.kmu.syncpos.util.ConfigLoader;
+import javafx.application.Platform;
+import javafx.concurrent.WorkerStateEvent;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the periodic {@link SyncService} runs.
+ * <ul>
+ *     <li>A commit that queues rows for upload (a sale, a payment, a stock adjustment, an edited product, ...)
+ *     schedules a sync {@code sync.debounce.ms} later. Further commits push it back, so a busy till uploads a burst
+ *     of sales in one cycle, but never beyond {@code sync.debounce.max.ms} after the first of them.</li>
+ *     <li>With nothing to upload, the scheduler stays idle apart from one run every {@code sync.poll.interval.seconds}
+ *     to pull changes made elsewhere.</li>
+ *     <li>After a failed run (typically: the till is offline) the next attempt backs off exponentially, with jitter,
+ *     up to {@code sync.offline.backoff.max.seconds}; local commits in the meantime wait for it instead of failing
+ *     again. The first successful run ends the backoff.</li>
+ * </ul>
+ */
+public final class SyncScheduler {
+
+    private final SyncService syncService;
+    private final long debounceNanos = TimeUnit.MILLISECONDS.toNanos(ConfigLoader.getLongProperty("sync.debounce.ms", 3_000));
+    private final long maxDebounceNanos = TimeUnit.MILLISECONDS.toNanos(ConfigLoader.getLongProperty("sync.debounce.max.ms", 15_000));
+    private final long pollNanos = TimeUnit.SECONDS.toNanos(ConfigLoader.getLongProperty("sync.poll.interval.seconds", 300));
+    private final RetryPolicy offlineBackoff = new RetryPolicy(Integer.MAX_VALUE,
+            Duration.ofSeconds(ConfigLoader.getLongProperty("sync.offline.backoff.base.seconds", 15)),
+            Duration.ofSeconds(ConfigLoader.getLongProperty("sync.offline.backoff.max.seconds", 600)));
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread t = new Thread(runnable, "SyncScheduler");
+        t.setDaemon(true); // Ensures this thread doesn't prevent app from closing
+        return t;
+    });
+    private final Runnable changeListener = this::onLocalChange;
+
+    // Guarded by this
+    private ScheduledFuture<?> nextRun;
+    private long firstChangeAt = -1;
+    private boolean running;
+    private boolean changedWhileRunning;
+    private int consecutiveFailures;
+
+    public SyncScheduler(SyncService syncService) {
+        this.syncService = syncService;
+    }
+
+    /**
+     * Starts listening for local changes and schedules the first sync after the given delay.
+     * Must be called on the JavaFX Application Thread.
+     */
+    public void start(Duration initialDelay) {
+        syncService.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, event -> finished(true));
+        syncService.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> finished(false));
+        syncService.addEventHandler(WorkerStateEvent.WORKER_STATE_CANCELLED, event -> finished(false));
+        ChangeNotifier.addListener(changeListener);
+        synchronized (this) {
+            scheduleIn(initialDelay.toNanos());
+        }
+    }
+
+    /**
+     * Stops scheduling; a sync that is already running is left to finish.
+     */
+    public void stop() {
+        ChangeNotifier.removeListener(changeListener);
+        timer.shutdownNow();
+    }
+
+    private synchronized void onLocalChange() {
+        if (consecutiveFailures > 0) {
+            return; // Offline: the backoff run will upload these changes too
+        }
+        if (running) {
+            changedWhileRunning = true;
+            return;
+        }
+        long now = System.nanoTime();
+        if (firstChangeAt < 0) {
+            firstChangeAt = now;
+        }
+        long due = Math.min(now + debounceNanos, firstChangeAt + maxDebounceNanos);
+        scheduleIn(due - now);
+    }
+
+    private synchronized void runNow() {
+        if (running) {
+            return;
+        }
+        running = true;
+        firstChangeAt = -1;
+        Platform.runLater(() -> {
+            if (!syncService.isRunning()) {
+                syncService.restart();
+            }
+        });
+    }
+
+    // Called on the JavaFX Application Thread when a run ends.
+    private synchronized void finished(boolean succeeded) {
+        running = false;
+        if (timer.isShutdown()) {
+            return;
+        }
+        if (!succeeded) {
+            consecutiveFailures++;
+            changedWhileRunning = false;
+            Duration delay = offlineBackoff.delayAfter(consecutiveFailures);
+            System.err.println("SyncScheduler: Sync failed " + consecutiveFailures + " time(s) in a row; next attempt in "
+                    + delay.toSeconds() + " s.");
+            scheduleIn(delay.toNanos());
+        } else {
+            consecutiveFailures = 0;
+            if (changedWhileRunning) {
+                changedWhileRunning = false;
+                firstChangeAt = System.nanoTime();
+                scheduleIn(debounceNanos);
+            } else {
+                scheduleIn(pollNanos);
+            }
+        }
+    }
+
+    // Replaces whatever run was scheduled before.
+    private void scheduleIn(long delayNanos) {
+        if (timer.isShutdown()) {
+            return;
+        }
+        if (nextRun != null) {
+            nextRun.cancel(false);
+        }
+        nextRun = timer.schedule(this::runNow, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    }
+}
@@ -4,15 +4,27 @@ package com.kmu.syncpos.service;
 import com.kmu.syncpos.dao.*;
 import com.kmu.syncpos.dto.*;
 import com.kmu.syncpos.models.Tenant;
+import com.kmu.syncpos.util.ConfigLoader;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
 
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * A background service that supports both initial full download (pull) and
- * incremental upload (push) of unsynced local data.
+ * A background service that downloads (pulls) remote changes and uploads (pushes) unsynced local data.
+ * Pulls are incremental: each table only fetches rows newer than the watermark its last pull reached,
+ * so the initial sync downloads everything once and later cycles only what changed since.
+ * The initial sync is resumable: every committed page moves the table's watermark, finished tables are
+ * checkpointed, and a restarted initial sync picks up where the previous attempt stopped.
  */
 public class SyncService extends Service<Void> {
 
@@ -31,9 +43,62 @@ public class SyncService extends Service<Void> {
     private final SaleItemDAO saleItemDAO = new SaleItemDAO();
     private final PaymentDAO paymentDAO = new PaymentDAO();
     private final StockLedgerDAO stockLedgerDAO = new StockLedgerDAO();
+    private final SyncStateDAO syncStateDAO = new SyncStateDAO();
+    private final ChangeLogDAO changeLogDAO = new ChangeLogDAO();
+    private final SyncFailureDAO syncFailureDAO = new SyncFailureDAO();
+    private final SyncRunDAO syncRunDAO = new SyncRunDAO();
 
     private final Tenant tenant;
     private final boolean isInitialSync;
+    private final int pullChunkSize = Math.max(1, ConfigLoader.getIntProperty("sync.pull.chunk.size", 500));
+    private final int snapshotChunkSize = Math.max(1, ConfigLoader.getIntProperty("sync.snapshot.chunk.size", 2000));
+    private final int pullPipelineDepth = Math.max(1, ConfigLoader.getIntProperty("sync.pull.pipeline.depth", 2));
+    private final int pushBatchSize = Math.max(1, ConfigLoader.getIntProperty("sync.push.batch.size", 200));
+    private final int syncParallelism = Math.max(1, ConfigLoader.getIntProperty("sync.parallelism", 3));
+    private final int reconcileIntervalHours = ConfigLoader.getIntProperty("sync.reconcile.interval.hours", 24);
+    // Transient failures (offline, 429, 5xx) are retried within the cycle; rows the server rejects back off across cycles.
+    private final RetryPolicy requestRetry = new RetryPolicy(
+            ConfigLoader.getIntProperty("sync.retry.attempts", 3),
+            Duration.ofMillis(ConfigLoader.getLongProperty("sync.retry.base.delay.ms", 500)),
+            Duration.ofMillis(ConfigLoader.getLongProperty("sync.retry.max.delay.ms", 8000)));
+    private final RetryPolicy rowRetry = new RetryPolicy(
+            ConfigLoader.getIntProperty("sync.dead.letter.after", 5),
+            Duration.ofSeconds(ConfigLoader.getLongProperty("sync.row.retry.base.delay.seconds", 300)),
+            Duration.ofSeconds(ConfigLoader.getLongProperty("sync.row.retry.max.delay.seconds", 21600)));
+
+    /**
+     * The foreign-key parents of every synced table. A table is pushed or pulled only once all of its parents
+     * are done; tables with no path between them are synced in parallel (at most {@code sync.parallelism} at a time).
+     */
+    private static final Map<String, List<String>> PARENT_TABLES = Map.ofEntries(
+            Map.entry("settings", List.of()),
+            Map.entry("users", List.of()),
+            Map.entry("suppliers", List.of()),
+            Map.entry("customers", List.of()),
+            Map.entry("categories", List.of()),
+            Map.entry("units", List.of()),
+            Map.entry("products", List.of("categories", "units", "suppliers")),
+            Map.entry("product_suppliers", List.of("products", "suppliers")),
+            Map.entry("sales", List.of("customers", "suppliers", "users")),
+            Map.entry("sale_items", List.of("sales", "products")),
+            Map.entry("payments", List.of("sales")),
+            // Ledger entries reference products, the user who made them and, for sales and purchases, the sale item.
+            Map.entry("stock_ledger", List.of("products", "sale_items", "users")));
+
+    /**
+     * @return The names of all synced tables.
+     */
+    public static Set<String> syncedTables() {
+        return PARENT_TABLES.keySet();
+    }
+
+    /**
+     * @param tenant An activated tenant.
+     * @return true once the initial sync has downloaded every table, even if it took several attempts.
+     */
+    public static boolean isInitialSyncComplete(Tenant tenant) {
+        return new SyncStateDAO().isInitialSyncComplete(tenant.getUuid(), PARENT_TABLES.keySet());
+    }
 
     public SyncService(Tenant tenant, boolean isInitialSync) {
         if (tenant == null || tenant.getUuid() == null || tenant.getUuid().isEmpty()) {
@@ -46,19 +111,51 @@ public class SyncService extends Service<Void> {
     @Override
     protected Task<Void> createTask() {
         return new Task<>() {
+            private SyncMetrics.Run metrics;
+            private SnapshotArchive snapshot;
+
             @Override
             protected Void call() throws Exception {
-                if (isInitialSync) {
-                    updateMessage("Starting initial data download…");
-                    initialSync();
-                } else {
-                    updateMessage("Checking for local changes to upload…");
-                    pushUnsyncedChanges();
+                metrics = SyncMetrics.getInstance().startRun(tenant.getUuid(), isInitialSync);
+                Throwable error = null;
+                try {
+                    if (isInitialSync) {
+                        updateMessage("Starting initial data download…");
+                        metrics.phase("pull", this::pullRemoteChanges);
+                    } else {
+                        // Push first, so a pulled row never overwrites a local change that has not been uploaded yet.
+                        updateMessage("Checking for local changes to upload…");
+                        metrics.phase("push", this::pushUnsyncedChanges);
+                        updateMessage("Checking for remote changes…");
+                        metrics.phase("pull", this::pullRemoteChanges);
+                        if (isReconcileDue()) {
+                            updateMessage("Comparing local data with the server…");
+                            try {
+                                metrics.phase("reconcile", this::reconcile);
+                            } catch (IllegalStateException e) {
+                                // Drift is repaired on a later cycle; the sync itself succeeded.
+                                System.err.println("SyncService: Reconciliation failed: " + e.getMessage());
+                            }
+                        }
+                    }
+                } catch (Exception | Error e) {
+                    error = e;
+                    throw e;
+                } finally {
+                    recordRun(metrics.finish(error));
                 }
                 updateMessage("Sync cycle finished.");
                 return null;
             }
 
+            private void recordRun(SyncRunDTO run) {
+                syncRunDAO.save(run);
+                StringBuilder summary = new StringBuilder("SyncService: Run took " + run.durationMs() + " ms, "
+                        + run.totalRows() + " rows, " + run.totalBytes() / 1024 + " KB");
+                run.tables().forEach(t -> summary.append(System.lineSeparator()).append("  ").append(t));
+                System.out.println(summary);
+            }
+
             @Override
             protected void failed() {
                 super.failed();
@@ -72,52 +169,146 @@ public class SyncService extends Service<Void> {
             // =========================================================
 
             /**
-             * Performs a full data download from the remote server to the local database.
-             * The order of operations is CRITICAL to respect foreign key constraints.
-             * We must insert parent records before their children.
+             * Downloads every remote row changed since the last pull into the local database.
+             * On a fresh database there are no watermarks yet, so this is the full initial download, unless a snapshot
+             * is configured ({@code sync.snapshot.path}): then the tables are imported from it and only the rows changed
+             * since it was taken are downloaded.
+             * Parent records must be saved before their children; see {@code PARENT_TABLES}.
+             */
+            private void pullRemoteChanges() throws InterruptedException {
+                String tenantId = tenant.getUuid();
+                Set<String> tables = new HashSet<>(PARENT_TABLES.keySet());
+                if (isInitialSync) {
+                    // A restarted initial sync skips the tables it already finished; an unfinished table resumes
+                    // after the last page it committed, as its watermark advances page by page.
+                    tables.removeAll(syncStateDAO.getCompletedTables(tenantId));
+                    snapshot = SnapshotArchive.find(tenantId);
+                    if (snapshot != null) {
+                        System.out.println("SyncService: Bootstrapping from the snapshot taken at " + snapshot.manifest().createdAt() + ".");
+                    }
+                }
+                SyncGraph graph = new SyncGraph(PARENT_TABLES);
+                step(graph, tables, "users", () -> {
+                    updateMessage("Downloading Users…");
+                    pull("users", UserDTO.class, (since, consumer) -> apiService.streamUserChanges(tenantId, since, pullChunkSize, consumer), userDAO::upsertRemoteBatch, userDAO::upsertRemote);
+                });
+                step(graph, tables, "categories", () -> {
+                    updateMessage("Downloading Categories…");
+                    pull("categories", CategoryDTO.class, (since, consumer) -> apiService.streamCategoryChanges(tenantId, since, pullChunkSize, consumer), categoryDAO::upsertRemoteBatch, categoryDAO::upsertRemote);
+                });
+                step(graph, tables, "units", () -> {
+                    updateMessage("Downloading Units…");
+                    pull("units", UnitDTO.class, (since, consumer) -> apiService.streamUnitChanges(tenantId, since, pullChunkSize, consumer), unitDAO::upsertRemoteBatch, unitDAO::upsertRemote);
+                });
+                step(graph, tables, "suppliers", () -> {
+                    updateMessage("Downloading Suppliers…");
+                    pull("suppliers", SupplierDTO.class, (since, consumer) -> apiService.streamSupplierChanges(tenantId, since, pullChunkSize, consumer), supplierDAO::upsertRemoteBatch, supplierDAO::upsertRemote);
+                });
+                step(graph, tables, "customers", () -> {
+                    updateMessage("Downloading Customers…");
+                    pull("customers", CustomerDTO.class, (since, consumer) -> apiService.streamCustomerChanges(tenantId, since, pullChunkSize, consumer), customerDAO::upsertRemoteBatch, customerDAO::upsertRemote);
+                });
+                step(graph, tables, "settings", () -> {
+                    updateMessage("Downloading Settings…");
+                    pull("settings", SettingsDTO.class, (since, consumer) -> apiService.streamSettingsChanges(tenantId, since, pullChunkSize, consumer), settingsDAO::upsertRemoteBatch, settingsDAO::upsertRemote);
+                });
+                step(graph, tables, "products", () -> {
+                    updateMessage("Downloading Products…");
+                    pull("products", ProductDTO.class, (since, consumer) -> apiService.streamProductChanges(tenantId, since, pullChunkSize, consumer), productDAO::upsertRemoteBatch, productDAO::upsertRemote);
+                });
+                step(graph, tables, "product_suppliers", () -> {
+                    updateMessage("Downloading Product-Supplier Links…");
+                    pull("product_suppliers", ProductSupplierDTO.class, (since, consumer) -> apiService.streamProductSupplierChanges(tenantId, since, pullChunkSize, consumer), productSupplierDAO::upsertRemoteBatch, productSupplierDAO::upsertRemote);
+                });
+                step(graph, tables, "sales", () -> {
+                    updateMessage("Downloading Sales…");
+                    pull("sales", SaleDTO.class, (since, consumer) -> apiService.streamSaleChanges(tenantId, since, pullChunkSize, consumer), saleDAO::upsertRemoteBatch, saleDAO::upsertRemote);
+                });
+                step(graph, tables, "sale_items", () -> {
+                    updateMessage("Downloading Sale Items…");
+                    pull("sale_items", SaleItemDTO.class, (since, consumer) -> apiService.streamSaleItemChanges(tenantId, since, pullChunkSize, consumer), saleItemDAO::upsertRemoteBatch, saleItemDAO::upsertRemote);
+                });
+                step(graph, tables, "payments", () -> {
+                    updateMessage("Downloading Payments…");
+                    pull("payments", PaymentDTO.class, (since, consumer) -> apiService.streamPaymentChanges(tenantId, since, pullChunkSize, consumer), paymentDAO::upsertRemoteBatch, paymentDAO::upsertRemote);
+                });
+                step(graph, tables, "stock_ledger", () -> {
+                    updateMessage("Downloading Stock Ledger…");
+                    pull("stock_ledger", StockLedgerDTO.class, (since, consumer) -> apiService.streamStockLedgerChanges(tenantId, since, pullChunkSize, consumer), stockLedgerDAO::upsertRemoteBatch, stockLedgerDAO::upsertRemote);
+                });
+                try {
+                    runGraph("Download", graph);
+                } finally {
+                    closeSnapshot();
+                }
+                if (isInitialSync) {
+                    verifyRowCounts(tenantId);
+                }
+            }
+
+            private void closeSnapshot() {
+                if (snapshot != null) {
+                    try {
+                        snapshot.close();
+                    } catch (IOException e) {
+                        System.err.println("SyncService: Failed to close the snapshot: " + e.getMessage());
+                    }
+                    snapshot = null;
+                }
+            }
+
+            private boolean isReconcileDue() {
+                if (reconcileIntervalHours <= 0) {
+                    return false;
+                }
+                // Counted from the last attempt, failed or not: a server without the digest functions, or one that
+                // is down, is not asked again on every cycle. Drift left by a failed attempt waits for the next one.
+                Instant last = syncRunDAO.getLastPhaseStart(tenant.getUuid(), "reconcile");
+                return last == null || last.isBefore(Instant.now().minus(Duration.ofHours(reconcileIntervalHours)));
+            }
+
+            /**
+             * Finds rows that differ from the server although neither side has a pending change, e.g. after a failed
+             * write or a restored backup, by comparing hash digests of UUID ranges (see {@link Reconciler}), and
+             * repairs them. Runs after the pull, so rows changed since the last cycle are already up to date.
              */
-            private void initialSync() {
+            private void reconcile() throws InterruptedException {
                 String tenantId = tenant.getUuid();
+                Reconciler reconciler = new Reconciler(apiService);
+                SyncGraph graph = new SyncGraph(PARENT_TABLES);
+                for (String table : Reconciler.tables()) {
+                    step(graph, Reconciler.tables(), table, () -> {
+                        ReconciliationDTO report = reconciler.reconcile(table, tenantId);
+                        SyncMetrics.addRows(report.repaired());
+                        if (!report.inSync()) {
+                            System.out.println("SyncService: " + report);
+                        }
+                    });
+                }
+                runGraph("Reconcile", graph);
+            }
 
-                // --- Phase 1: Independent Core Data ---
-                // These tables have few or no dependencies on other tables.
-                updateMessage("Downloading Users…");
-                pullAll(apiService.getAllUsers(tenantId), userDAO::upsertRemote);
-                updateMessage("Downloading Categories…");
-                pullAll(apiService.getAllCategories(tenantId), categoryDAO::upsertRemote);
-                updateMessage("Downloading Units…");
-                pullAll(apiService.getAllUnits(tenantId), unitDAO::upsertRemote);
-                updateMessage("Downloading Suppliers…");
-                pullAll(apiService.getAllSuppliers(tenantId), supplierDAO::upsertRemote);
-                updateMessage("Downloading Customers…");
-                pullAll(apiService.getAllCustomers(tenantId), customerDAO::upsertRemote);
-                updateMessage("Downloading Settings…");
-                pullAll(apiService.getAllSettings(tenantId), settingsDAO::upsertRemote);
-
-                // --- Phase 2: Core Data with Dependencies ---
-                // Products depend on Categories, Units, and Suppliers.
-                updateMessage("Downloading Products…");
-                pullAll(apiService.getAllProducts(tenantId), productDAO::upsertRemote);
-                // ProductSuppliers depends on Products and Suppliers.
-                updateMessage("Downloading Product-Supplier Links…");
-                pullAll(apiService.getAllProductSuppliers(tenantId), productSupplierDAO::upsertRemote);
-
-                // --- Phase 3: Parent Transactional Data ---
-                // Sales are the parents for SaleItems and Payments.
-                updateMessage("Downloading Sales…");
-                pullAll(apiService.getAllSales(tenantId), saleDAO::upsertRemote);
-
-                // --- Phase 4: Dependent Child Data ---
-                // These MUST be run after their parent records (Sales) are saved locally.
-                updateMessage("Downloading Sale Items…");
-                pullAll(apiService.getAllSaleItems(tenantId), saleItemDAO::upsertRemote);
-                updateMessage("Downloading Payments…");
-                pullAll(apiService.getAllPayments(tenantId), paymentDAO::upsertRemote);
-
-                // --- Phase 5: Deeply Dependent Data ---
-                // StockLedger depends on Products, Users, and sometimes SaleItems.
-                updateMessage("Downloading Stock Ledger…");
-                pullAll(apiService.getAllStockLedgerEntries(tenantId), stockLedgerDAO::upsertRemote);
+            /**
+             * Ends the initial sync by comparing the local row count of every table with the server's.
+             * A table with fewer rows than the server has its watermark reset, so the next sync cycle downloads it
+             * in full again. The check never fails the sync: the till stays usable and the gap is repaired in the background.
+             */
+            private void verifyRowCounts(String tenantId) {
+                updateMessage("Verifying downloaded data…");
+                for (String table : PARENT_TABLES.keySet()) {
+                    long serverCount = apiService.countForTenant(table, tenantId);
+                    long localCount = syncStateDAO.countLocalRows(table, tenantId);
+                    if (serverCount < 0 || localCount < 0) {
+                        continue;
+                    }
+                    syncStateDAO.recordVerification(tenantId, table, localCount, serverCount);
+                    // Rows created locally but not yet uploaded make the local count higher, which is fine.
+                    if (localCount < serverCount) {
+                        System.err.println("SyncService: " + table + " has " + localCount + " local rows but " + serverCount
+                                + " on the server; it will be downloaded again on the next sync.");
+                        syncStateDAO.resetWatermark(tenantId, table);
+                    }
+                }
             }
 
             /**
@@ -125,42 +316,68 @@ public class SyncService extends Service<Void> {
              * The order is just as critical as the pull to ensure parent records
              * are created on the remote server before their children arrive.
              */
-            private void pushUnsyncedChanges() {
+            private void pushUnsyncedChanges() throws InterruptedException {
                 String tenantId = tenant.getUuid();
-
-                // --- Phase 1: Independent Core Data ---
-                updateMessage("Syncing Settings...");
-                pushUnsynced(settingsDAO.getUnsyncedSettings(tenantId), apiService::postSettings, settingsDAO::markAsSynced, tenantId);
-                updateMessage("Syncing Users...");
-                pushUnsynced(userDAO.getUnsynced(tenantId), apiService::postUser, userDAO::markAsSynced, tenantId);
-                updateMessage("Syncing Suppliers...");
-                pushUnsynced(supplierDAO.getUnsynced(tenantId), apiService::postSupplier, supplierDAO::markAsSynced, tenantId);
-                updateMessage("Syncing Customers...");
-                pushUnsynced(customerDAO.getUnsynced(tenantId), apiService::postCustomer, customerDAO::markAsSynced, tenantId);
-                updateMessage("Syncing Categories...");
-                pushUnsynced(categoryDAO.getUnsynced(tenantId), apiService::postCategory, categoryDAO::markAsSynced, tenantId);
-                updateMessage("Syncing Units...");
-                pushUnsynced(unitDAO.getUnsynced(tenantId), apiService::postUnit, unitDAO::markAsSynced, tenantId);
-
-                // --- Phase 2: Core Data with Dependencies ---
-                updateMessage("Syncing Products...");
-                pushUnsynced(productDAO.getUnsynced(tenantId), apiService::postProduct, productDAO::markAsSynced, tenantId);
-                updateMessage("Syncing Product-Supplier Links...");
-                pushUnsynced(productSupplierDAO.getUnsynced(tenantId), apiService::postProductSupplier, productSupplierDAO::markAsSynced, tenantId);
-
-                // --- Phase 3: Parent Transactional Data ---
-                updateMessage("Syncing Sales & Purchases...");
-                pushUnsynced(saleDAO.getUnsynced(tenantId), apiService::postSale, saleDAO::markAsSynced, tenantId);
-
-                // --- Phase 4: Dependent Child Data ---
-                updateMessage("Syncing Sale & Purchase Items...");
-                pushUnsynced(saleItemDAO.getUnsynced(tenantId), apiService::postSaleItem, saleItemDAO::markAsSynced, tenantId);
-                updateMessage("Syncing Payments...");
-                pushUnsynced(paymentDAO.getUnsynced(tenantId), apiService::postPayment, paymentDAO::markAsSynced, tenantId);
-
-                // --- Phase 5: Deeply Dependent Data ---
-                updateMessage("Syncing Inventory Adjustments...");
-                pushUnsynced(stockLedgerDAO.getUnsynced(tenantId), apiService::postStockLedger, stockLedgerDAO::markAsSynced, tenantId);
+                // The change_log lists exactly the rows waiting for upload, so an idle till costs one query here.
+                Set<String> pending = changeLogDAO.getPendingTables(tenantId);
+                if (pending.isEmpty()) {
+                    updateMessage("No local changes to upload.");
+                    return;
+                }
+                SyncGraph graph = new SyncGraph(PARENT_TABLES);
+                step(graph, pending, "settings", () -> {
+                    updateMessage("Syncing Settings...");
+                    pushUnsynced("settings", settingsDAO::getUnsyncedSettingsByIds, apiService::postSettingsBatch, apiService::postSettings, settingsDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "users", () -> {
+                    updateMessage("Syncing Users...");
+                    pushUnsynced("users", userDAO::getUnsyncedByIds, apiService::postUserBatch, apiService::postUser, userDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "suppliers", () -> {
+                    updateMessage("Syncing Suppliers...");
+                    pushUnsynced("suppliers", supplierDAO::getUnsyncedByIds, apiService::postSupplierBatch, apiService::postSupplier, supplierDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "customers", () -> {
+                    updateMessage("Syncing Customers...");
+                    pushUnsynced("customers", customerDAO::getUnsyncedByIds, apiService::postCustomerBatch, apiService::postCustomer, customerDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "categories", () -> {
+                    updateMessage("Syncing Categories...");
+                    pushUnsynced("categories", categoryDAO::getUnsyncedByIds, apiService::postCategoryBatch, apiService::postCategory, categoryDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "units", () -> {
+                    updateMessage("Syncing Units...");
+                    pushUnsynced("units", unitDAO::getUnsyncedByIds, apiService::postUnitBatch, apiService::postUnit, unitDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "products", () -> {
+                    updateMessage("Syncing Products...");
+                    pushUnsynced("products", productDAO::getUnsyncedByIds, apiService::postProductBatch, apiService::postProduct, productDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "product_suppliers", () -> {
+                    updateMessage("Syncing Product-Supplier Links...");
+                    pushUnsynced("product_suppliers", productSupplierDAO::getUnsyncedByIds, apiService::postProductSupplierBatch, apiService::postProductSupplier, productSupplierDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "sales", () -> {
+                    updateMessage("Syncing Sales & Purchases...");
+                    pushUnsynced("sales", saleDAO::getUnsyncedByIds, apiService::postSaleBatch, apiService::postSale, saleDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "sale_items", () -> {
+                    updateMessage("Syncing Sale & Purchase Items...");
+                    pushUnsynced("sale_items", saleItemDAO::getUnsyncedByIds, apiService::postSaleItemBatch, apiService::postSaleItem, saleItemDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "payments", () -> {
+                    updateMessage("Syncing Payments...");
+                    pushUnsynced("payments", paymentDAO::getUnsyncedByIds, apiService::postPaymentBatch, apiService::postPayment, paymentDAO::markAllAsSynced, tenantId);
+                });
+                step(graph, pending, "stock_ledger", () -> {
+                    updateMessage("Syncing Inventory Adjustments...");
+                    pushUnsynced("stock_ledger", stockLedgerDAO::getUnsyncedByIds, apiService::postStockLedgerBatch, apiService::postStockLedger, stockLedgerDAO::markAllAsSynced, tenantId);
+                });
+                runGraph("Upload", graph);
+                Map<String, Integer> deadLetters = syncFailureDAO.countDeadLetters(tenantId);
+                if (!deadLetters.isEmpty()) {
+                    System.err.println("SyncService: Rows rejected by the server and no longer uploaded until edited: " + deadLetters);
+                }
             }
 
 
@@ -168,29 +385,170 @@ public class SyncService extends Service<Void> {
             //  HELPER METHODS
             // =========================================================
 
-            private <T> void pullAll(List<T> dtoList, Consumer<T> upsertFunction) {
-                if (dtoList == null || dtoList.isEmpty()) return;
-                for (T dto : dtoList) {
-                    // Consider adding a try-catch block here to handle individual record failures
-                    // without stopping the entire sync process.
-                    upsertFunction.accept(dto);
+            private void step(SyncGraph graph, Set<String> tables, String table, Runnable work) {
+                if (tables.contains(table)) {
+                    graph.step(table, metrics.step(table, work));
+                }
+            }
+
+            private void runGraph(String phase, SyncGraph graph) throws InterruptedException {
+                SyncGraph.Result result = graph.run(syncParallelism);
+                StringBuilder timings = new StringBuilder();
+                result.timings().forEach((table, time) -> timings.append(' ').append(table).append('=').append(time.toMillis()).append("ms"));
+                System.out.println("SyncService: " + phase + " took " + result.elapsed().toMillis() + " ms;" + timings);
+                if (!result.failures().isEmpty()) {
+                    Map.Entry<String, Throwable> first = result.failures().entrySet().iterator().next();
+                    throw new IllegalStateException(phase + " failed for " + result.failures().keySet()
+                            + (result.skipped().isEmpty() ? "" : ", skipped " + result.skipped()), first.getValue());
+                }
+            }
+
+            @FunctionalInterface interface BatchUpsertFunction<T> { UpsertCountsDTO apply(List<T> chunk) throws SQLException; }
+            @FunctionalInterface interface StreamFunction<T> { boolean apply(SyncWatermarkDTO since, ApiService.PageConsumer<T> consumer); }
+            @FunctionalInterface interface UpsertFunction<T> { boolean apply(T dto); }
+            private <T> void pull(String tableName, Class<T> type, StreamFunction<T> streamFunc,
+                                  BatchUpsertFunction<T> batchUpsertFunc, UpsertFunction<T> upsertFunction) {
+                String tenantId = tenant.getUuid();
+                int[] saved = {0};
+                ApiService.PageConsumer<T> apply = (chunk, reached) -> {
+                    String typeName = chunk.get(0).getClass().getSimpleName().replace("DTO", "");
+                    long applyStart = System.nanoTime();
+                    try {
+                        // Rows not newer than the local copy (typically the echoes of our own uploads) are skipped.
+                        SyncMetrics.addUpserts(batchUpsertFunc.apply(chunk));
+                    } catch (SQLException e) {
+                        // One bad row fails the whole batch; apply the chunk row by row to save the rows around it.
+                        System.err.println("SyncService: Batch of " + typeName + " failed, retrying row by row: " + e.getMessage());
+                        int failed = 0;
+                        for (T row : chunk) {
+                            if (!upsertFunction.apply(row)) {
+                                SyncMetrics.addFailure();
+                                failed++;
+                            }
+                        }
+                        if (failed > 0) {
+                            // Leave the watermark before this chunk, so its rows are pulled again on the next attempt
+                            // (a missing parent or a busy database is usually gone by then), and fail the step.
+                            throw new IllegalStateException(failed + " of " + chunk.size() + " " + typeName
+                                    + " rows could not be saved: " + e.getMessage(), e);
+                        }
+                    }
+                    // The chunk is committed now, so the watermark may move past it.
+                    if (reached != null) {
+                        syncStateDAO.saveWatermark(tenantId, tableName, reached);
+                    }
+                    if (isInitialSync) {
+                        syncStateDAO.recordPage(tenantId, tableName, chunk.size());
+                    }
+                    SyncMetrics.addTime(SyncMetrics.Stage.DATABASE, System.nanoTime() - applyStart);
+                    SyncMetrics.addRows(chunk.size());
+                    saved[0] += chunk.size();
+                    updateMessage(String.format("Saving %s (%d so far)...", typeName, saved[0]));
+                };
+                SyncWatermarkDTO start = syncStateDAO.getWatermark(tenantId, tableName);
+                SnapshotManifestDTO.Table segment = snapshot == null ? null : snapshot.table(tableName);
+                if (start == null && segment != null) {
+                    // Bootstrap the table from the snapshot; the server then only sends what changed after it was taken.
+                    if (!PagePipeline.<T>run(consumer -> snapshot.stream(tableName, type, snapshotChunkSize, consumer), pullPipelineDepth, apply)) {
+                        throw new IllegalStateException("Import of " + tableName + " from the snapshot failed after " + saved[0] + " rows.");
+                    }
+                    start = segment.watermark();
+                }
+                SyncWatermarkDTO since = start;
+                // The next pages download while this thread writes a page, pullPipelineDepth pages at most.
+                boolean complete = PagePipeline.<T>run(consumer -> streamFunc.apply(since, consumer), pullPipelineDepth, apply);
+                if (!complete) {
+                    // Fail the step, so tables depending on this one are not pulled against missing parents.
+                    // The pages already saved are kept; the next attempt continues from the watermark.
+                    throw new IllegalStateException("Download of " + tableName + " was interrupted after " + saved[0] + " rows.");
+                }
+                if (isInitialSync) {
+                    syncStateDAO.markCompleted(tenantId, tableName);
                 }
             }
 
-            @FunctionalInterface interface PostFunction<T> { boolean apply(T dto); }
-            @FunctionalInterface interface MarkSyncedFunction { void apply(long id, String tenantId); }
-            private <T extends BaseDTO> void pushUnsynced(List<T> dtoList, PostFunction<T> postFunc, MarkSyncedFunction markSyncedFunc, String tenantId) {
-                if (dtoList == null || dtoList.isEmpty()) return; // Added null check for safety
-                String typeName = dtoList.get(0).getClass().getSimpleName().replace("DTO", "");
-                int total = dtoList.size();
-                int current = 0;
-                for (T dto : dtoList) {
-                    current++;
-                    updateMessage(String.format("Uploading %s (%d/%d)...", typeName, current, total));
-                    // Consider adding a try-catch block here as well.
-                    if (postFunc.apply(dto)) {
-                        markSyncedFunc.apply(dto.getId(), tenantId);
+            @FunctionalInterface interface PostFunction<T> { UploadResult apply(T dto); }
+            @FunctionalInterface interface BatchPostFunction<T> { UploadResult apply(List<T> batch); }
+            @FunctionalInterface interface LoadUnsyncedFunction<T> { List<T> apply(Collection<Long> ids, String tenantId); }
+            @FunctionalInterface interface MarkAllSyncedFunction { void apply(Collection<Long> ids, long uptoSeq, String tenantId); }
+            private <T extends BaseDTO> void pushUnsynced(String tableName, LoadUnsyncedFunction<T> loadFunc, BatchPostFunction<T> batchPostFunc,
+                                                          PostFunction<T> postFunc, MarkAllSyncedFunction markSyncedFunc, String tenantId) {
+                // Walk the table's change_log entries in commit order. Marking rows synced deletes their entries up to the
+                // cursor; rows edited during their upload were logged again after it and are uploaded again further on.
+                // Rows that fail to upload keep their entries and are retried on the next cycle, as the cursor restarts at 0.
+                long cursor = 0;
+                int uploaded = 0;
+                while (true) {
+                    ChangeLogDAO.Pending pending = changeLogDAO.readPending(tableName, cursor, pushBatchSize, tenantId);
+                    if (pending.rowIds().isEmpty()) return;
+                    cursor = pending.lastSeq();
+                    long loadStart = System.nanoTime();
+                    List<T> loaded = loadFunc.apply(pending.rowIds(), tenantId);
+                    if (loaded.size() < pending.rowIds().size()) {
+                        // Some rows were synced or removed since they were logged; nothing is left to upload for them.
+                        Set<Long> stale = new HashSet<>(pending.rowIds());
+                        loaded.forEach(dto -> stale.remove(dto.getId()));
+                        changeLogDAO.discard(tableName, stale, cursor, tenantId);
+                    }
+                    // Rows the server rejected before wait out their backoff, and dead-lettered rows wait until they are edited.
+                    Set<Long> heldBack = syncFailureDAO.getHeldBack(tableName, pending.rowIds(), tenantId);
+                    List<T> batch = loaded.stream().filter(dto -> !heldBack.contains(dto.getId())).toList();
+                    SyncMetrics.addTime(SyncMetrics.Stage.DATABASE, System.nanoTime() - loadStart);
+                    if (batch.isEmpty()) continue;
+                    String typeName = batch.get(0).getClass().getSimpleName().replace("DTO", "");
+                    uploaded += batch.size();
+                    updateMessage(String.format("Uploading %s (%d so far)...", typeName, uploaded));
+                    List<Long> acknowledged = new ArrayList<>(batch.size());
+                    UploadResult result = requestRetry.run(() -> batchPostFunc.apply(batch));
+                    if (result.isOk()) {
+                        batch.forEach(dto -> acknowledged.add(dto.getId()));
+                    } else if (result.isTransient()) {
+                        // The server is unreachable or struggling: stop here and let the next cycle try again.
+                        throw new IllegalStateException("Upload of " + tableName + " failed (" + result.httpStatus() + "): " + result.error());
+                    } else {
+                        // The batch was rejected as a whole (or the server has no batch endpoint): upload record by record,
+                        // so a bad record only holds back itself.
+                        for (T dto : batch) {
+                            UploadResult recordResult = requestRetry.run(() -> postFunc.apply(dto));
+                            if (recordResult.isOk()) {
+                                acknowledged.add(dto.getId());
+                            } else if (recordResult.isTransient()) {
+                                markSynced(markSyncedFunc, acknowledged, cursor, tenantId);
+                                throw new IllegalStateException("Upload of " + tableName + " failed (" + recordResult.httpStatus() + "): " + recordResult.error());
+                            } else {
+                                recordRejection(tableName, dto.getId(), recordResult, cursor, tenantId);
+                            }
+                        }
                     }
+                    markSynced(markSyncedFunc, acknowledged, cursor, tenantId);
+                }
+            }
+
+            private void markSynced(MarkAllSyncedFunction markSyncedFunc, List<Long> acknowledged, long cursor, String tenantId) {
+                long start = System.nanoTime();
+                markSyncedFunc.apply(acknowledged, cursor, tenantId);
+                SyncMetrics.addTime(SyncMetrics.Stage.DATABASE, System.nanoTime() - start);
+                SyncMetrics.addRows(acknowledged.size());
+            }
+
+            /**
+             * Counts a permanent rejection of a row. The row is held back with an exponential, jittered backoff so
+             * it does not cost a request every cycle; after {@code sync.dead.letter.after} rejections it is
+             * dead-lettered, i.e. not uploaded again until it is edited.
+             */
+            private void recordRejection(String tableName, long rowId, UploadResult result, long cursor, String tenantId) {
+                SyncMetrics.addFailure();
+                int attempts = syncFailureDAO.recordFailure(tableName, rowId, tenantId, result.httpStatus(), result.error());
+                if (attempts >= rowRetry.maxAttempts()) {
+                    syncFailureDAO.deadLetter(tableName, rowId, tenantId);
+                    changeLogDAO.discard(tableName, List.of(rowId), cursor, tenantId);
+                    System.err.println("SyncService: " + tableName + " row " + rowId + " was rejected " + attempts
+                            + " times and is dead-lettered: " + result.error());
+                } else if (attempts > 0) {
+                    Duration delay = rowRetry.delayAfter(attempts);
+                    syncFailureDAO.scheduleRetry(tableName, rowId, tenantId, delay);
+                    System.err.println("SyncService: " + tableName + " row " + rowId + " was rejected (attempt " + attempts
+                            + " of " + rowRetry.maxAttempts() + "), next try in " + delay.toMinutes() + " min.");
                 }
             }
         };
@@ -0,0 +1,55 @@
+// src/main/java/com/kmu/syncpos/service/UploadResult.java
+package com.kmu.syncpos.service;
+
+/**
+ * The outcome of an upload request, classified by whether sending the same data again can succeed.
+ *
+ * @param kind       Whether the upload succeeded, may succeed later, or will never succeed as is.
+ * @param httpStatus The HTTP status of the response, or 0 if no response was received.
+ * @param error      The server's error message (or the exception message), null on success.
+ */
+public record UploadResult(Kind kind, int httpStatus, String error) {
+
+    public enum Kind {
+        /** The server accepted the data. */
+        OK,
+        /** The request failed for reasons unrelated to the data (network, overload, outage, credentials); retry later. */
+        TRANSIENT,
+        /** The server rejected the data itself (constraint violation, invalid value); resending it is pointless. */
+        PERMANENT
+    }
+
+    public static final UploadResult SUCCESS = new UploadResult(Kind.OK, 200, null);
+
+    /**
+     * Classifies a failed HTTP response.
+     * Timeouts (408), too-early (425), rate limiting (429) and every 5xx are transient. So are 401, 403 and 404:
+     * a bad key or a missing RPC function is a deployment problem that affects every record alike, so no
+     * record may be dead-lettered because of it. Any other 4xx is PostgREST rejecting the record (400 malformed
+     * value, 409 conflict, 422 check violation), which is permanent.
+     */
+    public static UploadResult forStatus(int httpStatus, String error) {
+        boolean isTransient = httpStatus >= 500 || httpStatus == 401 || httpStatus == 403 || httpStatus == 404
+                || httpStatus == 408 || httpStatus == 425 || httpStatus == 429;
+        return new UploadResult(isTransient ? Kind.TRANSIENT : Kind.PERMANENT, httpStatus, error);
+    }
+
+    /**
+     * A request that got no response, e.g. because the till is offline.
+     */
+    public static UploadResult forException(Exception e) {
+        return new UploadResult(Kind.TRANSIENT, 0, e.getMessage());
+    }
+
+    public boolean isOk() {
+        return kind == Kind.OK;
+    }
+
+    public boolean isTransient() {
+        return kind == Kind.TRANSIENT;
+    }
+
+    public boolean isPermanent() {
+        return kind == Kind.PERMANENT;
+    }
+}
@@ -0,0 +1,66 @@
+// src/main/java/com/kmu/syncpos/util/ChangeNotifier.java
+package com.kmu.syncpos.util;
+
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteUpdateListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tells interested parties that local changes are waiting for upload.
+ * The triggers on the synced tables append to 'change_log' whenever a row is written unsynced (see migration 6),
+ * so instead of every DAO announcing its writes, each pooled connection watches for inserts into that table
+ * through SQLite's update hook and notifies the listeners once the transaction that made them commits.
+ * Writes of the sync itself (pulled rows, rows marked synced) never append to the log and stay silent.
+ */
+public final class ChangeNotifier {
+
+    private static final String CHANGE_LOG_TABLE = "change_log";
+    private static final List<Runnable> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private ChangeNotifier() {
+    }
+
+    /**
+     * @param listener Called after every commit that queued rows for upload, on the committing thread.
+     *                 It runs while SQLite finishes the commit, so it must only hand off work, never use the database.
+     */
+    public static void addListener(Runnable listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Runnable listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Installs the hooks on a newly opened physical connection.
+     */
+    static void install(Connection physical) throws SQLException {
+        SQLiteConnection sqlite = physical.unwrap(SQLiteConnection.class);
+        AtomicBoolean queued = new AtomicBoolean();
+        sqlite.addUpdateListener((type, database, table, rowId) -> {
+            if (type == SQLiteUpdateListener.Type.INSERT && CHANGE_LOG_TABLE.equals(table)) {
+                queued.set(true);
+            }
+        });
+        sqlite.addCommitListener(new SQLiteCommitListener() {
+            @Override
+            public void onCommit() {
+                if (queued.getAndSet(false)) {
+                    LISTENERS.forEach(Runnable::run);
+                }
+            }
+
+            @Override
+            public void onRollback() {
+                queued.set(false);
+            }
+        });
+    }
+}
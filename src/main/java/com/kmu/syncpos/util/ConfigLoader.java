@@ -8,7 +8,8 @@ import java.util.logging.Logger;
 
 /**
  * Utility class for loading application configuration from properties file.
- * Provides centralized access to configuration values.
+ * Provides centralized access to configuration values. A JVM system property with the same key overrides the
+ * file, e.g. {@code -Dsupabase.url=http://localhost:54321} to run against a local server.
  */
 public class ConfigLoader {
 
@@ -64,7 +65,7 @@ public class ConfigLoader {
      * @return The property value, or null if not found
      */
     public static String getProperty(String key) {
-        return properties.getProperty(key);
+        return System.getProperty(key, properties.getProperty(key));
     }
 
     /**
@@ -75,7 +76,50 @@ public class ConfigLoader {
      * @return The property value, or defaultValue if not found
      */
     public static String getProperty(String key, String defaultValue) {
-        return properties.getProperty(key, defaultValue);
+        String value = getProperty(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Gets an integer configuration property, falling back to the default when the key
+     * is missing or not a valid number.
+     *
+     * @param key The property key
+     * @param defaultValue The default value
+     * @return The parsed value, or defaultValue
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        String value = getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid integer for property {0}: {1}", new Object[]{key, value});
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets a long configuration property, falling back to the default when the key
+     * is missing or not a valid number.
+     *
+     * @param key The property key
+     * @param defaultValue The default value
+     * @return The parsed value, or defaultValue
+     */
+    public static long getLongProperty(String key, long defaultValue) {
+        String value = getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid long for property {0}: {1}", new Object[]{key, value});
+            return defaultValue;
+        }
     }
 
     /**
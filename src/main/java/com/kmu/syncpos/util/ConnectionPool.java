@@ -0,0 +1,294 @@
+package com.kmu.syncpos.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A small, bounded pool of SQLite connections.
+ * Every physical connection is configured once, when it is opened, with the PRAGMAs
+ * the application relies on (WAL journaling, relaxed fsync, cache sizing, busy timeout).
+ * Callers receive a proxy whose {@code close()} hands the connection back to the pool
+ * instead of tearing down the SQLite handle, so existing try-with-resources code in the
+ * DAOs keeps working unchanged.
+ * <p>
+ * Each physical connection also owns a {@link StatementCache}: {@code prepareStatement(sql)} on a
+ * borrowed connection reuses an already prepared statement for the same SQL text when one is free.
+ * It also carries the {@link ChangeNotifier} hooks that report commits of changes waiting for upload.
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String url;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final List<String> pragmas;
+    private final int statementCacheSize;
+
+    private final BlockingQueue<PooledConnection> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param url                 The JDBC URL of the database.
+     * @param maxSize             The maximum number of physical connections kept open.
+     * @param borrowTimeoutMillis How long a caller waits for a free connection before failing.
+     * @param pragmas             PRAGMA statements applied to every new physical connection.
+     * @param statementCacheSize  Prepared statements cached per physical connection; 0 disables the cache.
+     */
+    public ConnectionPool(String url, int maxSize, long borrowTimeoutMillis, List<String> pragmas, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1, was " + maxSize);
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.pragmas = List.copyOf(pragmas);
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if the pool has not reached its bound.
+     * The returned connection must be closed by the caller to return it to the pool.
+     *
+     * @return A ready-to-use connection in auto-commit mode.
+     * @throws SQLException if the pool is closed, exhausted for longer than the timeout, or a new connection cannot be opened.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+        long start = System.nanoTime();
+        PooledConnection pooled = idle.poll();
+        if (pooled == null) {
+            pooled = tryCreate();
+        }
+        if (pooled == null) {
+            try {
+                pooled = idle.poll(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection.", e);
+            }
+            if (pooled == null) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection ("
+                        + maxSize + " in use).");
+            }
+        }
+        if (pooled.connection().isClosed()) {
+            // The handle died while idle; replace it rather than handing out a broken connection.
+            created.decrementAndGet();
+            pooled = tryCreate();
+            if (pooled == null) {
+                throw new SQLException("Could not replace a closed pooled connection.");
+            }
+        }
+        recordWait(System.nanoTime() - start);
+        active.incrementAndGet();
+        return wrap(pooled);
+    }
+
+    /**
+     * @return A point-in-time snapshot of pool usage, used to size the pool per terminal.
+     */
+    public Stats getStats() {
+        long borrows = borrowCount.get();
+        return new Stats(maxSize, created.get(), active.get(), idle.size(), borrows,
+                borrows == 0 ? 0 : totalWaitNanos.get() / borrows, maxWaitNanos.get(), timeouts.get(),
+                statementHits.get(), statementMisses.get());
+    }
+
+    /**
+     * Closes every idle physical connection and refuses further borrows.
+     * Connections still checked out are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection c;
+        while ((c = idle.poll()) != null) {
+            closeQuietly(c);
+        }
+    }
+
+    private PooledConnection tryCreate() throws SQLException {
+        while (true) {
+            int current = created.get();
+            if (current >= maxSize) {
+                return null;
+            }
+            if (created.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        try {
+            Connection physical = DriverManager.getConnection(url);
+            try (Statement stmt = physical.createStatement()) {
+                for (String pragma : pragmas) {
+                    stmt.execute(pragma);
+                }
+            }
+            ChangeNotifier.install(physical);
+            StatementCache statements = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementHits, statementMisses)
+                    : null;
+            return new PooledConnection(physical, statements);
+        } catch (SQLException e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        Connection physical = pooled.connection();
+        try {
+            if (physical.isClosed()) {
+                created.decrementAndGet();
+                return;
+            }
+            if (pooled.statements() != null) {
+                pooled.statements().releaseAll();
+            }
+            // Never hand an open transaction to the next borrower.
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Discarding pooled connection that could not be reset.", e);
+            closeQuietly(pooled);
+            created.decrementAndGet();
+            return;
+        }
+        if (closed || !idle.offer(pooled)) {
+            closeQuietly(pooled);
+            created.decrementAndGet();
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private Connection wrap(PooledConnection pooled) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledConnectionHandler(pooled));
+    }
+
+    private static void closeQuietly(PooledConnection pooled) {
+        if (pooled.statements() != null) {
+            pooled.statements().close();
+        }
+        try {
+            pooled.connection().close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Ignoring error while closing a pooled connection.", e);
+        }
+    }
+
+    /**
+     * A physical connection together with its statement cache (null when caching is disabled).
+     */
+    private record PooledConnection(Connection connection, StatementCache statements) {
+    }
+
+    /**
+     * Routes calls on the logical connection to the physical one, turning {@code close()} into a return to the pool
+     * and {@code prepareStatement} into a statement cache lookup.
+     */
+    private final class PooledConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection physical;
+        private boolean returned;
+
+        PooledConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.physical = pooled.connection();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool.");
+                    }
+                    if (pooled.statements() != null && method.getName().equals("prepareStatement")) {
+                        Class<?>[] params = method.getParameterTypes();
+                        if (params.length == 1) {
+                            return pooled.statements().prepare((Connection) proxy, (String) args[0], Statement.NO_GENERATED_KEYS);
+                        }
+                        if (params.length == 2 && params[1] == int.class) {
+                            return pooled.statements().prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                        }
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Snapshot of pool statistics.
+     *
+     * @param maxSize         The configured upper bound of physical connections.
+     * @param open            Physical connections currently open (active + idle).
+     * @param active          Connections currently checked out.
+     * @param idle            Connections waiting in the pool.
+     * @param borrows         Total number of successful borrows.
+     * @param avgWaitNanos    Average time a borrow waited for a connection.
+     * @param maxWaitNanos    Longest time a borrow waited for a connection.
+     * @param timeouts        Borrows that failed because the pool stayed exhausted.
+     * @param statementHits   Prepared statements served from a connection's statement cache.
+     * @param statementMisses Prepared statements that had to be parsed and planned by SQLite.
+     */
+    public record Stats(int maxSize, int open, int active, int idle, long borrows,
+                        long avgWaitNanos, long maxWaitNanos, long timeouts,
+                        long statementHits, long statementMisses) {
+    }
+}
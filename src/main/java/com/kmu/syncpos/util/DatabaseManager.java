@@ -1,17 +1,26 @@
 package com.kmu.syncpos.util;
 
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Manages the connection to and initialization of the local SQLite database.
  * This class implements a singleton pattern to ensure a single point of database access.
- * The schema defined here is "strict" - it uses NOT NULL and DEFAULT constraints
+ * The schema (see {@link SchemaMigrator}) is "strict" - it uses NOT NULL and DEFAULT constraints
  * to prevent bad data from being stored, which is a primary defense against
  * runtime NullPointerExceptions.
+ * Connections are served from a bounded {@link ConnectionPool}; each physical connection
+ * has its PRAGMAs applied once when it is opened rather than on every DAO call.
+ * <p>
+ * Service-level transactions run through {@link #inTransaction(TransactionWork)}. While one is open,
+ * {@link #getConnection()} on the same thread returns the transaction's connection, so plain DAO
+ * methods called inside it see its uncommitted rows instead of borrowing a second connection.
  */
 public class DatabaseManager {
 
@@ -21,8 +30,27 @@ public class DatabaseManager {
 
     private static DatabaseManager instance;
 
+    private final ConnectionPool pool;
+    private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+
     private DatabaseManager() {
         // Private constructor for singleton
+        this.pool = new ConnectionPool(
+                // Transactions start with BEGIN IMMEDIATE: they take the write lock up front (waiting up to the busy
+                // timeout) instead of failing with SQLITE_BUSY_SNAPSHOT when a reader upgrades to a writer while
+                // another connection, e.g. a parallel sync step, has committed in between.
+                DB_URL + "?transaction_mode=IMMEDIATE",
+                ConfigLoader.getIntProperty("database.pool.size", 4),
+                ConfigLoader.getLongProperty("database.pool.timeout.ms", 10_000L),
+                List.of(
+                        "PRAGMA journal_mode=WAL",
+                        "PRAGMA synchronous=NORMAL",
+                        "PRAGMA cache_size=" + ConfigLoader.getIntProperty("database.cache.size.kb", -16_000),
+                        "PRAGMA mmap_size=" + ConfigLoader.getLongProperty("database.mmap.size", 134_217_728L),
+                        "PRAGMA temp_store=MEMORY",
+                        "PRAGMA busy_timeout=" + ConfigLoader.getIntProperty("database.busy.timeout.ms", 5_000)
+                ),
+                ConfigLoader.getIntProperty("database.statement.cache.size", 64));
     }
 
     public static synchronized DatabaseManager getInstance() {
@@ -32,8 +60,92 @@ public class DatabaseManager {
         return instance;
     }
 
+    /**
+     * Borrows a connection from the pool. Closing it returns it to the pool.
+     * Inside {@link #inTransaction(TransactionWork)} this returns the transaction's connection instead;
+     * closing that one is a no-op, and commit/rollback are left to the transaction.
+     * @return A pooled connection in auto-commit mode, or the current thread's transaction connection.
+     * @throws SQLException if no connection becomes available in time.
+     */
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            return transaction.participant;
+        }
+        return pool.borrow();
+    }
+
+    /**
+     * Runs the given work in a single database transaction bound to the calling thread.
+     * Every {@link #getConnection()} call the work makes (directly or through DAOs) gets the same connection.
+     * The transaction commits when the work returns and rolls back when it throws. A call made while a
+     * transaction is already open joins it; the outermost call decides whether it commits.
+     *
+     * @param work The statements to run; receives the transaction's connection.
+     * @return Whatever the work returns.
+     * @throws SQLException if the work fails, a nested participant rolled back, or the commit fails.
+     */
+    public <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        Transaction outer = currentTransaction.get();
+        if (outer != null) {
+            return work.execute(outer.participant);
+        }
+        try (Connection conn = pool.borrow()) {
+            conn.setAutoCommit(false);
+            Transaction transaction = new Transaction(conn);
+            currentTransaction.set(transaction);
+            try {
+                T result = work.execute(transaction.participant);
+                if (transaction.rollbackOnly) {
+                    throw new SQLException("Transaction was rolled back by a nested participant.");
+                }
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                transaction.rollbackActions.forEach(Runnable::run);
+                throw e;
+            } finally {
+                currentTransaction.remove();
+            }
+        }
+    }
+
+    /**
+     * Registers an action to run if the calling thread's transaction rolls back, e.g. to forget
+     * cached state derived from rows the transaction wrote. Does nothing outside a transaction.
+     * @param action The action; runs on the calling thread after the rollback.
+     */
+    public void onRollback(Runnable action) {
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.rollbackActions.add(action);
+        }
+    }
+
+    /**
+     * @return true if the calling thread is inside {@link #inTransaction(TransactionWork)}.
+     */
+    public boolean isInTransaction() {
+        return currentTransaction.get() != null;
+    }
+
+    /**
+     * @return Current pool statistics (borrow wait time, active and idle counts, statement cache hits and misses).
+     */
+    public ConnectionPool.Stats getPoolStats() {
+        return pool.getStats();
+    }
+
+    /**
+     * Closes all idle pooled connections. Called once when the application exits.
+     */
+    public void shutdown() {
+        pool.close();
     }
 
     public void initializeDatabase() {
@@ -44,24 +156,15 @@ public class DatabaseManager {
         }
 
         try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false);
-            try (Statement stmt = conn.createStatement()) {
-                System.out.println("Database connection established. Creating/verifying tables...");
-                // Execute each CREATE TABLE statement individually to avoid issues
-                for (String tableSchema : getSchema().split(";")) {
-                    if (!tableSchema.trim().isEmpty()) {
-                        stmt.executeUpdate(tableSchema.trim() + ";");
-                    }
-                }
+            System.out.println("Database connection established. Checking schema version...");
+            int applied = new SchemaMigrator().migrate(conn);
+            if (applied == 0) {
                 System.out.println("Schema is up to date.");
+            } else {
+                System.out.println("Applied " + applied + " migration(s); schema is now at version "
+                        + SchemaMigrator.getLatestVersion() + ".");
             }
-            conn.commit();
             System.out.println("Database initialization successful.");
-
-            // Run the cleanup task after ensuring tables exist. This is useful for
-            // migrating data from older, less-strict versions of the database.
-            performDataCleanup();
-
         } catch (SQLException e) {
             System.err.println("Database initialization failed: " + e.getMessage());
             e.printStackTrace();
@@ -69,263 +172,52 @@ public class DatabaseManager {
     }
 
     /**
-     * Checks for NULL values in columns and replaces them with defaults.
-     * This is primarily a data migration tool for databases created with an older,
-     * less strict schema. For new databases, the NOT NULL constraints in the schema
-     * should prevent these issues from occurring in the first place.
+     * A unit of work run by {@link #inTransaction(TransactionWork)}.
      */
-    public void performDataCleanup() {
-        String[] queries = {
-                // Fix NULLs in the 'products' table
-                "UPDATE products SET category_id = 0 WHERE category_id IS NULL",
-                "UPDATE products SET unit_id = 0 WHERE unit_id IS NULL",
-                "UPDATE products SET supplier_id = 0 WHERE supplier_id IS NULL",
-                "UPDATE products SET purchase_price = 0.0 WHERE purchase_price IS NULL",
-                "UPDATE products SET selling_price = 0.0 WHERE selling_price IS NULL",
-                "UPDATE products SET tax_rate = 0.0 WHERE tax_rate IS NULL",
-                "UPDATE products SET min_stock_level = 0.0 WHERE min_stock_level IS NULL",
-                "UPDATE products SET reorder_quantity = 0.0 WHERE reorder_quantity IS NULL",
-                "UPDATE products SET current_stock = 0.0 WHERE current_stock IS NULL",
-
-                // Fix NULLs in the 'categories' table
-                "UPDATE categories SET parent_id = 0 WHERE parent_id IS NULL",
-
-                // Fix NULLs in the 'suppliers' table
-                "UPDATE suppliers SET credit_limit = 0.0 WHERE credit_limit IS NULL",
-
-                // Fix NULLs in the 'stock_ledger' table
-                "UPDATE stock_ledger SET sale_item_id = 0 WHERE sale_item_id IS NULL"
-        };
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T execute(Connection conn) throws SQLException;
+    }
 
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            System.out.println("Performing data cleanup/migration...");
-            conn.setAutoCommit(false);
+    /**
+     * The connection of an open transaction and the view of it handed to participants.
+     * The view ignores {@code close()}, {@code setAutoCommit()} and {@code commit()} so code written for
+     * its own short transaction can run inside a larger one; its {@code rollback()} marks the whole
+     * transaction for rollback.
+     */
+    private static final class Transaction {
+        private final Connection participant;
+        private final List<Runnable> rollbackActions = new ArrayList<>();
+        private boolean rollbackOnly;
+
+        Transaction(Connection conn) {
+            this.participant = (Connection) Proxy.newProxyInstance(
+                    DatabaseManager.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "close", "setAutoCommit", "commit" -> null;
+                        case "rollback" -> {
+                            if (args == null) {
+                                rollbackOnly = true;
+                                yield null;
+                            }
+                            yield invoke(conn, method, args); // rollback to a savepoint stays local
+                        }
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        default -> invoke(conn, method, args);
+                    });
+        }
 
-            for (String query : queries) {
-                int rowsAffected = stmt.executeUpdate(query);
-                if (rowsAffected > 0) {
-                    System.out.println("Cleaned " + rowsAffected + " rows with query: " + query);
-                }
+        private static Object invoke(Connection conn, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
             }
-
-            conn.commit();
-            System.out.println("Data cleanup/migration completed successfully.");
-
-        } catch (SQLException e) {
-            System.err.println("Data cleanup failed: " + e.getMessage());
-            e.printStackTrace();
         }
     }
 
-    private String getSchema() {
-        return """
-    CREATE TABLE IF NOT EXISTS tenants (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        license_key TEXT UNIQUE NOT NULL,
-        owner_email TEXT,
-        status TEXT NOT NULL,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        expiry_date DATE,
-        created_at DATETIME
-    );
-
-    CREATE TABLE IF NOT EXISTS settings (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        setting_key TEXT NOT NULL,
-        setting_value TEXT,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0,
-        UNIQUE(tenant_id, setting_key)
-    );
-
-    CREATE TABLE IF NOT EXISTS users (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        username TEXT NOT NULL UNIQUE,
-        firstname TEXT NOT NULL,
-        lastname TEXT NOT NULL,
-        password_hash TEXT NOT NULL,
-        email TEXT,
-        phone TEXT,
-        role TEXT NOT NULL,
-        is_active INTEGER NOT NULL DEFAULT 1,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    CREATE TABLE IF NOT EXISTS suppliers (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        name TEXT NOT NULL,
-        contact_person TEXT,
-        email TEXT,
-        phone TEXT,
-        address TEXT,
-        payment_terms TEXT,
-        credit_limit REAL NOT NULL DEFAULT 0.0,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    CREATE TABLE IF NOT EXISTS customers (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        name TEXT NOT NULL,
-        email TEXT,
-        phone TEXT,
-        address TEXT,
-        loyalty_points INTEGER NOT NULL DEFAULT 0,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    CREATE TABLE IF NOT EXISTS categories (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        name TEXT NOT NULL,
-        description TEXT,
-        parent_id INTEGER, -- Nullable by design for top-level categories
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    CREATE TABLE IF NOT EXISTS units (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        name TEXT NOT NULL,
-        abbreviation TEXT NOT NULL,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    -- This is the most critical table to fortify.
-    -- All numeric fields that caused NullPointerExceptions are now NOT NULL.
-    CREATE TABLE IF NOT EXISTS products (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL,
-        sku TEXT,
-        barcode TEXT,
-        name TEXT NOT NULL,
-        description TEXT,
-        product_type TEXT NOT NULL DEFAULT 'PHYSICAL',
-        -- Foreign keys are left nullable here to prevent crashing if a product is created
-        -- without a category. The DAO/cleanup logic should handle setting a default (e.g., 0).
-        category_id INTEGER,
-        unit_id INTEGER,
-        supplier_id INTEGER,
-        -- **CRITICAL FIX**: All numeric values are now non-nullable.
-        purchase_price REAL NOT NULL DEFAULT 0.0,
-        selling_price REAL NOT NULL DEFAULT 0.0,
-        tax_rate REAL NOT NULL DEFAULT 0.0,
-        min_stock_level REAL NOT NULL DEFAULT 0.0,
-        reorder_quantity REAL NOT NULL DEFAULT 0.0,
-        current_stock REAL NOT NULL DEFAULT 0.0, -- Changed to REAL for consistency
-        is_active INTEGER NOT NULL DEFAULT 1,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    CREATE TABLE IF NOT EXISTS product_suppliers (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL,
-        product_id INTEGER NOT NULL REFERENCES products(id),
-        supplier_id INTEGER NOT NULL REFERENCES suppliers(id),
-        supplier_product_code TEXT,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0,
-        UNIQUE(tenant_id, product_id, supplier_id)
-    );
-
-    CREATE TABLE IF NOT EXISTS sales (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        type TEXT NOT NULL,
-        user_id INTEGER NOT NULL,
-        customer_id INTEGER, -- Nullable by design (e.g., for purchases)
-        supplier_id INTEGER, -- Nullable by design (e.g., for sales)
-        subtotal REAL NOT NULL,
-        payment_method TEXT,
-        tax REAL NOT NULL DEFAULT 0.0,
-        discount REAL NOT NULL DEFAULT 0.0,
-        total REAL NOT NULL,
-        payment_status TEXT NOT NULL DEFAULT 'pending',
-        notes TEXT,
-        created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    CREATE TABLE IF NOT EXISTS sale_items (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL,
-        sale_id INTEGER NOT NULL REFERENCES sales(id) ON DELETE CASCADE,
-        product_id INTEGER NOT NULL,
-        supplier_product_code TEXT,
-        quantity REAL NOT NULL,
-        unit_price REAL NOT NULL,
-        cost_at_sale REAL NOT NULL,
-        tax_rate REAL NOT NULL,
-        discount REAL NOT NULL DEFAULT 0.0,
-        total REAL NOT NULL,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    CREATE TABLE IF NOT EXISTS payments (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        sale_id INTEGER NOT NULL REFERENCES sales(id) ON DELETE CASCADE,
-        amount REAL NOT NULL,
-        payment_method TEXT NOT NULL,
-        reference TEXT,
-        user_id INTEGER NOT NULL,
-        created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-
-    CREATE TABLE IF NOT EXISTS stock_ledger (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        uuid TEXT UNIQUE NOT NULL,
-        tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
-        product_id INTEGER NOT NULL,
-        quantity_delta REAL NOT NULL,
-        reason TEXT NOT NULL,
-        sale_item_id INTEGER, -- Nullable by design (e.g., for stock takes)
-        user_id INTEGER NOT NULL,
-        notes TEXT,
-        created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
-        last_updated_at DATETIME,
-        is_synced INTEGER NOT NULL DEFAULT 0,
-        is_deleted INTEGER NOT NULL DEFAULT 0
-    );
-    """;
-    }
-
     public String getDatabasePath() {
         String url = DB_URL;
         if (url != null && url.startsWith("jdbc:sqlite:")) {
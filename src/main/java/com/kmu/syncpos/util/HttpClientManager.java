@@ -0,0 +1,154 @@
+// src/main/java/com/kmu/syncpos/util/HttpClientManager.java
+package com.kmu.syncpos.util;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the one HTTP client of the process.
+ * Every {@code ApiService} shares it, so sync cycles, logins and license checks reuse the same pooled,
+ * kept-alive connections (HTTP/2 where the server offers it) instead of each paying for its own TLS handshakes.
+ * <p>
+ * Traffic is compressed in both directions: OkHttp asks for gzip responses and inflates them transparently,
+ * and request bodies above {@code http.gzip.min.bytes} are sent gzip-encoded. A server that turns out not to
+ * accept compressed bodies is detected on the first upload, which is then resent as is, and compression is
+ * switched off for the rest of the session. Bytes on the wire are counted per table in {@link TrafficStats}.
+ */
+public final class HttpClientManager {
+
+    private static HttpClientManager instance;
+
+    private final OkHttpClient client;
+
+    private HttpClientManager() {
+        // Private constructor for singleton
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(
+                        ConfigLoader.getIntProperty("http.pool.max.idle", 5),
+                        ConfigLoader.getLongProperty("http.keep.alive.seconds", 300), TimeUnit.SECONDS))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofMillis(ConfigLoader.getLongProperty("http.connect.timeout.ms", 10_000)))
+                .readTimeout(Duration.ofMillis(ConfigLoader.getLongProperty("http.read.timeout.ms", 30_000)))
+                .writeTimeout(Duration.ofMillis(ConfigLoader.getLongProperty("http.write.timeout.ms", 30_000)))
+                .addInterceptor(new GzipRequestInterceptor(ConfigLoader.getIntProperty("http.gzip.min.bytes", 1024)))
+                .eventListener(new TrafficListener())
+                .build();
+    }
+
+    public static synchronized HttpClientManager getInstance() {
+        if (instance == null) {
+            instance = new HttpClientManager();
+        }
+        return instance;
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Closes the pooled connections and stops the client's threads, e.g. when the application exits.
+     */
+    public void shutdown() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    /**
+     * @return The key a request's traffic is counted under: its {@code String} tag (the table), if set,
+     *         otherwise the last segment of its URL path.
+     */
+    private static String trafficKey(Request request) {
+        String tag = request.tag(String.class);
+        if (tag != null) {
+            return tag;
+        }
+        List<String> segments = request.url().pathSegments();
+        return segments.isEmpty() ? request.url().host() : segments.get(segments.size() - 1);
+    }
+
+    /**
+     * Counts the bytes of every call as they cross the network, i.e. after compression.
+     */
+    private static final class TrafficListener extends EventListener {
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            TrafficStats.recordSent(trafficKey(call.request()), byteCount);
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            TrafficStats.recordReceived(trafficKey(call.request()), byteCount);
+        }
+    }
+
+    /**
+     * Sends large request bodies gzip-encoded.
+     */
+    private static final class GzipRequestInterceptor implements Interceptor {
+
+        private final int minBytes;
+        // null until a compressed upload got a definite answer
+        private volatile Boolean serverAcceptsGzip;
+
+        GzipRequestInterceptor(int minBytes) {
+            this.minBytes = minBytes;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            RequestBody body = request.body();
+            long rawLength = body == null ? 0 : body.contentLength();
+            TrafficStats.recordRequest(trafficKey(request), rawLength);
+            if (body == null || minBytes <= 0 || rawLength < minBytes || Boolean.FALSE.equals(serverAcceptsGzip)
+                    || request.header("Content-Encoding") != null) {
+                return chain.proceed(request);
+            }
+
+            Response response = chain.proceed(request.newBuilder()
+                    .header("Content-Encoding", "gzip")
+                    .method(request.method(), gzip(body))
+                    .build());
+            if (serverAcceptsGzip == null && (response.code() == 400 || response.code() == 415)) {
+                // Either the record is bad or the server could not read a compressed body; sending it plain tells which.
+                response.close();
+                Response plain = chain.proceed(request);
+                if (plain.isSuccessful()) {
+                    System.err.println("HttpClientManager: Server does not accept gzip request bodies; sending them uncompressed.");
+                    serverAcceptsGzip = false;
+                }
+                return plain;
+            }
+            if (response.isSuccessful()) {
+                serverAcceptsGzip = true;
+            }
+            return response;
+        }
+
+        private static RequestBody gzip(RequestBody body) throws IOException {
+            Buffer buffer = new Buffer();
+            try (BufferedSink gzipSink = Okio.buffer(new GzipSink(buffer))) {
+                body.writeTo(gzipSink);
+            }
+            return RequestBody.create(buffer.readByteString(), body.contentType());
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package com.kmu.syncpos.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Brings the local SQLite schema up to date using numbered migrations.
+ * The version a database has reached is stored in {@code PRAGMA user_version}, so a database
+ * that is already current is opened without running any DDL or data fixes. Each migration runs
+ * in its own transaction together with the version bump, which makes a failed step safe to retry
+ * on the next launch.
+ * <p>
+ * Migrations are append-only: never edit or renumber a step that has shipped, add a new one instead.
+ */
+public final class SchemaMigrator {
+
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Baseline schema", List.of(
+                """
+                CREATE TABLE IF NOT EXISTS tenants (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    license_key TEXT UNIQUE NOT NULL,
+                    owner_email TEXT,
+                    status TEXT NOT NULL,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    expiry_date DATE,
+                    created_at DATETIME
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS settings (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    setting_key TEXT NOT NULL,
+                    setting_value TEXT,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0,
+                    UNIQUE(tenant_id, setting_key)
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS users (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    username TEXT NOT NULL UNIQUE,
+                    firstname TEXT NOT NULL,
+                    lastname TEXT NOT NULL,
+                    password_hash TEXT NOT NULL,
+                    email TEXT,
+                    phone TEXT,
+                    role TEXT NOT NULL,
+                    is_active INTEGER NOT NULL DEFAULT 1,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS suppliers (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    name TEXT NOT NULL,
+                    contact_person TEXT,
+                    email TEXT,
+                    phone TEXT,
+                    address TEXT,
+                    payment_terms TEXT,
+                    credit_limit REAL NOT NULL DEFAULT 0.0,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS customers (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    name TEXT NOT NULL,
+                    email TEXT,
+                    phone TEXT,
+                    address TEXT,
+                    loyalty_points INTEGER NOT NULL DEFAULT 0,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS categories (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    name TEXT NOT NULL,
+                    description TEXT,
+                    parent_id INTEGER, -- Nullable by design for top-level categories
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS units (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    name TEXT NOT NULL,
+                    abbreviation TEXT NOT NULL,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                -- This is the most critical table to fortify.
+                -- All numeric fields that caused NullPointerExceptions are now NOT NULL.
+                CREATE TABLE IF NOT EXISTS products (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL,
+                    sku TEXT,
+                    barcode TEXT,
+                    name TEXT NOT NULL,
+                    description TEXT,
+                    product_type TEXT NOT NULL DEFAULT 'PHYSICAL',
+                    -- Foreign keys are left nullable here to prevent crashing if a product is created
+                    -- without a category. The DAO/cleanup logic should handle setting a default (e.g., 0).
+                    category_id INTEGER,
+                    unit_id INTEGER,
+                    supplier_id INTEGER,
+                    -- **CRITICAL FIX**: All numeric values are now non-nullable.
+                    purchase_price REAL NOT NULL DEFAULT 0.0,
+                    selling_price REAL NOT NULL DEFAULT 0.0,
+                    tax_rate REAL NOT NULL DEFAULT 0.0,
+                    min_stock_level REAL NOT NULL DEFAULT 0.0,
+                    reorder_quantity REAL NOT NULL DEFAULT 0.0,
+                    current_stock REAL NOT NULL DEFAULT 0.0, -- Changed to REAL for consistency
+                    is_active INTEGER NOT NULL DEFAULT 1,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS product_suppliers (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL,
+                    product_id INTEGER NOT NULL REFERENCES products(id),
+                    supplier_id INTEGER NOT NULL REFERENCES suppliers(id),
+                    supplier_product_code TEXT,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0,
+                    UNIQUE(tenant_id, product_id, supplier_id)
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS sales (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    type TEXT NOT NULL,
+                    user_id INTEGER NOT NULL,
+                    customer_id INTEGER, -- Nullable by design (e.g., for purchases)
+                    supplier_id INTEGER, -- Nullable by design (e.g., for sales)
+                    subtotal REAL NOT NULL,
+                    payment_method TEXT,
+                    tax REAL NOT NULL DEFAULT 0.0,
+                    discount REAL NOT NULL DEFAULT 0.0,
+                    total REAL NOT NULL,
+                    payment_status TEXT NOT NULL DEFAULT 'pending',
+                    notes TEXT,
+                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS sale_items (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL,
+                    sale_id INTEGER NOT NULL REFERENCES sales(id) ON DELETE CASCADE,
+                    product_id INTEGER NOT NULL,
+                    supplier_product_code TEXT,
+                    quantity REAL NOT NULL,
+                    unit_price REAL NOT NULL,
+                    cost_at_sale REAL NOT NULL,
+                    tax_rate REAL NOT NULL,
+                    discount REAL NOT NULL DEFAULT 0.0,
+                    total REAL NOT NULL,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS payments (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    sale_id INTEGER NOT NULL REFERENCES sales(id) ON DELETE CASCADE,
+                    amount REAL NOT NULL,
+                    payment_method TEXT NOT NULL,
+                    reference TEXT,
+                    user_id INTEGER NOT NULL,
+                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS stock_ledger (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    uuid TEXT UNIQUE NOT NULL,
+                    tenant_id TEXT NOT NULL REFERENCES tenants(uuid),
+                    product_id INTEGER NOT NULL,
+                    quantity_delta REAL NOT NULL,
+                    reason TEXT NOT NULL,
+                    sale_item_id INTEGER, -- Nullable by design (e.g., for stock takes)
+                    user_id INTEGER NOT NULL,
+                    notes TEXT,
+                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                    last_updated_at DATETIME,
+                    is_synced INTEGER NOT NULL DEFAULT 0,
+                    is_deleted INTEGER NOT NULL DEFAULT 0
+                )
+                """
+            )),
+            // One-off fix for databases created with an older, less strict schema. New databases
+            // are protected by the NOT NULL constraints above, so this only ever runs once.
+            new Migration(2, "Replace NULLs left by older schema versions", List.of(
+                    "UPDATE products SET category_id = 0 WHERE category_id IS NULL",
+                    "UPDATE products SET unit_id = 0 WHERE unit_id IS NULL",
+                    "UPDATE products SET supplier_id = 0 WHERE supplier_id IS NULL",
+                    "UPDATE products SET purchase_price = 0.0 WHERE purchase_price IS NULL",
+                    "UPDATE products SET selling_price = 0.0 WHERE selling_price IS NULL",
+                    "UPDATE products SET tax_rate = 0.0 WHERE tax_rate IS NULL",
+                    "UPDATE products SET min_stock_level = 0.0 WHERE min_stock_level IS NULL",
+                    "UPDATE products SET reorder_quantity = 0.0 WHERE reorder_quantity IS NULL",
+                    "UPDATE products SET current_stock = 0.0 WHERE current_stock IS NULL",
+                    "UPDATE categories SET parent_id = 0 WHERE parent_id IS NULL",
+                    "UPDATE suppliers SET credit_limit = 0.0 WHERE credit_limit IS NULL",
+                    "UPDATE stock_ledger SET sale_item_id = 0 WHERE sale_item_id IS NULL"
+            )),
+            // Secondary indexes shaped after the DAO queries. The partial "unsynced" indexes keep the
+            // sync push cheap once most rows are synced; their WHERE clause must match the DAO text
+            // ("is_synced = false") exactly, or SQLite will not consider them.
+            new Migration(3, "Secondary indexes for DAO lookups and unsynced scans", List.of(
+                    "CREATE INDEX IF NOT EXISTS idx_users_tenant_username ON users(tenant_id, username)",
+                    "CREATE INDEX IF NOT EXISTS idx_suppliers_tenant_name ON suppliers(tenant_id, name)",
+                    "CREATE INDEX IF NOT EXISTS idx_customers_tenant_name ON customers(tenant_id, name)",
+                    "CREATE INDEX IF NOT EXISTS idx_categories_tenant_name ON categories(tenant_id, name)",
+                    "CREATE INDEX IF NOT EXISTS idx_units_tenant_name ON units(tenant_id, name)",
+                    "CREATE INDEX IF NOT EXISTS idx_products_tenant_name ON products(tenant_id, name)",
+                    "CREATE INDEX IF NOT EXISTS idx_sales_tenant_type_created ON sales(tenant_id, type, created_at)",
+                    "CREATE INDEX IF NOT EXISTS idx_sales_tenant_customer_created ON sales(tenant_id, customer_id, created_at)",
+                    "CREATE INDEX IF NOT EXISTS idx_sale_items_sale ON sale_items(sale_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_sale_items_product ON sale_items(product_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_payments_sale ON payments(sale_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_stock_ledger_product ON stock_ledger(tenant_id, product_id, created_at)",
+                    "CREATE INDEX IF NOT EXISTS idx_stock_ledger_sale_item ON stock_ledger(sale_item_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_settings_unsynced ON settings(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_users_unsynced ON users(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_suppliers_unsynced ON suppliers(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_customers_unsynced ON customers(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_categories_unsynced ON categories(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_units_unsynced ON units(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_products_unsynced ON products(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_product_suppliers_unsynced ON product_suppliers(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_sales_unsynced ON sales(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_sale_items_unsynced ON sale_items(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_payments_unsynced ON payments(tenant_id) WHERE is_synced = false",
+                    "CREATE INDEX IF NOT EXISTS idx_stock_ledger_unsynced ON stock_ledger(tenant_id) WHERE is_synced = false"
+            )),
+            // Materialized stock balance per product. The triggers run inside whatever transaction
+            // writes the ledger (local inserts, sync upserts, soft deletes), so the balance can never
+            // be committed out of step with the ledger. See ProductStockDAO for verify/rebuild.
+            new Migration(4, "Materialized product_stock balances", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS product_stock (
+                        tenant_id TEXT NOT NULL,
+                        product_id INTEGER NOT NULL,
+                        quantity REAL NOT NULL DEFAULT 0.0,
+                        PRIMARY KEY (tenant_id, product_id)
+                    ) WITHOUT ROWID
+                    """,
+                    """
+                    CREATE TRIGGER IF NOT EXISTS trg_stock_ledger_ai_balance
+                    AFTER INSERT ON stock_ledger
+                    WHEN NEW.is_deleted = 0 AND NEW.product_id IS NOT NULL
+                    BEGIN
+                        INSERT INTO product_stock (tenant_id, product_id, quantity)
+                        VALUES (NEW.tenant_id, NEW.product_id, NEW.quantity_delta)
+                        ON CONFLICT(tenant_id, product_id) DO UPDATE SET quantity = quantity + excluded.quantity;
+                    END
+                    """,
+                    """
+                    CREATE TRIGGER IF NOT EXISTS trg_stock_ledger_au_balance
+                    AFTER UPDATE OF tenant_id, product_id, quantity_delta, is_deleted ON stock_ledger
+                    BEGIN
+                        UPDATE product_stock SET quantity = quantity - OLD.quantity_delta
+                        WHERE OLD.is_deleted = 0 AND tenant_id = OLD.tenant_id AND product_id = OLD.product_id;
+                        INSERT INTO product_stock (tenant_id, product_id, quantity)
+                        SELECT NEW.tenant_id, NEW.product_id, NEW.quantity_delta
+                        WHERE NEW.is_deleted = 0 AND NEW.product_id IS NOT NULL
+                        ON CONFLICT(tenant_id, product_id) DO UPDATE SET quantity = quantity + excluded.quantity;
+                    END
+                    """,
+                    """
+                    CREATE TRIGGER IF NOT EXISTS trg_stock_ledger_ad_balance
+                    AFTER DELETE ON stock_ledger
+                    WHEN OLD.is_deleted = 0
+                    BEGIN
+                        UPDATE product_stock SET quantity = quantity - OLD.quantity_delta
+                        WHERE tenant_id = OLD.tenant_id AND product_id = OLD.product_id;
+                    END
+                    """,
+                    """
+                    INSERT OR REPLACE INTO product_stock (tenant_id, product_id, quantity)
+                    SELECT tenant_id, product_id, SUM(quantity_delta)
+                    FROM stock_ledger
+                    WHERE is_deleted = false AND product_id IS NOT NULL
+                    GROUP BY tenant_id, product_id
+                    """
+            )),
+            // Per-table pull watermark: the (last_updated_at, uuid) of the newest remote row applied
+            // locally. Timestamps are kept as the server's own text so the next filter matches exactly.
+            new Migration(5, "Incremental pull watermarks", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS sync_state (
+                        tenant_id TEXT NOT NULL,
+                        table_name TEXT NOT NULL,
+                        last_updated_at TEXT NOT NULL,
+                        last_uuid TEXT NOT NULL,
+                        synced_at DATETIME,
+                        PRIMARY KEY (tenant_id, table_name)
+                    ) WITHOUT ROWID
+                    """
+            )),
+            // Outbox for the push: triggers append an entry whenever a synced table's row is written with
+            // is_synced = 0, so change_log lists the rows waiting for upload, in commit order. The push removes the
+            // entries it has uploaded. See ChangeLogDAO.
+            new Migration(6, "Trigger-maintained change_log outbox", changeLogStatements(List.of(
+                    "settings", "users", "suppliers", "customers", "categories", "units",
+                    "products", "product_suppliers", "sales", "sale_items", "payments", "stock_ledger"))),
+            // Initial sync progress per table. The pages themselves resume from sync_state's watermark; this table
+            // records which tables have been downloaded to the end and how their row counts compared with the server.
+            new Migration(7, "Initial sync checkpoints", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS sync_checkpoints (
+                        tenant_id TEXT NOT NULL,
+                        table_name TEXT NOT NULL,
+                        pages_applied INTEGER NOT NULL DEFAULT 0,
+                        rows_applied INTEGER NOT NULL DEFAULT 0,
+                        completed_at DATETIME,
+                        local_count INTEGER,
+                        server_count INTEGER,
+                        verified_at DATETIME,
+                        PRIMARY KEY (tenant_id, table_name)
+                    ) WITHOUT ROWID
+                    """,
+                    // Tenants activated before this migration already went through their initial sync.
+                    """
+                    INSERT OR IGNORE INTO sync_checkpoints (tenant_id, table_name, completed_at)
+                    SELECT t.uuid, s.table_name, CURRENT_TIMESTAMP
+                    FROM tenants t, (
+                        SELECT 'settings' AS table_name UNION ALL SELECT 'users' UNION ALL SELECT 'suppliers'
+                        UNION ALL SELECT 'customers' UNION ALL SELECT 'categories' UNION ALL SELECT 'units'
+                        UNION ALL SELECT 'products' UNION ALL SELECT 'product_suppliers' UNION ALL SELECT 'sales'
+                        UNION ALL SELECT 'sale_items' UNION ALL SELECT 'payments' UNION ALL SELECT 'stock_ledger'
+                    ) s
+                    WHERE t.status = 'ACTIVE'
+                    """
+            )),
+            // Upload failures per row: retry counts, the backoff before the next attempt, and the dead letters,
+            // i.e. rows the server keeps rejecting, which are no longer uploaded until they change again.
+            new Migration(8, "Upload failures and dead letters", syncFailureStatements(List.of(
+                    "settings", "users", "suppliers", "customers", "categories", "units",
+                    "products", "product_suppliers", "sales", "sale_items", "payments", "stock_ledger"))),
+            new Migration(9, "Sync run history", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS sync_runs (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        tenant_id TEXT NOT NULL,
+                        is_initial INTEGER NOT NULL DEFAULT 0,
+                        started_at DATETIME NOT NULL,
+                        duration_ms INTEGER NOT NULL,
+                        succeeded INTEGER NOT NULL,
+                        error TEXT,
+                        total_rows INTEGER NOT NULL DEFAULT 0,
+                        total_bytes INTEGER NOT NULL DEFAULT 0
+                    )
+                    """,
+                    "CREATE INDEX IF NOT EXISTS idx_sync_runs_tenant_started ON sync_runs(tenant_id, started_at)",
+                    """
+                    CREATE TABLE IF NOT EXISTS sync_run_tables (
+                        run_id INTEGER NOT NULL REFERENCES sync_runs(id),
+                        phase TEXT NOT NULL,
+                        table_name TEXT NOT NULL,
+                        rows INTEGER NOT NULL,
+                        bytes_sent INTEGER NOT NULL,
+                        bytes_received INTEGER NOT NULL,
+                        duration_ms INTEGER NOT NULL,
+                        network_ms INTEGER NOT NULL,
+                        json_ms INTEGER NOT NULL,
+                        database_ms INTEGER NOT NULL,
+                        failures INTEGER NOT NULL,
+                        retries INTEGER NOT NULL,
+                        PRIMARY KEY (run_id, phase, table_name)
+                    ) WITHOUT ROWID
+                    """
+            )),
+            // Outcome of the guarded remote upserts: pulled rows written, rows skipped as not newer or unchanged,
+            // and rows that met a local edit not yet uploaded.
+            new Migration(10, "Upsert outcomes in the sync history", List.of(
+                    "ALTER TABLE sync_run_tables ADD COLUMN applied INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE sync_run_tables ADD COLUMN skipped INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE sync_run_tables ADD COLUMN conflicts INTEGER NOT NULL DEFAULT 0"
+            ))
+    );
+
+    /**
+     * Builds migration 6. Like the literal migrations, its output must never change once shipped.
+     */
+    private static List<String> changeLogStatements(List<String> tables) {
+        List<String> statements = new ArrayList<>(List.of(
+                """
+                CREATE TABLE IF NOT EXISTS change_log (
+                    seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                    table_name TEXT NOT NULL,
+                    row_id INTEGER NOT NULL,
+                    tenant_id TEXT NOT NULL,
+                    changed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP
+                )
+                """,
+                "CREATE INDEX IF NOT EXISTS idx_change_log_table_seq ON change_log(table_name, seq)",
+                "CREATE INDEX IF NOT EXISTS idx_change_log_table_row ON change_log(table_name, row_id)"
+        ));
+        for (String table : tables) {
+            statements.add("""
+                    CREATE TRIGGER IF NOT EXISTS trg_%1$s_ai_change_log
+                    AFTER INSERT ON %1$s
+                    WHEN NEW.is_synced = 0
+                    BEGIN
+                        INSERT INTO change_log (table_name, row_id, tenant_id) VALUES ('%1$s', NEW.id, NEW.tenant_id);
+                    END
+                    """.formatted(table));
+            statements.add("""
+                    CREATE TRIGGER IF NOT EXISTS trg_%1$s_au_change_log
+                    AFTER UPDATE ON %1$s
+                    WHEN NEW.is_synced = 0
+                    BEGIN
+                        INSERT INTO change_log (table_name, row_id, tenant_id) VALUES ('%1$s', NEW.id, NEW.tenant_id);
+                    END
+                    """.formatted(table));
+            // Rows already waiting for upload when the migration runs.
+            statements.add(("INSERT INTO change_log (table_name, row_id, tenant_id) "
+                    + "SELECT '%1$s', id, tenant_id FROM %1$s WHERE is_synced = 0 ORDER BY id").formatted(table));
+        }
+        return statements;
+    }
+
+    /**
+     * Builds migration 8. Like the literal migrations, its output must never change once shipped.
+     */
+    private static List<String> syncFailureStatements(List<String> tables) {
+        List<String> statements = new ArrayList<>(List.of(
+                """
+                CREATE TABLE IF NOT EXISTS sync_failures (
+                    tenant_id TEXT NOT NULL,
+                    table_name TEXT NOT NULL,
+                    row_id INTEGER NOT NULL,
+                    attempts INTEGER NOT NULL DEFAULT 0,
+                    http_status INTEGER,
+                    last_error TEXT,
+                    first_failed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    last_failed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    next_attempt_at DATETIME,
+                    dead_lettered_at DATETIME,
+                    PRIMARY KEY (tenant_id, table_name, row_id)
+                ) WITHOUT ROWID
+                """
+        ));
+        for (String table : tables) {
+            // A row that is edited again (is_synced back to 0) gets a fresh start, and a row that is marked synced,
+            // by an upload or by a pulled newer version, has nothing left to retry.
+            statements.add("""
+                    CREATE TRIGGER IF NOT EXISTS trg_%1$s_au_sync_failures
+                    AFTER UPDATE ON %1$s
+                    WHEN NEW.is_synced = 0 OR OLD.is_synced = 0
+                    BEGIN
+                        DELETE FROM sync_failures WHERE tenant_id = NEW.tenant_id AND table_name = '%1$s' AND row_id = NEW.id;
+                    END
+                    """.formatted(table));
+        }
+        return statements;
+    }
+
+    /**
+     * Applies every migration newer than the database's current {@code user_version}.
+     *
+     * @param conn An open connection in auto-commit mode. Auto-commit is restored before returning.
+     * @return The number of migrations applied; 0 if the database was already current.
+     * @throws SQLException if a migration fails. That migration is rolled back and later ones are not attempted.
+     */
+    public int migrate(Connection conn) throws SQLException {
+        int current = getVersion(conn);
+        int latest = getLatestVersion();
+        if (current > latest) {
+            LOGGER.log(Level.WARNING, "Database schema version {0} is newer than this build supports ({1}).",
+                    new Object[]{current, latest});
+            return 0;
+        }
+
+        int applied = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            conn.setAutoCommit(false);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= current) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : migration.statements()) {
+                        stmt.executeUpdate(sql);
+                    }
+                    // PRAGMA user_version does not accept bind parameters.
+                    stmt.executeUpdate("PRAGMA user_version = " + migration.version());
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + migration.version() + " (" + migration.description()
+                            + ") failed: " + e.getMessage(), e);
+                }
+                applied++;
+                LOGGER.log(Level.INFO, "Applied migration {0} ({1}) in {2} ms.", new Object[]{
+                        migration.version(), migration.description(), (System.nanoTime() - start) / 1_000_000});
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    /**
+     * @return The {@code user_version} currently recorded in the database.
+     */
+    public int getVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * @return The schema version this build migrates databases to.
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /**
+     * A single, numbered schema change.
+     *
+     * @param version     Strictly increasing version number written to {@code user_version} once applied.
+     * @param description Short human-readable summary, used in logs.
+     * @param statements  The statements to execute, in order, within one transaction.
+     */
+    public record Migration(int version, String description, List<String> statements) {
+    }
+}
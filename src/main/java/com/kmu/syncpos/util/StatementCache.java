@@ -0,0 +1,221 @@
+package com.kmu.syncpos.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LRU cache of prepared statements bound to one physical connection.
+ * DAOs keep calling {@code prepareStatement(SQL)} and closing the result; the pooled connection routes
+ * those calls here, and closing the returned statement only resets it (parameters, batch, open result
+ * sets) so the next caller with the same SQL text skips SQLite's parse and plan step.
+ * <p>
+ * Not thread-safe: a physical connection is only ever used by the thread that borrowed it.
+ */
+final class StatementCache {
+
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class.getName());
+
+    private final Connection physical;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final Map<Key, Entry> entries;
+
+    /**
+     * @param physical The connection statements are prepared on.
+     * @param capacity Maximum number of statements kept open; the least recently used one is closed beyond that.
+     * @param hits     Pool-wide counter incremented when a cached statement is reused.
+     * @param misses   Pool-wide counter incremented when a statement has to be prepared.
+     */
+    StatementCache(Connection physical, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.hits = hits;
+        this.misses = misses;
+        this.entries = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                Entry entry = eldest.getValue();
+                if (entry.inUse) {
+                    entry.evicted = true; // closed for real when its current user closes it
+                } else {
+                    closeQuietly(entry.statement);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a statement for the given SQL, reusing a cached one when it is not already in use.
+     *
+     * @param logical           The pooled connection handed to the caller, returned from {@code getConnection()}.
+     * @param sql               The SQL text; the cache key together with {@code autoGeneratedKeys}.
+     * @param autoGeneratedKeys One of the {@code Statement} generated-keys constants.
+     */
+    PreparedStatement prepare(Connection logical, String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.evicted) {
+            entries.remove(key); // its reset failed; prepare a fresh one below
+            entry = null;
+        }
+        if (entry != null && !entry.inUse) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+            if (entry != null) {
+                // The same SQL is already open further up the call stack; hand out a private, uncached copy.
+                return statement;
+            }
+            entry = new Entry(statement);
+            entries.put(key, entry);
+        }
+        entry.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new CachedStatementHandler(entry, logical));
+    }
+
+    /**
+     * Resets any statement a caller forgot to close. Called when the connection goes back to the pool.
+     */
+    void releaseAll() {
+        for (Entry entry : entries.values()) {
+            if (entry.inUse) {
+                entry.reset();
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is closed.
+     */
+    void close() {
+        for (Entry entry : entries.values()) {
+            closeQuietly(entry.statement);
+        }
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Ignoring error while closing a cached statement.", e);
+        }
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    private static final class Entry {
+        final PreparedStatement statement;
+        // A statement has at most one open result set at a time; generated keys come back separately.
+        ResultSet results;
+        ResultSet generatedKeys;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        /** Makes the statement ready for the next caller, or closes it if it was evicted meanwhile. */
+        void reset() {
+            inUse = false;
+            if (results != null) {
+                closeQuietly(results);
+                results = null;
+            }
+            if (generatedKeys != null) {
+                closeQuietly(generatedKeys);
+                generatedKeys = null;
+            }
+            if (evicted) {
+                closeQuietly(statement);
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Could not reset cached statement; closing it.", e);
+                evicted = true;
+                closeQuietly(statement);
+            }
+        }
+    }
+
+    /**
+     * Turns {@code close()} into a reset and remembers result sets so they can be closed with it.
+     */
+    private final class CachedStatementHandler implements InvocationHandler {
+        private final Entry entry;
+        private final Connection logical;
+        private boolean closed;
+
+        CachedStatementHandler(Entry entry, Connection logical) {
+            this.entry = entry;
+            this.logical = logical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        entry.reset();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return logical;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + entry.statement + "]";
+                default:
+                    if (closed) {
+                        throw new SQLException("Statement is closed.");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(entry.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof ResultSet rs) {
+                        if (method.getName().equals("getGeneratedKeys")) {
+                            entry.generatedKeys = rs;
+                        } else {
+                            entry.results = rs;
+                        }
+                    }
+                    return result;
+            }
+        }
+    }
+}
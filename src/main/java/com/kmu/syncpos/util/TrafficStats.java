@@ -0,0 +1,92 @@
+// src/main/java/com/kmu/syncpos/util/TrafficStats.java
+package com.kmu.syncpos.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide HTTP traffic counters, kept per table (or per endpoint for requests not tied to a table).
+ * Filled by {@link HttpClientManager} from what actually crosses the network, i.e. after gzip in both
+ * directions, so the effect of compression on metered connections can be checked from the logs.
+ */
+public final class TrafficStats {
+
+    private static final Map<String, Counters> COUNTERS = new ConcurrentHashMap<>();
+
+    private TrafficStats() {
+    }
+
+    /**
+     * The traffic of one table.
+     *
+     * @param requests          The number of requests made.
+     * @param bytesSent         Request body bytes sent, as on the wire.
+     * @param bytesSentRaw      Request body bytes before compression.
+     * @param bytesReceived     Response body bytes received, as on the wire.
+     */
+    public record Totals(long requests, long bytesSent, long bytesSentRaw, long bytesReceived) {
+
+        public Totals minus(Totals earlier) {
+            return earlier == null ? this : new Totals(requests - earlier.requests, bytesSent - earlier.bytesSent,
+                    bytesSentRaw - earlier.bytesSentRaw, bytesReceived - earlier.bytesReceived);
+        }
+
+        @Override
+        public String toString() {
+            return requests + " req, sent " + kb(bytesSent) + (bytesSentRaw > bytesSent ? " (" + kb(bytesSentRaw) + " raw)" : "")
+                    + ", received " + kb(bytesReceived);
+        }
+
+        private static String kb(long bytes) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+    }
+
+    private static final class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder bytesSent = new LongAdder();
+        final LongAdder bytesSentRaw = new LongAdder();
+        final LongAdder bytesReceived = new LongAdder();
+    }
+
+    static void recordRequest(String key, long rawBodyBytes) {
+        Counters counters = COUNTERS.computeIfAbsent(key, k -> new Counters());
+        counters.requests.increment();
+        counters.bytesSentRaw.add(Math.max(rawBodyBytes, 0));
+    }
+
+    static void recordSent(String key, long bytes) {
+        COUNTERS.computeIfAbsent(key, k -> new Counters()).bytesSent.add(bytes);
+    }
+
+    static void recordReceived(String key, long bytes) {
+        COUNTERS.computeIfAbsent(key, k -> new Counters()).bytesReceived.add(bytes);
+    }
+
+    /**
+     * @return The totals of every table since the process started, sorted by table name.
+     */
+    public static Map<String, Totals> snapshot() {
+        Map<String, Totals> totals = new TreeMap<>();
+        COUNTERS.forEach((key, c) -> totals.put(key,
+                new Totals(c.requests.sum(), c.bytesSent.sum(), c.bytesSentRaw.sum(), c.bytesReceived.sum())));
+        return totals;
+    }
+
+    /**
+     * @param earlier An earlier {@link #snapshot()}.
+     * @return The traffic since that snapshot; tables without traffic in between are left out.
+     */
+    public static Map<String, Totals> since(Map<String, Totals> earlier) {
+        Map<String, Totals> delta = new TreeMap<>();
+        snapshot().forEach((key, now) -> {
+            Totals diff = now.minus(earlier.get(key));
+            if (diff.requests() > 0) {
+                delta.put(key, diff);
+            }
+        });
+        return delta;
+    }
+}
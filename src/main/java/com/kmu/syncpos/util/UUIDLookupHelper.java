@@ -1,46 +1,36 @@
 // Add this helper class to: src/main/java/com/kmu/syncpos/util/UUIDLookupHelper.java
 package com.kmu.syncpos.util;
 
-import com.kmu.syncpos.dao.*;
+import com.kmu.syncpos.dao.UuidCache;
 import com.kmu.syncpos.dto.*;
 
+import java.sql.SQLException;
+
 /**
  * Helper utility for looking up UUIDs of related entities.
  * This is needed when converting Models to DTOs for syncing.
+ * Lookups go through the per-table {@link UuidCache}s, so enriching many DTOs that share the same
+ * parents costs one query per distinct parent instead of loading a full DTO per reference.
  */
 public class UUIDLookupHelper {
 
-    private final ProductDAO productDAO = new ProductDAO();
-    private final CategoryDAO categoryDAO = new CategoryDAO();
-    private final UnitDAO unitDAO = new UnitDAO();
-    private final SupplierDAO supplierDAO = new SupplierDAO();
-    private final CustomerDAO customerDAO = new CustomerDAO();
-    private final SaleDAO saleDAO = new SaleDAO();
-    private final SaleItemDAO saleItemDAO = new SaleItemDAO();
-
     /**
      * Enriches a ProductDTO with the UUIDs of its related entities.
      */
     public void enrichProductDTO(ProductDTO dto, String tenantId) {
-        if (dto.getCategoryId() != null && dto.getCategoryId() > 0) {
-            CategoryDTO category = categoryDAO.getById(dto.getCategoryId(), tenantId);
-            if (category != null) {
-                dto.setCategoryUuid(category.getUuid());
-            }
+        String categoryUuid = uuidOf(UuidCache.CATEGORIES, dto.getCategoryId());
+        if (categoryUuid != null) {
+            dto.setCategoryUuid(categoryUuid);
         }
 
-        if (dto.getUnitId() != null && dto.getUnitId() > 0) {
-            UnitDTO unit = unitDAO.getById(dto.getUnitId(), tenantId);
-            if (unit != null) {
-                dto.setUnitUuid(unit.getUuid());
-            }
+        String unitUuid = uuidOf(UuidCache.UNITS, dto.getUnitId());
+        if (unitUuid != null) {
+            dto.setUnitUuid(unitUuid);
         }
 
-        if (dto.getSupplierId() != null && dto.getSupplierId() > 0) {
-            SupplierDTO supplier = supplierDAO.getById(dto.getSupplierId(), tenantId);
-            if (supplier != null) {
-                dto.setSupplierUuid(supplier.getUuid());
-            }
+        String supplierUuid = uuidOf(UuidCache.SUPPLIERS, dto.getSupplierId());
+        if (supplierUuid != null) {
+            dto.setSupplierUuid(supplierUuid);
         }
     }
 
@@ -48,16 +38,14 @@ public class UUIDLookupHelper {
      * Enriches a SaleDTO with the UUIDs of its related entities.
      */
     public void enrichSaleDTO(SaleDTO dto, String tenantId) {
-        if (dto.getCustomerId() != null && dto.getCustomerId() > 0) {
-            // Note: CustomerDAO doesn't have getById, would need to add it
-            // For now, this shows the pattern
+        String customerUuid = uuidOf(UuidCache.CUSTOMERS, dto.getCustomerId());
+        if (customerUuid != null) {
+            dto.setCustomerUuid(customerUuid);
         }
 
-        if (dto.getSupplierId() != null && dto.getSupplierId() > 0) {
-            SupplierDTO supplier = supplierDAO.getById(dto.getSupplierId(), tenantId);
-            if (supplier != null) {
-                dto.setSupplierUuid(supplier.getUuid());
-            }
+        String supplierUuid = uuidOf(UuidCache.SUPPLIERS, dto.getSupplierId());
+        if (supplierUuid != null) {
+            dto.setSupplierUuid(supplierUuid);
         }
     }
 
@@ -65,16 +53,14 @@ public class UUIDLookupHelper {
      * Enriches a SaleItemDTO with the UUIDs of its related entities.
      */
     public void enrichSaleItemDTO(SaleItemDTO dto, String tenantId) {
-        // Get sale UUID
-        SaleDTO sale = saleDAO.getById(dto.getSaleId(), tenantId);
-        if (sale != null) {
-            dto.setSaleUuid(sale.getUuid());
+        String saleUuid = uuidOf(UuidCache.SALES, dto.getSaleId());
+        if (saleUuid != null) {
+            dto.setSaleUuid(saleUuid);
         }
 
-        // Get product UUID
-        ProductDTO product = productDAO.getById(dto.getProductId(), tenantId);
-        if (product != null) {
-            dto.setProductUuid(product.getUuid());
+        String productUuid = uuidOf(UuidCache.PRODUCTS, dto.getProductId());
+        if (productUuid != null) {
+            dto.setProductUuid(productUuid);
         }
     }
 
@@ -82,9 +68,9 @@ public class UUIDLookupHelper {
      * Enriches a PaymentDTO with the UUID of its related sale.
      */
     public void enrichPaymentDTO(PaymentDTO dto, String tenantId) {
-        SaleDTO sale = saleDAO.getById(dto.getSaleId(), tenantId);
-        if (sale != null) {
-            dto.setSaleUuid(sale.getUuid());
+        String saleUuid = uuidOf(UuidCache.SALES, dto.getSaleId());
+        if (saleUuid != null) {
+            dto.setSaleUuid(saleUuid);
         }
     }
 
@@ -92,16 +78,15 @@ public class UUIDLookupHelper {
      * Enriches a StockLedgerDTO with UUIDs of related entities.
      */
     public void enrichStockLedgerDTO(StockLedgerDTO dto, String tenantId) {
-        // Get product UUID
-        ProductDTO product = productDAO.getById(dto.getProductId(), tenantId);
-        if (product != null) {
-            dto.setProductUuid(product.getUuid());
+        String productUuid = uuidOf(UuidCache.PRODUCTS, dto.getProductId());
+        if (productUuid != null) {
+            dto.setProductUuid(productUuid);
         }
 
-        // Get sale item UUID if applicable
-        if (dto.getSaleItemId() != null && dto.getSaleItemId() > 0) {
-            // Would need SaleItemDAO.getById() method
-            // dto.setSaleItemUuid(saleItem.getUuid());
+        // Only sale and purchase adjustments reference a sale item
+        String saleItemUuid = uuidOf(UuidCache.SALE_ITEMS, dto.getSaleItemId());
+        if (saleItemUuid != null) {
+            dto.setSaleItemUuid(saleItemUuid);
         }
     }
 
@@ -109,11 +94,9 @@ public class UUIDLookupHelper {
      * Enriches a CategoryDTO with the UUID of its parent category.
      */
     public void enrichCategoryDTO(CategoryDTO dto, String tenantId) {
-        if (dto.getParentId() != null && dto.getParentId() > 0) {
-            CategoryDTO parent = categoryDAO.getById(dto.getParentId(), tenantId);
-            if (parent != null) {
-                dto.setParentUuid(parent.getUuid());
-            }
+        String parentUuid = uuidOf(UuidCache.CATEGORIES, dto.getParentId());
+        if (parentUuid != null) {
+            dto.setParentUuid(parentUuid);
         }
     }
 
@@ -121,14 +104,23 @@ public class UUIDLookupHelper {
      * Enriches a ProductSupplierDTO with UUIDs of related entities.
      */
     public void enrichProductSupplierDTO(ProductSupplierDTO dto, String tenantId) {
-        ProductDTO product = productDAO.getById(dto.getProductId(), tenantId);
-        if (product != null) {
-            dto.setProductUuid(product.getUuid());
+        String productUuid = uuidOf(UuidCache.PRODUCTS, dto.getProductId());
+        if (productUuid != null) {
+            dto.setProductUuid(productUuid);
         }
 
-        SupplierDTO supplier = supplierDAO.getById(dto.getSupplierId(), tenantId);
-        if (supplier != null) {
-            dto.setSupplierUuid(supplier.getUuid());
+        String supplierUuid = uuidOf(UuidCache.SUPPLIERS, dto.getSupplierId());
+        if (supplierUuid != null) {
+            dto.setSupplierUuid(supplierUuid);
+        }
+    }
+
+    private String uuidOf(UuidCache cache, Long id) {
+        try {
+            return cache.uuidFor(id);
+        } catch (SQLException e) {
+            System.err.println("UUIDLookupHelper: Failed to look up UUID in " + cache + ": " + e.getMessage());
+            return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -11,6 +11,7 @@ module com.kmu.syncpos {
     requires com.google.gson;
     requires org.xerial.sqlitejdbc;
     requires okhttp3;
+    requires okio;
     requires jbcrypt;
     requires static lombok;
     requires java.desktop;
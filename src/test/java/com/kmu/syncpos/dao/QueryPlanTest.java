@@ -0,0 +1,178 @@
+package com.kmu.syncpos.dao;
+
+import com.kmu.syncpos.util.SchemaMigrator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Regression check for query plans.
+ * Migrates an in-memory database to the current schema, then runs {@code EXPLAIN QUERY PLAN} on every
+ * {@code *_SQL} constant declared in this package and fails each statement that falls back to a full SCAN of
+ * one of the large, ever-growing tables, or that cannot be prepared at all.
+ * <p>
+ * A scan over a <em>partial</em> index is allowed, since such an index only holds the rows the query
+ * wants (e.g. the unsynced ones). Constants that are only a prefix of other constants (such as
+ * {@code BASE_SELECT_SQL}) are fragments and are skipped, and so are {@code *_SQL_TEMPLATE} constants,
+ * which only become statements once a table name is formatted in.
+ */
+class QueryPlanTest {
+
+    /** Tables that grow with every sale and must never be scanned in full. */
+    private static final Set<String> LARGE_TABLES = Set.of(
+            "sales", "sale_items", "payments", "stock_ledger", "products", "customers", "product_suppliers");
+
+    private static final Pattern TABLE_REF = Pattern.compile(
+            "\\b(?:FROM|JOIN|UPDATE|INTO)\\s+(\\w+)(?:\\s+(?:AS\\s+)?(\\w+))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCAN = Pattern.compile("^SCAN (\\w+)(?: USING (?:COVERING )?INDEX (\\w+))?");
+    private static final Set<String> NOT_AN_ALIAS = Set.of(
+            "on", "where", "left", "right", "inner", "outer", "join", "cross", "group", "order", "set",
+            "values", "limit", "having", "using", "natural");
+
+    private static Connection conn;
+    private static Set<String> partialIndexes;
+
+    @BeforeAll
+    static void migrate() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        new SchemaMigrator().migrate(conn);
+        partialIndexes = loadPartialIndexes();
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        conn.close();
+    }
+
+    @TestFactory
+    Stream<DynamicTest> daoStatementsDoNotScanLargeTables() throws IOException, ReflectiveOperationException {
+        return collectDaoStatements().entrySet().stream()
+                .map(e -> DynamicTest.dynamicTest(e.getKey(), () -> assertNoFullScan(e.getValue())));
+    }
+
+    private static void assertNoFullScan(String sql) throws SQLException {
+        Map<String, String> aliases = resolveAliases(sql);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                String detail = rs.getString("detail");
+                Matcher m = SCAN.matcher(detail);
+                if (!m.find()) {
+                    continue;
+                }
+                String table = aliases.getOrDefault(m.group(1).toLowerCase(Locale.ROOT), m.group(1).toLowerCase(Locale.ROOT));
+                String index = m.group(2);
+                if (LARGE_TABLES.contains(table) && (index == null || !partialIndexes.contains(index))) {
+                    fail(detail + " (table " + table + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads every {@code static final String *_SQL} field of the classes in this package.
+     *
+     * @return SQL keyed by {@code SimpleClassName.FIELD}, sorted, excluding fragments.
+     */
+    private static Map<String, String> collectDaoStatements() throws IOException, ReflectiveOperationException {
+        Map<String, String> result = new TreeMap<>();
+        for (Class<?> type : findDaoClasses()) {
+            Map<String, String> own = new HashMap<>();
+            for (Field field : type.getDeclaredFields()) {
+                int mod = field.getModifiers();
+                if (Modifier.isStatic(mod) && Modifier.isFinal(mod) && field.getType() == String.class
+                        && field.getName().endsWith("_SQL")) {
+                    field.setAccessible(true);
+                    own.put(field.getName(), (String) field.get(null));
+                }
+            }
+            for (Map.Entry<String, String> e : own.entrySet()) {
+                if (!isFragment(e.getValue(), own.values())) {
+                    result.put(type.getSimpleName() + "." + e.getKey(), e.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isFragment(String sql, Iterable<String> siblings) {
+        for (String other : siblings) {
+            if (other.length() > sql.length() && other.startsWith(sql)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The DAOs are compiled to the main output directory, not next to this test.
+    private static List<Class<?>> findDaoClasses() throws IOException, ClassNotFoundException {
+        Path dir;
+        try {
+            Path root = Path.of(ProductDAO.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            dir = root.resolve(QueryPlanTest.class.getPackageName().replace('.', '/'));
+        } catch (URISyntaxException e) {
+            throw new IOException("Cannot locate the application classes", e);
+        }
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(".class") && !n.contains("$"))
+                    .forEach(names::add);
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        for (String name : names) {
+            classes.add(Class.forName(QueryPlanTest.class.getPackageName() + "." + name.substring(0, name.length() - ".class".length())));
+        }
+        return classes;
+    }
+
+    private static Set<String> loadPartialIndexes() throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND sql LIKE '% WHERE %'")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    private static Map<String, String> resolveAliases(String sql) {
+        Map<String, String> aliases = new HashMap<>();
+        Matcher m = TABLE_REF.matcher(sql);
+        while (m.find()) {
+            String table = m.group(1).toLowerCase(Locale.ROOT);
+            String alias = m.group(2);
+            if (alias != null && !NOT_AN_ALIAS.contains(alias.toLowerCase(Locale.ROOT))) {
+                aliases.put(alias.toLowerCase(Locale.ROOT), table);
+            }
+        }
+        return aliases;
+    }
+}
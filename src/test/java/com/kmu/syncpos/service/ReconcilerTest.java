@@ -0,0 +1,152 @@
+package com.kmu.syncpos.service;
+
+import com.google.gson.JsonObject;
+import com.kmu.syncpos.dto.ReconciliationDTO;
+import com.kmu.syncpos.tools.MockPostgrest;
+import com.kmu.syncpos.util.DatabaseManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Drives {@link Reconciler} against {@link MockPostgrest} and a till database in a temporary home directory.
+ * Both sides are seeded with the kinds of drift it must tell apart: a row only the server has, a synced row only
+ * the till has, a synced row whose content differs, and a row with a local edit that has not been uploaded yet.
+ */
+class ReconcilerTest {
+
+    private static final String TENANT = "5e0c1a4e-7a5b-4c1e-9a41-0d3f6b2c8e10";
+    private static final String IN_SYNC = "1a000000-0000-4000-8000-000000000001";
+    private static final String MISSING_LOCALLY = "1a000000-0000-4000-8000-000000000002";
+    private static final String MISSING_ON_SERVER = "1a000000-0000-4000-8000-000000000003";
+    private static final String DIFFERENT = "1a000000-0000-4000-8000-000000000004";
+    private static final String PENDING_UPLOAD = "1a000000-0000-4000-8000-000000000005";
+
+    private static final String INSERT_LOCAL_SQL = """
+        INSERT INTO products (uuid, tenant_id, sku, name, selling_price, last_updated_at, is_synced)
+        VALUES (?, ?, ?, ?, ?, '2026-01-05 10:00:00', ?)
+        """;
+
+    @TempDir
+    static Path home;
+    private static String previousHome;
+    private static MockPostgrest server;
+
+    @BeforeAll
+    static void seed() throws IOException, SQLException {
+        // DatabaseManager and ApiService read these when they load, so they must be set first.
+        previousHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.toString());
+        server = new MockPostgrest(0).start();
+        System.setProperty("supabase.url", server.url());
+        DatabaseManager.getInstance().initializeDatabase();
+
+        server.load("products", product(IN_SYNC, "Tea", 2.5));
+        server.load("products", product(MISSING_LOCALLY, "Coffee", 4.0));
+        server.load("products", product(DIFFERENT, "Sugar 1kg", 1.2));
+        server.load("products", product(PENDING_UPLOAD, "Milk", 0.9));
+
+        insertLocal(IN_SYNC, "Tea", 2.5, true);
+        insertLocal(MISSING_ON_SERVER, "Salt", 0.5, true);
+        insertLocal(DIFFERENT, "Sugar", 1.2, true);
+        insertLocal(PENDING_UPLOAD, "Milk 1l", 0.9, false);
+    }
+
+    @AfterAll
+    static void stop() {
+        server.close();
+        DatabaseManager.getInstance().shutdown();
+        System.setProperty("user.home", previousHome);
+    }
+
+    @Test
+    void repairsDriftAndLeavesPendingEditsAlone() throws SQLException {
+        Reconciler reconciler = new Reconciler(new ApiService());
+
+        ReconciliationDTO report = reconciler.reconcile("products", TENANT);
+
+        assertEquals(1, report.missingLocally(), report::toString);
+        assertEquals(1, report.missingOnServer(), report::toString);
+        assertEquals(1, report.different(), report::toString);
+        assertEquals(1, report.pendingUpload(), report::toString);
+        assertEquals(3, report.repaired(), report::toString);
+
+        assertEquals("Coffee", localName(MISSING_LOCALLY));
+        assertTrue(isSynced(MISSING_LOCALLY));
+        assertEquals("Salt", localName(MISSING_ON_SERVER));
+        assertFalse(isSynced(MISSING_ON_SERVER), "a synced row the server lacks is uploaded again");
+        assertEquals("Sugar 1kg", localName(DIFFERENT));
+        assertTrue(isSynced(DIFFERENT));
+        assertEquals("Milk 1l", localName(PENDING_UPLOAD));
+        assertFalse(isSynced(PENDING_UPLOAD));
+        assertEquals("Tea", localName(IN_SYNC));
+
+        // The repaired rows now match, and the requeued one waits for the push like the local edit.
+        ReconciliationDTO again = reconciler.reconcile("products", TENANT);
+        assertTrue(again.inSync(), again::toString);
+        assertEquals(2, again.pendingUpload(), again::toString);
+        assertEquals(0, again.repaired(), again::toString);
+    }
+
+    private static JsonObject product(String uuid, String name, double sellingPrice) {
+        JsonObject row = new JsonObject();
+        row.addProperty("uuid", uuid);
+        row.addProperty("tenant_id", TENANT);
+        row.addProperty("sku", "SKU-" + uuid.substring(uuid.length() - 4));
+        row.addProperty("name", name);
+        row.addProperty("product_type", "PHYSICAL");
+        row.addProperty("purchase_price", 0);
+        row.addProperty("selling_price", sellingPrice);
+        row.addProperty("tax_rate", 0);
+        row.addProperty("min_stock_level", 0);
+        row.addProperty("reorder_quantity", 0);
+        row.addProperty("current_stock", 0);
+        row.addProperty("is_active", true);
+        row.addProperty("is_deleted", false);
+        row.addProperty("last_updated_at", "2026-01-06T09:30:00.000000+00:00");
+        return row;
+    }
+
+    private static void insertLocal(String uuid, String name, double sellingPrice, boolean synced) throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_LOCAL_SQL)) {
+            ps.setString(1, uuid);
+            ps.setString(2, TENANT);
+            ps.setString(3, "SKU-" + uuid.substring(uuid.length() - 4));
+            ps.setString(4, name);
+            ps.setDouble(5, sellingPrice);
+            ps.setBoolean(6, synced);
+            ps.executeUpdate();
+        }
+    }
+
+    private static String localName(String uuid) throws SQLException {
+        return (String) localColumn(uuid, "name");
+    }
+
+    private static boolean isSynced(String uuid) throws SQLException {
+        return ((Number) localColumn(uuid, "is_synced")).intValue() != 0;
+    }
+
+    private static Object localColumn(String uuid, String column) throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT " + column + " FROM products WHERE uuid = ?")) {
+            ps.setString(1, uuid);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getObject(1) : fail("No local product " + uuid);
+        }
+    }
+}
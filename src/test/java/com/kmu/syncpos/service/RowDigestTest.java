@@ -0,0 +1,89 @@
+package com.kmu.syncpos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pins the canonical row form, which the server's digest functions must reproduce exactly.
+ */
+class RowDigestTest {
+
+    @Test
+    void textEscapesBackslashAndPipe() {
+        assertEquals("a\\\\b\\|c", RowDigest.canonical(RowDigest.Kind.TEXT, "a\\b|c"));
+        assertEquals("", RowDigest.canonical(RowDigest.Kind.TEXT, ""));
+    }
+
+    @Test
+    void numbersRoundHalfUpToFourDecimals() {
+        assertEquals("1.2346", RowDigest.canonical(RowDigest.Kind.NUMBER, 1.23455));
+        assertEquals("1.2345", RowDigest.canonical(RowDigest.Kind.NUMBER, 1.23454));
+        assertEquals("-1.0001", RowDigest.canonical(RowDigest.Kind.NUMBER, new BigDecimal("-1.00005")));
+        assertEquals("2.5000", RowDigest.canonical(RowDigest.Kind.NUMBER, 2.5));
+        assertEquals("3.0000", RowDigest.canonical(RowDigest.Kind.NUMBER, 3L));
+        assertEquals("0.1000", RowDigest.canonical(RowDigest.Kind.NUMBER, 0.1)); // Not 0.1000000000000000055...
+    }
+
+    @Test
+    void flagsAreOneOrZero() {
+        assertEquals("1", RowDigest.canonical(RowDigest.Kind.FLAG, true));
+        assertEquals("0", RowDigest.canonical(RowDigest.Kind.FLAG, false));
+        assertEquals("1", RowDigest.canonical(RowDigest.Kind.FLAG, 1L));
+        assertEquals("0", RowDigest.canonical(RowDigest.Kind.FLAG, 0));
+    }
+
+    @Test
+    void nullIsBackslashNForEveryKind() {
+        for (RowDigest.Kind kind : RowDigest.Kind.values()) {
+            assertEquals("\\N", RowDigest.canonical(kind, null), kind.name());
+        }
+    }
+
+    @Test
+    void digestIsTheFirstEightBytesOfTheMd5OfTheJoinedColumns() throws NoSuchAlgorithmException {
+        List<RowDigest.Column> columns = RowDigest.COLUMNS.get("stock_ledger");
+        Map<String, Object> row = new HashMap<>();
+        row.put("uuid", "0f1e2d3c-0000-4000-8000-000000000001");
+        row.put("quantity_delta", -2.0);
+        row.put("reason", null);
+        row.put("is_deleted", 0L);
+
+        byte[] md5 = MessageDigest.getInstance("MD5")
+                .digest("0f1e2d3c-0000-4000-8000-000000000001|-2.0000|\\N|0".getBytes(StandardCharsets.UTF_8));
+        assertEquals(ByteBuffer.wrap(md5).getLong(), RowDigest.of(columns, row::get));
+    }
+
+    @Test
+    void localAndServerValuesOfTheSameRowDigestAlike() {
+        List<RowDigest.Column> columns = RowDigest.COLUMNS.get("products");
+        // As SQLite returns the row
+        Map<String, Object> local = new HashMap<>();
+        local.put("uuid", "0f1e2d3c-0000-4000-8000-000000000002");
+        local.put("sku", null);
+        local.put("name", "Tea | green");
+        local.put("purchase_price", 1.1);
+        local.put("selling_price", 2.0);
+        local.put("tax_rate", 0L);
+        local.put("is_active", 1L);
+        local.put("is_deleted", 0L);
+        // As decoded from the server's JSON
+        Map<String, Object> remote = new HashMap<>(local);
+        remote.put("purchase_price", new BigDecimal("1.10"));
+        remote.put("selling_price", new BigDecimal("2"));
+        remote.put("tax_rate", new BigDecimal("0.0"));
+        remote.put("is_active", true);
+        remote.put("is_deleted", false);
+
+        assertEquals(RowDigest.of(columns, local::get), RowDigest.of(columns, remote::get));
+    }
+}
@@ -0,0 +1,621 @@
+// src/test/java/com/kmu/syncpos/tools/MockPostgrest.java
+package com.kmu.syncpos.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.kmu.syncpos.service.RowDigest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An in-process stand-in for the Supabase REST API, for measuring and testing sync without the live project.
+ * Point the client at it with {@code -Dsupabase.url=<url()>} (or the system property set before ApiService loads).
+ * <p>
+ * It implements the part of PostgREST that {@code ApiService} uses, on rows kept in memory as JSON:
+ * <ul>
+ *     <li>{@code GET /rest/v1/<table>} with {@code eq.} filters, {@code uuid=in.(...)}, {@code limit}, the
+ *     (last_updated_at, uuid) keyset filters of incremental pulls, and {@code Accept: application/vnd.pgrst.object+json};</li>
+ *     <li>{@code HEAD /rest/v1/<table>} with {@code Prefer: count=exact};</li>
+ *     <li>{@code POST /rest/v1/<table>} (upsert of an object or array) and {@code /rpc/upsert_<entity>[_batch]}
+ *     with an {@code item} or {@code items} argument;</li>
+ *     <li>{@code /rpc/sync_digest} and {@code /rpc/sync_row_digests} as defined by {@link RowDigest}.</li>
+ * </ul>
+ * Like a {@code moddatetime} trigger, every upsert stamps the row's last_updated_at with the server clock.
+ * Unsupported requests are answered with 400, as PostgREST would for a filter it cannot parse.
+ * <p>
+ * Latency, bandwidth and transient errors (503) can be injected, and changed while the server runs.
+ */
+public final class MockPostgrest implements AutoCloseable {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSxxx");
+    private static final String OBJECT_MEDIA_TYPE = "application/vnd.pgrst.object+json";
+    private static final int CHUNK_BYTES = 16 * 1024;
+
+    // The two keyset filters ApiService.changesUrl sends for the page after a row.
+    private static final Pattern AFTER_TIMED = Pattern.compile(
+            "\\(last_updated_at\\.gt\\.\"([^\"]+)\",and\\(last_updated_at\\.eq\\.\"[^\"]+\",uuid\\.gt\\.\"([^\"]+)\"\\)(,last_updated_at\\.is\\.null)?\\)");
+    private static final Pattern AFTER_UNTIMED = Pattern.compile("\\(last_updated_at\\.is\\.null,uuid\\.gt\\.\"([^\"]+)\"\\)");
+
+    private static final Map<String, String> RPC_TABLES = Map.ofEntries(
+            Map.entry("upsert_user", "users"),
+            Map.entry("upsert_category", "categories"),
+            Map.entry("upsert_unit", "units"),
+            Map.entry("upsert_supplier", "suppliers"),
+            Map.entry("upsert_customer", "customers"),
+            Map.entry("upsert_product", "products"),
+            Map.entry("upsert_product_supplier", "product_suppliers"),
+            Map.entry("upsert_sale", "sales"),
+            Map.entry("upsert_sale_item", "sale_items"),
+            Map.entry("upsert_payment", "payments"),
+            Map.entry("upsert_stock_ledger", "stock_ledger"));
+
+    // Rows in pull order: by last_updated_at, rows without one last, then by UUID.
+    private static final Comparator<Row> CHANGE_ORDER = Comparator
+            .comparing(Row::updatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Row::uuid);
+
+    private record Row(String uuid, String tenantId, Instant updatedAt, byte[] json) {
+    }
+
+    private record Reply(int status, byte[] body, Map<String, String> headers) {
+        static Reply json(int status, String body) {
+            return new Reply(status, body.getBytes(StandardCharsets.UTF_8), Map.of());
+        }
+    }
+
+    private static final class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final AtomicLong clockMicros = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private volatile long latencyMs;
+    private volatile long bytesPerSecond;
+    private volatile double errorRate;
+    private volatile boolean compression = true;
+
+    /**
+     * Creates the server on the loopback interface; call {@link #start()} to accept requests.
+     * @param port The port, or 0 for any free one.
+     * @throws IOException if the port cannot be bound.
+     */
+    public MockPostgrest(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "mock-postgrest-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                handle(exchange);
+            }
+        });
+    }
+
+    public MockPostgrest start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * @return The base URL to configure as {@code supabase.url}.
+     */
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // =========================================================
+    //  FAULT INJECTION
+    // =========================================================
+
+    /**
+     * @param latencyMs Added to every request before it is answered, like a round trip to a remote region.
+     */
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = Math.max(0, latencyMs);
+    }
+
+    /**
+     * @param bytesPerSecond The rate at which each request and response body is transferred, or 0 for no limit.
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+    }
+
+    /**
+     * @param errorRate The share of requests answered with 503 Service Unavailable, from 0 to 1.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = Math.min(1, Math.max(0, errorRate));
+    }
+
+    /**
+     * @param compression Whether responses are gzip-compressed for clients that accept it, as Supabase does.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long injectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    // =========================================================
+    //  DATA
+    // =========================================================
+
+    /**
+     * Stores a row as the server has it, keeping its last_updated_at, e.g. to generate a tenant's data.
+     * @param row A row with at least a uuid; nested arrays and objects are dropped.
+     */
+    public void load(String tableName, JsonObject row) {
+        table(tableName).put(toRow(row));
+    }
+
+    /**
+     * @return The number of rows in a table, of all tenants.
+     */
+    public int rowCount(String tableName) {
+        Table table = tables.get(tableName);
+        return table == null ? 0 : table.size();
+    }
+
+    private Table table(String tableName) {
+        return tables.computeIfAbsent(tableName, k -> new Table());
+    }
+
+    // One table's rows, indexed by UUID for lookups and by (last_updated_at, uuid) for pulls.
+    private static final class Table {
+        private final TreeMap<String, Row> byUuid = new TreeMap<>();
+        private final NavigableSet<Row> byChange = new TreeSet<>(CHANGE_ORDER);
+
+        synchronized void put(Row row) {
+            Row old = byUuid.put(row.uuid(), row);
+            if (old != null) {
+                byChange.remove(old);
+            }
+            byChange.add(row);
+        }
+
+        synchronized int size() {
+            return byUuid.size();
+        }
+
+        synchronized List<Row> select(Map<String, String> eq, Collection<String> uuids, Row after, boolean includeUntimed, int limit) {
+            List<Row> rows = new ArrayList<>();
+            Iterable<Row> candidates;
+            if (uuids != null) {
+                List<Row> found = new ArrayList<>();
+                uuids.forEach(uuid -> {
+                    Row row = byUuid.get(uuid);
+                    if (row != null) {
+                        found.add(row);
+                    }
+                });
+                found.sort(CHANGE_ORDER);
+                candidates = found;
+            } else {
+                candidates = after == null ? byChange : byChange.tailSet(after, false);
+            }
+            for (Row row : candidates) {
+                if (rows.size() >= limit) {
+                    break;
+                }
+                if (row.updatedAt() == null && after != null && after.updatedAt() != null && !includeUntimed) {
+                    break; // Untimed rows sort last
+                }
+                if (matches(row, eq)) {
+                    rows.add(row);
+                }
+            }
+            return rows;
+        }
+
+        synchronized List<Row> withPrefix(String tenantId, String prefix) {
+            List<Row> rows = new ArrayList<>();
+            for (Row row : byUuid.subMap(prefix, prefix + "g").values()) {
+                if (tenantId.equals(row.tenantId())) {
+                    rows.add(row);
+                }
+            }
+            return rows;
+        }
+
+        private static boolean matches(Row row, Map<String, String> eq) {
+            JsonObject parsed = null;
+            for (Map.Entry<String, String> filter : eq.entrySet()) {
+                String value;
+                if (filter.getKey().equals("tenant_id")) {
+                    value = row.tenantId();
+                } else {
+                    if (parsed == null) {
+                        parsed = parse(row.json());
+                    }
+                    JsonElement element = parsed.get(filter.getKey());
+                    value = element == null || element.isJsonNull() ? null : element.getAsString();
+                }
+                if (!filter.getValue().equals(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private Row toRow(JsonObject json) {
+        JsonObject row = new JsonObject();
+        json.entrySet().stream()
+                .filter(e -> !e.getValue().isJsonArray() && !e.getValue().isJsonObject())
+                .forEach(e -> row.add(e.getKey(), e.getValue()));
+        String uuid = string(row, "uuid");
+        if (uuid == null) {
+            throw new BadRequest("null value in column \"uuid\" violates not-null constraint");
+        }
+        String updatedAt = string(row, "last_updated_at");
+        return new Row(uuid, string(row, "tenant_id"), updatedAt == null ? null : parseTimestamp(updatedAt),
+                row.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void upsert(String tableName, JsonElement rows) {
+        List<JsonObject> objects = new ArrayList<>();
+        if (rows.isJsonArray()) {
+            rows.getAsJsonArray().forEach(row -> objects.add(row.getAsJsonObject()));
+        } else {
+            objects.add(rows.getAsJsonObject());
+        }
+        Table table = table(tableName);
+        List<Row> stamped = new ArrayList<>(objects.size());
+        for (JsonObject object : objects) {
+            object.addProperty("last_updated_at", TIMESTAMP.format(now()));
+            stamped.add(toRow(object));
+        }
+        stamped.forEach(table::put); // Validated first, so a bad row rejects the whole request like a transaction
+    }
+
+    // The server clock, strictly increasing so that each upsert gets its own timestamp.
+    private OffsetDateTime now() {
+        Instant wall = Instant.now();
+        long wallMicros = wall.getEpochSecond() * 1_000_000L + wall.getNano() / 1_000;
+        long micros = clockMicros.updateAndGet(last -> Math.max(last + 1, wallMicros));
+        return Instant.ofEpochSecond(micros / 1_000_000L, (micros % 1_000_000L) * 1_000).atOffset(ZoneOffset.UTC);
+    }
+
+    // =========================================================
+    //  REQUEST HANDLING
+    // =========================================================
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        Reply reply;
+        try {
+            byte[] body = readBody(exchange);
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                reply = Reply.json(503, "{\"message\":\"Service temporarily unavailable (injected)\"}");
+            } else {
+                reply = route(exchange, body);
+            }
+        } catch (BadRequest | JsonParseException | IllegalStateException | IllegalArgumentException e) {
+            reply = Reply.json(400, error("PGRST100", e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reply = Reply.json(503, "{\"message\":\"Server shutting down\"}");
+        }
+        writeReply(exchange, reply);
+    }
+
+    private Reply route(HttpExchange exchange, byte[] body) {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        int rpc = path.indexOf("/rpc/");
+        if (rpc >= 0 && method.equals("POST")) {
+            return rpc(path.substring(rpc + "/rpc/".length()), parse(body));
+        }
+        if (!path.startsWith("/rest/v1/")) {
+            return Reply.json(404, error("PGRST125", "Invalid path specified in request URL"));
+        }
+        String tableName = path.substring("/rest/v1/".length());
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        return switch (method) {
+            case "GET", "HEAD" -> select(exchange, tableName, query, method.equals("HEAD"));
+            case "POST" -> {
+                upsert(tableName, JsonParser.parseString(new String(body, StandardCharsets.UTF_8)));
+                yield new Reply(201, new byte[0], Map.of());
+            }
+            default -> Reply.json(405, error("PGRST117", "Unsupported HTTP method: " + method));
+        };
+    }
+
+    private Reply select(HttpExchange exchange, String tableName, Map<String, String> query, boolean head) {
+        Map<String, String> eq = new LinkedHashMap<>();
+        List<String> uuids = null;
+        Row after = null;
+        boolean includeUntimed = true;
+        int limit = Integer.MAX_VALUE;
+        for (Map.Entry<String, String> param : query.entrySet()) {
+            String name = param.getKey();
+            String value = param.getValue();
+            switch (name) {
+                case "limit" -> limit = Integer.parseInt(value);
+                case "order" -> {
+                    if (!value.equals("last_updated_at.asc,uuid.asc")) {
+                        throw new BadRequest("Unsupported order: " + value);
+                    }
+                }
+                case "or" -> {
+                    Matcher m = AFTER_TIMED.matcher(value);
+                    if (!m.matches()) {
+                        throw new BadRequest("Unsupported filter: or=" + value);
+                    }
+                    after = new Row(m.group(2), null, parseTimestamp(m.group(1)), null);
+                    includeUntimed = m.group(3) != null;
+                }
+                case "and" -> {
+                    Matcher m = AFTER_UNTIMED.matcher(value);
+                    if (!m.matches()) {
+                        throw new BadRequest("Unsupported filter: and=" + value);
+                    }
+                    after = new Row(m.group(1), null, null, null);
+                }
+                default -> {
+                    if (name.equals("uuid") && value.startsWith("in.(") && value.endsWith(")")) {
+                        uuids = List.of(value.substring(4, value.length() - 1).split(","));
+                    } else if (value.startsWith("eq.")) {
+                        eq.put(name, value.substring(3));
+                    } else {
+                        throw new BadRequest("Unsupported filter: " + name + "=" + value);
+                    }
+                }
+            }
+        }
+        List<Row> rows = table(tableName).select(eq, uuids, after, includeUntimed, limit);
+        if (head) {
+            String count = rows.isEmpty() ? "*/0" : "0-" + (rows.size() - 1) + "/" + rows.size();
+            return new Reply(200, null, Map.of("Content-Range", count));
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept != null && accept.contains(OBJECT_MEDIA_TYPE)) {
+            if (rows.size() != 1) {
+                return Reply.json(406, error("PGRST116", "JSON object requested, multiple (or no) rows returned"));
+            }
+            return new Reply(200, rows.get(0).json(), Map.of());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows.size() * 256 + 2);
+        out.write('[');
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(rows.get(i).json());
+        }
+        out.write(']');
+        return new Reply(200, out.toByteArray(), Map.of());
+    }
+
+    private Reply rpc(String function, JsonObject args) {
+        switch (function) {
+            case "sync_digest" -> {
+                return Reply.json(200, digests(args, true).toString());
+            }
+            case "sync_row_digests" -> {
+                return Reply.json(200, digests(args, false).toString());
+            }
+            default -> {
+                boolean batch = function.endsWith("_batch");
+                String tableName = RPC_TABLES.get(batch ? function.substring(0, function.length() - "_batch".length()) : function);
+                JsonElement rows = args.get(batch ? "items" : "item");
+                if (tableName == null || rows == null) {
+                    return Reply.json(404, error("PGRST202", "Could not find the function public." + function + " in the schema cache"));
+                }
+                upsert(tableName, rows);
+                return new Reply(204, null, Map.of());
+            }
+        }
+    }
+
+    private JsonArray digests(JsonObject args, boolean buckets) {
+        String tableName = args.get("p_table").getAsString();
+        List<RowDigest.Column> columns = RowDigest.COLUMNS.get(tableName);
+        if (columns == null) {
+            throw new BadRequest("Table cannot be digested: " + tableName);
+        }
+        String prefix = args.get("p_prefix").getAsString();
+        List<Row> rows = table(tableName).withPrefix(args.get("p_tenant_id").getAsString(), prefix);
+        JsonArray result = new JsonArray();
+        if (!buckets) {
+            for (Row row : rows) {
+                JsonObject digest = new JsonObject();
+                digest.addProperty("uuid", row.uuid());
+                digest.addProperty("digest", digestOf(columns, row));
+                result.add(digest);
+            }
+            return result;
+        }
+        int length = args.get("p_length").getAsInt();
+        Map<String, long[]> sums = new TreeMap<>();
+        for (Row row : rows) {
+            long[] sum = sums.computeIfAbsent(RowDigest.bucketOf(row.uuid(), length), k -> new long[2]);
+            sum[0]++;
+            sum[1] += digestOf(columns, row);
+        }
+        sums.forEach((bucket, sum) -> {
+            JsonObject digest = new JsonObject();
+            digest.addProperty("bucket", bucket);
+            digest.addProperty("rows", sum[0]);
+            digest.addProperty("digest", sum[1]);
+            result.add(digest);
+        });
+        return result;
+    }
+
+    private static long digestOf(List<RowDigest.Column> columns, Row row) {
+        JsonObject json = parse(row.json());
+        return RowDigest.of(columns, column -> {
+            JsonElement value = json.get(column);
+            if (value == null || value.isJsonNull()) {
+                return null;
+            }
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            return primitive.isBoolean() ? primitive.getAsBoolean() : primitive.isNumber() ? primitive.getAsBigDecimal() : primitive.getAsString();
+        });
+    }
+
+    // =========================================================
+    //  TRANSFER
+    // =========================================================
+
+    private byte[] readBody(HttpExchange exchange) throws IOException, InterruptedException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        copyThrottled(exchange.getRequestBody(), body);
+        // HttpClientManager compresses large uploads.
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+                return gzip.readAllBytes();
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private void writeReply(HttpExchange exchange, Reply reply) throws IOException {
+        reply.headers().forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        if (reply.body() == null || exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(reply.status(), -1);
+            return;
+        }
+        byte[] body = reply.body();
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (compression && acceptEncoding != null && acceptEncoding.contains("gzip") && body.length > 1024) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(reply.status(), body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            copyThrottled(new ByteArrayInputStream(body), out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Copies in chunks, sleeping whenever the transfer gets ahead of the configured bandwidth.
+    private void copyThrottled(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long transferred = 0;
+        byte[] buffer = new byte[CHUNK_BYTES];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            transferred += read;
+            long rate = bytesPerSecond;
+            if (rate > 0) {
+                long dueNanos = transferred * 1_000_000_000L / rate;
+                long aheadMs = (dueNanos - (System.nanoTime() - start)) / 1_000_000L;
+                if (aheadMs > 0) {
+                    Thread.sleep(aheadMs);
+                }
+            }
+        }
+    }
+
+    // =========================================================
+    //  HELPERS
+    // =========================================================
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            params.put(name, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static JsonObject parse(byte[] json) {
+        return JsonParser.parseString(new String(json, StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    private static Instant parseTimestamp(String value) {
+        return OffsetDateTime.parse(value.replace(' ', 'T')).toInstant();
+    }
+
+    private static String string(JsonObject row, String member) {
+        JsonElement value = row.get(member);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private static String error(String code, String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("code", code);
+        error.addProperty("message", message);
+        return error.toString();
+    }
+}
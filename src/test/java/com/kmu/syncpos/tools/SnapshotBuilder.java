@@ -0,0 +1,163 @@
+// src/test/java/com/kmu/syncpos/tools/SnapshotBuilder.java
+package com.kmu.syncpos.tools;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.kmu.syncpos.dto.SnapshotManifestDTO;
+import com.kmu.syncpos.dto.SyncWatermarkDTO;
+import com.kmu.syncpos.service.ApiService;
+import com.kmu.syncpos.service.SnapshotArchive;
+import com.kmu.syncpos.service.SyncService;
+import com.kmu.syncpos.util.ConfigLoader;
+import com.kmu.syncpos.util.HttpClientManager;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Command-line stand-in for a server-side export: writes the snapshot archive a new till bootstraps from.
+ * It is not part of the application; run it from the test class path:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.kmu.syncpos.tools.SnapshotBuilder \
+ *      -Dexec.args="&lt;tenant uuid&gt; &lt;archive.zip&gt;"
+ * </pre>
+ * It reads the same application.properties (server URL and key) as the till. Copy the archive to the path
+ * configured in {@code sync.snapshot.path} on the new till before activating it. The format is described in
+ * {@link SnapshotArchive}.
+ */
+public final class SnapshotBuilder {
+
+    private SnapshotBuilder() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: SnapshotBuilder <tenant uuid> <archive.zip>");
+            System.exit(2);
+        }
+        Path target = Path.of(args[1]);
+        long start = System.nanoTime();
+        try {
+            SnapshotManifestDTO manifest = create(new ApiService(), args[0], SyncService.syncedTables(), target,
+                    ConfigLoader.getIntProperty("sync.pull.chunk.size", 500));
+            long rows = manifest.tables().stream().mapToLong(SnapshotManifestDTO.Table::rows).sum();
+            System.out.printf("Wrote %s: %d rows in %d tables, %.1f MB, in %d s.%n", target, rows, manifest.tables().size(),
+                    Files.size(target) / (1024.0 * 1024.0), (System.nanoTime() - start) / 1_000_000_000L);
+        } catch (IOException e) {
+            System.err.println("Snapshot failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            HttpClientManager.getInstance().shutdown();
+        }
+    }
+
+    /**
+     * Takes a snapshot of a tenant's synced tables from the server. It downloads every table once through the
+     * same keyset-paginated API the tills use.
+     * @param api      The API to download from.
+     * @param tenantId The UUID of the tenant.
+     * @param tables   The tables to include, normally {@link SyncService#syncedTables()}.
+     * @param target   The archive to write; it is replaced only once the snapshot is complete.
+     * @param pageSize Rows per request.
+     * @return The manifest of the written archive.
+     * @throws IOException if a download fails or the archive cannot be written.
+     */
+    static SnapshotManifestDTO create(ApiService api, String tenantId, Collection<String> tables, Path target,
+                                      int pageSize) throws IOException {
+        String createdAt = Instant.now().toString();
+        List<SnapshotManifestDTO.Table> segments = new ArrayList<>();
+        SnapshotManifestDTO manifest;
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".part");
+        try {
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(temp))) {
+                for (String tableName : new TreeSet<>(tables)) {
+                    String file = tableName + ".ndjson";
+                    MessageDigest digest = sha256();
+                    long[] rows = {0};
+                    SyncWatermarkDTO[] reached = {null};
+                    zip.putNextEntry(new ZipEntry(file));
+                    try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                            new DigestOutputStream(new EntryStream(zip), digest), StandardCharsets.UTF_8))) {
+                        boolean complete = api.streamRawChanges(tableName, tenantId, null, pageSize, (page, pageReached) -> {
+                            try {
+                                for (JsonObject row : page) {
+                                    out.write(row.toString());
+                                    out.write('\n');
+                                }
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            rows[0] += page.size();
+                            if (pageReached != null) {
+                                reached[0] = pageReached;
+                            }
+                        });
+                        if (!complete) {
+                            throw new IOException("Download of " + tableName + " failed.");
+                        }
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    zip.closeEntry();
+                    SyncWatermarkDTO watermark = reached[0];
+                    segments.add(new SnapshotManifestDTO.Table(tableName, file, rows[0], HexFormat.of().formatHex(digest.digest()),
+                            watermark == null ? null : watermark.lastUpdatedAt(), watermark == null ? null : watermark.lastUuid()));
+                    System.out.println("SnapshotBuilder: " + tableName + ": " + rows[0] + " rows.");
+                }
+                manifest = new SnapshotManifestDTO(SnapshotArchive.FORMAT_VERSION, tenantId, createdAt, List.copyOf(segments));
+                zip.putNextEntry(new ZipEntry(SnapshotArchive.MANIFEST));
+                zip.write(new Gson().toJson(manifest).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return manifest;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e); // Every JRE must provide it
+        }
+    }
+
+    // Writes into the current zip entry; closing it leaves the zip stream open for the next entry.
+    private static final class EntryStream extends FilterOutputStream {
+        EntryStream(OutputStream zip) {
+            super(zip);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
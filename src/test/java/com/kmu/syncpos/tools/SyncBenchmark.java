@@ -0,0 +1,297 @@
+// src/test/java/com/kmu/syncpos/tools/SyncBenchmark.java
+package com.kmu.syncpos.tools;
+
+import com.google.gson.JsonObject;
+import com.kmu.syncpos.dao.SyncRunDAO;
+import com.kmu.syncpos.dao.TenantDAO;
+import com.kmu.syncpos.dto.SyncRunDTO;
+import com.kmu.syncpos.dto.SyncTableMetricsDTO;
+import com.kmu.syncpos.dto.TenantDTO;
+import com.kmu.syncpos.models.Tenant;
+import com.kmu.syncpos.service.ApiService;
+import com.kmu.syncpos.service.SyncService;
+import com.kmu.syncpos.util.DatabaseManager;
+import com.kmu.syncpos.util.HttpClientManager;
+import javafx.application.Platform;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Measures sync throughput against {@link MockPostgrest}: generates a tenant on the stand-in server, activates a
+ * fresh till database with it (the initial download), edits rows locally and runs a regular sync cycle (the upload).
+ * It lives with the tests so it stays out of the application image; run it on the test class path:
+ * <pre>
+ * MAVEN_OPTS=-Xmx4g mvn test-compile exec:java -Dexec.classpathScope=test \
+ *      -Dexec.mainClass=com.kmu.syncpos.tools.SyncBenchmark -Dexec.args="[--products=100000] [--ledger=2000000] \
+ *      [--edits=20000] [--latency-ms=0] [--bandwidth-kbps=0] [--error-rate=0]"
+ * </pre>
+ * The till database is created in a temporary home directory, never the real one. Sync settings come from
+ * application.properties and can be overridden with system properties, e.g. {@code -Dsync.pull.chunk.size=1000}.
+ * Data is generated from a fixed seed, so runs with the same options sync the same rows.
+ */
+public final class SyncBenchmark {
+
+    private static final String TENANT_UUID = "00000000-0000-4000-8000-00000000be4c";
+    private static final String LICENSE_KEY = "BENCHMARK";
+    private static final Instant EPOCH = Instant.parse("2025-01-01T00:00:00Z");
+
+    private SyncBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int products = Integer.parseInt(options.getOrDefault("products", "100000"));
+        int ledger = Integer.parseInt(options.getOrDefault("ledger", "2000000"));
+        int edits = Integer.parseInt(options.getOrDefault("edits", "20000"));
+
+        // DatabaseManager keeps the till database under user.home, so this must happen before it loads.
+        Path home = Files.createTempDirectory("syncpos-benchmark");
+        System.setProperty("user.home", home.toString());
+        // A digest comparison would add a phase to the upload cycle; it is not what is measured here.
+        System.setProperty("sync.reconcile.interval.hours", System.getProperty("sync.reconcile.interval.hours", "0"));
+
+        try (MockPostgrest server = new MockPostgrest(Integer.parseInt(options.getOrDefault("port", "0"))).start()) {
+            System.setProperty("supabase.url", server.url());
+            long start = System.nanoTime();
+            List<String> productUuids = generateTenant(server, products, ledger);
+            System.out.printf("Generated %d products and %d ledger rows on %s in %d ms.%n", products, ledger, server.url(),
+                    (System.nanoTime() - start) / 1_000_000L);
+
+            server.setLatencyMs(Long.parseLong(options.getOrDefault("latency-ms", "0")));
+            server.setBandwidth(Long.parseLong(options.getOrDefault("bandwidth-kbps", "0")) * 1024 / 8);
+            server.setErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")));
+
+            DatabaseManager.getInstance().initializeDatabase();
+            System.out.println("Till database: " + DatabaseManager.getInstance().getDatabasePath() + " (delete it when done).");
+            TenantDTO tenantDTO = new ApiService().getTenantByKey(LICENSE_KEY);
+            if (tenantDTO == null) {
+                throw new IllegalStateException("The stand-in server did not return the benchmark tenant.");
+            }
+            new TenantDAO().saveTenant(tenantDTO);
+            Tenant tenant = new TenantDAO().findByUuid(TENANT_UUID);
+
+            Platform.startup(() -> { });
+            try {
+                report("Initial download", runSync(tenant, true), "pull");
+                int edited = editLocally(productUuids, edits);
+                report("Upload of " + edited + " local changes", runSync(tenant, false), "push");
+                System.out.printf("Server: %d requests, %d injected errors.%n", server.requestCount(), server.injectedErrorCount());
+            } finally {
+                Platform.exit();
+            }
+        } finally {
+            HttpClientManager.getInstance().shutdown();
+            DatabaseManager.getInstance().shutdown();
+        }
+    }
+
+    // =========================================================
+    //  DATA GENERATION
+    // =========================================================
+
+    /**
+     * Fills the server with one tenant: a user, a few categories and units, the products and their stock ledger.
+     * @return The product UUIDs, in generation order.
+     */
+    private static List<String> generateTenant(MockPostgrest server, int products, int ledger) {
+        Random random = new Random(42);
+        JsonObject tenant = new JsonObject();
+        tenant.addProperty("uuid", TENANT_UUID);
+        tenant.addProperty("license_key", LICENSE_KEY);
+        tenant.addProperty("owner_email", "benchmark@example.com");
+        tenant.addProperty("status", "active");
+        tenant.addProperty("created_at", EPOCH.toString());
+        server.load("tenants", tenant);
+
+        String userUuid = uuid(random);
+        JsonObject user = row(userUuid, 0);
+        user.addProperty("username", "benchmark");
+        user.addProperty("firstname", "Bench");
+        user.addProperty("lastname", "Mark");
+        user.addProperty("password_hash", "$2a$10$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbenchm");
+        user.addProperty("role", "ADMIN");
+        user.addProperty("is_active", true);
+        server.load("users", user);
+
+        List<String> categories = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            JsonObject category = row(uuid(random), i);
+            category.addProperty("name", "Category " + i);
+            server.load("categories", category);
+            categories.add(category.get("uuid").getAsString());
+        }
+        List<String> units = new ArrayList<>();
+        for (String name : List.of("Piece", "Kilogram", "Litre", "Box", "Pack")) {
+            JsonObject unit = row(uuid(random), units.size());
+            unit.addProperty("name", name);
+            unit.addProperty("abbreviation", name.substring(0, 2).toLowerCase());
+            server.load("units", unit);
+            units.add(unit.get("uuid").getAsString());
+        }
+
+        List<String> productUuids = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            JsonObject product = row(uuid(random), i);
+            double price = 1 + random.nextInt(50_000) / 100.0;
+            product.addProperty("sku", "SKU-" + i);
+            product.addProperty("barcode", String.valueOf(6_000_000_000_000L + i));
+            product.addProperty("name", "Product " + i);
+            product.addProperty("product_type", "PHYSICAL");
+            product.addProperty("category_uuid", categories.get(random.nextInt(categories.size())));
+            product.addProperty("unit_uuid", units.get(random.nextInt(units.size())));
+            product.addProperty("purchase_price", Math.round(price * 70) / 100.0);
+            product.addProperty("selling_price", price);
+            product.addProperty("tax_rate", 0.16);
+            product.addProperty("min_stock_level", 5.0);
+            product.addProperty("reorder_quantity", 20.0);
+            product.addProperty("current_stock", 0.0);
+            product.addProperty("is_active", true);
+            server.load("products", product);
+            productUuids.add(product.get("uuid").getAsString());
+        }
+
+        for (int i = 0; i < ledger && products > 0; i++) {
+            JsonObject entry = row(uuid(random), products + i);
+            boolean receipt = random.nextInt(4) == 0;
+            entry.addProperty("product_uuid", productUuids.get(random.nextInt(products)));
+            entry.addProperty("user_uuid", userUuid);
+            entry.addProperty("quantity_delta", receipt ? 10 + random.nextInt(90) : -(1 + random.nextInt(5)));
+            entry.addProperty("reason", receipt ? "PURCHASE" : "SALE");
+            entry.addProperty("created_at", entry.get("last_updated_at").getAsString());
+            server.load("stock_ledger", entry);
+        }
+        return productUuids;
+    }
+
+    // A row with the columns every synced table has; each row is one second newer than the previous one of its table.
+    private static JsonObject row(String uuid, int sequence) {
+        JsonObject row = new JsonObject();
+        row.addProperty("uuid", uuid);
+        row.addProperty("tenant_id", TENANT_UUID);
+        row.addProperty("last_updated_at", EPOCH.plus(sequence, ChronoUnit.SECONDS).toString());
+        row.addProperty("is_deleted", false);
+        return row;
+    }
+
+    private static String uuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    /**
+     * Makes local changes as tills do: reprices products and records stock movements, half of the edits each.
+     * @return The number of rows changed.
+     */
+    private static int editLocally(List<String> productUuids, int edits) throws SQLException {
+        if (productUuids.isEmpty()) {
+            return 0;
+        }
+        Random random = new Random(7);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return DatabaseManager.getInstance().inTransaction(conn -> {
+            int changed = 0;
+            Map<String, Long> productIds = new HashMap<>();
+            long userId;
+            try (ResultSet rs = conn.createStatement().executeQuery("SELECT id FROM users LIMIT 1")) {
+                userId = rs.next() ? rs.getLong(1) : 0;
+            }
+            try (ResultSet rs = conn.createStatement().executeQuery("SELECT uuid, id FROM products")) {
+                while (rs.next()) {
+                    productIds.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE products SET selling_price = selling_price + 1, last_updated_at = ?, is_synced = 0 WHERE uuid = ?")) {
+                for (int i = 0; i < edits / 2 && i < productUuids.size(); i++) {
+                    ps.setTimestamp(1, now);
+                    ps.setString(2, productUuids.get(i));
+                    ps.addBatch();
+                    changed++;
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    INSERT INTO stock_ledger (uuid, tenant_id, product_id, quantity_delta, reason, user_id, created_at, last_updated_at,
+                                              is_synced, is_deleted)
+                    VALUES (?, ?, ?, ?, 'ADJUSTMENT', ?, ?, ?, 0, 0)
+                    """)) {
+                for (int i = 0; i < edits - edits / 2; i++) {
+                    ps.setString(1, UUID.randomUUID().toString());
+                    ps.setString(2, TENANT_UUID);
+                    ps.setLong(3, productIds.get(productUuids.get(random.nextInt(productUuids.size()))));
+                    ps.setDouble(4, random.nextInt(11) - 5);
+                    ps.setLong(5, userId);
+                    ps.setTimestamp(6, now);
+                    ps.setTimestamp(7, now);
+                    ps.addBatch();
+                    changed++;
+                }
+                ps.executeBatch();
+            }
+            return changed;
+        });
+    }
+
+    // =========================================================
+    //  RUNNING AND REPORTING
+    // =========================================================
+
+    /**
+     * Runs one sync cycle the way the application does, on the JavaFX thread, and waits for it.
+     * @return The run as recorded in the sync history.
+     */
+    private static SyncRunDTO runSync(Tenant tenant, boolean initial) throws InterruptedException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            SyncService service = new SyncService(tenant, initial);
+            service.setOnSucceeded(e -> done.complete(null));
+            service.setOnFailed(e -> done.completeExceptionally(service.getException()));
+            service.start();
+        });
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            System.err.println("Sync failed: " + e.getCause().getMessage());
+        }
+        return new SyncRunDAO().getRecentRuns(tenant.getUuid(), 1).get(0);
+    }
+
+    private static void report(String title, SyncRunDTO run, String phase) {
+        long rows = run.tables().stream().filter(t -> t.phase().equals(phase)).mapToLong(SyncTableMetricsDTO::rows).sum();
+        long bytes = run.tables().stream().filter(t -> t.phase().equals(phase)).mapToLong(t -> t.bytesSent() + t.bytesReceived()).sum();
+        System.out.println();
+        System.out.printf("%s: %d rows %s in %.1f s = %.0f rows/s, %.1f MB transferred%s%n", title, rows,
+                phase.equals("pull") ? "downloaded" : "uploaded", run.durationMs() / 1000.0,
+                run.durationMs() == 0 ? 0.0 : rows * 1000.0 / run.durationMs(), bytes / (1024.0 * 1024.0),
+                run.succeeded() ? "" : " (FAILED: " + run.error() + ")");
+        run.tables().forEach(t -> System.out.println("  " + t));
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Usage: SyncBenchmark [--products=N] [--ledger=N] [--edits=N] [--latency-ms=N] "
+                        + "[--bandwidth-kbps=N] [--error-rate=0..1] [--port=N]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}